@@ -46,6 +46,7 @@ public class AddNewTaskActivity extends AppCompatActivity
     private NumberPicker m_GreenColorPicker;   /* Picker used to select green color component of task button color */
     private NumberPicker m_BlueColorPicker;    /* Picker used to select blue color component of task button color */
     private Button m_AddTaskButton;            /* The button used to complete addition of the task */
+    private Runnable m_AddTaskEnabler;         /* Enables the add button once the Workday has been restored */
 
     /**
      * Called when the activity is created - initialization for the activity is performed here.
@@ -108,12 +109,42 @@ public class AddNewTaskActivity extends AppCompatActivity
         /* Set up listeners */
         m_AddTaskButton.setOnClickListener( new AddTaskButtonListener() );
 
+        /* The name can only be checked against the Workday once it is ready; the UI thread never waits for it */
+        m_AddTaskEnabler = new AddTaskEnabler();
+        m_AddTaskButton.setEnabled( false );
+        ( (TeamLeadApplication)getApplication() ).whenWorkdayReady( m_AddTaskEnabler );
+
         ColorPickerListener colorPickerListener = new ColorPickerListener();
         m_RedColorPicker.setOnValueChangedListener( colorPickerListener );
         m_GreenColorPicker.setOnValueChangedListener( colorPickerListener );
         m_BlueColorPicker.setOnValueChangedListener( colorPickerListener );
     }
 
+    /**
+     * Called when the activity is destroyed. If the Workday is still being restored, the add button no longer needs
+     * to be enabled when it is.
+     */
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        ( (TeamLeadApplication)getApplication() ).cancelWorkdayReady( m_AddTaskEnabler );
+    }
+
+    /**
+     * Private class that enables the add button once the Workday has been restored. Runs on the UI thread,
+     * immediately when the activity is created if the Workday is already ready.
+     */
+    private class AddTaskEnabler implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            m_AddTaskButton.setEnabled( true );
+        }
+    }
+
     /**
      * Private class for handling changes to the color component number pickers.
      */
@@ -180,15 +211,19 @@ public class AddNewTaskActivity extends AppCompatActivity
                 createdTask.setTaskColor( Color.argb( ALPHA_DEFAULT, m_RedColorPicker.getValue(),
                                                       m_GreenColorPicker.getValue(), m_BlueColorPicker.getValue() ) );
 
-                /* Add the task to the workday model */
-                Workday userWorkday = ( (TeamLeadApplication)getApplication() ).getWorkdayModel();
+                /* Add the task to the workday model; the name is checked against the tasks as last published */
+                WorkdayWriter workdayWriter = ( (TeamLeadApplication)getApplication() ).getWorkdayWriter();
 
-                if( userWorkday.addTask( createdTask ) == ErrorCode.ERR_TASK_DUPLICATE )
+                if( workdayWriter.getPublishedSnapshot().isTaskNameTaken( createdTask.getTaskName() ) )
                 {
                     /* Duplicate task - inform the user that it cannot be added */
                     errorDialogMessage = getResources().getString( R.string.invalid_task_duplicate_dialog_msg );
                     displayErrorDialog = true;
                 }
+                else
+                {
+                    workdayWriter.addTask( createdTask );
+                }
             }
 
             /* Based on input, either display an error dialog, or return to the ContextSwitch UI */
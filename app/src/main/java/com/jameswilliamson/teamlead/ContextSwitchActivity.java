@@ -2,7 +2,9 @@
  * ContextSwitchActivity.java
  *
  * Android activity for the main ContextSwitch screen, where the user will switch between tasks they are actively
- * performing with the push of a button.
+ * performing with the push of a button. On a cold start, the Workday may still be being restored when the screen is
+ * first drawn; a placeholder grid is shown until it is ready, and the tiles are bound then. Taps are submitted to the
+ * Workday's writer, which applies them in the background; the grid is updated when the change is published.
  *
  * @author James Williamson
  *
@@ -19,6 +21,8 @@ import android.content.Intent;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SimpleItemAnimator;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
 import android.view.ContextMenu;
@@ -26,19 +30,22 @@ import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
-import android.view.WindowManager;import android.widget.AdapterView;
-import android.widget.GridView;
-import java.io.IOException;import java.util.Timer;
-import java.util.TimerTask;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
 
 public class ContextSwitchActivity extends AppCompatActivity
 {
     /* Private member fields */
-    private Workday m_UserWorkday;               /* The user workday model to depict on screen */
-    private GridView m_TaskGrid;                 /* The grid of buttons (tasks) displayed to the user */
+    private WorkdayWriter m_WorkdayWriter;       /* Changes, and publishes, the user workday depicted on screen */
+    private RecyclerView m_TaskGrid;             /* The grid of tiles (tasks) displayed to the user */
     private Activity m_ThisActivity;             /* A reference to this activity */
-    private Timer m_ScreenUpdateTimer;           /* A timer that is used to update the UI */
+    private TaskTileAdapter m_GridAdapter;       /* Binds the tasks of the Workday to the grid */
+    private int m_ContextMenuTaskId;             /* ID of the task whose context menu is shown */
+    private TileRefreshScheduler m_TileRefresher; /* Refreshes the active tile as its runtime ticks over */
     private TeamLeadApplication m_Application;   /* Reference to the application object */
+    private WorkdayBinder m_WorkdayBinder;       /* Binds the grid once the Workday has been restored */
+    private GridUpdater m_WorkdayChangeListener; /* Updates the grid when a change to the Workday is published */
+    private boolean m_Resumed;                   /* Whether the activity is in the foreground */
 
     /**
      * Called when the activity is created - initialization for the activity is performed here.
@@ -64,19 +71,47 @@ public class ContextSwitchActivity extends AppCompatActivity
 
         /* Initialization of members */
         m_Application = (TeamLeadApplication)getApplication();
-        m_UserWorkday = m_Application.getWorkdayModel();
-        m_TaskGrid = (GridView)findViewById( R.id.context_switch_grid );
+        m_WorkdayWriter = null;
+        m_GridAdapter = null;
+        m_TileRefresher = null;
+        m_TaskGrid = (RecyclerView)findViewById( R.id.context_switch_grid );
         m_ThisActivity = this;
+        m_WorkdayBinder = new WorkdayBinder();
+        m_WorkdayChangeListener = new GridUpdater();
+        m_Resumed = false;
 
-        /* Set up the grid adapter */
-        TaskButtonAdapter m_GridAdapter = new TaskButtonAdapter( this, m_UserWorkday );
-        m_TaskGrid.setAdapter( m_GridAdapter );
+        /* The layout manager and its columns are specified in the layout file */
+        m_TaskGrid.setHasFixedSize( true );
 
-        /* Register the grid view to display context menus */
-        registerForContextMenu( m_TaskGrid );
+        /* Rebound tiles are updated in place, rather than cross-faded */
+        ( (SimpleItemAnimator)m_TaskGrid.getItemAnimator() ).setSupportsChangeAnimations( false );
 
-        /* Assign listeners */
-        m_TaskGrid.setOnItemClickListener( new gridClickHandler() );
+        if( !m_Application.getStartupTrace().isComplete() )
+        {
+            /* Time the first frames of a cold start */
+            m_TaskGrid.getViewTreeObserver().addOnPreDrawListener( new FrameTracer() );
+        }
+
+        if( !m_Application.isWorkdayReady() )
+        {
+            /* Draw the screen now, rather than waiting for the Workday to be restored */
+            m_TaskGrid.setAdapter( new PlaceholderTileAdapter( this ) );
+        }
+
+        m_Application.whenWorkdayReady( m_WorkdayBinder );
+    }
+
+    /**
+     * Called when the activity is destroyed. If the Workday is still being restored, the grid no longer needs to be
+     * bound when it is; otherwise, it no longer needs to be told about changes.
+     */
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        m_Application.cancelWorkdayReady( m_WorkdayBinder );
+        m_Application.removeWorkdayChangeListener( m_WorkdayChangeListener );
     }
 
     /**
@@ -88,17 +123,33 @@ public class ContextSwitchActivity extends AppCompatActivity
         /* Call superclass implementation first */
         super.onResume();
 
-        /* Retrieve stored refresh rate */
-        int refreshRateMs = m_Application.getTaskTileRefreshRate();
+        m_Resumed = true;
 
-        /* Set up the timer that will repaint the view */
-        if( m_ScreenUpdateTimer != null )
+        if( m_GridAdapter != null )
         {
-            m_ScreenUpdateTimer.cancel();
+            /* Tasks may have been added while another activity was in front */
+            m_GridAdapter.onTasksChanged();
+
+            /* Refresh the tiles at the stored refresh rate while they are visible */
+            m_TileRefresher.start( m_Application.getTaskTileRefreshRate() );
         }
+    }
+
+    /**
+     * Called when the activity is no longer in the foreground.
+     */
+    @Override
+    public void onPause()
+    {
+        super.onPause();
 
-        m_ScreenUpdateTimer = new Timer();
-        m_ScreenUpdateTimer.scheduleAtFixedRate( new ActivityTimerTask( this ), 0, refreshRateMs );
+        m_Resumed = false;
+
+        if( m_TileRefresher != null )
+        {
+            /* Nothing on screen needs refreshing, so do not wake up for it */
+            m_TileRefresher.stop();
+        }
     }
 
     /**
@@ -109,19 +160,6 @@ public class ContextSwitchActivity extends AppCompatActivity
         super.onStop();
 
         Log.d( "Info", "CONTEXT UI STOPPED" );
-
-        try
-        {
-            /* Save the Workday data in case the application does not resume */
-            m_Application.saveWorkday();
-        }
-        catch( IOException io_exception )
-        {
-            /* A problem occurred and the data could not be saved */
-            // TODO: 4/23/2017 Log appropriately
-            Log.d( "Info", "COULD NOT SAVE WORKDAY" );
-            io_exception.printStackTrace();
-        }
     }
 
     /**
@@ -141,31 +179,47 @@ public class ContextSwitchActivity extends AppCompatActivity
     }
 
     /**
-     * Called when the context menu for this view is being built. It is not safe to hold onto the menu after this
+     * Prepares the options menu to be displayed. The items that need the Workday are disabled until it is ready.
+     *
+     * @param menu The options menu as last shown or first initialized.
+     * @return True for the menu to be displayed, false otherwise.
+     */
+    @Override
+    public boolean onPrepareOptionsMenu( Menu menu )
+    {
+        menu.findItem( R.id.reset ).setEnabled( m_GridAdapter != null );
+        menu.findItem( R.id.view_log ).setEnabled( m_GridAdapter != null );
+
+        return( super.onPrepareOptionsMenu( menu ) );
+    }
+
+    /**
+     * Called when the context menu for a task tile is being built. It is not safe to hold onto the menu after this
      * method returns.
      *
      * @param menu The context menu that is being built.
-     * @param v The view for which the context menu is being built.
-     * @param menuInfo Extra information about the item for which the context menu should be shown. This information
-     *                 will vary depending on the class of v.
+     * @param v The task tile for which the context menu is being built.
+     * @param menuInfo Extra information about the item for which the context menu should be shown; not provided for
+     *                 task tiles.
      */
     @Override
     public void onCreateContextMenu( ContextMenu menu, View v, ContextMenu.ContextMenuInfo menuInfo )
     {
         super.onCreateContextMenu( menu, v, menuInfo );
-        AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo)menuInfo;
+        int position = m_TaskGrid.getChildAdapterPosition( v );
+        WorkdaySnapshot workday = m_WorkdayWriter.getPublishedSnapshot();
 
-        if( info.position < m_UserWorkday.getNumberOfUserTasks() )
+        if( ( position != RecyclerView.NO_POSITION ) && ( position < workday.getNumberOfUserTasks() ) )
         {
-            /* Get the task associated with this context menu (only if it's a user-defined task) */
-            Task selectedTask = m_UserWorkday.getTask( info.position );
+            /* Remember the user task by ID, since its position changes if other tasks are deleted meanwhile */
+            m_ContextMenuTaskId = workday.getUserTaskId( position );
 
             /* Inflate the menu resource */
             MenuInflater inflater = getMenuInflater();
             inflater.inflate( R.menu.task_button_context_menu, menu );
 
             /* Customize menu header */
-            menu.setHeaderTitle( selectedTask.getTaskName() + " " +
+            menu.setHeaderTitle( workday.getTaskName( m_ContextMenuTaskId ) + " " +
                                  getString( R.string.task_context_menu_header_suffix ) );
         }
     }
@@ -179,13 +233,12 @@ public class ContextSwitchActivity extends AppCompatActivity
     @Override
     public boolean onContextItemSelected( MenuItem item )
     {
-        AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo)item.getMenuInfo();
         boolean handled;
 
         switch( item.getItemId() )
         {
             case R.id.delete_task:
-                m_UserWorkday.deleteTask( info.position );
+                m_WorkdayWriter.deleteTask( m_ContextMenuTaskId );
                 handled = true;
                 break;
 
@@ -242,76 +295,121 @@ public class ContextSwitchActivity extends AppCompatActivity
     }
 
     /**
-     * Private class for handling the user's button presses on the grid.
+     * Rebinds every tile and realigns the refreshes with the active task. Must be called after any change to the
+     * tasks other than the passing of time, such as a task being deleted or switched to, or a reset, is published.
+     */
+    private void onTasksChanged()
+    {
+        m_GridAdapter.onTasksChanged();
+        m_TileRefresher.reschedule();
+    }
+
+    /**
+     * Private class that replaces the placeholder grid with the tiles of the Workday, once it has been restored. Runs
+     * on the UI thread, immediately when the activity is created if the Workday is already ready.
+     */
+    private class WorkdayBinder implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            m_WorkdayWriter = m_Application.getWorkdayWriter();
+
+            /* Set up the grid adapter */
+            m_GridAdapter = new TaskTileAdapter( m_ThisActivity, m_WorkdayWriter,
+                                                 m_Application.getLimitAlerter().getLimits(), new gridClickHandler() );
+            m_TaskGrid.setAdapter( m_GridAdapter );
+            m_TileRefresher = new TileRefreshScheduler( m_WorkdayWriter, new GridRefresher() );
+            m_Application.addWorkdayChangeListener( m_WorkdayChangeListener );
+
+            if( m_Resumed )
+            {
+                m_TileRefresher.start( m_Application.getTaskTileRefreshRate() );
+            }
+
+            /* The items that need the Workday can now be enabled */
+            invalidateOptionsMenu();
+        }
+    }
+
+    /**
+     * Private class that reports the first frames of the screen to the startup trace, then stops listening.
      */
-    private class gridClickHandler implements AdapterView.OnItemClickListener
+    private class FrameTracer implements ViewTreeObserver.OnPreDrawListener
     {
         @Override
-        public void onItemClick( AdapterView<?> parent, View view, int position, long id )
+        public boolean onPreDraw()
         {
-            if( m_UserWorkday.getTaskName( position ).equals( getString( R.string.add_task_label ) ) )
+            StartupTrace startupTrace = m_Application.getStartupTrace();
+            startupTrace.onFrame( m_GridAdapter != null );
+
+            if( startupTrace.isComplete() )
+            {
+                m_TaskGrid.getViewTreeObserver().removeOnPreDrawListener( this );
+            }
+
+            /* Proceed with the frame */
+            return( true );
+        }
+    }
+
+    /**
+     * Private class for handling the user's presses on the task tiles of the grid.
+     */
+    private class gridClickHandler implements TaskTileAdapter.OnTileClickListener
+    {
+        @Override
+        public void onTileClick( int position, int id )
+        {
+            if( id == Workday.ADD_TASK_ID )
             {
                 /* Launch new activity to gather user input for the new task */
                 startActivity( new Intent( m_ThisActivity, AddNewTaskActivity.class ) );
             }
-            else if( m_UserWorkday.getTaskName( position ).equals( getString( R.string.end_workday_label ) ) )
+            else if( id == Workday.END_WORKDAY_ID )
             {
-                m_UserWorkday.endWorkday();
+                /* The Workday is archived once it has ended; if that fails, it is still shown in the summary */
+                /* Ending it again replaces the copy archived today, so that its time is not counted twice */
+                m_WorkdayWriter.endWorkday();
+                m_Application.archiveWorkday();
 
                 /* Launch activity to summarize the workday for the user */
                 startActivity( new Intent( m_ThisActivity, WorkdaySummaryActivity.class ) );
             }
             else
             {
-                /* Normal user task; context switch to whatever task has been selected */
-                m_UserWorkday.contextSwitch( position );
-
-                /* Force a repaint */
-                m_TaskGrid.invalidateViews();
+                /* Normal user task; context switch to whatever task has been selected, as of now */
+                m_WorkdayWriter.switchToTask( id );
             }
         }
     }
 
     /**
-     * Private class for executing a task associated with the screen update timer.
+     * Private class that updates the grid once a change to the Workday has been applied and published, such as the
+     * context switch of a tap on a tile, which changes the appearance of two tiles, or the crossing of a time limit.
      */
-    private class ActivityTimerTask extends TimerTask
+    private class GridUpdater implements TeamLeadApplication.WorkdayChangeListener
     {
-        /* Private member fields */
-        private Activity m_Activity;
-
-        /**
-         * Constructs the ActivityTimerTask.
-         *
-         * @param activity A reference to the associated activity.
-         */
-        private ActivityTimerTask( Activity activity )
-        {
-            m_Activity = activity;
-        }
-
-        /**
-         * Executes the grid refresh task on the UI thread.
-         */
         @Override
-        public void run()
+        public void onWorkdayChanged( int changes )
         {
-            m_Activity.runOnUiThread( new GridRefresher() );
+            onTasksChanged();
         }
     }
 
     /**
-     * Private class for updating the grid. This should only be run on the UI thread.
+     * Private class for updating the grid, run by the tile refresh scheduler on the UI thread.
      */
     private class GridRefresher implements Runnable
     {
         /**
-         * Runs the task that forces a repaint on the UI grid.
+         * Brings the runtime shown on the active task's tile up to date. Changes to the Workday reach the grid through
+         * the change listener, so nothing is polled for here.
          */
         @Override
         public void run()
         {
-            m_TaskGrid.invalidateViews();
+            m_GridAdapter.refreshActiveTile();
         }
     }
 
@@ -361,7 +459,20 @@ public class ContextSwitchActivity extends AppCompatActivity
             @Override
             public void onClick( DialogInterface dialog, int which )
             {
-                ( (TeamLeadApplication)getActivity().getApplication() ).getWorkdayModel().resetWorkday();
+                final TeamLeadApplication application = (TeamLeadApplication)getActivity().getApplication();
+
+                /*
+                 * Every runtime will be zero; the grid is updated once the reset is published. A dialog restored with
+                 * its activity can be confirmed before the Workday is ready, so the reset waits for it, not the UI.
+                 */
+                application.whenWorkdayReady( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        application.getWorkdayWriter().resetWorkday();
+                    }
+                } );
             }
         }
 
@@ -0,0 +1,121 @@
+/**
+ * ElapsedRealtimeClock.java
+ *
+ * Clock backed by the Android system's elapsed realtime, which keeps counting while the device sleeps. It restarts
+ * from zero when the device boots, so its time base is the boot: the system's boot count where there is one, or else
+ * the kernel's random boot ID, or failing both, the wall clock time at which the device booted.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.provider.Settings;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+
+class ElapsedRealtimeClock implements Clock
+{
+    /* Private constants */
+    private static final String BOOT_ID_FILE = "/proc/sys/kernel/random/boot_id";  /* Changes with every boot */
+    private static final int NO_BOOT_COUNT = 0;            /* Boot count of a system that does not keep one */
+    private static final long NO_BOOT_ID = 0;              /* Boot ID of a kernel whose boot ID cannot be read */
+    private static final long BOOT_TIME_RESOLUTION_MS = 60000; /* Resolution of the estimated boot time */
+
+    /* Private member fields */
+    private long m_TimeBase;                               /* Identifies the boot the clock counts from */
+
+    /**
+     * Constructs the clock, identifying the current boot. The boot cannot change while the process is alive, so it is
+     * only identified once.
+     *
+     * @param context The application context.
+     */
+    ElapsedRealtimeClock( Context context )
+    {
+        m_TimeBase = NO_BOOT_COUNT;
+
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.N )
+        {
+            m_TimeBase = Settings.Global.getInt( context.getContentResolver(), Settings.Global.BOOT_COUNT,
+                                                 NO_BOOT_COUNT );
+        }
+
+        if( m_TimeBase == NO_BOOT_COUNT )
+        {
+            m_TimeBase = readBootId();
+        }
+
+        if( m_TimeBase == NO_BOOT_ID )
+        {
+            /* Negative, so that it is never confused with a boot count or ID; coarse, to absorb the clocks' jitter */
+            m_TimeBase = -( ( System.currentTimeMillis() - SystemClock.elapsedRealtime() ) / BOOT_TIME_RESOLUTION_MS );
+        }
+    }
+
+    /**
+     * Returns the milliseconds elapsed since the device booted, including time spent in deep sleep.
+     *
+     * @return The current timestamp, in milliseconds.
+     */
+    @Override
+    public long getTimeMs()
+    {
+        return( SystemClock.elapsedRealtime() );
+    }
+
+    /**
+     * Returns the identity of the boot the clock counts from.
+     *
+     * @return The time base.
+     */
+    @Override
+    public long getTimeBase()
+    {
+        return( m_TimeBase );
+    }
+
+    /**
+     * Reads the kernel's boot ID, a random UUID chosen at boot, and folds it into a time base.
+     *
+     * @return The time base, or NO_BOOT_ID if the boot ID cannot be read.
+     */
+    private static long readBootId()
+    {
+        long timeBase = NO_BOOT_ID;
+
+        try
+        {
+            BufferedReader reader = new BufferedReader( new FileReader( BOOT_ID_FILE ) );
+
+            try
+            {
+                String bootId = reader.readLine();
+
+                if( bootId != null )
+                {
+                    /* Set a bit above every boot count, so that neither is confused with the other or unknown */
+                    timeBase = ( bootId.trim().hashCode() & 0x7FFFFFFFL ) | ( 1L << 32 );
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch( IOException io_exception )
+        {
+            /* Not readable on this device; the boot is identified by its time instead */
+        }
+
+        return( timeBase );
+    }
+}
@@ -15,19 +15,27 @@ import android.os.Environment;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Locale;
+import java.util.concurrent.Executors;
 
 public class FileManager
 {
+    /* Private constants */
+    private static final long JOURNAL_COMMIT_DELAY_MS = GroupCommitter.DEFAULT_MAX_DELAY_MS; /* Commit wait */
+    private static final int JOURNAL_COMMIT_RECORDS = GroupCommitter.DEFAULT_MAX_RECORDS;   /* Commit group size */
+    private static final boolean JOURNAL_COMMIT_FORCED = true;   /* Force each group commit to the device */
+
     /* Private member fields */
     private Context m_AppContext;              /* The associated application context */
     private File m_Directory;                  /* The directory where files used by the application are stored */
-    private File m_ActiveWorkdayFile;          /* A file used to store a Workday model in case something goes wrong */
+    private WorkdayStore m_WorkdayStore;       /* Preserves the active Workday, in case something goes wrong */
+    private GroupCommitter m_Committer;        /* Commits the active Workday's journal in the background */
+    private WorkdayArchive m_Archive;          /* Completed Workdays, indexed by date; opened on first use */
+    private WorkdayAnalytics m_Analytics;      /* Reports on ranges of archived Workdays; created on first use */
+    private WorkdayExporter m_Exporter;        /* Exports Workdays in the background; created on first use */
 
     /**
      * Constructs the file manager.
@@ -39,9 +47,20 @@ public class FileManager
         m_AppContext = appContext;
         m_Directory = Environment.getExternalStoragePublicDirectory( Environment.DIRECTORY_DOCUMENTS );
 
-        /* The "active workday" file will always reside in the documents folder with the same handle */
-        m_ActiveWorkdayFile = new File( m_Directory, m_AppContext.getResources().
-                getString( R.string.active_workday_file_name ) );
+        /*
+         * The "active workday" files always reside in the application's private storage with the same handle, so
+         * they are available whether or not external media is mounted. Snapshots are written on a background thread.
+         */
+        m_WorkdayStore = new WorkdayStore( m_AppContext.getFilesDir(), m_AppContext.getResources().
+                getString( R.string.active_workday_file_name ), Executors.newSingleThreadExecutor(),
+                WorkdayStore.DEFAULT_COMPACTION_THRESHOLD );
+
+        /* Changes are committed to the journal in groups, on a thread of their own, never on the UI thread */
+        m_Committer = new GroupCommitter( m_WorkdayStore, Executors.newSingleThreadScheduledExecutor(),
+                                          JOURNAL_COMMIT_DELAY_MS, JOURNAL_COMMIT_RECORDS, JOURNAL_COMMIT_FORCED );
+        m_Archive = null;
+        m_Analytics = null;
+        m_Exporter = null;
     }
 
     /**
@@ -50,160 +69,212 @@ public class FileManager
      * 2) The Workday is active but the application closed or was killed, and the data should be recovered when the
      *    app is restarted
      *
+     * An active Workday is journaled as each change is made, and the journal is committed in the background, so
+     * saving it only has to commit the changes not yet committed, which it does at once without waiting for the
+     * storage device. A completed Workday is added to the archive under the current date.
+     *
      * @param workday The Workday model to write to a file.
      * @param completed True if the Workday is completed (inactive), false if it is in progress (active).
-     * @throws IOException If the write operation fails.
+     * @throws IOException If the write operation fails, or an earlier commit of the journal failed.
      */
     public void saveWorkday( Workday workday, boolean completed ) throws IOException
     {
-        if( Environment.getExternalStorageState().equals( Environment.MEDIA_MOUNTED ) == false )
+        if( completed == false )
+        {
+            m_Committer.flush();
+            Log.d( "Info", String.format( Locale.US, "JOURNAL: %d RECORDS IN %d COMMITS (AVG %.1f, MAX %d PER " +
+                   "COMMIT), COMMIT LATENCY AVG %.1f MS, MAX %.1f MS, WRITE AVG %.1f MS",
+                   m_Committer.getCommittedRecordCount(), m_Committer.getCommitCount(),
+                   m_Committer.getAverageGroupSize(), m_Committer.getMaxGroupSize(),
+                   m_Committer.getAverageLatencyMs(), m_Committer.getMaxLatencyMs(),
+                   m_Committer.getAverageCommitMs() ) );
+        }
+        else if( Environment.getExternalStorageState().equals( Environment.MEDIA_MOUNTED ) == false )
         {
             /* Unable to write file - storage is unavailable */
             throw new IOException();
         }
         else
         {
-            File workdayFile;
-
-            if( completed == true )
-            {
-                /* The Workday was properly concluded, so save the file using a generated handle */
-                workdayFile = new File( m_Directory, createWorkdayFileName() );
-            }
-            else
-            {
-                /* The workday is in progress, so save the file using a special handle that indicates this */
-                workdayFile = m_ActiveWorkdayFile;
-            }
-
-            if( workdayFile.mkdirs() == false )
-            {
-                /* Unable to make the requisite directory for storage */
-                throw new IOException();
-            }
-            else
-            {
-                /* Write the Workday data to the file */
-                writeWorkdayDataToFile( workdayFile, workday );
-                Log.d( "Info", "WORKDAY FILE CREATED AT: " + workdayFile.getAbsolutePath() );
-            }
+            /* The Workday was properly concluded, so archive it under today's date */
+            WorkdayArchive.Entry entry = getArchive().archive( workday,
+                                                               WorkdayArchive.toDayKey( Calendar.getInstance() ) );
+            Log.d( "Info", "WORKDAY ARCHIVED FOR DAY " + entry.getDayKey() );
         }
     }
 
     /**
-     * Loads the given Workday data from the file. Workday files can be read in two scenarios:
-     * 1) The user wishes to browse archived Workday records.
-     * 2) The app crashed/closed and the user wants to retrieve the saved Workday.
-     *
-     * @param fileName The name of the file to read, if applicable.
-     * @param completed True if the Workday was completed normally, false if it was used to save state of an active
-     *                  Workday. If false, the fileName argument is not used.
-     * @return The Workday object read from the file.
-     * @throws IOException If the read operation fails or the file does not exist.
-     * @throws ClassNotFoundException If the class of the serialized Workday cannot be found.
+     * Schedules the commit of the changes just made to the active Workday. Must be called on the thread that owns the
+     * Workday, after each batch of changes; it never waits for the storage device.
      */
-    public Workday loadWorkday( String fileName, boolean completed ) throws IOException, ClassNotFoundException
+    void onWorkdayChanged()
     {
-        Workday workday;
+        m_Committer.onRecordsJournaled();
+    }
 
-        if( completed == true )
-        {
-            // TODO: 4/23/2017 Implement the feature that allows users to retrieve archived workday records.
-            workday = null;
-        }
-        else
-        {
-            workday = readActiveWorkdayFromFile();
-        }
+    /**
+     * Loads an archived Workday, so that the user can browse archived Workday records.
+     *
+     * @param entry The archive index entry of the Workday, from getArchivedWorkdays() or getRecentWorkdays().
+     * @return The Workday read from the archive.
+     * @throws IOException If the read operation fails or the Workday is corrupt.
+     */
+    Workday loadWorkday( WorkdayArchive.Entry entry ) throws IOException
+    {
+        Workday workday = TeamLeadApplication.createWorkday( m_AppContext );
+        workday.restoreSnapshot( getArchive().load( entry ) );
 
         return( workday );
     }
 
     /**
-     * Checks to see if an preserved (active) Workday file exists on the filesystem.
+     * Returns the Workdays archived on the given date. Only the archive index is consulted.
      *
-     * @return True if there is a preserved Workday file available to read, false otherwise.
+     * @param date The date.
+     * @return The archive index entries of the date, which include the runtime of each task.
+     * @throws IOException If the archive cannot be opened.
      */
-    public boolean preservedWorkdayExists()
+    ArrayList<WorkdayArchive.Entry> getArchivedWorkdays( Calendar date ) throws IOException
     {
-        return( m_ActiveWorkdayFile.exists() );
+        return( getArchive().getEntries( WorkdayArchive.toDayKey( date ) ) );
     }
 
     /**
-     * Deletes the preserved (active) Workday file, if one exists.
+     * Returns the Workdays archived in the given number of days, up to and including today. Only the archive index
+     * is consulted.
      *
-     * @return True if the deletion was successful, false otherwise.
+     * @param days The number of days.
+     * @return The archive index entries, ordered by date, which include the runtime of each task.
+     * @throws IOException If the archive cannot be opened.
      */
-    public boolean deletePreservedWorkday()
+    ArrayList<WorkdayArchive.Entry> getRecentWorkdays( int days ) throws IOException
     {
-        return( m_ActiveWorkdayFile.delete() );
+        return( getArchive().getLastDays( Calendar.getInstance(), days ) );
     }
 
     /**
-     * Writes the Workday data to the given file.
+     * Computes the per-task totals, shares and switch counts of the Workdays archived in the given number of days,
+     * up to and including today. The archive is scanned on several threads, but this call blocks until the report
+     * is ready, so it should not be made on the UI thread.
      *
-     * @param workdayDataFile The file that will hold the Workday data.
-     * @param workday The Workday model to write to the file.
-     * @throws IOException If the write operation fails.
+     * @param days The number of days.
+     * @return The report.
+     * @throws IOException If the archive cannot be read.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
      */
-    private void writeWorkdayDataToFile( File workdayDataFile, Workday workday ) throws IOException
+    WorkdayAnalytics.Report analyzeRecentWorkdays( int days ) throws IOException, InterruptedException
     {
-        if( ( workdayDataFile != null ) && ( workday != null ) )
-        {
-            /* Set up the streams required */
-            FileOutputStream fileStream = new FileOutputStream( workdayDataFile, false );
-            ObjectOutputStream objectStream = new ObjectOutputStream( fileStream );
+        Calendar firstDate = Calendar.getInstance();
+        int lastDayKey = WorkdayArchive.toDayKey( firstDate );
+        firstDate.add( Calendar.DAY_OF_MONTH, 1 - days );
+
+        return( getAnalytics().computeReport( WorkdayArchive.toDayKey( firstDate ), lastDayKey ) );
+    }
 
-            /* Write the serializable workday object */
-            objectStream.writeObject( workday );
+    /**
+     * Starts to export a Workday to a file in the application's directory on the external storage, named after
+     * today's date. The writer's latest published snapshot is exported, so this may be called on any thread; the
+     * file is written on a background thread, which also calls the listener.
+     *
+     * @param writer The writer of the Workday to export.
+     * @param format The format of the export file.
+     * @param listener Receives the progress and outcome of the export, on the background thread.
+     * @return The export, through which it can be cancelled.
+     * @throws IOException If the external storage is unavailable.
+     */
+    WorkdayExporter.Export exportWorkday( WorkdayWriter writer, WorkdayExporter.Format format,
+                                          WorkdayExporter.ExportListener listener ) throws IOException
+    {
+        File exportDirectory = new File( m_Directory, m_AppContext.getResources().
+                getString( R.string.workday_archive_directory_name ) );
 
-            /* Clean up */
-            objectStream.close();
-            fileStream.close();
-        }
-        else
+        if( ( Environment.getExternalStorageState().equals( Environment.MEDIA_MOUNTED ) == false ) ||
+            ( ( exportDirectory.isDirectory() == false ) && ( exportDirectory.mkdirs() == false ) ) )
         {
-            /* If the file or Workday are null, just treat it as an IO Exception */
+            /* Unable to write file - storage is unavailable */
             throw new IOException();
         }
+
+        if( m_Exporter == null )
+        {
+            m_Exporter = new WorkdayExporter( Executors.newSingleThreadExecutor() );
+        }
+
+        File file = new File( exportDirectory, m_AppContext.getResources().
+                getString( R.string.workday_export_file_prefix ) + WorkdayArchive.toDayKey( Calendar.getInstance() ) +
+                format.getFileExtension() );
+
+        return( m_Exporter.export( writer.getPublishedSnapshot(), writer.getTimeMs(), file, format, listener ) );
     }
 
     /**
-     * Attempts to read the active Workday file, so that the Workday state may be restored.
+     * Restores the preserved (active) Workday, if one exists, by loading its latest snapshot and replaying the
+     * journal of changes made since against the given Workday. Every subsequent change to the Workday is preserved.
      *
-     * @return The restored Workday object for application use.
-     * @throws IOException If the read operation fails or the file does not exist.
-     * @throws ClassNotFoundException If the class of the serialized Workday cannot be found.
+     * @param workday A newly constructed Workday, into which the preserved Workday is restored.
+     * @return The number of journal records replayed.
+     * @throws IOException If the preserved Workday cannot be read or the journal cannot be opened for writing.
      */
-    private Workday readActiveWorkdayFromFile() throws IOException, ClassNotFoundException
+    public long restoreWorkday( Workday workday ) throws IOException
     {
-        /* Set up the streams required */
-        FileInputStream fileStream = new FileInputStream( m_ActiveWorkdayFile );
-        ObjectInputStream objectStream = new ObjectInputStream( fileStream );
-
-        /* Read the serializable workday object */
-        Workday restoredWorkday = (Workday)objectStream.readObject();
+        return( m_WorkdayStore.restore( workday ) );
+    }
 
-        /* Clean up */
-        objectStream.close();
-        fileStream.close();
+    /**
+     * Checks to see if an preserved (active) Workday file exists on the filesystem.
+     *
+     * @return True if there is a preserved Workday file available to read, false otherwise.
+     */
+    public boolean preservedWorkdayExists()
+    {
+        return( m_WorkdayStore.exists() );
+    }
 
-        return( restoredWorkday );
+    /**
+     * Deletes the preserved (active) Workday file, if one exists.
+     *
+     * @return True if the deletion was successful, false otherwise.
+     */
+    public boolean deletePreservedWorkday()
+    {
+        return( m_WorkdayStore.delete() );
     }
 
     /**
-     * Generates a file name for the Workday data file, based on the current date.
+     * Returns the archive of completed Workdays, opening it on first use. May be called on any thread; the archive is
+     * only ever opened once.
      *
-     * @return The file name, formatted as "TL_Workday_MM_DD_YYYY"
+     * @return The Workday archive.
+     * @throws IOException If the archive cannot be opened.
      */
-    private String createWorkdayFileName()
+    private synchronized WorkdayArchive getArchive() throws IOException
     {
-        Calendar calendar = Calendar.getInstance();
-        String fileName = m_AppContext.getResources().getString( R.string.completed_workday_file_prefix );
+        if( m_Archive == null )
+        {
+            m_Archive = new WorkdayArchive( new File( m_Directory, m_AppContext.getResources().
+                    getString( R.string.workday_archive_directory_name ) ), m_AppContext.getResources().
+                    getString( R.string.completed_workday_file_prefix ), m_AppContext.getResources().
+                    getString( R.string.workday_archive_index_file_name ) );
+        }
 
-        /* Name file using date information */
-        fileName.concat( calendar.MONTH + "_" + calendar.DAY_OF_MONTH + "_" + calendar.YEAR + ".txt" );
+        return( m_Archive );
+    }
+
+    /**
+     * Returns the analytics over the archive of completed Workdays, creating them on first use. May be called on any
+     * thread.
+     *
+     * @return The Workday analytics.
+     * @throws IOException If the archive cannot be opened.
+     */
+    private synchronized WorkdayAnalytics getAnalytics() throws IOException
+    {
+        if( m_Analytics == null )
+        {
+            m_Analytics = new WorkdayAnalytics( getArchive(), Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors() ) );
+        }
 
-        return( fileName );
+        return( m_Analytics );
     }
 }
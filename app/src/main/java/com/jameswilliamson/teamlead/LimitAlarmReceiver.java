@@ -0,0 +1,67 @@
+/**
+ * LimitAlarmReceiver.java
+ *
+ * Receives the alarm set for the moment at which the active task crosses its time limit, and hands it to the
+ * application's limit alerter. If the application was started for the alarm, it is handed over once the Workday has
+ * been restored.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+
+public class LimitAlarmReceiver extends BroadcastReceiver
+{
+    /* Private constants */
+    private static final String ACTION_LIMIT_DEADLINE = "com.jameswilliamson.teamlead.action.LIMIT_DEADLINE";
+
+    /**
+     * Creates the intent broadcast by the deadline alarm. Every such intent matches the others, so setting an alarm
+     * with it replaces the alarm set before. It carries nothing about the task, since the Workday itself checks
+     * whether the active task has crossed its limit.
+     *
+     * @param context The application context.
+     * @return The intent.
+     */
+    static PendingIntent createAlarmIntent( Context context )
+    {
+        Intent intent = new Intent( context, LimitAlarmReceiver.class );
+        intent.setAction( ACTION_LIMIT_DEADLINE );
+
+        return( PendingIntent.getBroadcast( context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT ) );
+    }
+
+    /**
+     * Hands the alarm to the limit alerter.
+     *
+     * @param context The context in which the receiver is running.
+     * @param intent The broadcast intent.
+     */
+    @Override
+    public void onReceive( Context context, Intent intent )
+    {
+        if( ACTION_LIMIT_DEADLINE.equals( intent.getAction() ) )
+        {
+            final TeamLeadApplication application = (TeamLeadApplication)context.getApplicationContext();
+            final PendingResult result = goAsync();
+
+            application.whenWorkdayReady( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    application.getLimitAlerter().onAlarm();
+                    result.finish();
+                }
+            } );
+        }
+    }
+}
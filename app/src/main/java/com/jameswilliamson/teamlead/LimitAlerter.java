@@ -0,0 +1,171 @@
+/**
+ * LimitAlerter.java
+ *
+ * Raises an alert when the active task crosses its time limit, whether or not the application is visible. Whenever
+ * the Workday changes, the task limits are recomputed and a single alarm is set for the moment at which the active
+ * task will cross its limit, so nothing runs while time passes. The Workday is timed by the device's elapsed realtime,
+ * which is the time base of the alarm, so the alarm fires at exactly that moment, even if the device is asleep or the
+ * process has been killed meanwhile. When it fires, the Workday is asked to check the active task's limit, and the
+ * alert is shown once it reports that the task has crossed it; the other change listeners are told of the crossing
+ * too, so that the task's tile shows it is over its limit.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+
+
+final class LimitAlerter implements Runnable, TeamLeadApplication.WorkdayChangeListener
+{
+    /* Private constants */
+    private static final int ALERT_NOTIFICATION_ID = 2;    /* Identifies the limit alert notification */
+    private static final int CONTENT_REQUEST_CODE = -2;    /* Request code of the intent that opens the application */
+
+    /* Private member fields */
+    private TeamLeadApplication m_Application;             /* The application, which publishes the Workday */
+    private AlarmManager m_AlarmManager;                   /* Sets the deadline alarm */
+    private NotificationManagerCompat m_NotificationManager; /* Shows the alerts */
+    private TaskLimits m_Limits;                           /* The limits, as of the last change or deadline */
+    private long m_AlarmDeadlineMs;                        /* The deadline for which the alarm is set, or NEVER */
+
+    /**
+     * Constructs the alerter. No alarm is set until it is first run.
+     *
+     * @param application The application, which publishes the Workday.
+     */
+    LimitAlerter( TeamLeadApplication application )
+    {
+        m_Application = application;
+        m_AlarmManager = (AlarmManager)application.getSystemService( Context.ALARM_SERVICE );
+        m_NotificationManager = NotificationManagerCompat.from( application );
+        m_Limits = new TaskLimits();
+        m_AlarmDeadlineMs = TaskLimits.NEVER;
+    }
+
+    /**
+     * Returns the task limits, which are kept up to date on the UI thread: change listeners added after the alerter
+     * see the limits of the latest published Workday.
+     *
+     * @return The task limits.
+     */
+    TaskLimits getLimits()
+    {
+        return( m_Limits );
+    }
+
+    /**
+     * Recomputes the task limits from the published Workday and moves the alarm to the new deadline. Must be run on
+     * the UI thread, once the Workday is ready and whenever it changes.
+     */
+    @Override
+    public void run()
+    {
+        WorkdayWriter writer = m_Application.getWorkdayWriter();
+
+        m_Limits.update( writer.getPublishedSnapshot(), writer.getTimeMs() );
+        setAlarm();
+    }
+
+    /**
+     * Recomputes the task limits and, if the changes include the crossing of a limit by the task that is still active,
+     * shows the alert. A task that was switched away from before its crossing was checked for is not alerted.
+     *
+     * @param changes The kinds of change made to the Workday.
+     */
+    @Override
+    public void onWorkdayChanged( int changes )
+    {
+        run();
+
+        if( ( changes & WorkdayChanges.LIMIT_CROSSED ) != 0 )
+        {
+            WorkdaySnapshot workday = m_Application.getWorkdayWriter().getPublishedSnapshot();
+            int taskId = m_Application.getLimitCrossedTaskId();
+
+            if( ( workday.getActiveTaskId() == taskId ) && m_Limits.isLimitExceeded( taskId ) )
+            {
+                m_NotificationManager.notify( ALERT_NOTIFICATION_ID, buildAlert( workday, taskId ) );
+            }
+        }
+    }
+
+    /**
+     * Handles the deadline alarm by moving the alarm to the next deadline, if any, and asking the Workday to check the
+     * active task's limit; the crossing, if the task is still active and has crossed it, arrives as a change. An alarm
+     * whose deadline was moved, because the Workday changed after it was set, only costs that check. Must be called on
+     * the UI thread, once the Workday is ready.
+     */
+    void onAlarm()
+    {
+        /* The alarm has fired, so whatever deadline comes next needs a new one */
+        m_AlarmDeadlineMs = TaskLimits.NEVER;
+        run();
+
+        m_Application.getWorkdayWriter().checkTaskLimit();
+    }
+
+    /**
+     * Sets the alarm for the current deadline, or cancels it if no task will cross its limit. Nothing is done if the
+     * alarm is already set for the deadline.
+     */
+    private void setAlarm()
+    {
+        long deadlineMs = m_Limits.getDeadlineMs();
+
+        if( deadlineMs != m_AlarmDeadlineMs )
+        {
+            PendingIntent alarmIntent = LimitAlarmReceiver.createAlarmIntent( m_Application );
+
+            if( deadlineMs == TaskLimits.NEVER )
+            {
+                m_AlarmManager.cancel( alarmIntent );
+            }
+            else if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.M )
+            {
+                m_AlarmManager.setExactAndAllowWhileIdle( AlarmManager.ELAPSED_REALTIME_WAKEUP, deadlineMs,
+                                                          alarmIntent );
+            }
+            else
+            {
+                m_AlarmManager.setExact( AlarmManager.ELAPSED_REALTIME_WAKEUP, deadlineMs, alarmIntent );
+            }
+
+            m_AlarmDeadlineMs = deadlineMs;
+        }
+    }
+
+    /**
+     * Builds the alert of a task that has crossed its limit.
+     *
+     * @param workday The published Workday.
+     * @param taskId The ID of the task.
+     * @return The notification.
+     */
+    private Notification buildAlert( WorkdaySnapshot workday, int taskId )
+    {
+        Intent contentIntent = new Intent( m_Application, ContextSwitchActivity.class );
+        contentIntent.setFlags( Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP );
+
+        return( new NotificationCompat.Builder( m_Application )
+                .setSmallIcon( R.mipmap.ic_launcher )
+                .setContentTitle( m_Application.getString( R.string.limit_alert_title ) )
+                .setContentText( workday.getTaskName( taskId ) )
+                .setContentIntent( PendingIntent.getActivity( m_Application, CONTENT_REQUEST_CODE, contentIntent,
+                                                              PendingIntent.FLAG_UPDATE_CURRENT ) )
+                .setColor( workday.getTaskColor( taskId ) )
+                .setDefaults( Notification.DEFAULT_ALL )
+                .setAutoCancel( true )
+                .build() );
+    }
+}
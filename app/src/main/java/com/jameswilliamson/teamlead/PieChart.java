@@ -1,7 +1,11 @@
 /**
  * PieChart.java
  *
- * Custom widget that renders a pie chart.
+ * Custom widget that renders a pie chart. The angles of the segments, the legend text and the paints are prepared
+ * when entries are added, so drawing only issues canvas operations; and the chart is rendered into a hardware layer,
+ * which is only redrawn when the entries change, so the view can be moved and composited without redrawing it.
+ * When the percentages of existing entries change, only their legend text is formatted again, and the segments are
+ * animated from their current angles to their new ones.
  *
  * @author James Williamson
  *
@@ -10,6 +14,7 @@
 
 package com.jameswilliamson.teamlead;
 
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -40,15 +45,27 @@ public class PieChart extends View
     private final int LEGEND_LINE_SPACING = 120;          /* The vertical spacing between each legend entry */
     private final int TASK_NAME_TEXT_SIZE = 20;           /* Text size for display of the task name */
     private final int TASK_PCT_TEXT_SIZE = 32;            /* Text size for display of the task percentage */
+    private final long SEGMENT_ANIMATION_MS = 300;        /* Duration of the animation between percentages */
 
     /* Private member fields */
     private Context m_Context;                            /* The associated context */
     private ArrayList<PieChartEntry> m_ChartEntries;      /* The data modeled by the chart */
     private Paint m_PaintBrush;                           /* Paint brush that draws the chart */
+    private Paint m_NamePaint;                            /* Draws the task names of the legend */
+    private Paint m_PctPaint;                             /* Draws the task percentages of the legend */
     private RectF m_ChartClippingRegion;                  /* The region where the chart is actually drawn */
+    private int m_LegendLeft;                             /* Left edge of the legend, aligned with the chart */
     private int[] m_ChartColors;                          /* Colors used for drawing the pie chart segments */
     private float m_DisplayDensity;                       /* The logical density of the display */
     private DecimalFormat m_PctFormatter;                 /* Formats percentages for display on the UI */
+    private float[] m_StartAngles;                        /* Start angle of each entry's segment, in degrees */
+    private float[] m_SweepAngles;                        /* Sweep angle of each entry's segment, in degrees */
+    private String[] m_PctLabels;                         /* Formatted percentage of each entry, for the legend */
+    private float[] m_FromStartAngles;                    /* Start angles at the beginning of the animation */
+    private float[] m_FromSweepAngles;                    /* Sweep angles at the beginning of the animation */
+    private float[] m_ToStartAngles;                      /* Start angles at the end of the animation */
+    private float[] m_ToSweepAngles;                      /* Sweep angles at the end of the animation */
+    private ValueAnimator m_SegmentAnimator;              /* Animates the segments between percentages */
 
     /**
      * Constructs a new PieChart view.
@@ -63,21 +80,48 @@ public class PieChart extends View
         m_Context = context;
         m_ChartEntries = new ArrayList();
         m_PaintBrush = new Paint();
+        m_NamePaint = new Paint();
+        m_PctPaint = new Paint();
         m_ChartClippingRegion = new RectF();
+        m_LegendLeft = 0;
         m_DisplayDensity = getResources().getDisplayMetrics().density;
         m_PctFormatter = new DecimalFormat( "##0.00" );
+        m_StartAngles = new float[0];
+        m_SweepAngles = new float[0];
+        m_PctLabels = new String[0];
+        m_FromStartAngles = new float[0];
+        m_FromSweepAngles = new float[0];
+        m_ToStartAngles = new float[0];
+        m_ToSweepAngles = new float[0];
+
+        /* The animator is created once and restarted for each change of percentages */
+        m_SegmentAnimator = ValueAnimator.ofFloat( 0.0f, 1.0f );
+        m_SegmentAnimator.setDuration( SEGMENT_ANIMATION_MS );
+        m_SegmentAnimator.addUpdateListener( new SegmentAnimationListener() );
 
         /* Customize paintbrush */
         m_PaintBrush.setAntiAlias( true );
         m_PaintBrush.setDither( true );
         m_PaintBrush.setColor( Color.LTGRAY );
 
+        /* The legend text paints differ only in size and weight; their typefaces are created once, here */
+        m_NamePaint.setAntiAlias( true );
+        m_NamePaint.setTextSize( TASK_NAME_TEXT_SIZE * m_DisplayDensity );
+        m_NamePaint.setTypeface( Typeface.create( Typeface.DEFAULT, Typeface.NORMAL ) );
+
+        m_PctPaint.setAntiAlias( true );
+        m_PctPaint.setTextSize( TASK_PCT_TEXT_SIZE * m_DisplayDensity );
+        m_PctPaint.setTypeface( Typeface.create( Typeface.DEFAULT, Typeface.BOLD ) );
+
         /* Read color list from resource file and use it to initialize array for painting the chart */
         m_ChartColors = m_Context.getResources().getIntArray( R.array.pie_chart_colors );
 
         /* Apply minimum dimensions for the view */
         setMinimumWidth( VIEW_MIN_WIDTH );
         setMinimumHeight( VIEW_MIN_HEIGHT );
+
+        /* The chart is static between changes to its entries, so keep it rendered in a layer */
+        setLayerType( LAYER_TYPE_HARDWARE, null );
     }
 
     /**
@@ -116,9 +160,54 @@ public class PieChart extends View
             }
         }
 
+        if( success )
+        {
+            /* The chart has changed, so prepare its new geometry and legend, and draw it again */
+            prepareEntries();
+            invalidate();
+        }
+
         return( success );
     }
 
+    /**
+     * Removes every entry from the chart.
+     */
+    public void clearEntries()
+    {
+        m_ChartEntries.clear();
+        prepareEntries();
+        invalidate();
+    }
+
+    /**
+     * Sets the percentage of an existing entry. Only its legend text is formatted again; the segments are not moved
+     * until animateEntries() is called, so that several entries can be changed together.
+     *
+     * @param index The index of the entry, in the order in which the entries were added.
+     * @param percentage The new percentage of the entry.
+     */
+    public void setEntryPercentage( int index, float percentage )
+    {
+        m_ChartEntries.get( index ).setPercentage( percentage );
+        m_PctLabels[index] = m_PctFormatter.format( percentage ) + "%";
+    }
+
+    /**
+     * Animates the segments from the angles at which they are drawn now to the angles of the current percentages.
+     * If an animation is already running, the new one continues from wherever it had reached.
+     */
+    public void animateEntries()
+    {
+        m_SegmentAnimator.cancel();
+
+        System.arraycopy( m_StartAngles, 0, m_FromStartAngles, 0, m_StartAngles.length );
+        System.arraycopy( m_SweepAngles, 0, m_FromSweepAngles, 0, m_SweepAngles.length );
+        computeAngles( m_ToStartAngles, m_ToSweepAngles );
+
+        m_SegmentAnimator.start();
+    }
+
     /**
      * Measure the view and its content to determine the measured width and the measured height.
      *
@@ -160,66 +249,120 @@ public class PieChart extends View
     }
 
     /**
-     * Draws the PieChart.
+     * Positions the chart and its legend, which are centered horizontally, when the size of the view changes.
      *
-     * @param canvas The canvas on which the chart will be drawn.
+     * @param w The new width of the view.
+     * @param h The new height of the view.
+     * @param oldw The old width of the view.
+     * @param oldh The old height of the view.
      */
-    @Override protected void onDraw( Canvas canvas )
+    @Override
+    protected void onSizeChanged( int w, int h, int oldw, int oldh )
     {
-        /* Running total of chart entry percentages used to draw multiple pie chart segments */
-        float percentageTally = 0.0f;
+        super.onSizeChanged( w, h, oldw, oldh );
 
-        /* These "cursors" are used to draw the various elements of the chart */
-        int verticalDrawCursor = CHART_PADDING_TOP + CHART_HEIGHT;
-        int horizontalDrawCursor = ( canvas.getWidth() >> 1 ) - ( CHART_WIDTH >> 1 );
-
-        /* Specify clipping region for the actual pie chart graphic */
-        m_ChartClippingRegion.set( horizontalDrawCursor, CHART_PADDING_TOP, horizontalDrawCursor + CHART_WIDTH,
-                                   verticalDrawCursor );
+        m_LegendLeft = ( w >> 1 ) - ( CHART_WIDTH >> 1 );
+        m_ChartClippingRegion.set( m_LegendLeft, CHART_PADDING_TOP, m_LegendLeft + CHART_WIDTH,
+                                   CHART_PADDING_TOP + CHART_HEIGHT );
+    }
 
+    /**
+     * Draws the PieChart. Everything drawn has been prepared beforehand, when the entries or the size changed.
+     *
+     * @param canvas The canvas on which the chart will be drawn.
+     */
+    @Override protected void onDraw( Canvas canvas )
+    {
         /* Draw full chart outline - this will be replaced by the individual segments, if there's something to draw */
+        m_PaintBrush.setColor( Color.LTGRAY );
         canvas.drawArc( m_ChartClippingRegion, 0, 360, true, m_PaintBrush );
 
-        /* Done - move the cursor to prepare for drawing of the chart's legend */
-        verticalDrawCursor += CHART_PADDING_BOTTOM;
+        /* The legend starts below the chart */
+        int verticalDrawCursor = CHART_PADDING_TOP + CHART_HEIGHT + CHART_PADDING_BOTTOM;
 
         /* For each chart entry, draw the segment, and its corresponding information */
-        for( PieChartEntry entry : m_ChartEntries )
+        for( int index = 0; index < m_PctLabels.length; index++ )
         {
-            /* Each segment gets a different color; grab the next one from the list */
-            m_PaintBrush.setColor( m_ChartColors[entry.getId()] );
-
-            /* Determine the start and end (sweep) angles for the arc that will be drawn */
-            float startAngle = convertPercentageToDegrees( percentageTally );
-            float sweepAngle = convertPercentageToDegrees( entry.getPercentage() );
+            int color = m_ChartColors[index % m_ChartColors.length];
 
             /* Draw the arc (the "true" argument implies that a filled wedge is actually what is drawn) */
-            canvas.drawArc( m_ChartClippingRegion, startAngle, sweepAngle, true, m_PaintBrush );
-
-            /* Update the running tally in order to draw subsequent segments, if applicable */
-            percentageTally += entry.getPercentage();
+            m_PaintBrush.setColor( color );
+            canvas.drawArc( m_ChartClippingRegion, m_StartAngles[index], m_SweepAngles[index], true, m_PaintBrush );
 
             /* Next, draw the corresponding entry for the legend */
-            m_PaintBrush.setTextSize( TASK_NAME_TEXT_SIZE * m_DisplayDensity );
-            m_PaintBrush.setTypeface( Typeface.create( Typeface.DEFAULT, Typeface.NORMAL ) );
-
-            canvas.drawRect( horizontalDrawCursor, verticalDrawCursor, horizontalDrawCursor + LEGEND_RECT_WIDTH,
+            canvas.drawRect( m_LegendLeft, verticalDrawCursor, m_LegendLeft + LEGEND_RECT_WIDTH,
                              verticalDrawCursor + LEGEND_RECT_HEIGHT, m_PaintBrush );
-            canvas.drawText( entry.getName(), horizontalDrawCursor, verticalDrawCursor - LEGEND_RECT_PADDING_TOP,
-                             m_PaintBrush );
 
-            m_PaintBrush.setTextSize( TASK_PCT_TEXT_SIZE * m_DisplayDensity );
-            m_PaintBrush.setTypeface( Typeface.create( Typeface.DEFAULT, Typeface.BOLD ) );
+            m_NamePaint.setColor( color );
+            canvas.drawText( m_ChartEntries.get( index ).getName(), m_LegendLeft,
+                             verticalDrawCursor - LEGEND_RECT_PADDING_TOP, m_NamePaint );
 
-            canvas.drawText( m_PctFormatter.format( entry.getPercentage() ) + "%",
-                             horizontalDrawCursor + LEGEND_RECT_WIDTH + LEGEND_RECT_PADDING_RIGHT,
-                             verticalDrawCursor + LEGEND_RECT_HEIGHT, m_PaintBrush );
+            m_PctPaint.setColor( color );
+            canvas.drawText( m_PctLabels[index], m_LegendLeft + LEGEND_RECT_WIDTH + LEGEND_RECT_PADDING_RIGHT,
+                             verticalDrawCursor + LEGEND_RECT_HEIGHT, m_PctPaint );
 
             /* Update cursor for subsequent drawing */
             verticalDrawCursor += LEGEND_LINE_SPACING;
         }
     }
 
+    /**
+     * Computes the angles of every segment and formats every percentage for the legend, when entries are added or
+     * removed. The view is made tall enough for the whole legend.
+     */
+    private void prepareEntries()
+    {
+        int numEntries = m_ChartEntries.size();
+
+        /* The segments are about to be replaced, so any animation between their old angles is abandoned */
+        m_SegmentAnimator.cancel();
+
+        m_StartAngles = new float[numEntries];
+        m_SweepAngles = new float[numEntries];
+        m_PctLabels = new String[numEntries];
+        m_FromStartAngles = new float[numEntries];
+        m_FromSweepAngles = new float[numEntries];
+        m_ToStartAngles = new float[numEntries];
+        m_ToSweepAngles = new float[numEntries];
+
+        computeAngles( m_StartAngles, m_SweepAngles );
+
+        for( int index = 0; index < numEntries; index++ )
+        {
+            m_PctLabels[index] = m_PctFormatter.format( m_ChartEntries.get( index ).getPercentage() ) + "%";
+        }
+
+        int legendBottom = CHART_PADDING_TOP + CHART_HEIGHT + CHART_PADDING_BOTTOM + ( numEntries * LEGEND_LINE_SPACING );
+
+        if( legendBottom > Math.max( VIEW_MIN_HEIGHT, getSuggestedMinimumHeight() ) )
+        {
+            /* Changes the measured height, so a new layout pass is requested */
+            setMinimumHeight( legendBottom );
+        }
+    }
+
+    /**
+     * Computes the angles of the segments from the percentages of the entries, one segment after another.
+     *
+     * @param startAngles Receives the start angle of each segment, in degrees.
+     * @param sweepAngles Receives the sweep angle of each segment, in degrees.
+     */
+    private void computeAngles( float[] startAngles, float[] sweepAngles )
+    {
+        /* Running total of chart entry percentages used to position the segments one after another */
+        float percentageTally = 0.0f;
+
+        for( int index = 0; index < startAngles.length; index++ )
+        {
+            float percentage = m_ChartEntries.get( index ).getPercentage();
+
+            startAngles[index] = convertPercentageToDegrees( percentageTally );
+            sweepAngles[index] = convertPercentageToDegrees( percentage );
+
+            percentageTally += percentage;
+        }
+    }
+
     /**
      * Uses the parametric equation for a circle to return a point along the circumference, given the origin, radius,
      * and angle.
@@ -312,4 +455,27 @@ public class PieChart extends View
     {
         return( ( percent * 360.0f ) / 100.0f );
     }
+
+    /**
+     * Private class that moves the segments part of the way between their old and new angles on each frame of the
+     * animation.
+     */
+    private class SegmentAnimationListener implements ValueAnimator.AnimatorUpdateListener
+    {
+        @Override
+        public void onAnimationUpdate( ValueAnimator animation )
+        {
+            float fraction = animation.getAnimatedFraction();
+
+            for( int index = 0; index < m_StartAngles.length; index++ )
+            {
+                m_StartAngles[index] = m_FromStartAngles[index] +
+                                       ( ( m_ToStartAngles[index] - m_FromStartAngles[index] ) * fraction );
+                m_SweepAngles[index] = m_FromSweepAngles[index] +
+                                       ( ( m_ToSweepAngles[index] - m_FromSweepAngles[index] ) * fraction );
+            }
+
+            invalidate();
+        }
+    }
 }
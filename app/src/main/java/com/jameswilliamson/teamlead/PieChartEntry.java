@@ -15,14 +15,14 @@ public class PieChartEntry
     /* Private member fields */
     private String m_EntryName;                /* The name of the chart entry */
     private float m_EntryPercentage;           /* The percentage that the entry represents of the total */
-    private int m_EntryId;                     /* A handle associated with the entry */
+    private int m_EntryId;                     /* The ID of the task represented by the entry */
 
     /**
      * Creates a new PieChart entry.
      *
      * @param name The name of the chart entry.
      * @param percentage The weight given to the entry, in terms of percentage (0-100% supported).
-     * @param id A ID handle associated with the entry.
+     * @param id The ID of the task represented by the entry.
      */
     public PieChartEntry( String name, float percentage, int id )
     {
@@ -64,7 +64,7 @@ public class PieChartEntry
     /**
      * Returns the ID of the entry.
      *
-     * @return The ID handle associated with the entry.
+     * @return The ID of the task represented by the entry.
      */
     public int getId()
     {
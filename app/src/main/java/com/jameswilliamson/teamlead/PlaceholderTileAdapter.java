@@ -0,0 +1,94 @@
+/**
+ * PlaceholderTileAdapter.java
+ *
+ * Adapter that fills the ContextSwitch grid with blank, disabled tiles while the Workday is still being restored, so
+ * that the screen can be drawn at once and keeps its shape when the real tiles are bound.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.app.Activity;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+
+class PlaceholderTileAdapter extends RecyclerView.Adapter<PlaceholderTileAdapter.PlaceholderHolder>
+{
+    /* Private constants */
+    private static final int PLACEHOLDER_TILES = 6;     /* Two rows of the grid */
+
+    /* Private member fields */
+    private LayoutInflater m_Inflater;                  /* Inflates new tiles */
+
+    /**
+     * Constructs the placeholder adapter.
+     *
+     * @param a The associated activity.
+     */
+    PlaceholderTileAdapter( Activity a )
+    {
+        m_Inflater = a.getLayoutInflater();
+    }
+
+    /**
+     * Creates a new blank tile, which cannot be pressed.
+     *
+     * @param parent The view group that the tile will be added to.
+     * @param viewType The view type of the tile; all tiles are of the same type.
+     * @return The holder of the new tile.
+     */
+    @Override
+    public PlaceholderHolder onCreateViewHolder( ViewGroup parent, int viewType )
+    {
+        TaskTileView taskTile = (TaskTileView)m_Inflater.inflate( R.layout.task_tile, parent, false );
+
+        taskTile.setEnabled( false );
+        taskTile.setClickable( false );
+        taskTile.setFocusable( false );
+
+        return( new PlaceholderHolder( taskTile ) );
+    }
+
+    /**
+     * Binds a tile; blank tiles show nothing, so there is nothing to bind.
+     *
+     * @param holder The holder of the tile.
+     * @param position The position of the tile.
+     */
+    @Override
+    public void onBindViewHolder( PlaceholderHolder holder, int position )
+    {
+    }
+
+    /**
+     * Returns the number of blank tiles.
+     *
+     * @return The number of tiles.
+     */
+    @Override
+    public int getItemCount()
+    {
+        return( PLACEHOLDER_TILES );
+    }
+
+    /**
+     * Holds one blank tile.
+     */
+    static class PlaceholderHolder extends RecyclerView.ViewHolder
+    {
+        /**
+         * Constructs the holder of a new blank tile.
+         *
+         * @param taskTile The tile.
+         */
+        PlaceholderHolder( TaskTileView taskTile )
+        {
+            super( taskTile );
+        }
+    }
+}
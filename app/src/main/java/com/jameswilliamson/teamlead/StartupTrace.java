@@ -0,0 +1,124 @@
+/**
+ * StartupTrace.java
+ *
+ * Times the phases of a cold start of the application: creating the application, restoring the preserved Workday
+ * (which runs in the background, alongside the rest of the start), drawing the first frame of the ContextSwitch
+ * screen, and drawing the first frame in which its grid shows the restored Workday. Every phase is measured from the
+ * start of the application's creation, and each is logged once, as it completes.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+
+final class StartupTrace
+{
+    /* Private constants */
+    private static final String LOG_TAG = "Startup";       /* Tag of the timing log messages */
+    private static final long NOT_REACHED = -1;            /* Time of a phase that has not completed */
+
+    /* Private member fields */
+    private long m_CreateStartMs;                          /* Elapsed realtime when the application was created */
+    private long m_CreatedMs;                              /* Time taken to create the application */
+    private long m_RestoreStartMs;                         /* Time at which the restore started */
+    private long m_RestoredMs;                             /* Time at which the restore finished */
+    private long m_RecordsReplayed;                        /* Journal records replayed by the restore */
+    private long m_FirstFrameMs;                           /* Time at which the first frame was drawn */
+    private long m_FirstBoundFrameMs;                      /* Time at which the restored Workday was first drawn */
+
+    /**
+     * Starts the trace. Should be called as soon as the application is created.
+     */
+    StartupTrace()
+    {
+        m_CreateStartMs = SystemClock.elapsedRealtime();
+        m_CreatedMs = NOT_REACHED;
+        m_RestoreStartMs = NOT_REACHED;
+        m_RestoredMs = NOT_REACHED;
+        m_RecordsReplayed = 0;
+        m_FirstFrameMs = NOT_REACHED;
+        m_FirstBoundFrameMs = NOT_REACHED;
+    }
+
+    /**
+     * Records that the application has been created.
+     */
+    synchronized void onApplicationCreated()
+    {
+        m_CreatedMs = getElapsedMs();
+        Log.d( LOG_TAG, "APPLICATION CREATED IN " + m_CreatedMs + " MS" );
+    }
+
+    /**
+     * Records that the restore of the preserved Workday has started. May be called on any thread.
+     */
+    synchronized void onRestoreStarted()
+    {
+        m_RestoreStartMs = getElapsedMs();
+    }
+
+    /**
+     * Records that the preserved Workday has been restored. May be called on any thread.
+     *
+     * @param recordsReplayed The number of journal records replayed by the restore.
+     */
+    synchronized void onRestoreFinished( long recordsReplayed )
+    {
+        m_RestoredMs = getElapsedMs();
+        m_RecordsReplayed = recordsReplayed;
+        Log.d( LOG_TAG, "WORKDAY RESTORED IN " + ( m_RestoredMs - m_RestoreStartMs ) + " MS (" + recordsReplayed +
+                        " JOURNAL RECORDS), FINISHED AT " + m_RestoredMs + " MS" );
+    }
+
+    /**
+     * Records that a frame of the ContextSwitch screen is about to be drawn. Only the first frame, and the first one
+     * showing the restored Workday, are recorded.
+     *
+     * @param workdayBound True if the grid shows the restored Workday, false if it shows the placeholder.
+     */
+    synchronized void onFrame( boolean workdayBound )
+    {
+        long elapsedMs = getElapsedMs();
+
+        if( m_FirstFrameMs == NOT_REACHED )
+        {
+            m_FirstFrameMs = elapsedMs;
+            Log.d( LOG_TAG, "FIRST FRAME AT " + m_FirstFrameMs + " MS" );
+        }
+
+        if( workdayBound && ( m_FirstBoundFrameMs == NOT_REACHED ) )
+        {
+            m_FirstBoundFrameMs = elapsedMs;
+            Log.d( LOG_TAG, "COLD START: CREATE " + m_CreatedMs + " MS, RESTORE " +
+                            ( m_RestoredMs - m_RestoreStartMs ) + " MS (" + m_RecordsReplayed + " RECORDS), " +
+                            "FIRST FRAME " + m_FirstFrameMs + " MS, WORKDAY SHOWN " + m_FirstBoundFrameMs + " MS" );
+        }
+    }
+
+    /**
+     * Returns whether the first frame showing the restored Workday has been drawn, after which nothing more is
+     * recorded.
+     *
+     * @return True if the trace is complete.
+     */
+    synchronized boolean isComplete()
+    {
+        return( m_FirstBoundFrameMs != NOT_REACHED );
+    }
+
+    /**
+     * Returns the time since the application was created.
+     *
+     * @return The elapsed time, in milliseconds.
+     */
+    private long getElapsedMs()
+    {
+        return( SystemClock.elapsedRealtime() - m_CreateStartMs );
+    }
+}
@@ -13,16 +13,15 @@ package com.jameswilliamson.teamlead;
 
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
-import android.widget.TextView;
-
-import java.text.DecimalFormat;
-import java.util.Iterator;
+import android.view.View;
 
 public class TaskLogActivity extends AppCompatActivity
 {
     /* Private members */
-    private TextView m_TaskLog;                             /* A text field used to display the task log */
+    private RecyclerView m_TaskLog;                         /* A list used to display the task log */
+    private Runnable m_LogWriter;                           /* Writes the log once the Workday has been restored */
 
     /**
      * Called when the activity is created - initialization for the activity is performed here.
@@ -43,44 +42,51 @@ public class TaskLogActivity extends AppCompatActivity
         m_Toolbar.setTitle( R.string.task_log_activity_title );
         setSupportActionBar( m_Toolbar );
 
-        /* Initialize text field */
-        m_TaskLog = (TextView)findViewById( R.id.task_log );
+        /* Initialize list */
+        m_TaskLog = (RecyclerView)findViewById( R.id.task_log );
+        m_TaskLog.setHasFixedSize( true );
+
+        /* Output the data, once the Workday is ready; the UI thread never waits for it */
+        m_LogWriter = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                writeLog();
+            }
+        };
 
-        /* Output the data */
-        writeLog();
+        ( (TeamLeadApplication)getApplication() ).whenWorkdayReady( m_LogWriter );
     }
 
     /**
-     * Writes the task log to the activity text view for the user to analyze.
+     * Called when the activity is destroyed. If the Workday is still being restored, the log no longer needs to be
+     * written when it is.
      */
-    private void writeLog()
+    @Override
+    protected void onDestroy()
     {
-        /* For the log, format the task index with two digits, minimum */
-        DecimalFormat formatter = new DecimalFormat( "00" );
+        super.onDestroy();
 
-        /* Retrieve the list of tasks */
-        Workday userWorkday = ((TeamLeadApplication)getApplication() ).getWorkdayModel();
-        Iterator<TaskIteration> tasks = userWorkday.getTaskLogIterator();
-
-        /* Set header */
-        m_TaskLog.setText( getString( R.string.task_log_header ) + "\n" );
+        ( (TeamLeadApplication)getApplication() ).cancelWorkdayReady( m_LogWriter );
+    }
 
-        /* Retrieve the size of the task log */
-        int taskLogSize = userWorkday.getTaskLogSize();
+    /**
+     * Attaches the task log to the activity list for the user to analyze. Only the entries that scroll into view are
+     * read and formatted, so this takes the same time however long the log is.
+     */
+    private void writeLog()
+    {
+        /* Retrieve the task log, as last published */
+        WorkdayWriter workdayWriter = ( (TeamLeadApplication)getApplication() ).getWorkdayWriter();
+        TaskLogAdapter taskLogAdapter = new TaskLogAdapter( this, workdayWriter );
 
-        if( taskLogSize == 0 )
+        if( taskLogAdapter.getItemCount() == 0 )
         {
             /* Nothing to display; give the user a hint */
-            m_TaskLog.append( getString( R.string.task_log_empty ) );
-        }
-        else
-        {
-            /* Iterate through the log and display the content on the UI */
-            while( tasks.hasNext() )
-            {
-                m_TaskLog.append( "[" + formatter.format( taskLogSize ) + "] " + tasks.next().toString() + "\n" );
-                taskLogSize--;
-            }
+            findViewById( R.id.task_log_empty ).setVisibility( View.VISIBLE );
         }
+
+        m_TaskLog.setAdapter( taskLogAdapter );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+/**
+ * TaskLogAdapter.java
+ *
+ * Adapter that binds the entries of a Workday's task log to the rows of the task log list, newest entry first. The
+ * log is read from the snapshot of the Workday published when the adapter was created, which shares the entries of
+ * the task log rather than copying them. Rows are formatted only as they are bound, so only the rows on screen are
+ * ever formatted and the cost of showing the log does not depend on its length.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.app.Activity;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+
+class TaskLogAdapter extends RecyclerView.Adapter<TaskLogAdapter.EntryHolder>
+{
+    /* Private member fields */
+    private WorkdayWriter m_Writer;                        /* Publishes the Workday; times the active iteration */
+    private WorkdaySnapshot m_Workday;                     /* Contains the task log to be displayed */
+    private TaskLog m_TaskLog;                             /* The concluded entries of the task log */
+    private LayoutInflater m_Inflater;                     /* Inflates new rows */
+    private int m_LogSize;                                 /* The number of entries shown */
+    private StringBuilder m_RowText;                       /* Reused to format each row as it is bound */
+    private char[] m_RuntimeText;                          /* Reused to format the runtime of each row */
+
+    /**
+     * Constructs the task log adapter.
+     *
+     * @param a The associated activity.
+     * @param writer The writer of the Workday whose task log is to be displayed.
+     */
+    TaskLogAdapter( Activity a, WorkdayWriter writer )
+    {
+        m_Inflater = a.getLayoutInflater();
+        m_Writer = writer;
+        m_Workday = writer.getPublishedSnapshot();
+        m_TaskLog = m_Workday.getTaskLog();
+        m_RowText = new StringBuilder();
+        m_RuntimeText = new char[RuntimeFormatter.MAX_FORMATTED_LENGTH];
+
+        /* The iteration in progress is not part of the published log, so it is shown after it */
+        m_LogSize = m_TaskLog.size() + ( ( m_Workday.getActiveTaskId() != Task.NO_TASK_ID ) ? 1 : 0 );
+    }
+
+    /**
+     * Creates a new row.
+     *
+     * @param parent The view group that the row will be added to.
+     * @param viewType The view type of the row; all rows are of the same type.
+     * @return The holder of the new row.
+     */
+    @Override
+    public EntryHolder onCreateViewHolder( ViewGroup parent, int viewType )
+    {
+        TextView row = (TextView)m_Inflater.inflate( R.layout.task_log_entry, parent, false );
+
+        return( new EntryHolder( row ) );
+    }
+
+    /**
+     * Formats the task log entry shown at the given position, which counts back from the newest entry.
+     *
+     * @param holder The holder of the row.
+     * @param position The position of the row.
+     */
+    @Override
+    public void onBindViewHolder( EntryHolder holder, int position )
+    {
+        int entryNumber = m_LogSize - position;
+        int logIndex = entryNumber - 1;
+        int taskId;
+        long runtimeMs;
+
+        if( logIndex < m_TaskLog.size() )
+        {
+            taskId = m_TaskLog.getTaskId( logIndex );
+            runtimeMs = m_TaskLog.getRuntimeMs( logIndex );
+        }
+        else
+        {
+            /* The iteration in progress, as of now */
+            taskId = m_Workday.getActiveTaskId();
+            runtimeMs = Math.max( 0, m_Writer.getTimeMs() - m_Workday.getActiveStartTimestampMs() );
+        }
+
+        m_RowText.setLength( 0 );
+        m_RowText.append( '[' );
+
+        if( entryNumber < 10 )
+        {
+            /* For the log, format the entry number with two digits, minimum */
+            m_RowText.append( '0' );
+        }
+
+        m_RowText.append( entryNumber ).append( "] " );
+        m_RowText.append( m_RuntimeText, 0, RuntimeFormatter.formatMs( runtimeMs, m_RuntimeText, 0 ) );
+        m_RowText.append( " (" ).append( m_Workday.getTaskName( taskId ) ).append( ')' );
+
+        holder.m_EntryText.setText( m_RowText );
+    }
+
+    /**
+     * Returns the number of rows, which is the number of entries in the task log when the adapter was created.
+     *
+     * @return The number of rows.
+     */
+    @Override
+    public int getItemCount()
+    {
+        return( m_LogSize );
+    }
+
+    /**
+     * Holds the views of one row of the list.
+     */
+    static class EntryHolder extends RecyclerView.ViewHolder
+    {
+        /* Private member fields */
+        private TextView m_EntryText;                      /* Shows one entry of the log */
+
+        /**
+         * Constructs the holder of a new row.
+         *
+         * @param entryText The row.
+         */
+        EntryHolder( TextView entryText )
+        {
+            super( entryText );
+
+            m_EntryText = entryText;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * TaskSwitchReceiver.java
+ *
+ * Receives the switch buttons of the active task notification, and submits the context switch to the Workday's
+ * writer without opening the application. If the application was started for the broadcast, the switch is submitted
+ * once the Workday has been restored.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+
+public class TaskSwitchReceiver extends BroadcastReceiver
+{
+    /* Private constants */
+    private static final String ACTION_SWITCH_TO_TASK = "com.jameswilliamson.teamlead.action.SWITCH_TO_TASK";
+    private static final String EXTRA_TASK_ID = "com.jameswilliamson.teamlead.extra.TASK_ID";
+
+    /**
+     * Creates the intent broadcast by a switch button.
+     *
+     * @param context The application context.
+     * @param taskId The ID of the task to switch to.
+     * @return The intent, which is unique to the task.
+     */
+    static PendingIntent createSwitchIntent( Context context, int taskId )
+    {
+        Intent intent = new Intent( context, TaskSwitchReceiver.class );
+        intent.setAction( ACTION_SWITCH_TO_TASK );
+        intent.putExtra( EXTRA_TASK_ID, taskId );
+
+        /* The task ID is the request code, so that each button keeps its own extra */
+        return( PendingIntent.getBroadcast( context, taskId, intent, PendingIntent.FLAG_UPDATE_CURRENT ) );
+    }
+
+    /**
+     * Submits the context switch requested by a switch button. A task deleted since the notification was shown is
+     * ignored by the Workday.
+     *
+     * @param context The context in which the receiver is running.
+     * @param intent The broadcast intent.
+     */
+    @Override
+    public void onReceive( Context context, Intent intent )
+    {
+        if( ACTION_SWITCH_TO_TASK.equals( intent.getAction() ) && intent.hasExtra( EXTRA_TASK_ID ) )
+        {
+            final TeamLeadApplication application = (TeamLeadApplication)context.getApplicationContext();
+            final int taskId = intent.getIntExtra( EXTRA_TASK_ID, Task.NO_TASK_ID );
+            final PendingResult result = goAsync();
+
+            application.whenWorkdayReady( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    application.getWorkdayWriter().switchToTask( taskId );
+                    result.finish();
+                }
+            } );
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/**
+ * TaskTileAdapter.java
+ *
+ * Adapter that binds the tasks of a Workday to the tiles of the ContextSwitch grid. Tiles are identified by the
+ * stable ID of their task, so they keep their identity when other tasks are added or deleted. The tiles are bound from
+ * a published snapshot of the Workday, which the writer never changes; the adapter also records what the grid
+ * currently shows, and when a new snapshot is published, the record is compared with it and only the differences are
+ * dispatched to the grid. When only the runtime of a task changes, its tile is partially rebound with a payload,
+ * which updates the runtime alone. Whether a task is over its time limit is looked up in the task limits, which are
+ * recomputed when the Workday changes and when the active task crosses its limit, rather than computed on each bind.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.List;
+
+
+class TaskTileAdapter extends RecyclerView.Adapter<TaskTileAdapter.TileHolder>
+{
+    /* Private constants */
+    private static final char ADD_TASK_SYMBOL = '+';   /* Shown in place of a runtime on the "add new" tile */
+    private static final Object PAYLOAD_RUNTIME = new Object(); /* Partial bind: only the runtime has changed */
+
+    /* Private member fields */
+    private WorkdayWriter m_Writer;                    /* Publishes the Workday whose tasks are displayed */
+    private WorkdaySnapshot m_Workday;                 /* The published snapshot that the grid is bound to */
+    private TaskLimits m_Limits;                       /* Which tasks are over their time limits */
+    private LayoutInflater m_Inflater;                 /* Inflates new tiles */
+    private Activity m_Activity;                       /* Creates the context menus of the tiles */
+    private OnTileClickListener m_ClickListener;       /* Informed when a tile is clicked */
+    private GridSnapshot m_Displayed;                  /* What the grid shows, as of the last dispatched update */
+
+    /**
+     * Receives clicks on the tiles of the grid.
+     */
+    interface OnTileClickListener
+    {
+        /**
+         * Called when a tile is clicked.
+         *
+         * @param position The position of the tile, which is the index of its task in the Workday.
+         * @param taskId The stable ID of the task.
+         */
+        void onTileClick( int position, int taskId );
+    }
+
+    /**
+     * Constructs the task tile adapter.
+     *
+     * @param a The associated activity, which creates the context menu of a tile when it is long-pressed.
+     * @param writer The writer of the Workday whose tasks are to be displayed on the grid.
+     * @param limits The limits of the tasks, which must be kept up to date with the published Workday.
+     * @param clickListener Informed when a tile is clicked.
+     */
+    TaskTileAdapter( Activity a, WorkdayWriter writer, TaskLimits limits, OnTileClickListener clickListener )
+    {
+        m_Inflater = a.getLayoutInflater();
+        m_Activity = a;
+        m_Writer = writer;
+        m_Workday = writer.getPublishedSnapshot();
+        m_Limits = limits;
+        m_ClickListener = clickListener;
+        m_Displayed = new GridSnapshot( m_Workday, m_Limits, writer.getTimeMs() );
+
+        setHasStableIds( true );
+    }
+
+    /**
+     * Brings the grid up to date with the latest published snapshot of the Workday, after the tasks have changed,
+     * such as when a task is added, deleted or switched to, or the Workday is reset, or after a task has crossed its
+     * time limit. Only the tiles that differ from what the grid shows are rebound; tiles that moved keep their views.
+     */
+    void onTasksChanged()
+    {
+        m_Workday = m_Writer.getPublishedSnapshot();
+
+        GridSnapshot current = new GridSnapshot( m_Workday, m_Limits, m_Writer.getTimeMs() );
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff( new SnapshotDiff( m_Displayed, current ), true );
+
+        m_Displayed = current;
+        diff.dispatchUpdatesTo( this );
+    }
+
+    /**
+     * Partially rebinds the tile of the active task if the runtime it displays is out of date. The displayed runtime
+     * only changes once per second, and no other tile changes while the tasks stay the same, so most calls do
+     * nothing at all.
+     *
+     * @return False if a new snapshot of the Workday has been published since the grid was last updated, in which
+     *         case nothing is rebound until onTasksChanged() is called for it.
+     */
+    boolean refreshActiveTile()
+    {
+        boolean upToDate = ( m_Writer.getPublishedSnapshot() == m_Workday );
+        int activePosition = m_Displayed.m_ActivePosition;
+
+        if( upToDate && ( activePosition != RecyclerView.NO_POSITION ) )
+        {
+            long activeSeconds = m_Workday.getTotalTaskRuntimeMs( m_Displayed.m_ActiveTaskId, m_Writer.getTimeMs() ) /
+                                 Workday.MS_PER_SEC;
+
+            if( activeSeconds != m_Displayed.m_RuntimeSeconds[activePosition] )
+            {
+                m_Displayed.m_RuntimeSeconds[activePosition] = activeSeconds;
+                notifyItemChanged( activePosition, PAYLOAD_RUNTIME );
+            }
+        }
+
+        return( upToDate );
+    }
+
+    /**
+     * Returns the number of tiles in the grid, as of the last dispatched update.
+     *
+     * @return The item count.
+     */
+    @Override
+    public int getItemCount()
+    {
+        return( m_Displayed.m_Size );
+    }
+
+    /**
+     * Returns the stable ID of the tile at the given position, which is the stable ID of its task.
+     *
+     * @param position The position of the tile.
+     * @return The ID of the tile.
+     */
+    @Override
+    public long getItemId( int position )
+    {
+        return( m_Displayed.m_TaskIds[position] );
+    }
+
+    /**
+     * Inflates a new tile from XML.
+     *
+     * @param parent The grid that the tile will be attached to.
+     * @param viewType The type of the tile; all tiles are of the same type.
+     * @return The holder of the new tile.
+     */
+    @Override
+    public TileHolder onCreateViewHolder( ViewGroup parent, int viewType )
+    {
+        TaskTileView taskTile = (TaskTileView)m_Inflater.inflate( R.layout.task_tile, parent, false );
+
+        return( new TileHolder( taskTile ) );
+    }
+
+    /**
+     * Binds everything that a tile displays.
+     *
+     * @param holder The holder of the tile.
+     * @param position The position of the tile, which is the index of its task.
+     */
+    @Override
+    public void onBindViewHolder( TileHolder holder, int position )
+    {
+        TaskTileView taskTile = holder.m_TaskTile;
+        int taskId = m_Workday.getTaskIdAt( position );
+
+        taskTile.setTaskName( m_Workday.getTaskName( taskId ) );
+
+        if( taskId == Workday.ADD_TASK_ID )
+        {
+            /*
+             * The "add new" task should be drawn a bit differently since it performs a special function and
+             * there is no timer.
+             */
+            taskTile.setSymbol( ADD_TASK_SYMBOL );
+            taskTile.setLimitExceeded( false );
+            taskTile.setTileColor( Color.LTGRAY, false );
+        }
+        else if( taskId == Workday.END_WORKDAY_ID )
+        {
+            /*
+             * The "end workday" task should be drawn a bit differently since it performs a special function and
+             * there is no timer.
+             */
+            taskTile.clearRuntime();
+            taskTile.setLimitExceeded( false );
+            taskTile.setTileColor( Color.LTGRAY, false );
+        }
+        else
+        {
+            bindRuntime( taskTile, position );
+            taskTile.setTileColor( m_Workday.getTaskColor( taskId ), taskId == m_Workday.getActiveTaskId() );
+        }
+    }
+
+    /**
+     * Binds a tile, or only its runtime if that is all that has changed.
+     *
+     * @param holder The holder of the tile.
+     * @param position The position of the tile, which is the index of its task.
+     * @param payloads The partial binds requested since the tile was last bound; empty for a full bind.
+     */
+    @Override
+    public void onBindViewHolder( TileHolder holder, int position, List<Object> payloads )
+    {
+        boolean runtimeOnly = !payloads.isEmpty();
+
+        for( int index = 0; index < payloads.size(); index++ )
+        {
+            runtimeOnly &= ( payloads.get( index ) == PAYLOAD_RUNTIME );
+        }
+
+        if( runtimeOnly )
+        {
+            bindRuntime( holder.m_TaskTile, position );
+        }
+        else
+        {
+            onBindViewHolder( holder, position );
+        }
+    }
+
+    /**
+     * Binds the runtime of a user task to its tile, along with whether the task has exceeded its time limit.
+     *
+     * @param taskTile The tile.
+     * @param position The position of the tile, which is the index of its task.
+     */
+    private void bindRuntime( TaskTileView taskTile, int position )
+    {
+        int taskId = m_Workday.getTaskIdAt( position );
+
+        taskTile.setRuntimeMs( m_Workday.getTotalTaskRuntimeMs( taskId, m_Writer.getTimeMs() ) );
+
+        /* Over-budget on time is shown by painting the task text red */
+        taskTile.setLimitExceeded( m_Limits.isLimitExceeded( taskId ) );
+    }
+
+    /**
+     * Holds a tile of the grid, and reports its clicks to the adapter's listener.
+     */
+    class TileHolder extends RecyclerView.ViewHolder implements View.OnClickListener
+    {
+        /* Private member fields */
+        private TaskTileView m_TaskTile;               /* The tile */
+
+        /**
+         * Constructs the holder of a new tile.
+         *
+         * @param taskTile The tile.
+         */
+        TileHolder( TaskTileView taskTile )
+        {
+            super( taskTile );
+
+            m_TaskTile = taskTile;
+            m_TaskTile.setOnClickListener( this );
+            m_TaskTile.setOnCreateContextMenuListener( m_Activity );
+        }
+
+        /**
+         * Reports a click on the tile, unless it is being removed from the grid.
+         *
+         * @param v The tile.
+         */
+        @Override
+        public void onClick( View v )
+        {
+            int position = getAdapterPosition();
+
+            if( position != RecyclerView.NO_POSITION )
+            {
+                m_ClickListener.onTileClick( position, (int)getItemId() );
+            }
+        }
+    }
+
+    /**
+     * What the grid displays for each task, recorded when the grid is updated.
+     */
+    private static final class GridSnapshot
+    {
+        /* Private member fields */
+        private int m_Size;                            /* The number of tiles */
+        private int[] m_TaskIds;                       /* The stable ID of the task on each tile */
+        private int[] m_TaskColors;                    /* The color of the task on each tile */
+        private long[] m_RuntimeSeconds;               /* The runtime of the task on each tile, in whole seconds */
+        private boolean[] m_LimitExceeded;             /* Whether the task on each tile is over its time limit */
+        private int m_ActiveTaskId;                    /* The ID of the active task, or Task.NO_TASK_ID */
+        private int m_ActivePosition;                  /* The position of the active task's tile, or NO_POSITION */
+
+        /**
+         * Records what the grid should display for a published snapshot of the Workday at a point in time.
+         *
+         * @param workday The snapshot of the Workday.
+         * @param limits The limits of the tasks, as of the snapshot.
+         * @param timeMs The clock time, which must not be earlier than the snapshot.
+         */
+        GridSnapshot( WorkdaySnapshot workday, TaskLimits limits, long timeMs )
+        {
+            m_Size = workday.getNumberOfTasks();
+            m_TaskIds = new int[m_Size];
+            m_TaskColors = new int[m_Size];
+            m_RuntimeSeconds = new long[m_Size];
+            m_LimitExceeded = new boolean[m_Size];
+            m_ActiveTaskId = workday.getActiveTaskId();
+            m_ActivePosition = RecyclerView.NO_POSITION;
+
+            for( int position = 0; position < m_Size; position++ )
+            {
+                m_TaskIds[position] = workday.getTaskIdAt( position );
+                m_TaskColors[position] = workday.getTaskColor( m_TaskIds[position] );
+                m_RuntimeSeconds[position] = workday.getTotalTaskRuntimeMs( m_TaskIds[position], timeMs ) /
+                                             Workday.MS_PER_SEC;
+                m_LimitExceeded[position] = limits.isLimitExceeded( m_TaskIds[position] );
+
+                if( m_TaskIds[position] == m_ActiveTaskId )
+                {
+                    m_ActivePosition = position;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares two snapshots of the grid: tiles are matched by task ID, and a tile whose only change is its runtime
+     * is partially rebound.
+     */
+    private static final class SnapshotDiff extends DiffUtil.Callback
+    {
+        /* Private member fields */
+        private GridSnapshot m_Old;                    /* What the grid displays */
+        private GridSnapshot m_New;                    /* What the grid should display */
+
+        /**
+         * Constructs the comparison.
+         *
+         * @param oldSnapshot What the grid displays.
+         * @param newSnapshot What the grid should display.
+         */
+        SnapshotDiff( GridSnapshot oldSnapshot, GridSnapshot newSnapshot )
+        {
+            m_Old = oldSnapshot;
+            m_New = newSnapshot;
+        }
+
+        @Override
+        public int getOldListSize()
+        {
+            return( m_Old.m_Size );
+        }
+
+        @Override
+        public int getNewListSize()
+        {
+            return( m_New.m_Size );
+        }
+
+        @Override
+        public boolean areItemsTheSame( int oldPosition, int newPosition )
+        {
+            return( m_Old.m_TaskIds[oldPosition] == m_New.m_TaskIds[newPosition] );
+        }
+
+        @Override
+        public boolean areContentsTheSame( int oldPosition, int newPosition )
+        {
+            return( isAppearanceTheSame( oldPosition, newPosition ) &&
+                    ( m_Old.m_RuntimeSeconds[oldPosition] == m_New.m_RuntimeSeconds[newPosition] ) );
+        }
+
+        @Override
+        public Object getChangePayload( int oldPosition, int newPosition )
+        {
+            return( isAppearanceTheSame( oldPosition, newPosition ) ? PAYLOAD_RUNTIME : null );
+        }
+
+        /**
+         * Checks whether a tile looks the same in both snapshots, other than its runtime.
+         *
+         * @param oldPosition The position of the tile in the old snapshot.
+         * @param newPosition The position of the tile in the new snapshot.
+         * @return True if the color, the active state and the limit state of the tile are unchanged.
+         */
+        private boolean isAppearanceTheSame( int oldPosition, int newPosition )
+        {
+            boolean wasActive = ( m_Old.m_TaskIds[oldPosition] == m_Old.m_ActiveTaskId );
+            boolean isActive = ( m_New.m_TaskIds[newPosition] == m_New.m_ActiveTaskId );
+
+            return( ( m_Old.m_TaskColors[oldPosition] == m_New.m_TaskColors[newPosition] ) &&
+                    ( wasActive == isActive ) &&
+                    ( m_Old.m_LimitExceeded[oldPosition] == m_New.m_LimitExceeded[newPosition] ) );
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * TaskTileView.java
+ *
+ * Custom widget that draws one tile of the ContextSwitch grid: the task name, and below it the runtime of the task
+ * or a symbol. Unlike a Button, the tile has a fixed height that does not depend on its text, so changing the text
+ * never requires a new layout pass; and the runtime is drawn straight from a reused character buffer, so a refresh
+ * in which only the runtime changes allocates nothing and only redraws the tile.
+ *
+ * Since the text is drawn rather than held by a TextView, the tile describes itself to accessibility services: its
+ * description is the task name and runtime, and it is reported as a clickable button. The description is built when
+ * an accessibility service asks for it, so it is never stale and refreshes still allocate nothing.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.v4.content.ContextCompat;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.Button;
+
+
+public class TaskTileView extends View
+{
+    /* Private constants */
+    private final float ACTIVE_ALPHA_FADE_PCT = .25f;     /* Pct. to fade the tile color alpha while active */
+    private final int TILE_LINES = 3;                     /* Name, blank line, runtime */
+    private final long NO_RUNTIME = -1;                   /* Displayed seconds when no runtime is shown */
+    private final int PRESSED_OVERLAY_COLOR = 0x33000000; /* Darkens the tile while it is pressed */
+
+    /* Private member fields */
+    private TextPaint m_TextPaint;                        /* Draws the name and the runtime */
+    private float m_LineHeight;                           /* Recommended spacing between lines of text */
+    private float m_FirstBaselineOffset;                  /* Distance from the top of the text to the first baseline */
+    private int m_DefaultTextColor;                       /* Text color of a tile within its time limit */
+    private int m_AlarmTextColor;                         /* Text color of a tile that exceeded its time limit */
+    private String m_TaskName;                            /* The name drawn on the first line */
+    private char[] m_RuntimeText;                         /* The runtime or symbol drawn on the last line */
+    private int m_RuntimeTextLength;                      /* Number of characters of m_RuntimeText to draw */
+    private long m_DisplayedSeconds;                      /* The runtime in m_RuntimeText, in whole seconds */
+    private int m_TaskColor;                              /* The color of the task, as last set */
+    private boolean m_Active;                             /* Whether the task is active, as last set */
+    private int m_TileColor;                              /* The background color drawn, derived from the above */
+    private boolean m_LimitExceeded;                      /* Whether the task is over its time limit */
+
+    /**
+     * Constructs a new tile, as inflated from a layout file.
+     *
+     * @param context The associated context.
+     * @param attrs The attributes of the XML tag that is inflating the view.
+     */
+    public TaskTileView( Context context, AttributeSet attrs )
+    {
+        super( context, attrs );
+
+        /* Resolve the text colors once, rather than on every refresh */
+        m_DefaultTextColor = ContextCompat.getColor( context, R.color.taskButtonTextDefault );
+        m_AlarmTextColor = ContextCompat.getColor( context, R.color.taskButtonTextAlarm );
+
+        /* Both lines are centered horizontally, so they never need to be measured */
+        m_TextPaint = new TextPaint( Paint.ANTI_ALIAS_FLAG );
+        m_TextPaint.setTextAlign( Paint.Align.CENTER );
+        m_TextPaint.setTextSize( getResources().getDimension( R.dimen.task_tile_text_size ) );
+        m_TextPaint.setColor( m_DefaultTextColor );
+
+        m_LineHeight = m_TextPaint.getFontSpacing();
+        m_FirstBaselineOffset = -m_TextPaint.getFontMetrics().ascent;
+
+        m_TaskName = "";
+        m_RuntimeText = new char[RuntimeFormatter.MAX_FORMATTED_LENGTH];
+        m_RuntimeTextLength = 0;
+        m_DisplayedSeconds = NO_RUNTIME;
+        m_TaskColor = Color.LTGRAY;
+        m_Active = false;
+        m_TileColor = Color.LTGRAY;
+        m_LimitExceeded = false;
+    }
+
+    /**
+     * Sets the name drawn on the tile.
+     *
+     * @param taskName The name of the task.
+     */
+    void setTaskName( String taskName )
+    {
+        if( !m_TaskName.equals( taskName ) )
+        {
+            m_TaskName = taskName;
+            invalidate();
+        }
+    }
+
+    /**
+     * Sets the runtime drawn on the tile. It is displayed in whole seconds, so the tile is only redrawn when the
+     * number of seconds changes.
+     *
+     * @param runtimeMs The runtime of the task, in milliseconds.
+     */
+    void setRuntimeMs( long runtimeMs )
+    {
+        long seconds = Math.max( 0, runtimeMs ) / Workday.MS_PER_SEC;
+
+        if( seconds != m_DisplayedSeconds )
+        {
+            m_RuntimeTextLength = RuntimeFormatter.formatMs( runtimeMs, m_RuntimeText, 0 );
+            m_DisplayedSeconds = seconds;
+            invalidate();
+        }
+    }
+
+    /**
+     * Draws a symbol in place of the runtime, such as on the tile of a special task.
+     *
+     * @param symbol The symbol to draw.
+     */
+    void setSymbol( char symbol )
+    {
+        if( ( m_DisplayedSeconds != NO_RUNTIME ) || ( m_RuntimeTextLength != 1 ) || ( m_RuntimeText[0] != symbol ) )
+        {
+            m_RuntimeText[0] = symbol;
+            m_RuntimeTextLength = 1;
+            m_DisplayedSeconds = NO_RUNTIME;
+            invalidate();
+        }
+    }
+
+    /**
+     * Draws nothing in place of the runtime, such as on the tile of a special task.
+     */
+    void clearRuntime()
+    {
+        if( m_RuntimeTextLength != 0 )
+        {
+            m_RuntimeTextLength = 0;
+            m_DisplayedSeconds = NO_RUNTIME;
+            invalidate();
+        }
+    }
+
+    /**
+     * Sets the background color of the tile. The color of the active task is faded to show that it is selected.
+     *
+     * @param taskColor The color of the task.
+     * @param active Whether the task is active.
+     */
+    void setTileColor( int taskColor, boolean active )
+    {
+        if( ( taskColor != m_TaskColor ) || ( active != m_Active ) )
+        {
+            m_TaskColor = taskColor;
+            m_Active = active;
+            m_TileColor = taskColor;
+
+            if( active )
+            {
+                int alpha = Color.alpha( taskColor );
+                alpha -= (int)( ACTIVE_ALPHA_FADE_PCT * alpha );
+
+                m_TileColor = Color.argb( alpha, Color.red( taskColor ), Color.green( taskColor ),
+                                          Color.blue( taskColor ) );
+            }
+
+            invalidate();
+        }
+    }
+
+    /**
+     * Sets whether the task has exceeded its time limit, in which case the text is drawn in the alarm color.
+     *
+     * @param limitExceeded True if the task is over its time limit.
+     */
+    void setLimitExceeded( boolean limitExceeded )
+    {
+        if( limitExceeded != m_LimitExceeded )
+        {
+            m_LimitExceeded = limitExceeded;
+            m_TextPaint.setColor( limitExceeded ? m_AlarmTextColor : m_DefaultTextColor );
+            invalidate();
+        }
+    }
+
+    /**
+     * Describes the tile to accessibility services as a button, which the user can click to switch to its task.
+     *
+     * @param info The node info to initialize.
+     */
+    @Override
+    public void onInitializeAccessibilityNodeInfo( AccessibilityNodeInfo info )
+    {
+        super.onInitializeAccessibilityNodeInfo( info );
+        info.setClassName( Button.class.getName() );
+        info.setClickable( true );
+        info.setContentDescription( getAccessibilityDescription() );
+    }
+
+    /**
+     * Adds the description of the tile to an accessibility event sent from it, such as when it is focused or clicked.
+     *
+     * @param event The accessibility event to populate.
+     */
+    @Override
+    public void onPopulateAccessibilityEvent( AccessibilityEvent event )
+    {
+        super.onPopulateAccessibilityEvent( event );
+        event.getText().add( getAccessibilityDescription() );
+    }
+
+    /**
+     * Redraws the tile when it is pressed or released, since its pressed state is drawn over its color.
+     */
+    @Override
+    protected void drawableStateChanged()
+    {
+        super.drawableStateChanged();
+        invalidate();
+    }
+
+    /**
+     * Measures the tile: it fills the width of its grid column, and is tall enough for its lines of text.
+     *
+     * @param widthMeasureSpec Horizontal space requirements as imposed by the parent.
+     * @param heightMeasureSpec Vertical space requirements as imposed by the parent.
+     */
+    @Override
+    protected void onMeasure( int widthMeasureSpec, int heightMeasureSpec )
+    {
+        int desiredHeight = getPaddingTop() + (int)Math.ceil( m_LineHeight * TILE_LINES ) + getPaddingBottom();
+
+        setMeasuredDimension( getDefaultSize( getSuggestedMinimumWidth(), widthMeasureSpec ),
+                              resolveSize( Math.max( desiredHeight, getSuggestedMinimumHeight() ),
+                                           heightMeasureSpec ) );
+    }
+
+    /**
+     * Draws the tile.
+     *
+     * @param canvas The canvas on which the tile will be drawn.
+     */
+    @Override
+    protected void onDraw( Canvas canvas )
+    {
+        float centerX = getPaddingLeft() + ( ( getWidth() - getPaddingLeft() - getPaddingRight() ) / 2.0f );
+
+        /* Center the lines of text vertically, in case the tile is taller than it asked to be */
+        float textTop = getPaddingTop() + ( ( getHeight() - getPaddingTop() - getPaddingBottom() -
+                                              ( m_LineHeight * TILE_LINES ) ) / 2.0f );
+        float nameBaseline = textTop + m_FirstBaselineOffset;
+
+        canvas.drawColor( m_TileColor );
+
+        if( isPressed() )
+        {
+            canvas.drawColor( PRESSED_OVERLAY_COLOR );
+        }
+
+        canvas.drawText( m_TaskName, centerX, nameBaseline, m_TextPaint );
+
+        if( m_RuntimeTextLength > 0 )
+        {
+            canvas.drawText( m_RuntimeText, 0, m_RuntimeTextLength, centerX,
+                             nameBaseline + ( m_LineHeight * ( TILE_LINES - 1 ) ), m_TextPaint );
+        }
+    }
+
+    /**
+     * Builds the description read out by accessibility services from what the tile currently draws: the task name,
+     * followed by the runtime if one is drawn.
+     *
+     * @return The description of the tile.
+     */
+    private String getAccessibilityDescription()
+    {
+        String description = m_TaskName;
+
+        if( m_DisplayedSeconds != NO_RUNTIME )
+        {
+            description = getResources().getString( R.string.task_tile_description, m_TaskName,
+                                                    new String( m_RuntimeText, 0, m_RuntimeTextLength ) );
+        }
+
+        return( description );
+    }
+}
@@ -1,7 +1,11 @@
 /**
  * TeamLeadApplication.java
  *
- * Represents the common state of the TeamLead application.
+ * Represents the common state of the TeamLead application. The preserved Workday is restored on a background thread
+ * while the application starts, so that the first screen can be drawn without waiting for it. From then on, the
+ * Workday is owned by a WorkdayWriter: the UI submits changes to it without waiting for them to be applied or
+ * preserved, reads the published snapshot, and is told on the UI thread what kinds of change a new one reflects.
+ * Changes are coalesced until the UI thread takes them, so a burst of changes wakes it once.
  *
  * @author James Williamson
  *
@@ -11,15 +15,35 @@
 package com.jameswilliamson.teamlead;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.content.ContextCompat;
 import android.util.Log;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TeamLeadApplication extends Application
 {
     /* Private member fields */
-    private Workday m_UserWorkday;                           /* Models a user's workday */
+    private volatile Workday m_UserWorkday;                  /* Models a user's workday; null until restored */
+    private volatile WorkdayWriter m_WorkdayWriter;          /* Applies every change to the Workday, in order */
+    private CountDownLatch m_WorkdayRestored;                /* Released once the Workday has been restored */
+    private boolean m_WorkdayReady;                          /* The UI thread has been told the Workday is ready */
+    private ArrayList<Runnable> m_WorkdayReadyCallbacks;     /* Run on the UI thread once the Workday is ready */
+    private ArrayList<WorkdayChangeListener> m_WorkdayChangeListeners; /* Told on the UI thread of each change */
+    private WorkdayChanges m_WorkdayChanges;                 /* Coalesces the changes not yet told to the UI thread */
+    private Handler m_MainHandler;                           /* Posts change notifications to the UI thread */
+    private AtomicBoolean m_ChangeNotificationPending;       /* A change notification is posted but has not run */
+    private Runnable m_ChangeNotifier;                       /* Runs the change listeners */
+    private WorkdayNotifier m_WorkdayNotifier;               /* Shows the active task in an ongoing notification */
+    private LimitAlerter m_LimitAlerter;                     /* Alerts the user when a task crosses its time limit */
+    private StartupTrace m_StartupTrace;                     /* Times the phases of a cold start */
     private FileManager m_FileManager;                       /* Used to save/load workday into persistent storage */
     private int m_TaskTileRefreshRateMs;                     /* A refresh rate preference for updating the UI */
 
@@ -29,6 +53,20 @@ public class TeamLeadApplication extends Application
     public static final int REFRESH_RATE_1000_MS = 1000;     /* Used to repaint the UI every second */
     public static final int REFRESH_RATE_5000_MS = 5000;     /* Used to repaint the UI every five seconds */
 
+    /**
+     * Receives the changes made to the user workday, on the UI thread.
+     */
+    interface WorkdayChangeListener
+    {
+        /**
+         * Called on the UI thread once changes to the Workday have been published. Several changes published in quick
+         * succession may be reported at once.
+         *
+         * @param changes The kinds of change made since the last call, as a combination of the WorkdayChanges flags.
+         */
+        void onWorkdayChanged( int changes );
+    }
+
     /**
      * Specifies tasks to be performed once the TeamLead application is started.
      */
@@ -36,15 +74,56 @@ public class TeamLeadApplication extends Application
     public void onCreate()
     {
         super.onCreate();
+        m_StartupTrace = new StartupTrace();
 
         /* Instantiate the application's file manager */
         m_FileManager = new FileManager( this.getApplicationContext() );
 
-        /* Initialize the user workday data */
-        initializeWorkday();
+        /* Restore the user workday data in the background; the UI is told when it is ready */
+        m_UserWorkday = null;
+        m_WorkdayRestored = new CountDownLatch( 1 );
+        m_WorkdayReady = false;
+        m_WorkdayReadyCallbacks = new ArrayList<>();
+        m_WorkdayChangeListeners = new ArrayList<>();
+        m_WorkdayChanges = new WorkdayChanges();
+        m_MainHandler = new Handler( Looper.getMainLooper() );
+        m_ChangeNotificationPending = new AtomicBoolean( false );
+        m_ChangeNotifier = new ChangeNotifier();
+        new Thread( new WorkdayRestorer(), "WorkdayRestorer" ).start();
+
+        /*
+         * Keep the task limits, their alarm and the active task notification up to date from the moment the Workday
+         * is ready. The limits are updated first, so that every screen sees the limits of the Workday it shows.
+         */
+        m_LimitAlerter = new LimitAlerter( this );
+        whenWorkdayReady( m_LimitAlerter );
+        addWorkdayChangeListener( m_LimitAlerter );
+        m_WorkdayNotifier = new WorkdayNotifier( this );
+        whenWorkdayReady( m_WorkdayNotifier );
+        addWorkdayChangeListener( m_WorkdayNotifier );
 
         /* TODO: 4/18/2017 Read preference data from appropriate location on startup */
         m_TaskTileRefreshRateMs = REFRESH_RATE_100_MS;
+
+        m_StartupTrace.onApplicationCreated();
+    }
+
+    /**
+     * Called when the system asks the application to release memory. Once none of the application's screens is
+     * visible, the pending changes to the Workday are committed, in case the application is not brought back to the
+     * foreground before its process is killed; this happens in the background.
+     *
+     * @param level The context in which memory is being trimmed.
+     */
+    @Override
+    public void onTrimMemory( int level )
+    {
+        super.onTrimMemory( level );
+
+        if( level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN )
+        {
+            saveWorkday();
+        }
     }
 
     /**
@@ -68,62 +147,342 @@ public class TeamLeadApplication extends Application
     }
 
     /**
-     * Retrieves the user workday data model.
+     * Retrieves the writer of the user workday data model, through which it is changed and read. If the Workday is
+     * still being restored, this waits until it has been, so on the UI thread it must only be called once the Workday
+     * is ready: from a callback given to whenWorkdayReady(), or once isWorkdayReady() is true.
+     *
+     * @return The writer of the user workday.
+     */
+    WorkdayWriter getWorkdayWriter()
+    {
+        boolean interrupted = false;
+
+        while( true )
+        {
+            try
+            {
+                m_WorkdayRestored.await();
+                break;
+            }
+            catch( InterruptedException interrupted_exception )
+            {
+                interrupted = true;
+            }
+        }
+
+        if( interrupted )
+        {
+            /* Preserve the interrupt for the caller */
+            Thread.currentThread().interrupt();
+        }
+
+        return( m_WorkdayWriter );
+    }
+
+    /**
+     * Checks whether the user workday data model has been restored and the UI thread has been told so. Must be
+     * called on the UI thread.
+     *
+     * @return True if getWorkdayWriter() will return without waiting.
+     */
+    boolean isWorkdayReady()
+    {
+        return( m_WorkdayReady );
+    }
+
+    /**
+     * Runs the callback on the UI thread once the user workday data model is ready; immediately, if it already is.
+     * Must be called on the UI thread.
+     *
+     * @param callback The callback to run.
+     */
+    void whenWorkdayReady( Runnable callback )
+    {
+        if( m_WorkdayReady )
+        {
+            callback.run();
+        }
+        else
+        {
+            m_WorkdayReadyCallbacks.add( callback );
+        }
+    }
+
+    /**
+     * Removes a callback added by whenWorkdayReady() that has not run yet, such as when its activity is destroyed.
+     * Must be called on the UI thread.
+     *
+     * @param callback The callback to remove.
+     */
+    void cancelWorkdayReady( Runnable callback )
+    {
+        m_WorkdayReadyCallbacks.remove( callback );
+    }
+
+    /**
+     * Tells the listener on the UI thread whenever the writer publishes changes to the user workday. Must be called on
+     * the UI thread.
+     *
+     * @param listener The listener to tell.
+     */
+    void addWorkdayChangeListener( WorkdayChangeListener listener )
+    {
+        m_WorkdayChangeListeners.add( listener );
+    }
+
+    /**
+     * Stops telling a listener added by addWorkdayChangeListener(). Must be called on the UI thread.
      *
-     * @return The user workday object.
+     * @param listener The listener to remove.
      */
-    public synchronized Workday getWorkdayModel()
+    void removeWorkdayChangeListener( WorkdayChangeListener listener )
     {
-        return( m_UserWorkday );
+        m_WorkdayChangeListeners.remove( listener );
     }
 
     /**
-     * Saves the application's current Workday model to persistent storage.
+     * Returns the task that most recently crossed its time limit, as of the changes told to the listeners.
      *
-     * @throws IOException If the saving of the Workday to persistent storage fails.
+     * @return The ID of the task, or Task.NO_TASK_ID if no task has crossed its limit.
      */
-    public synchronized void saveWorkday() throws IOException
+    int getLimitCrossedTaskId()
     {
-        /* TODO: debug this feature */
-         //m_FileManager.saveWorkday( m_UserWorkday, false );
+        return( m_WorkdayChanges.getLimitCrossedTaskId() );
+    }
+
+    /**
+     * Returns the alerter of the task time limits, through which the tiles read which tasks are over their limits.
+     *
+     * @return The limit alerter.
+     */
+    LimitAlerter getLimitAlerter()
+    {
+        return( m_LimitAlerter );
+    }
+
+    /**
+     * Returns the timing of the application's cold start.
+     *
+     * @return The startup trace.
+     */
+    StartupTrace getStartupTrace()
+    {
+        return( m_StartupTrace );
+    }
+
+    /**
+     * Saves the application's current Workday model to persistent storage, once every change submitted so far has
+     * been applied. The save runs on the writer's thread, so this returns at once. Nothing is saved while the
+     * Workday is still being restored, since it cannot have changed yet.
+     */
+    public void saveWorkday()
+    {
+        if( m_WorkdayWriter != null )
+        {
+            m_WorkdayWriter.post( new WorkdaySaver( false ) );
+        }
+    }
+
+    /**
+     * Adds the application's completed Workday model to the archive of completed Workdays, once every change
+     * submitted so far has been applied. The Workday is archived on the writer's thread, so this returns at once.
+     */
+    public void archiveWorkday()
+    {
+        getWorkdayWriter().post( new WorkdaySaver( true ) );
+    }
+
+    /**
+     * Starts to export the application's Workday model to a file, in the background. Must only be called once the
+     * Workday is ready, since the published snapshot of its writer is exported.
+     *
+     * @param format The format of the export file.
+     * @param listener Receives the progress and outcome of the export, on a background thread.
+     * @return The export, through which it can be cancelled.
+     * @throws IOException If the export file cannot be created.
+     */
+    WorkdayExporter.Export exportWorkday( WorkdayExporter.Format format,
+                                          WorkdayExporter.ExportListener listener ) throws IOException
+    {
+        return( m_FileManager.exportWorkday( getWorkdayWriter(), format, listener ) );
+    }
+
+    /**
+     * Constructs an empty Workday, with the special task labels of the current locale, that is timed by the device's
+     * elapsed realtime.
+     *
+     * @param c The associated application context.
+     * @return The new Workday.
+     */
+    static Workday createWorkday( Context c )
+    {
+        return( new Workday( c.getString( R.string.add_task_label ), c.getString( R.string.end_workday_label ),
+                             new ElapsedRealtimeClock( c ) ) );
     }
 
     /**
      * Initialize the Workday data model. If the application was stopped/killed before the user properly "ended"
-     * the workday, the application will attempt to recover the content from a file saved to the system.
+     * the workday, the application will attempt to recover the content from the files saved to the system.
+     *
+     * @return The restored Workday, or a new one if none was preserved or it could not be restored.
      */
-    private void initializeWorkday()
+    private Workday initializeWorkday()
     {
+        Workday userWorkday = createWorkday( this );
+        long recordsReplayed = 0;
+
+        m_StartupTrace.onRestoreStarted();
+
         try
         {
-            /* Check to see if there is a Workday model saved to the filesystem */
-            if( m_FileManager.preservedWorkdayExists() == true )
+            /* Load the preserved Workday's snapshot and replay the short journal after it, if there is one */
+            recordsReplayed = m_FileManager.restoreWorkday( userWorkday );
+
+            /* An iteration interrupted by a device restart cannot be timed, so conclude it */
+            userWorkday.endIterationFromPreviousBoot();
+
+            Log.d( "Info", "WORKDAY RESTORED FROM " + recordsReplayed + " JOURNAL RECORDS" );
+        }
+        catch( IOException io_exception )
+        {
+            /* A problem occurred and the data could not be loaded; start over with a new Workday */
+            // TODO: 4/23/2017 Log appropriately
+            m_FileManager.deletePreservedWorkday();
+            userWorkday = createWorkday( this );
+
+            try
             {
-                /* There is a saved active Workday record - restore it */
-                m_UserWorkday = m_FileManager.loadWorkday( null, false );
+                m_FileManager.restoreWorkday( userWorkday );
+                Log.d( "Info", "CREATED A NEW WORKDAY" );
+            }
+            catch( IOException journal_exception )
+            {
+                /* The Workday can still be used, but it will not survive the process */
+                Log.d( "Info", "COULD NOT OPEN WORKDAY JOURNAL" );
+            }
+        }
+
+        m_StartupTrace.onRestoreFinished( recordsReplayed );
+
+        return( userWorkday );
+    }
+
+    /**
+     * Private class that restores the Workday on a background thread, hands it to the writer, which owns it from then
+     * on, and tells the UI thread that it is ready.
+     */
+    private class WorkdayRestorer implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            m_UserWorkday = initializeWorkday();
+            m_UserWorkday.addListener( m_WorkdayChanges );
+            m_WorkdayWriter = new WorkdayWriter( m_UserWorkday, Executors.newSingleThreadExecutor(),
+                                                 new ChangePublisher() );
+            m_WorkdayRestored.countDown();
 
-                /* Now, delete the file; it will be written again later if necessary */
-                m_FileManager.deletePreservedWorkday();
-                Log.d( "Info", "WORKDAY FILE LOADED SUCCESSFULLY" );
+            m_MainHandler.post( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ArrayList<Runnable> callbacks = m_WorkdayReadyCallbacks;
+
+                    m_WorkdayReady = true;
+                    m_WorkdayReadyCallbacks = new ArrayList<>();
+
+                    for( Runnable callback : callbacks )
+                    {
+                        callback.run();
+                    }
+                }
+            } );
+        }
+    }
+
+    /**
+     * Private class that schedules the commit of each batch of changes applied by the writer, and hands the changes
+     * it made, now that they have been published, to the UI thread. A notification is only posted if the previous one
+     * has already run, so a burst of batches wakes the UI thread once. A change that could not be applied is logged.
+     */
+    private class ChangePublisher implements WorkdayWriter.BatchListener
+    {
+        @Override
+        public void onBatchApplied( WorkdaySnapshot snapshot, int commands )
+        {
+            m_FileManager.onWorkdayChanged();
+
+            if( m_WorkdayChanges.publish() && m_ChangeNotificationPending.compareAndSet( false, true ) )
+            {
+                m_MainHandler.post( m_ChangeNotifier );
             }
-            else
+        }
+
+        @Override
+        public void onCommandFailed( RuntimeException exception )
+        {
+            Log.d( "Info", "COULD NOT APPLY WORKDAY CHANGE" );
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Private class that tells the Workday change listeners, on the UI thread, of the changes published since it last
+     * ran.
+     */
+    private class ChangeNotifier implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            /* Cleared first, so that a batch published while the listeners run is reported again */
+            m_ChangeNotificationPending.set( false );
+
+            int changes = m_WorkdayChanges.takeChanges();
+
+            if( changes != 0 )
             {
-                /* Nothing to load, so create a new Workday */
-                m_UserWorkday = new Workday( this );
-                Log.d( "Info", "CREATED A NEW WORKDAY" );
+                for( int index = 0; index < m_WorkdayChangeListeners.size(); index++ )
+                {
+                    m_WorkdayChangeListeners.get( index ).onWorkdayChanged( changes );
+                }
             }
         }
-        catch( ClassNotFoundException cnf_exception )
+    }
+
+    /**
+     * Private class that preserves or archives the Workday on the writer's thread. A failure cannot be reported to
+     * whoever asked for it, who has moved on, so it is logged.
+     */
+    private class WorkdaySaver implements WorkdayWriter.WorkdayAction
+    {
+        /* Private member fields */
+        private boolean m_Completed;                         /* Archive the Workday, rather than preserve it */
+
+        /**
+         * Constructs the saver.
+         *
+         * @param completed True to archive the completed Workday, false to preserve the Workday in progress.
+         */
+        WorkdaySaver( boolean completed )
         {
-            /* A problem occurred and the data could not be loaded */
-            // TODO: 4/23/2017 Log appropriately
-            m_FileManager.deletePreservedWorkday();
+            m_Completed = completed;
         }
-        catch( IOException io_exception )
+
+        @Override
+        public void run( Workday workday )
         {
-            /* A problem occurred and the data could not be loaded */
-            // TODO: 4/23/2017 Log appropriately
-            m_FileManager.deletePreservedWorkday();
+            try
+            {
+                m_FileManager.saveWorkday( workday, m_Completed );
+            }
+            catch( IOException io_exception )
+            {
+                // TODO: 4/23/2017 Log appropriately
+                Log.d( "Info", m_Completed ? "COULD NOT ARCHIVE WORKDAY" : "COULD NOT SAVE WORKDAY" );
+                io_exception.printStackTrace();
+            }
         }
     }
 }
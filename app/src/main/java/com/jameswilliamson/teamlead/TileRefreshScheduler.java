@@ -0,0 +1,97 @@
+/**
+ * TileRefreshScheduler.java
+ *
+ * Schedules refreshes of the task tiles on the main thread, timed to the moments at which the runtime displayed for
+ * the active task rolls over to its next second. Nothing is scheduled while no task is active, since no tile can
+ * change, or while the scheduler is stopped, so the device is not woken while the tiles are not visible. Each tick
+ * reuses the scheduler itself as the posted callback, so no objects are allocated per tick.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.os.Handler;
+import android.os.Looper;
+
+
+class TileRefreshScheduler implements Runnable
+{
+    /* Private member fields */
+    private Handler m_Handler;                             /* Posts the ticks to the main thread */
+    private WorkdayWriter m_Writer;                        /* Publishes the Workday whose active task is displayed */
+    private Runnable m_RefreshTask;                        /* Refreshes the tiles; run on each tick */
+    private long m_IntervalMs;                             /* Displayed runtime between ticks; a multiple of 1 s */
+    private boolean m_Started;                             /* Whether ticks are currently being scheduled */
+
+    /**
+     * Constructs the scheduler, which is initially stopped.
+     *
+     * @param writer The writer of the Workday whose active task is displayed.
+     * @param refreshTask Refreshes the tiles; it is run on the main thread on each tick.
+     */
+    TileRefreshScheduler( WorkdayWriter writer, Runnable refreshTask )
+    {
+        m_Handler = new Handler( Looper.getMainLooper() );
+        m_Writer = writer;
+        m_RefreshTask = refreshTask;
+        m_IntervalMs = Workday.MS_PER_SEC;
+        m_Started = false;
+    }
+
+    /**
+     * Starts scheduling ticks, such as when the tiles become visible. The displayed runtime only changes once per
+     * second, so the refresh rate is rounded down to a whole number of seconds, and is at least one second.
+     *
+     * @param refreshRateMs The preferred time between refreshes, in milliseconds.
+     */
+    void start( int refreshRateMs )
+    {
+        m_IntervalMs = Math.max( Workday.MS_PER_SEC, ( refreshRateMs / Workday.MS_PER_SEC ) * Workday.MS_PER_SEC );
+        m_Started = true;
+
+        reschedule();
+    }
+
+    /**
+     * Stops scheduling ticks, such as when the tiles are no longer visible. A pending tick is cancelled.
+     */
+    void stop()
+    {
+        m_Started = false;
+        m_Handler.removeCallbacks( this );
+    }
+
+    /**
+     * Realigns the next tick with the active task. Must be called whenever a change that may have changed the active
+     * task, such as a context switch or a reset, is published.
+     */
+    void reschedule()
+    {
+        WorkdaySnapshot workday = m_Writer.getPublishedSnapshot();
+        int activeTaskId = workday.getActiveTaskId();
+
+        m_Handler.removeCallbacks( this );
+
+        if( m_Started && ( activeTaskId != Task.NO_TASK_ID ) )
+        {
+            /* The displayed runtime next rolls over once the part of a second already shown has elapsed */
+            long activeRuntimeMs = workday.getTotalTaskRuntimeMs( activeTaskId, m_Writer.getTimeMs() );
+            long msIntoSecond = activeRuntimeMs % Workday.MS_PER_SEC;
+
+            m_Handler.postDelayed( this, m_IntervalMs - msIntoSecond );
+        }
+    }
+
+    /**
+     * Refreshes the tiles and schedules the next tick.
+     */
+    @Override
+    public void run()
+    {
+        m_RefreshTask.run();
+        reschedule();
+    }
+}
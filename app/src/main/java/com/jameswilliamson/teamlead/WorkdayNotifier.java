@@ -0,0 +1,196 @@
+/**
+ * WorkdayNotifier.java
+ *
+ * Shows the active task in an ongoing notification, with the task's runtime counted by the system's chronometer, and
+ * action buttons that switch to the most-used other tasks without opening the application. The chronometer's base is
+ * set from the runtime of the task's concluded iterations and the start of its active iteration, so the system keeps
+ * the time ticking on its own: the notification is only rebuilt when the active task, or the tasks offered by its
+ * buttons, change, and the application is never woken to update it.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.content.Intent;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+
+import java.util.Arrays;
+
+
+final class WorkdayNotifier implements Runnable, TeamLeadApplication.WorkdayChangeListener
+{
+    /* Private constants */
+    private static final int NOTIFICATION_ID = 1;          /* Identifies the ongoing notification */
+    private static final int MAX_SWITCH_ACTIONS = 3;       /* Switch buttons; a notification shows at most three */
+    private static final int CONTENT_REQUEST_CODE = -1;    /* Request code of the intent that opens the application */
+
+    /* Private member fields */
+    private TeamLeadApplication m_Application;             /* The application, which publishes the Workday */
+    private NotificationManagerCompat m_NotificationManager; /* Posts and cancels the notification */
+    private int m_ShownTaskId;                             /* The task shown by the notification, if any */
+    private long m_ShownStartTimestampMs;                  /* The start of the shown task's active iteration */
+    private int[] m_ShownActionTaskIds;                    /* The tasks offered by the notification's buttons */
+
+    /**
+     * Constructs the notifier. Nothing is shown until it is first run.
+     *
+     * @param application The application, which publishes the Workday.
+     */
+    WorkdayNotifier( TeamLeadApplication application )
+    {
+        m_Application = application;
+        m_NotificationManager = NotificationManagerCompat.from( application );
+        m_ShownTaskId = Task.NO_TASK_ID;
+        m_ShownStartTimestampMs = 0;
+        m_ShownActionTaskIds = new int[0];
+    }
+
+    /**
+     * Brings the notification up to date after a change to the Workday. The notification does not show time limits,
+     * so the crossing of one alone leaves it as it is.
+     *
+     * @param changes The kinds of change made to the Workday.
+     */
+    @Override
+    public void onWorkdayChanged( int changes )
+    {
+        if( ( changes & ~WorkdayChanges.LIMIT_CROSSED ) != 0 )
+        {
+            run();
+        }
+    }
+
+    /**
+     * Brings the notification up to date with the published Workday. Must be run on the UI thread, once the Workday
+     * is ready and whenever it changes; if neither the active iteration nor the offered tasks have changed, nothing
+     * is done.
+     */
+    @Override
+    public void run()
+    {
+        WorkdayWriter writer = m_Application.getWorkdayWriter();
+        WorkdaySnapshot workday = writer.getPublishedSnapshot();
+        long timeMs = writer.getTimeMs();
+        int activeTaskId = workday.getActiveTaskId();
+
+        if( activeTaskId == Task.NO_TASK_ID )
+        {
+            if( m_ShownTaskId != Task.NO_TASK_ID )
+            {
+                m_NotificationManager.cancel( NOTIFICATION_ID );
+                m_ShownTaskId = Task.NO_TASK_ID;
+                m_ShownActionTaskIds = new int[0];
+            }
+        }
+        else
+        {
+            int[] actionTaskIds = getMostUsedTaskIds( workday, activeTaskId );
+
+            if( ( activeTaskId != m_ShownTaskId ) ||
+                ( workday.getActiveStartTimestampMs() != m_ShownStartTimestampMs ) ||
+                ( Arrays.equals( actionTaskIds, m_ShownActionTaskIds ) == false ) )
+            {
+                m_NotificationManager.notify( NOTIFICATION_ID, buildNotification( workday, actionTaskIds, timeMs ) );
+                m_ShownTaskId = activeTaskId;
+                m_ShownStartTimestampMs = workday.getActiveStartTimestampMs();
+                m_ShownActionTaskIds = actionTaskIds;
+            }
+        }
+    }
+
+    /**
+     * Builds the notification of the active task.
+     *
+     * @param workday The published Workday, which has an active task.
+     * @param actionTaskIds The tasks to offer on the switch buttons.
+     * @param timeMs The current time of the Workday's clock.
+     * @return The notification.
+     */
+    private Notification buildNotification( WorkdaySnapshot workday, int[] actionTaskIds, long timeMs )
+    {
+        int activeTaskId = workday.getActiveTaskId();
+
+        /*
+         * The chronometer counts up from the wall-clock time at which the task would have started had it run
+         * without a break: the start of its active iteration, less the runtime of its concluded iterations.
+         */
+        long activeRuntimeMs = timeMs - workday.getActiveStartTimestampMs();
+        long baseMs = System.currentTimeMillis() - activeRuntimeMs - workday.getTaskRuntimeMs( activeTaskId );
+
+        Intent contentIntent = new Intent( m_Application, ContextSwitchActivity.class );
+        contentIntent.setFlags( Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP );
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder( m_Application )
+                .setSmallIcon( R.mipmap.ic_launcher )
+                .setContentTitle( workday.getTaskName( activeTaskId ) )
+                .setContentText( m_Application.getString( R.string.notification_active_task_text ) )
+                .setContentIntent( PendingIntent.getActivity( m_Application, CONTENT_REQUEST_CODE, contentIntent,
+                                                              PendingIntent.FLAG_UPDATE_CURRENT ) )
+                .setColor( workday.getTaskColor( activeTaskId ) )
+                .setCategory( NotificationCompat.CATEGORY_STATUS )
+                .setPriority( NotificationCompat.PRIORITY_LOW )
+                .setOngoing( true )
+                .setOnlyAlertOnce( true )
+                .setShowWhen( true )
+                .setUsesChronometer( true )
+                .setWhen( baseMs );
+
+        for( int taskId : actionTaskIds )
+        {
+            builder.addAction( 0, workday.getTaskName( taskId ),
+                               TaskSwitchReceiver.createSwitchIntent( m_Application, taskId ) );
+        }
+
+        return( builder.build() );
+    }
+
+    /**
+     * Returns the user tasks, other than the active one, with the most runtime so far, most-used first. None of them
+     * is active, so their runtime is that of their concluded iterations.
+     *
+     * @param workday The published Workday.
+     * @param activeTaskId The ID of the active task.
+     * @return The IDs of up to MAX_SWITCH_ACTIONS tasks.
+     */
+    private static int[] getMostUsedTaskIds( WorkdaySnapshot workday, int activeTaskId )
+    {
+        int[] taskIds = new int[Math.min( MAX_SWITCH_ACTIONS, workday.getNumberOfUserTasks() )];
+        int count = 0;
+
+        for( int taskIndex = 0; taskIndex < workday.getNumberOfUserTasks(); taskIndex++ )
+        {
+            int taskId = workday.getUserTaskId( taskIndex );
+
+            if( taskId != activeTaskId )
+            {
+                long runtimeMs = workday.getTaskRuntimeMs( taskId );
+                int position = count;
+
+                /* Insert into the short list, which is kept ordered by runtime; ties keep display order */
+                while( ( position > 0 ) && ( workday.getTaskRuntimeMs( taskIds[position - 1] ) < runtimeMs ) )
+                {
+                    if( position < taskIds.length )
+                    {
+                        taskIds[position] = taskIds[position - 1];
+                    }
+
+                    position--;
+                }
+
+                if( position < taskIds.length )
+                {
+                    taskIds[position] = taskId;
+                    count = Math.min( count + 1, taskIds.length );
+                }
+            }
+        }
+
+        return( Arrays.copyOf( taskIds, count ) );
+    }
+}
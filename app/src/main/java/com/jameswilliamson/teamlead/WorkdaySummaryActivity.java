@@ -2,7 +2,10 @@
  * WorkdaySummaryActivity.java
  *
  * Presents a summary of the user's workday, typically in the form of a graph. What is actually displayed by this
- * activity may depend on user preferences.
+ * activity may depend on user preferences. The summary stays up to date while it is shown, but is only updated when
+ * one of the displayed percentages changes, or a change to the Workday is published, rather than on every refresh of
+ * the task grid. The Workday can also be exported from here, in the background, with its progress shown in a dialog
+ * from which it can be cancelled.
  *
  * @author James Williamson
  *
@@ -12,15 +15,31 @@
 package com.jameswilliamson.teamlead;
 
 import android.app.Fragment;
+import android.app.ProgressDialog;
+import android.content.DialogInterface;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.IOException;
 
 public class WorkdaySummaryActivity extends AppCompatActivity
 {
+    /* Private member fields */
+    private WorkdayExporter.Export m_Export;                 /* The export in progress, if any */
+    private ProgressDialog m_ExportDialog;                   /* Shows the progress of the export */
+    private Runnable m_ExportEnabler;                        /* Enables the export items once the Workday is ready */
+
     /**
      * Called when the activity is created - initialization for the activity is performed here.
      *
@@ -43,6 +62,234 @@ public class WorkdaySummaryActivity extends AppCompatActivity
         /* Display the fragment as the main content */
         getFragmentManager().beginTransaction().replace( R.id.workday_summary_content,
                 new WorkdaySummaryFragment() ).commit();
+
+        /* The Workday can only be exported once it is ready; the UI thread never waits for it */
+        m_ExportEnabler = new ExportEnabler();
+        ( (TeamLeadApplication)getApplication() ).whenWorkdayReady( m_ExportEnabler );
+    }
+
+    /**
+     * Called when the activity is destroyed. An export in progress is cancelled, since nothing would show its outcome.
+     */
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+
+        ( (TeamLeadApplication)getApplication() ).cancelWorkdayReady( m_ExportEnabler );
+
+        if( m_Export != null )
+        {
+            m_Export.cancel();
+            m_Export = null;
+        }
+
+        if( m_ExportDialog != null )
+        {
+            m_ExportDialog.dismiss();
+            m_ExportDialog = null;
+        }
+    }
+
+    /**
+     * Initialize the contents of the activity's standard options menu.
+     *
+     * @param menu The options menu in which items are placed.
+     * @return True for the menu to be displayed, false otherwise.
+     */
+    @Override
+    public boolean onCreateOptionsMenu( Menu menu )
+    {
+        /* Inflate the menu from the resources file that includes the menu entries */
+        MenuInflater inflater = getMenuInflater();
+        inflater.inflate( R.menu.workday_summary_toolbar_menu, menu );
+
+        return( true );
+    }
+
+    /**
+     * Prepares the options menu to be displayed. The export items are disabled until the Workday is ready.
+     *
+     * @param menu The options menu as last shown or first initialized.
+     * @return True for the menu to be displayed, false otherwise.
+     */
+    @Override
+    public boolean onPrepareOptionsMenu( Menu menu )
+    {
+        boolean workdayReady = ( (TeamLeadApplication)getApplication() ).isWorkdayReady();
+
+        menu.findItem( R.id.export_csv ).setEnabled( workdayReady );
+        menu.findItem( R.id.export_json ).setEnabled( workdayReady );
+
+        return( super.onPrepareOptionsMenu( menu ) );
+    }
+
+    /**
+     * Called whenever an item in the options menu is selected.
+     *
+     * @param item The menu item that was selected.
+     * @return False to allow normal menu processing to proceed, true to consume it here.
+     */
+    @Override
+    public boolean onOptionsItemSelected( MenuItem item )
+    {
+        boolean itemHandled = true;
+
+        switch( item.getItemId() )
+        {
+            case R.id.export_csv:
+                startExport( WorkdayExporter.Format.CSV );
+                break;
+
+            case R.id.export_json:
+                startExport( WorkdayExporter.Format.JSON );
+                break;
+
+            default:
+                itemHandled = super.onOptionsItemSelected( item );
+                break;
+        }
+
+        return( itemHandled );
+    }
+
+    /**
+     * Starts to export the Workday in the background and shows its progress, unless an export is already running.
+     *
+     * @param format The format of the export file.
+     */
+    private void startExport( WorkdayExporter.Format format )
+    {
+        if( m_Export != null )
+        {
+            return;
+        }
+
+        /* The dialog exists before the export starts, so that its first progress report has somewhere to go */
+        m_ExportDialog = new ProgressDialog( this );
+        m_ExportDialog.setTitle( R.string.export_dialog_title );
+        m_ExportDialog.setProgressStyle( ProgressDialog.STYLE_HORIZONTAL );
+        m_ExportDialog.setCancelable( false );
+        m_ExportDialog.setButton( DialogInterface.BUTTON_NEGATIVE, getString( R.string.cancel_button_label ),
+                                  new CancelExportListener() );
+
+        try
+        {
+            m_Export = ( (TeamLeadApplication)getApplication() ).exportWorkday( format, new ExportProgressListener() );
+            m_ExportDialog.setMax( m_Export.getTotalEntries() );
+            m_ExportDialog.show();
+        }
+        catch( IOException io_exception )
+        {
+            onExportEnded( getString( R.string.export_failed_msg ) );
+        }
+    }
+
+    /**
+     * Dismisses the export dialog and tells the user how the export ended.
+     *
+     * @param message The outcome of the export.
+     */
+    private void onExportEnded( String message )
+    {
+        if( m_ExportDialog != null )
+        {
+            m_ExportDialog.dismiss();
+            m_ExportDialog = null;
+        }
+
+        m_Export = null;
+        Toast.makeText( this, message, Toast.LENGTH_LONG ).show();
+    }
+
+    /**
+     * Private class that enables the export items once the Workday has been restored. Runs on the UI thread,
+     * immediately when the activity is created if the Workday is already ready.
+     */
+    private class ExportEnabler implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            invalidateOptionsMenu();
+        }
+    }
+
+    /**
+     * Private class for cancelling the export when the user presses the dialog's cancel button.
+     */
+    private class CancelExportListener implements DialogInterface.OnClickListener
+    {
+        @Override
+        public void onClick( DialogInterface dialog, int which )
+        {
+            if( m_Export != null )
+            {
+                /* The dialog stays until the export reports that it stopped */
+                m_Export.cancel();
+            }
+        }
+    }
+
+    /**
+     * Private class that receives the progress and outcome of the export on the background thread, and passes them
+     * to the UI thread. Reports that arrive after the activity has been destroyed are ignored.
+     */
+    private class ExportProgressListener implements WorkdayExporter.ExportListener
+    {
+        @Override
+        public void onExportProgress( final int entriesWritten, int totalEntries )
+        {
+            runOnUiThread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if( m_ExportDialog != null )
+                    {
+                        m_ExportDialog.setProgress( entriesWritten );
+                    }
+                }
+            } );
+        }
+
+        @Override
+        public void onExportFinished( File file )
+        {
+            reportOutcome( getString( R.string.export_finished_msg, file.getAbsolutePath() ) );
+        }
+
+        @Override
+        public void onExportCancelled()
+        {
+            reportOutcome( getString( R.string.export_cancelled_msg ) );
+        }
+
+        @Override
+        public void onExportFailed( IOException error )
+        {
+            reportOutcome( getString( R.string.export_failed_msg ) );
+        }
+
+        /**
+         * Reports the outcome of the export on the UI thread.
+         *
+         * @param message The outcome of the export.
+         */
+        private void reportOutcome( final String message )
+        {
+            runOnUiThread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if( !isDestroyed() )
+                    {
+                        onExportEnded( message );
+                    }
+                }
+            } );
+        }
     }
 
     /**
@@ -50,6 +297,17 @@ public class WorkdaySummaryActivity extends AppCompatActivity
      */
     public static class WorkdaySummaryFragment extends Fragment
     {
+        /* Private constants */
+        private static final int PCT_DECIMALS = 2;           /* Decimal places of the percentages on the chart */
+
+        /* Private member fields */
+        private WorkdayWriter m_WorkdayWriter;               /* Publishes the model of the user's workday */
+        private PieChart m_Chart;                            /* Shows the share of the workday spent on each task */
+        private WorkdayShares m_Shares;                      /* The shares as currently shown on the chart */
+        private Handler m_Handler;                           /* Schedules updates on the UI thread */
+        private SummaryUpdater m_SummaryUpdater;             /* Updates the chart when a displayed share changes */
+        private Runnable m_WorkdayBinder;                    /* Starts the updates once the Workday is ready */
+
         /**
          * Called to do initial creation of the fragment.
          *
@@ -59,6 +317,10 @@ public class WorkdaySummaryActivity extends AppCompatActivity
         public void onCreate( Bundle savedInstanceState )
         {
             super.onCreate( savedInstanceState );
+
+            m_Handler = new Handler( Looper.getMainLooper() );
+            m_SummaryUpdater = new SummaryUpdater();
+            m_WorkdayBinder = new WorkdayBinder();
         }
 
         /**
@@ -75,20 +337,115 @@ public class WorkdaySummaryActivity extends AppCompatActivity
         @Override
         public View onCreateView( LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState )
         {
-            /* Create a new PieChart to be shown to the user */
-            PieChart chart = new PieChart( getActivity() );
-            Workday userWorkday = ( (TeamLeadApplication)getActivity().getApplication() ).getWorkdayModel();
+            /* Create a new PieChart to be shown to the user; its entries are added once the Workday is ready */
+            m_Chart = new PieChart( getActivity() );
+
+            /* A new chart has no entries, so the next update must add them all */
+            m_Shares = new WorkdayShares( PCT_DECIMALS );
+
+            return( m_Chart );
+        }
+
+        /**
+         * Called when the fragment is visible to the user and actively running. The tasks may have changed while the
+         * summary was not shown, so the chart is brought up to date before the live updates resume. The chart is
+         * also updated whenever a change to the Workday is published, such as the end of the workday. While the
+         * Workday is still being restored, the chart stays empty until it is ready.
+         */
+        @Override
+        public void onResume()
+        {
+            super.onResume();
+
+            ( (TeamLeadApplication)getActivity().getApplication() ).whenWorkdayReady( m_WorkdayBinder );
+        }
+
+        /**
+         * Called when the fragment is no longer resumed. The chart is not updated while it cannot be seen.
+         */
+        @Override
+        public void onPause()
+        {
+            super.onPause();
+
+            ( (TeamLeadApplication)getActivity().getApplication() ).cancelWorkdayReady( m_WorkdayBinder );
+            ( (TeamLeadApplication)getActivity().getApplication() ).removeWorkdayChangeListener( m_SummaryUpdater );
+            m_Handler.removeCallbacks( m_SummaryUpdater );
+        }
 
-            /* For each entry, paint a segment that is sized using the task runtime */
-            for( int index = 0; index < userWorkday.getNumberOfUserTasks(); index++ )
+        /**
+         * Private class that starts the live updates of the chart once the Workday is ready. Runs on the UI thread,
+         * immediately when the fragment is resumed if the Workday is already ready.
+         */
+        private class WorkdayBinder implements Runnable
+        {
+            @Override
+            public void run()
             {
-                String taskName = userWorkday.getTaskName( index );
-                double percentage = userWorkday.getTaskPercentage( index );
+                TeamLeadApplication application = (TeamLeadApplication)getActivity().getApplication();
+
+                m_WorkdayWriter = application.getWorkdayWriter();
+                application.addWorkdayChangeListener( m_SummaryUpdater );
+                m_SummaryUpdater.run();
+            }
+        }
 
-                chart.addEntry( new PieChartEntry( taskName, (float)percentage, index ) );
+        /**
+         * Private class that brings the chart up to date with the workday, then schedules itself for the moment at
+         * which the next displayed share will change.
+         */
+        private class SummaryUpdater implements Runnable, TeamLeadApplication.WorkdayChangeListener
+        {
+            @Override
+            public void onWorkdayChanged( int changes )
+            {
+                /* The shares do not depend on the time limits */
+                if( ( changes & ~WorkdayChanges.LIMIT_CROSSED ) != 0 )
+                {
+                    run();
+                }
             }
 
-            return( chart );
+            @Override
+            public void run()
+            {
+                WorkdaySnapshot workday = m_WorkdayWriter.getPublishedSnapshot();
+                long timeMs = m_WorkdayWriter.getTimeMs();
+
+                m_Handler.removeCallbacks( this );
+
+                if( m_Shares.update( workday, timeMs ) )
+                {
+                    /* Tasks were added or deleted, so rebuild the chart; paint a segment sized using each runtime */
+                    m_Chart.clearEntries();
+
+                    for( int index = 0; index < m_Shares.getNumberOfTasks(); index++ )
+                    {
+                        int taskId = workday.getUserTaskId( index );
+
+                        m_Chart.addEntry( new PieChartEntry( workday.getTaskName( taskId ),
+                                                             (float)m_Shares.getPercentage( index ), taskId ) );
+                    }
+                }
+                else if( m_Shares.getNumberOfChanges() > 0 )
+                {
+                    /* Only some shares changed, so only their legend entries are reformatted */
+                    for( int change = 0; change < m_Shares.getNumberOfChanges(); change++ )
+                    {
+                        int index = m_Shares.getChangedIndex( change );
+                        m_Chart.setEntryPercentage( index, (float)m_Shares.getPercentage( index ) );
+                    }
+
+                    m_Chart.animateEntries();
+                }
+
+                long untilNextChangeMs = m_Shares.getMsUntilNextChange( workday, timeMs );
+
+                if( untilNextChangeMs != WorkdayShares.NEVER )
+                {
+                    m_Handler.postDelayed( this, untilNextChangeMs );
+                }
+            }
         }
     }
 }
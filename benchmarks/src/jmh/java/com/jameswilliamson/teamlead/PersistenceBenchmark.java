@@ -0,0 +1,270 @@
+/**
+ * PersistenceBenchmark.java
+ *
+ * Benchmarks of preserving and archiving Workdays with task logs of varying size: a context switch recorded to the
+ * journal, capturing and encoding a snapshot, decoding one, restoring the preserved Workday at start-up, and loading
+ * an archived Workday. FileManager needs an Android Context, so its save and load paths are measured through the
+ * WorkdayStore and WorkdayArchive it delegates to.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class PersistenceBenchmark
+{
+    /* Private constants */
+    private static final int NUM_TASKS = 8;                /* The number of user tasks in each Workday */
+    private static final long SWITCH_INTERVAL_MS = 1000;   /* Time spent on each task iteration */
+    private static final String STORE_NAME = "TL_Workday_Active"; /* Name that every file of a store starts with */
+
+    /* Benchmark parameters */
+    @Param( { "100", "10000", "100000" } )
+    public int m_LogSize;                                  /* The number of iterations in the task log */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;                          /* Times every Workday, advanced before each switch */
+    private File m_Directory;                              /* Holds every file written by the benchmark */
+    private Executor m_Executor;                           /* Writes snapshots on the calling thread */
+    private Workday m_Workday;                             /* A Workday with a log of the configured size */
+    private ByteBuffer m_EncodedSnapshot;                  /* The encoded snapshot of that Workday */
+    private WorkdayArchive m_Archive;                      /* An archive holding that Workday */
+    private WorkdayArchive.Entry m_ArchivedWorkday;        /* The archived Workday */
+    private File m_PreservedDirectory;                     /* A store preserving a Workday of the configured size */
+    private WorkdayStore m_LiveStore;                      /* Preserves the Workday switched by the benchmark */
+    private Workday m_LiveWorkday;                         /* The Workday switched by the benchmark */
+    private int m_NextTaskIndex;                           /* The task to switch to next */
+
+    /**
+     * Creates the Workday, its snapshot, an archive holding it, and the preserved and live stores.
+     *
+     * @throws IOException If the files cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        m_Clock = new VirtualClock( 0 );
+        m_Directory = File.createTempFile( "teamlead", "bench" );
+
+        if( !m_Directory.delete() || !m_Directory.mkdir() )
+        {
+            throw new IOException( "Cannot create " + m_Directory );
+        }
+
+        /* Snapshots are written synchronously, so that their cost is included in the measurements */
+        m_Executor = new Executor()
+        {
+            @Override
+            public void execute( Runnable command )
+            {
+                command.run();
+            }
+        };
+
+        m_Workday = createWorkday();
+        fillTaskLog( m_Workday, m_LogSize );
+        m_EncodedSnapshot = m_Workday.captureSnapshot( 0 ).encode();
+
+        m_Archive = new WorkdayArchive( new File( m_Directory, "archive" ), "TL_Workday_", "TL_Workday_Index" );
+        m_ArchivedWorkday = m_Archive.archive( m_Workday, 20170423 );
+
+        /* Preserve a Workday the way the app does: every change is journaled as it is made */
+        m_PreservedDirectory = new File( m_Directory, "preserved" );
+        WorkdayStore preservedStore = createStore( m_PreservedDirectory );
+        Workday preservedWorkday = createWorkday();
+        preservedStore.restore( preservedWorkday );
+        fillTaskLog( preservedWorkday, m_LogSize );
+        preservedStore.sync();
+        preservedStore.close();
+
+        m_LiveStore = createStore( new File( m_Directory, "live" ) );
+        m_LiveWorkday = createWorkday();
+        m_LiveStore.restore( m_LiveWorkday );
+        fillTaskLog( m_LiveWorkday, m_LogSize );
+        m_NextTaskIndex = 0;
+    }
+
+    /**
+     * Closes the stores and the archive and deletes every file written.
+     *
+     * @throws IOException If the archive cannot be closed.
+     */
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        m_LiveStore.close();
+        m_Archive.close();
+        deleteRecursively( m_Directory );
+    }
+
+    /**
+     * Switches the live Workday to the next task, recording the switch to the journal. The journal is compacted
+     * into a snapshot whenever it reaches the compaction threshold, and the Workday is reset whenever its log
+     * reaches twice the configured size, so that the cost of both is spread over the switches measured.
+     *
+     * @return The result of the switch.
+     */
+    @Benchmark
+    public ErrorCode journaledContextSwitch()
+    {
+        if( m_LiveWorkday.getTaskLogSize() >= ( m_LogSize * 2 ) )
+        {
+            m_LiveWorkday.resetWorkday();
+        }
+
+        m_NextTaskIndex = ( m_NextTaskIndex + 1 ) % NUM_TASKS;
+        m_Clock.advance( SWITCH_INTERVAL_MS );
+
+        return( m_LiveWorkday.contextSwitch( m_NextTaskIndex ) );
+    }
+
+    /**
+     * Captures and encodes a snapshot of the Workday, as compaction and archiving do.
+     *
+     * @return The encoded snapshot.
+     */
+    @Benchmark
+    public ByteBuffer captureAndEncodeSnapshot()
+    {
+        return( m_Workday.captureSnapshot( 0 ).encode() );
+    }
+
+    /**
+     * Decodes and verifies an encoded snapshot.
+     *
+     * @return The decoded snapshot.
+     * @throws IOException If the snapshot is corrupt.
+     */
+    @Benchmark
+    public WorkdaySnapshot decodeSnapshot() throws IOException
+    {
+        return( WorkdaySnapshot.decode( m_EncodedSnapshot.duplicate() ) );
+    }
+
+    /**
+     * Restores the preserved Workday, as the app does at start-up.
+     *
+     * @return The restored Workday.
+     * @throws IOException If the preserved Workday cannot be read.
+     */
+    @Benchmark
+    public Workday restorePreservedWorkday() throws IOException
+    {
+        WorkdayStore store = createStore( m_PreservedDirectory );
+        Workday workday = createWorkday();
+
+        store.restore( workday );
+        store.close();
+
+        return( workday );
+    }
+
+    /**
+     * Loads the archived Workday, as the summary of a past day does.
+     *
+     * @return The loaded Workday.
+     * @throws IOException If the archived Workday cannot be read.
+     */
+    @Benchmark
+    public Workday loadArchivedWorkday() throws IOException
+    {
+        Workday workday = createWorkday();
+
+        workday.restoreSnapshot( m_Archive.load( m_ArchivedWorkday ) );
+
+        return( workday );
+    }
+
+    /**
+     * Creates an empty Workday.
+     *
+     * @return The Workday.
+     */
+    private Workday createWorkday()
+    {
+        return( new Workday( "Add", "End", m_Clock ) );
+    }
+
+    /**
+     * Creates a store in the given directory, which writes its snapshots synchronously. The directory is created if
+     * it does not exist.
+     *
+     * @param directory The directory holding the files of the store.
+     * @return The store.
+     */
+    private WorkdayStore createStore( File directory )
+    {
+        directory.mkdirs();
+
+        return( new WorkdayStore( directory, STORE_NAME, m_Executor, WorkdayStore.DEFAULT_COMPACTION_THRESHOLD ) );
+    }
+
+    /**
+     * Adds the benchmark's tasks to a Workday and switches between them until its log holds the given number of
+     * iterations.
+     *
+     * @param workday The empty Workday.
+     * @param logSize The number of iterations to log.
+     */
+    private void fillTaskLog( Workday workday, int logSize )
+    {
+        for( int task = 0; task < NUM_TASKS; task++ )
+        {
+            workday.addTask( new Task( "Task" + task ) );
+        }
+
+        for( int switches = 0; switches < logSize; switches++ )
+        {
+            m_Clock.advance( SWITCH_INTERVAL_MS );
+            workday.contextSwitch( switches % NUM_TASKS );
+        }
+    }
+
+    /**
+     * Deletes a file, or a directory and everything in it.
+     *
+     * @param file The file or directory.
+     */
+    private static void deleteRecursively( File file )
+    {
+        File[] children = file.listFiles();
+
+        if( children != null )
+        {
+            for( File child : children )
+            {
+                deleteRecursively( child );
+            }
+        }
+
+        file.delete();
+    }
+}
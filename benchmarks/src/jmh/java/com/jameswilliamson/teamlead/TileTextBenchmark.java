@@ -0,0 +1,117 @@
+/**
+ * TileTextBenchmark.java
+ *
+ * Benchmarks of runtime formatting and of building the text of a task tile. formatMs is what a TaskTileView does when
+ * its runtime changes; buildTileText is how a Button tile's text was built in a reused buffer; the String variants are
+ * the way tile text was first built, and are kept as a baseline for the throughput and allocation rate.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class TileTextBenchmark
+{
+    /* Private constants */
+    private static final char[] TILE_SEPARATOR = { '\n', '\n' }; /* As used by Button tiles */
+    private static final String TASK_NAME = "Meeting";     /* The name shown on the tile */
+    private static final long RUNTIME_STEP_MS = 1000;      /* Runtime added between refreshes, as the timer does */
+
+    /* Private member fields */
+    private char[] m_TileText;                             /* The tile's reused text buffer */
+    private long m_RuntimeMs;                              /* The runtime shown on the tile */
+
+    /**
+     * Allocates the tile buffer once, as a tile does when it is created.
+     */
+    @Setup
+    public void setUp()
+    {
+        m_TileText = new char[TASK_NAME.length() + TILE_SEPARATOR.length + RuntimeFormatter.MAX_FORMATTED_LENGTH];
+        m_RuntimeMs = 3723000;
+    }
+
+    /**
+     * Formats a runtime into a new String.
+     *
+     * @return The formatted runtime.
+     */
+    @Benchmark
+    public String convertMsToFormattedTimeString()
+    {
+        m_RuntimeMs += RUNTIME_STEP_MS;
+
+        return( Workday.convertMsToFormattedTimeString( m_RuntimeMs ) );
+    }
+
+    /**
+     * Formats a runtime into the reused buffer.
+     *
+     * @param blackhole Consumes the formatted length and the buffer.
+     */
+    @Benchmark
+    public void formatMs( Blackhole blackhole )
+    {
+        m_RuntimeMs += RUNTIME_STEP_MS;
+
+        blackhole.consume( RuntimeFormatter.formatMs( m_RuntimeMs, m_TileText, 0 ) );
+        blackhole.consume( m_TileText );
+    }
+
+    /**
+     * Builds the tile text in the reused buffer, as TaskButtonAdapter did for Button tiles.
+     *
+     * @param blackhole Consumes the text length and the buffer.
+     */
+    @Benchmark
+    public void buildTileText( Blackhole blackhole )
+    {
+        int length = TASK_NAME.length();
+
+        m_RuntimeMs += RUNTIME_STEP_MS;
+
+        TASK_NAME.getChars( 0, length, m_TileText, 0 );
+        System.arraycopy( TILE_SEPARATOR, 0, m_TileText, length, TILE_SEPARATOR.length );
+        length += TILE_SEPARATOR.length;
+        length += RuntimeFormatter.formatMs( m_RuntimeMs, m_TileText, length );
+
+        blackhole.consume( length );
+        blackhole.consume( m_TileText );
+    }
+
+    /**
+     * Builds the tile text by String concatenation.
+     *
+     * @return The tile text.
+     */
+    @Benchmark
+    public String buildTileTextString()
+    {
+        m_RuntimeMs += RUNTIME_STEP_MS;
+
+        return( TASK_NAME + "\n\n" + Workday.convertMsToFormattedTimeString( m_RuntimeMs ) );
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * WorkdayBenchmark.java
+ *
+ * Benchmarks of the in-memory Workday model: recording a context switch, and querying the share of the day spent on
+ * every task, as the summary screen does, for Workdays with a varying number of tasks.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class WorkdayBenchmark
+{
+    /* Private constants */
+    private static final int MAX_LOG_SIZE = 1 << 20;       /* Log size at which the Workday is reset */
+    private static final int SWITCHES_PER_TASK = 50;       /* Context switches made to each task during set-up */
+    private static final long SWITCH_INTERVAL_MS = 1000;   /* Time spent on each task iteration */
+
+    /* Benchmark parameters */
+    @Param( { "4", "16", "64" } )
+    public int m_TaskCount;                                /* The number of user tasks in the Workday */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;                          /* Advanced before each switch */
+    private Workday m_Workday;                             /* The Workday being measured */
+    private int m_NextTaskIndex;                           /* The task to switch to next */
+
+    /**
+     * Creates a Workday with the configured number of tasks, each of which has been switched to several times.
+     */
+    @Setup
+    public void setUp()
+    {
+        m_Clock = new VirtualClock( 0 );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+
+        for( int task = 0; task < m_TaskCount; task++ )
+        {
+            m_Workday.addTask( new Task( "Task" + task ) );
+        }
+
+        for( int switches = 0; switches < ( m_TaskCount * SWITCHES_PER_TASK ); switches++ )
+        {
+            m_Clock.advance( SWITCH_INTERVAL_MS );
+            m_Workday.contextSwitch( switches % m_TaskCount );
+        }
+
+        m_NextTaskIndex = 0;
+    }
+
+    /**
+     * Switches to the next task in turn. The Workday is reset now and then so that the log does not grow without
+     * bound over a long run.
+     *
+     * @return The result of the switch.
+     */
+    @Benchmark
+    public ErrorCode contextSwitch()
+    {
+        if( m_Workday.getTaskLogSize() >= MAX_LOG_SIZE )
+        {
+            m_Workday.resetWorkday();
+        }
+
+        m_NextTaskIndex = ( m_NextTaskIndex + 1 ) % m_TaskCount;
+        m_Clock.advance( SWITCH_INTERVAL_MS );
+
+        return( m_Workday.contextSwitch( m_NextTaskIndex ) );
+    }
+
+    /**
+     * Queries the share of the day spent on every task, as the summary screen does when it is drawn.
+     *
+     * @param blackhole Consumes the percentages.
+     */
+    @Benchmark
+    public void getTaskPercentage( Blackhole blackhole )
+    {
+        for( int taskIndex = 0; taskIndex < m_TaskCount; taskIndex++ )
+        {
+            blackhole.consume( m_Workday.getTaskPercentage( taskIndex ) );
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Clock.java
+ *
+ * Source of monotonic timestamps used by the Workday model to measure time spent on tasks. A clock counts from some
+ * event, such as the boot of the device; its time base identifies that event, so that timestamps taken before the
+ * clock restarted are not compared with those taken after.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+
+interface Clock
+{
+    /**
+     * Returns the current time of the clock. The value is only meaningful relative to other values returned by the
+     * same clock, and must never decrease.
+     *
+     * @return The current timestamp, in milliseconds.
+     */
+    long getTimeMs();
+
+    /**
+     * Returns the identity of the clock's time base. Timestamps can only be compared with others taken in the same
+     * time base; a clock that restarts, such as one that counts from boot, moves to a new time base when it does.
+     *
+     * @return The time base.
+     */
+    long getTimeBase();
+}
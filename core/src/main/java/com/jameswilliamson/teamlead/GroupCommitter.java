@@ -0,0 +1,308 @@
+/**
+ * GroupCommitter.java
+ *
+ * Commits the changes journaled by a WorkdayStore in groups, on a background thread, so that the thread that changes
+ * the Workday never waits for the storage device. Once changes are pending, a commit is scheduled for when the oldest
+ * of them has waited the maximum delay, or at once if the maximum number of records is pending; each commit writes
+ * the whole group with one write and, if the committer forces its commits, one flush to the device. flush() commits
+ * whatever is pending straight away, for when the application goes to the background.
+ *
+ * The delay, the group size and whether commits are forced set the durability of the journal: a process death loses
+ * at most the changes of the last delay, and a device power loss may also lose those written but not forced. A delay
+ * of zero commits every batch of changes as soon as it is journaled.
+ *
+ * The committer keeps metrics of its commits: how many records each group held, and how long the oldest record of
+ * each group waited before it was committed (its commit latency).
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+
+final class GroupCommitter
+{
+    /* Package-private constants */
+    static final long DEFAULT_MAX_DELAY_MS = 500;          /* Longest that a journaled change waits to be committed */
+    static final int DEFAULT_MAX_RECORDS = 64;             /* Pending records that are committed without waiting */
+
+    /* Private constants */
+    private static final long NS_PER_MS = 1000000;
+
+    /* Private member fields */
+    private final WorkdayStore m_Store;                    /* The store whose journaled changes are committed */
+    private final ScheduledExecutorService m_Executor;     /* Runs the commits, one at a time */
+    private final long m_MaxDelayNs;                       /* Longest that a journaled change waits to be committed */
+    private final int m_MaxRecords;                        /* Pending records that are committed without waiting */
+    private final boolean m_Force;                         /* Each commit is forced to the storage device */
+    private final Runnable m_Committer;                    /* Commits the pending group */
+    private final Object m_Lock;                           /* Guards every field below */
+    private ScheduledFuture<?> m_ScheduledCommit;          /* The next commit, if one is scheduled */
+    private long m_ScheduledCommitNs;                      /* When the next commit is due */
+    private boolean m_Pending;                             /* Changes were journaled since the last commit started */
+    private long m_OldestPendingNs;                        /* When the oldest of those changes was handed over */
+    private IOException m_Error;                           /* The first failure to commit, if any */
+    private long m_Commits;                                /* The number of groups committed */
+    private long m_CommittedRecords;                       /* The number of records in those groups */
+    private int m_MaxGroupRecords;                         /* The number of records in the largest group */
+    private long m_TotalLatencyNs;                         /* The sum of the groups' commit latencies */
+    private long m_MaxLatencyNs;                           /* The longest commit latency of a group */
+    private long m_TotalCommitNs;                          /* The time spent writing and flushing groups */
+
+    /**
+     * Constructs the committer.
+     *
+     * @param store The store whose journaled changes are committed.
+     * @param executor Runs the commits; it must run them one at a time, and should not be shared with the Workday.
+     * @param maxDelayMs The longest that a journaled change waits to be committed, or zero to commit each batch of
+     *                   changes at once.
+     * @param maxRecords The number of pending records that are committed without waiting for the delay.
+     * @param force True to force each commit to the storage device, false to leave it to the operating system.
+     */
+    GroupCommitter( WorkdayStore store, ScheduledExecutorService executor, long maxDelayMs, int maxRecords,
+                    boolean force )
+    {
+        m_Store = store;
+        m_Executor = executor;
+        m_MaxDelayNs = maxDelayMs * NS_PER_MS;
+        m_MaxRecords = maxRecords;
+        m_Force = force;
+        m_Committer = new Committer();
+        m_Lock = new Object();
+        m_ScheduledCommit = null;
+        m_ScheduledCommitNs = 0;
+        m_Pending = false;
+        m_OldestPendingNs = 0;
+        m_Error = null;
+        m_Commits = 0;
+        m_CommittedRecords = 0;
+        m_MaxGroupRecords = 0;
+        m_TotalLatencyNs = 0;
+        m_MaxLatencyNs = 0;
+        m_TotalCommitNs = 0;
+    }
+
+    /**
+     * Tells the committer that changes may have been journaled, and schedules their commit. Must be called on the
+     * thread that owns the Workday, after each batch of changes; it never waits for the storage device.
+     */
+    void onRecordsJournaled()
+    {
+        int pendingRecords = m_Store.getPendingRecordCount();
+
+        if( pendingRecords > 0 )
+        {
+            synchronized( m_Lock )
+            {
+                long nowNs = System.nanoTime();
+
+                if( m_Pending == false )
+                {
+                    m_Pending = true;
+                    m_OldestPendingNs = nowNs;
+                }
+
+                if( pendingRecords >= m_MaxRecords )
+                {
+                    scheduleCommit( nowNs, 0 );
+                }
+                else
+                {
+                    scheduleCommit( nowNs, m_MaxDelayNs - ( nowNs - m_OldestPendingNs ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Commits every change journaled so far straight away, on the committer's thread. May be called on any thread;
+     * it does not wait for the commit.
+     *
+     * @throws IOException If an earlier commit failed, in which case nothing more is committed.
+     */
+    void flush() throws IOException
+    {
+        synchronized( m_Lock )
+        {
+            if( m_Error != null )
+            {
+                throw m_Error;
+            }
+
+            scheduleCommit( System.nanoTime(), 0 );
+        }
+    }
+
+    /**
+     * Returns the number of groups committed.
+     *
+     * @return The number of commits.
+     */
+    long getCommitCount()
+    {
+        synchronized( m_Lock )
+        {
+            return( m_Commits );
+        }
+    }
+
+    /**
+     * Returns the number of records committed.
+     *
+     * @return The number of records.
+     */
+    long getCommittedRecordCount()
+    {
+        synchronized( m_Lock )
+        {
+            return( m_CommittedRecords );
+        }
+    }
+
+    /**
+     * Returns the average number of records in a committed group.
+     *
+     * @return The average group size, or zero if nothing has been committed.
+     */
+    double getAverageGroupSize()
+    {
+        synchronized( m_Lock )
+        {
+            return( ( m_Commits > 0 ) ? ( (double)m_CommittedRecords / m_Commits ) : 0 );
+        }
+    }
+
+    /**
+     * Returns the number of records in the largest committed group.
+     *
+     * @return The largest group size.
+     */
+    int getMaxGroupSize()
+    {
+        synchronized( m_Lock )
+        {
+            return( m_MaxGroupRecords );
+        }
+    }
+
+    /**
+     * Returns the average time from a group's oldest change being journaled to the group being committed.
+     *
+     * @return The average commit latency, in milliseconds, or zero if nothing has been committed.
+     */
+    double getAverageLatencyMs()
+    {
+        synchronized( m_Lock )
+        {
+            return( ( m_Commits > 0 ) ? ( (double)m_TotalLatencyNs / m_Commits / NS_PER_MS ) : 0 );
+        }
+    }
+
+    /**
+     * Returns the longest time from a group's oldest change being journaled to the group being committed.
+     *
+     * @return The longest commit latency, in milliseconds.
+     */
+    double getMaxLatencyMs()
+    {
+        synchronized( m_Lock )
+        {
+            return( (double)m_MaxLatencyNs / NS_PER_MS );
+        }
+    }
+
+    /**
+     * Returns the average time taken to write, and if forced flush, a group.
+     *
+     * @return The average time of a commit, in milliseconds, or zero if nothing has been committed.
+     */
+    double getAverageCommitMs()
+    {
+        synchronized( m_Lock )
+        {
+            return( ( m_Commits > 0 ) ? ( (double)m_TotalCommitNs / m_Commits / NS_PER_MS ) : 0 );
+        }
+    }
+
+    /**
+     * Schedules a commit after the given delay, unless one is already due by then. Must be called with the lock held.
+     *
+     * @param nowNs The current time, from System.nanoTime().
+     * @param delayNs The delay before the commit, in nanoseconds; a negative delay is treated as zero.
+     */
+    private void scheduleCommit( long nowNs, long delayNs )
+    {
+        long dueNs = nowNs + Math.max( delayNs, 0 );
+
+        if( ( m_Error == null ) && ( ( m_ScheduledCommit == null ) || ( dueNs - m_ScheduledCommitNs < 0 ) ) )
+        {
+            if( m_ScheduledCommit != null )
+            {
+                m_ScheduledCommit.cancel( false );
+            }
+
+            m_ScheduledCommit = m_Executor.schedule( m_Committer, dueNs - nowNs, TimeUnit.NANOSECONDS );
+            m_ScheduledCommitNs = dueNs;
+        }
+    }
+
+    /**
+     * Commits the pending group, and records its size and latency. A failure is kept and reported by the next call
+     * to flush(); no further commits are scheduled after it.
+     */
+    private class Committer implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            long oldestPendingNs;
+            long startNs;
+            int records;
+
+            synchronized( m_Lock )
+            {
+                /* Changes journaled from now on belong to the next group, and schedule its commit */
+                startNs = System.nanoTime();
+                oldestPendingNs = m_Pending ? m_OldestPendingNs : startNs;
+                m_Pending = false;
+                m_ScheduledCommit = null;
+            }
+
+            try
+            {
+                records = m_Store.commit( m_Force );
+            }
+            catch( IOException io_exception )
+            {
+                synchronized( m_Lock )
+                {
+                    m_Error = io_exception;
+                }
+
+                return;
+            }
+
+            long committedNs = System.nanoTime();
+
+            if( records > 0 )
+            {
+                synchronized( m_Lock )
+                {
+                    m_Commits++;
+                    m_CommittedRecords += records;
+                    m_MaxGroupRecords = Math.max( m_MaxGroupRecords, records );
+                    m_TotalLatencyNs += committedNs - oldestPendingNs;
+                    m_MaxLatencyNs = Math.max( m_MaxLatencyNs, committedNs - oldestPendingNs );
+                    m_TotalCommitNs += committedNs - startNs;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * RuntimeFormatter.java
+ *
+ * Formats task runtimes in "hh:mm:ss" form directly into caller-supplied character buffers. This is used on the UI
+ * refresh path, which runs many times per second, so no objects are allocated while formatting.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+
+final class RuntimeFormatter
+{
+    /* Public constants */
+    static final int MAX_FORMATTED_LENGTH = 25;    /* Longest possible output ("hhhh...:mm:ss" for any long) */
+
+    /* Private constants */
+    private static final char[] DIGIT_TENS = new char[100];   /* Tens digit of each value 0-99 */
+    private static final char[] DIGIT_ONES = new char[100];   /* Ones digit of each value 0-99 */
+
+    static
+    {
+        /* Precompute the two-digit table so that each time component can be written with two array lookups */
+        for( int value = 0; value < 100; value++ )
+        {
+            DIGIT_TENS[value] = (char)( '0' + ( value / 10 ) );
+            DIGIT_ONES[value] = (char)( '0' + ( value % 10 ) );
+        }
+    }
+
+    /**
+     * Not instantiable; all functionality is provided through static methods.
+     */
+    private RuntimeFormatter()
+    {
+    }
+
+    /**
+     * Writes the "hh:mm:ss" representation of the given millisecond value into the buffer. Hours are written with at
+     * least two digits, and more if required. Negative values are treated as zero.
+     *
+     * @param milliseconds A time value in milliseconds.
+     * @param buffer The buffer that receives the characters.
+     * @param offset The position in the buffer at which to start writing.
+     * @return The number of characters written.
+     */
+    static int formatMs( long milliseconds, char[] buffer, int offset )
+    {
+        int position = offset;
+
+        if( milliseconds < 0 )
+        {
+            milliseconds = 0;
+        }
+
+        /* Convert total millisecond value to hours, minutes, and seconds */
+        long totalSeconds = ( milliseconds / Workday.MS_PER_SEC );
+        long totalMinutes = ( totalSeconds / Workday.SECS_PER_MIN );
+        long hours = ( totalMinutes / Workday.MINS_PER_HOUR );
+
+        /* Adjust for remainder so that hh:mm:ss reported to user is cohesive */
+        int seconds = (int)( totalSeconds % Workday.SECS_PER_MIN );
+        int minutes = (int)( totalMinutes % Workday.MINS_PER_HOUR );
+
+        if( hours < 100 )
+        {
+            buffer[position++] = DIGIT_TENS[(int)hours];
+            buffer[position++] = DIGIT_ONES[(int)hours];
+        }
+        else
+        {
+            position += writeLong( hours, buffer, position );
+        }
+
+        buffer[position++] = ':';
+        buffer[position++] = DIGIT_TENS[minutes];
+        buffer[position++] = DIGIT_ONES[minutes];
+        buffer[position++] = ':';
+        buffer[position++] = DIGIT_TENS[seconds];
+        buffer[position++] = DIGIT_ONES[seconds];
+
+        return( position - offset );
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative value into the buffer.
+     *
+     * @param value The value to write.
+     * @param buffer The buffer that receives the characters.
+     * @param offset The position in the buffer at which to start writing.
+     * @return The number of characters written.
+     */
+    private static int writeLong( long value, char[] buffer, int offset )
+    {
+        int digits = 1;
+
+        for( long remaining = value / 10; remaining != 0; remaining /= 10 )
+        {
+            digits++;
+        }
+
+        /* Fill the digits from least to most significant */
+        for( int position = offset + digits - 1; position >= offset; position-- )
+        {
+            buffer[position] = (char)( '0' + ( value % 10 ) );
+            value /= 10;
+        }
+
+        return( digits );
+    }
+}
@@ -10,21 +10,21 @@
 
 package com.jameswilliamson.teamlead;
 
-import android.support.annotation.ColorInt;
-
 class Task
 {
     /* Private constants */
-    @ColorInt private final int NO_COLOR = 0xFF000000; /* No color; opaque black */
+    private final int NO_COLOR = 0xFF000000;           /* No color; opaque black */
 
     /* Public constants */
     static final int TASK_NAME_CHARS_MAX = 8;          /* The maximum allowable length of a task name */
+    static final int NO_TASK_ID = -1;                  /* ID of a task that has not been added to a Workday */
 
     /* Private member fields */
+    private int m_TaskId;                              /* Stable ID assigned when the task joins a Workday */
     private String m_TaskName;                         /* The name of the task */
     private boolean m_TaskActive;                      /* Marks whether or not this task is currently active */
     private long m_TotalTaskRuntimeMs;                 /* Total time spent on all previous iterations of the task */
-    @ColorInt private int m_TaskColor;                 /* The color code assigned to the task for display on the UI */
+    private int m_TaskColor;                           /* The ARGB color assigned to the task for display on the UI */
     private long m_TaskTimeLimitMs;                    /* A user-defined limit on time to spend on the task */
 
     /**
@@ -34,6 +34,7 @@ class Task
      */
     Task( String taskName )
     {
+        m_TaskId = NO_TASK_ID;
         m_TaskName = taskName;
         m_TaskActive = false;
         m_TotalTaskRuntimeMs = 0;
@@ -41,6 +42,27 @@ class Task
         m_TaskTimeLimitMs = 0;
     }
 
+    /**
+     * Assigns the task its stable ID. This is done by the Workday when the task is registered, and the ID is never
+     * reused for another task within that Workday.
+     *
+     * @param taskId The ID of the task.
+     */
+    void setTaskId( int taskId )
+    {
+        m_TaskId = taskId;
+    }
+
+    /**
+     * Returns the stable ID of the task.
+     *
+     * @return The ID of the task, or NO_TASK_ID if the task has not been added to a Workday.
+     */
+    int getTaskId()
+    {
+        return( m_TaskId );
+    }
+
     /**
      * Sets a new name for the task.
      *
@@ -212,7 +234,8 @@ class Task
     }
 
     /**
-     * Returns the hash code of the Task object.
+     * Returns the hash code of the Task object. Since tasks are compared by name without regard to case, the hash
+     * is computed over the case-folded characters of the name so that it remains consistent with equals().
      *
      * @return A hash code value for this object.
      */
@@ -221,8 +244,12 @@ class Task
     {
         int result = 716;
 
-        /* Factor in task's name (the string hash code) */
-        result = 37 * result + m_TaskName.hashCode();
+        /* Factor in task's name, folding each character the same way that String.equalsIgnoreCase() does */
+        for( int index = 0; index < m_TaskName.length(); index++ )
+        {
+            char c = m_TaskName.charAt( index );
+            result = 37 * result + Character.toLowerCase( Character.toUpperCase( c ) );
+        }
 
         return( result );
     }
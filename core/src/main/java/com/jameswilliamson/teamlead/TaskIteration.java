@@ -0,0 +1,116 @@
+/**
+ * TaskIteration.java
+ *
+ * Models a single iteration of a task, which tracks the amount of time a specific activity is performed. A task
+ * may have many iterations performed over the course of a workday, which may be contiguous or scattered.
+ *
+ * Iterations are recorded in the Workday's columnar task log; TaskIteration objects are read-only views of a log
+ * entry, created on demand for the parts of the UI that need them.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+
+class TaskIteration
+{
+    /* Private member fields */
+    private Task m_Task;                           /* The associated task; this is an iteration of this task */
+    private Clock m_Clock;                         /* The clock used to measure the iteration */
+    private long m_StartTimestampMs;               /* A timestamp captured when the user switches to this task */
+    private long m_IterationRuntimeMs;             /* The total runtime of this iteration, when concluded */
+    private boolean m_Active;                      /* Marks whether or not this iteration is currently active */
+
+    /**
+     * Constructs the TaskIteration view.
+     *
+     * @param task The task to which this iteration applies.
+     * @param clock The clock used to measure the iteration.
+     * @param startTimestampMs The clock timestamp at which the iteration started.
+     * @param iterationRuntimeMs The runtime of the iteration, if it has been concluded.
+     * @param active True if the iteration is still in progress, false otherwise.
+     */
+    TaskIteration( Task task, Clock clock, long startTimestampMs, long iterationRuntimeMs, boolean active )
+    {
+        m_Task = task;
+        m_Clock = clock;
+        m_StartTimestampMs = startTimestampMs;
+        m_IterationRuntimeMs = iterationRuntimeMs;
+        m_Active = active;
+    }
+
+    /**
+     * Get the task associated with this iteration.
+     *
+     * @return The associated task.
+     */
+    public Task getTask()
+    {
+        return( m_Task );
+    }
+
+    /**
+     * Get the ID of the task associated with this iteration.
+     *
+     * @return The ID of the associated task.
+     */
+    int getTaskId()
+    {
+        return( m_Task.getTaskId() );
+    }
+
+    /**
+     * Returns the timestamp captured when the iteration started.
+     *
+     * @return The clock timestamp at which the iteration started, in milliseconds.
+     */
+    long getStartTimestampMs()
+    {
+        return( m_StartTimestampMs );
+    }
+
+    /**
+     * Returns whether or not the iteration is still in progress.
+     *
+     * @return True if the iteration is active, false otherwise.
+     */
+    boolean isActive()
+    {
+        return( m_Active );
+    }
+
+    /**
+     * Returns the runtime of the current iteration of the task.
+     *
+     * @return The current task runtime in milliseconds.
+     */
+    long getRuntimeMs()
+    {
+        long currentRuntimeMs;
+
+        if( m_Active )
+        {
+            /* Get the time spent on the task since the start of the current iteration */
+            currentRuntimeMs = ( m_Clock.getTimeMs() - m_StartTimestampMs );
+        }
+        else
+        {
+            currentRuntimeMs = m_IterationRuntimeMs;
+        }
+
+        return( currentRuntimeMs );
+    }
+
+    /**
+     * Returns the string representation of the task iteration.
+     *
+     * @return The task iteration's name and runtime.
+     */
+    @Override public String toString()
+    {
+        return( Workday.convertMsToFormattedTimeString( getRuntimeMs() ) + " (" + m_Task.getTaskName() + ")" );
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * TaskLimits.java
+ *
+ * Which tasks of the Workday are over their time limits, and the instant at which the next one will go over. Only the
+ * active task's runtime grows, so every other task's state is fixed until the Workday changes, and the active task
+ * crosses its limit at a moment that can be computed exactly when it becomes active. The limits are recomputed when
+ * the Workday changes and when that moment is reached, and looked up in between, which costs nothing as time passes.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+
+final class TaskLimits
+{
+    /* Public constants */
+    static final long NEVER = Long.MAX_VALUE;              /* No task will cross its limit while nothing is done */
+
+    /* Private member fields */
+    private boolean[] m_LimitExceeded;                     /* Whether each task is over its limit, by task ID */
+    private int m_DeadlineTaskId;                          /* The task that will cross its limit next, if any */
+    private long m_DeadlineMs;                             /* The clock time at which it will, or NEVER */
+
+    /**
+     * Constructs the limits of an empty Workday.
+     */
+    TaskLimits()
+    {
+        m_LimitExceeded = new boolean[0];
+        m_DeadlineTaskId = Task.NO_TASK_ID;
+        m_DeadlineMs = NEVER;
+    }
+
+    /**
+     * Recomputes which tasks are over their limits in a snapshot of the Workday at a point in time, and when the
+     * active task will cross its limit. Should be called whenever a new snapshot is published, and once the deadline
+     * has been reached.
+     *
+     * @param snapshot The latest published snapshot of the Workday.
+     * @param timeMs The clock time, which must not be earlier than the snapshot.
+     */
+    void update( WorkdaySnapshot snapshot, long timeMs )
+    {
+        int activeTaskId = snapshot.getActiveTaskId();
+
+        if( m_LimitExceeded.length != snapshot.getTaskIdCount() )
+        {
+            m_LimitExceeded = new boolean[snapshot.getTaskIdCount()];
+        }
+
+        for( int taskId = 0; taskId < m_LimitExceeded.length; taskId++ )
+        {
+            long taskTimeLimitMs = snapshot.getTaskTimeLimitMs( taskId );
+
+            m_LimitExceeded[taskId] = ( taskTimeLimitMs != 0 ) &&
+                                      ( snapshot.getTotalTaskRuntimeMs( taskId, timeMs ) > taskTimeLimitMs );
+        }
+
+        m_DeadlineTaskId = Task.NO_TASK_ID;
+        m_DeadlineMs = NEVER;
+
+        if( ( activeTaskId != Task.NO_TASK_ID ) && ( snapshot.getTaskTimeLimitMs( activeTaskId ) != 0 ) &&
+            ( m_LimitExceeded[activeTaskId] == false ) )
+        {
+            /* The first millisecond at which the task's runtime is over its limit */
+            m_DeadlineTaskId = activeTaskId;
+            m_DeadlineMs = snapshot.getActiveStartTimestampMs() + snapshot.getTaskTimeLimitMs( activeTaskId ) -
+                           snapshot.getTaskRuntimeMs( activeTaskId ) + 1;
+        }
+    }
+
+    /**
+     * Checks whether a task was over its time limit, as of the last update.
+     *
+     * @param taskId The ID of the task.
+     * @return True if the task has a time limit and its runtime was over it, false otherwise.
+     */
+    boolean isLimitExceeded( int taskId )
+    {
+        return( ( taskId >= 0 ) && ( taskId < m_LimitExceeded.length ) && m_LimitExceeded[taskId] );
+    }
+
+    /**
+     * Returns the task that will cross its limit next, as of the last update.
+     *
+     * @return The ID of the active task if it will cross its limit, or Task.NO_TASK_ID.
+     */
+    int getDeadlineTaskId()
+    {
+        return( m_DeadlineTaskId );
+    }
+
+    /**
+     * Returns the clock time at which the next task will cross its limit, as of the last update.
+     *
+     * @return The clock time, in milliseconds, or NEVER.
+     */
+    long getDeadlineMs()
+    {
+        return( m_DeadlineMs );
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * TaskLog.java
+ *
+ * Columnar record of the task iterations that make up a workday. Rather than keeping one object per iteration, the
+ * task ID, start timestamp and runtime of each iteration are stored in parallel primitive arrays that grow as
+ * needed. Entries are addressed by their position in the log, oldest first.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.util.Arrays;
+
+
+class TaskLog
+{
+    /* Private constants */
+    private static final int INITIAL_CAPACITY = 64;    /* The number of entries the log can hold before growing */
+
+    /* Private member fields */
+    private int[] m_TaskIds;                           /* The ID of the task performed in each iteration */
+    private long[] m_StartTimestampsMs;                /* The clock timestamp at which each iteration started */
+    private long[] m_RuntimesMs;                       /* The runtime of each iteration, once concluded */
+    private int m_Size;                                /* The number of entries in the log */
+
+    /**
+     * Constructs an empty task log.
+     */
+    TaskLog()
+    {
+        clear();
+    }
+
+    /**
+     * Constructs a task log from existing columns, which are adopted rather than copied.
+     *
+     * @param taskIds The ID of the task performed in each iteration.
+     * @param startTimestampsMs The clock timestamp at which each iteration started.
+     * @param runtimesMs The runtime of each iteration.
+     * @param size The number of entries in use at the start of each column.
+     */
+    TaskLog( int[] taskIds, long[] startTimestampsMs, long[] runtimesMs, int size )
+    {
+        m_TaskIds = taskIds;
+        m_StartTimestampsMs = startTimestampsMs;
+        m_RuntimesMs = runtimesMs;
+        m_Size = size;
+    }
+
+    /**
+     * Returns a read-only log of the first entries of this one, sharing its storage rather than copying it. Every
+     * entry except the newest is final once another entry has been appended after it, and clear() and growing the
+     * log both replace the storage instead of writing into it, so the returned log never changes as long as it does
+     * not include the newest entry while that iteration is still in progress.
+     *
+     * @param size The number of entries to include.
+     * @return The log of the first entries. It must not be modified.
+     */
+    TaskLog sharePrefix( int size )
+    {
+        return( new TaskLog( m_TaskIds, m_StartTimestampsMs, m_RuntimesMs, size ) );
+    }
+
+    /**
+     * Returns a copy of the log, trimmed to its size, which does not change when this log does.
+     *
+     * @return The copy of the log.
+     */
+    TaskLog copy()
+    {
+        return( new TaskLog( Arrays.copyOf( m_TaskIds, m_Size ), Arrays.copyOf( m_StartTimestampsMs, m_Size ),
+                             Arrays.copyOf( m_RuntimesMs, m_Size ), m_Size ) );
+    }
+
+    /**
+     * Appends a new iteration to the end of the log. Its runtime is zero until it is concluded.
+     *
+     * @param taskId The ID of the task performed.
+     * @param startTimestampMs The clock timestamp at which the iteration started.
+     * @return The position of the new entry.
+     */
+    int append( int taskId, long startTimestampMs )
+    {
+        if( m_Size == m_TaskIds.length )
+        {
+            grow();
+        }
+
+        m_TaskIds[m_Size] = taskId;
+        m_StartTimestampsMs[m_Size] = startTimestampMs;
+        m_RuntimesMs[m_Size] = 0;
+
+        return( m_Size++ );
+    }
+
+    /**
+     * Records the runtime of the iteration at the given position.
+     *
+     * @param index The position of the entry.
+     * @param runtimeMs The runtime of the iteration, in milliseconds.
+     */
+    void setRuntimeMs( int index, long runtimeMs )
+    {
+        m_RuntimesMs[index] = runtimeMs;
+    }
+
+    /**
+     * Returns the number of entries in the log.
+     *
+     * @return The number of entries in the log.
+     */
+    int size()
+    {
+        return( m_Size );
+    }
+
+    /**
+     * Returns the ID of the task performed in the iteration at the given position.
+     *
+     * @param index The position of the entry.
+     * @return The task ID.
+     */
+    int getTaskId( int index )
+    {
+        return( m_TaskIds[index] );
+    }
+
+    /**
+     * Returns the start timestamp of the iteration at the given position.
+     *
+     * @param index The position of the entry.
+     * @return The clock timestamp at which the iteration started, in milliseconds.
+     */
+    long getStartTimestampMs( int index )
+    {
+        return( m_StartTimestampsMs[index] );
+    }
+
+    /**
+     * Returns the recorded runtime of the iteration at the given position.
+     *
+     * @param index The position of the entry.
+     * @return The runtime of the iteration in milliseconds, or zero if it has not been concluded.
+     */
+    long getRuntimeMs( int index )
+    {
+        return( m_RuntimesMs[index] );
+    }
+
+    /**
+     * Removes all entries from the log and releases the storage they occupied.
+     */
+    void clear()
+    {
+        m_TaskIds = new int[INITIAL_CAPACITY];
+        m_StartTimestampsMs = new long[INITIAL_CAPACITY];
+        m_RuntimesMs = new long[INITIAL_CAPACITY];
+        m_Size = 0;
+    }
+
+    /**
+     * Doubles the capacity of each column.
+     */
+    private void grow()
+    {
+        int newCapacity = Math.max( INITIAL_CAPACITY, m_TaskIds.length << 1 );
+
+        m_TaskIds = Arrays.copyOf( m_TaskIds, newCapacity );
+        m_StartTimestampsMs = Arrays.copyOf( m_StartTimestampsMs, newCapacity );
+        m_RuntimesMs = Arrays.copyOf( m_RuntimesMs, newCapacity );
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * TaskRuntimes.java
+ *
+ * Immutable column of the concluded runtime of each task, indexed by task ID. The runtimes are held in fixed-size
+ * chunks, and an updated column shares every chunk in which no runtime changed, so publishing a context switch
+ * copies the chunk of the task that ended rather than the runtime of every task.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+
+final class TaskRuntimes
+{
+    /* Private constants */
+    private static final int CHUNK_SHIFT = 5;                  /* Each chunk holds 2^5 runtimes */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;    /* The number of runtimes in each chunk */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;      /* Selects the position of a task ID in its chunk */
+
+    /* Private member fields */
+    private final long[][] m_Chunks;                           /* The runtimes; chunks may be shared, never written */
+    private final int m_Size;                                  /* The number of task IDs in the column */
+
+    /**
+     * Constructs a column holding a copy of the given runtimes.
+     *
+     * @param runtimesMs The concluded runtime of each task, indexed by task ID.
+     */
+    TaskRuntimes( long[] runtimesMs )
+    {
+        m_Size = runtimesMs.length;
+        m_Chunks = new long[( m_Size + CHUNK_MASK ) >>> CHUNK_SHIFT][];
+
+        for( int chunkIndex = 0; chunkIndex < m_Chunks.length; chunkIndex++ )
+        {
+            int firstTaskId = chunkIndex << CHUNK_SHIFT;
+
+            m_Chunks[chunkIndex] = new long[CHUNK_SIZE];
+            System.arraycopy( runtimesMs, firstTaskId, m_Chunks[chunkIndex], 0,
+                              Math.min( CHUNK_SIZE, m_Size - firstTaskId ) );
+        }
+    }
+
+    /**
+     * Constructs a column from chunks, which it takes ownership of.
+     *
+     * @param chunks The chunks of the column.
+     * @param size The number of task IDs in the column.
+     */
+    private TaskRuntimes( long[][] chunks, int size )
+    {
+        m_Chunks = chunks;
+        m_Size = size;
+    }
+
+    /**
+     * Returns the number of task IDs in the column.
+     *
+     * @return The number of task IDs.
+     */
+    int size()
+    {
+        return( m_Size );
+    }
+
+    /**
+     * Returns the concluded runtime of the task with the given ID.
+     *
+     * @param taskId The ID of the task.
+     * @return The runtime of the task, in milliseconds.
+     */
+    long get( int taskId )
+    {
+        if( ( taskId < 0 ) || ( taskId >= m_Size ) )
+        {
+            throw new IndexOutOfBoundsException( "Task ID " + taskId + " is not in the column" );
+        }
+
+        return( m_Chunks[taskId >>> CHUNK_SHIFT][taskId & CHUNK_MASK] );
+    }
+
+    /**
+     * Returns a column in which the given tasks have new runtimes, and which shares the chunks of this one that hold
+     * none of them. This column is not changed.
+     *
+     * @param taskIds The IDs of the tasks whose runtimes changed; an ID may be listed more than once.
+     * @param runtimesMs The new runtime of each of those tasks, in the same order.
+     * @param count The number of tasks listed.
+     * @return The updated column.
+     */
+    TaskRuntimes update( int[] taskIds, long[] runtimesMs, int count )
+    {
+        long[][] chunks = m_Chunks.clone();
+
+        for( int index = 0; index < count; index++ )
+        {
+            int chunkIndex = taskIds[index] >>> CHUNK_SHIFT;
+
+            /* A chunk is copied the first time one of its runtimes changes, and is only written in the copy */
+            if( chunks[chunkIndex] == m_Chunks[chunkIndex] )
+            {
+                chunks[chunkIndex] = m_Chunks[chunkIndex].clone();
+            }
+
+            chunks[chunkIndex][taskIds[index] & CHUNK_MASK] = runtimesMs[index];
+        }
+
+        return( new TaskRuntimes( chunks, m_Size ) );
+    }
+}
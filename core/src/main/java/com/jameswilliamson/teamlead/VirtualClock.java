@@ -0,0 +1,79 @@
+/**
+ * VirtualClock.java
+ *
+ * Clock that only moves when it is advanced, for driving the Workday model outside of a device: local unit tests,
+ * benchmarks, and simulations that replay days or months of switching in a fraction of the time.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+
+class VirtualClock implements Clock
+{
+    /* Private member fields */
+    private long m_TimeMs;                                 /* The current time, in milliseconds */
+    private long m_TimeBase;                               /* Changed each time the clock is restarted */
+
+    /**
+     * Constructs the clock.
+     *
+     * @param startTimeMs The initial time of the clock, in milliseconds.
+     */
+    VirtualClock( long startTimeMs )
+    {
+        m_TimeMs = startTimeMs;
+        m_TimeBase = 1;
+    }
+
+    /**
+     * Returns the current time of the clock.
+     *
+     * @return The current time, in milliseconds.
+     */
+    @Override
+    public long getTimeMs()
+    {
+        return( m_TimeMs );
+    }
+
+    /**
+     * Returns the time base of the clock, which only changes when the clock is restarted.
+     *
+     * @return The time base.
+     */
+    @Override
+    public long getTimeBase()
+    {
+        return( m_TimeBase );
+    }
+
+    /**
+     * Restarts the clock in a new time base, as a clock that counts from boot does when the device restarts.
+     *
+     * @param startTimeMs The time of the clock once restarted, in milliseconds.
+     */
+    void restart( long startTimeMs )
+    {
+        m_TimeMs = startTimeMs;
+        m_TimeBase++;
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param deltaMs The number of milliseconds to advance the clock by; must not be negative.
+     */
+    void advance( long deltaMs )
+    {
+        if( deltaMs < 0 )
+        {
+            throw new IllegalArgumentException( "A clock must never go backwards" );
+        }
+
+        m_TimeMs += deltaMs;
+    }
+}
@@ -0,0 +1,1237 @@
+/**
+ * Workday.java
+ *
+ * Characterizes a workday within the "ContextSwitch" feature; a workday consists of several iterations of a specific
+ * number of tasks. If a user invokes a context switch, the current task is stopped and logged, and a new task is
+ * marked as active. When the workday is complete, the user can analyze the data collected by the various context
+ * switches.
+ *
+ * A Workday is changed only by the thread that owns it. After each change it publishes an immutable snapshot of its
+ * state, which any other thread can read without locking, and then tells each of its listeners what changed. The
+ * listeners are held in an array that is replaced rather than modified, so telling them allocates nothing.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Workday
+{
+    /* Package-private constants */
+    static final int NUM_SPECIAL_TASKS = 2;                /* The number of "special tasks" in the Workday */
+
+    /* Private constants */
+    private static final WorkdayListener[] NO_LISTENERS = new WorkdayListener[0];
+    private static final int MAX_CHANGED_RUNTIMES = 8;     /* Changed runtimes tracked before the column is copied */
+    private static final int RUNTIMES_NOT_TRACKED = -1;    /* Every runtime may differ from the published one */
+
+    /* Private member fields */
+    private Clock m_Clock;                                 /* The clock used to time task iterations */
+    private ArrayList<Task> m_Tasks;                       /* A set of all m_Tasks created by the user */
+    private HashMap<Task, Task> m_TaskNameIndex;           /* Case-insensitive name index of the tasks in m_Tasks */
+    private ArrayList<Task> m_TasksById;                   /* Every task ever registered, indexed by its task ID */
+    private TaskLog m_TaskLog;                             /* Sequence of task iterations that constitute the workday */
+    private Task m_ActiveTask;                             /* The task being performed, or null if none is active */
+    private long m_ActiveStartTimestampMs;                 /* Clock timestamp at which the active iteration started */
+    private long m_ActiveTimeBase;                         /* The clock time base of that timestamp */
+    private long m_UserTaskRuntimeMs;                      /* Runtime of all concluded iterations of current tasks */
+    private boolean m_ActiveLimitReported;                 /* The active task cannot cross its limit, or already has */
+    private final Object m_ListenerLock;                   /* Serializes replacing the listener array */
+    private volatile WorkdayListener[] m_Listeners;        /* Receive each change; replaced, never modified */
+    private AtomicReference<WorkdaySnapshot> m_Published;  /* The state as of the latest change, for any thread */
+    private boolean m_TaskTableChanged;                    /* The task table differs from the published one */
+    private int[] m_ChangedRuntimeIds;                     /* Tasks whose runtime differs from the published one */
+    private int m_ChangedRuntimeCount;                     /* The number of those tasks, or RUNTIMES_NOT_TRACKED */
+    private boolean m_Batching;                            /* Changes are being applied as one batch */
+    private boolean m_PublishPending;                      /* A change in the batch has not been published yet */
+
+    /* Public constants */
+    public static final int MS_PER_SEC = 1000;             /* Conversion constant for seconds <-> milliseconds */
+    public static final int SECS_PER_MIN = 60;             /* Conversion constant for seconds <-> minutes */
+    public static final int MINS_PER_HOUR = 60;            /* Conversion constant for minutes <-> hours */
+    public static final int HOURS_PER_DAY = 24;            /* Conversion constant for hours <-> days */
+    public static final int ADD_TASK_ID = 0;               /* Task ID of the special "add new" task */
+    public static final int END_WORKDAY_ID = 1;            /* Task ID of the special "end workday" task */
+
+    /**
+     * Constructs the Workday object with the given special task labels and clock.
+     *
+     * @param addTaskLabel The name of the special "add new" task.
+     * @param endWorkdayLabel The name of the special "end workday" task.
+     * @param clock The clock used to time task iterations.
+     */
+    Workday( String addTaskLabel, String endWorkdayLabel, Clock clock )
+    {
+        /* Initialize members */
+        m_Clock = clock;
+        m_Tasks = new ArrayList<>();
+        m_TaskNameIndex = new HashMap<>();
+        m_TasksById = new ArrayList<>();
+        m_TaskLog = new TaskLog();
+        m_ActiveTask = null;
+        m_ActiveStartTimestampMs = 0;
+        m_ActiveTimeBase = 0;
+        m_UserTaskRuntimeMs = 0;
+        m_ActiveLimitReported = true;
+        m_ListenerLock = new Object();
+        m_Listeners = NO_LISTENERS;
+
+        /* Create the "add new" task; a special type of task that is only used to define a new custom user task */
+        registerTask( new Task( addTaskLabel ), m_Tasks.size() );
+
+        /* Create the "end workday" task; a special type of task used to end the workday and generate output */
+        registerTask( new Task( endWorkdayLabel ), m_Tasks.size() );
+
+        m_Published = new AtomicReference<>();
+        m_ChangedRuntimeIds = new int[MAX_CHANGED_RUNTIMES];
+        m_ChangedRuntimeCount = RUNTIMES_NOT_TRACKED;
+        m_Batching = false;
+        m_PublishPending = false;
+        publish();
+    }
+
+    /**
+     * Adds a listener that is informed of every change made to the Workday from now on, such as a journal that
+     * preserves the Workday in persistent storage. Listeners are told of each change in the order they were added.
+     * May be called on any thread; a change being applied meanwhile may or may not reach the new listener.
+     *
+     * @param listener The listener to inform of changes.
+     */
+    void addListener( WorkdayListener listener )
+    {
+        synchronized( m_ListenerLock )
+        {
+            WorkdayListener[] listeners = Arrays.copyOf( m_Listeners, m_Listeners.length + 1 );
+            listeners[listeners.length - 1] = listener;
+            m_Listeners = listeners;
+        }
+    }
+
+    /**
+     * Removes a listener, which is no longer informed of changes. May be called on any thread.
+     *
+     * @param listener The listener to remove. Nothing is done if it was not added.
+     */
+    void removeListener( WorkdayListener listener )
+    {
+        synchronized( m_ListenerLock )
+        {
+            WorkdayListener[] listeners = m_Listeners;
+
+            for( int index = 0; index < listeners.length; index++ )
+            {
+                if( listeners[index] == listener )
+                {
+                    WorkdayListener[] remaining = new WorkdayListener[listeners.length - 1];
+                    System.arraycopy( listeners, 0, remaining, 0, index );
+                    System.arraycopy( listeners, index + 1, remaining, index, remaining.length - index );
+                    m_Listeners = remaining;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Captures an immutable copy of the complete state of the Workday, which can then be encoded on another thread.
+     * The concluded entries of the task log are shared with the snapshot rather than copied, so capturing it takes
+     * time in proportion to the number of tasks, not the length of the log.
+     *
+     * @param journalGeneration The first journal generation that will hold changes made after the capture.
+     * @return The snapshot of the Workday.
+     */
+    WorkdaySnapshot captureSnapshot( int journalGeneration )
+    {
+        return( captureSnapshot( journalGeneration, null ) );
+    }
+
+    /**
+     * Returns the state of the Workday as of the latest change made to it. Every change publishes a new immutable
+     * snapshot, so this may be called on any thread, without locking, while the thread that owns the Workday goes on
+     * changing it. The runtime of the active iteration is not included, since it grows without any change being made;
+     * it runs from the snapshot's active start timestamp to the current time of getClock().
+     *
+     * @return The latest published snapshot.
+     */
+    WorkdaySnapshot getPublishedSnapshot()
+    {
+        return( m_Published.get() );
+    }
+
+    /**
+     * Returns the clock that times the Workday's task iterations. It may be read on any thread.
+     *
+     * @return The clock.
+     */
+    Clock getClock()
+    {
+        return( m_Clock );
+    }
+
+    /**
+     * Captures a snapshot of the Workday, sharing the task table of the published snapshot if one is given. The
+     * runtime column of the published snapshot is shared as well, apart from the runtimes that changed since it,
+     * unless those were not tracked.
+     *
+     * @param journalGeneration The first journal generation that will hold changes made after the capture.
+     * @param taskTable The published snapshot, if the task table is the same, or null to copy the task table.
+     * @return The snapshot of the Workday.
+     */
+    private WorkdaySnapshot captureSnapshot( int journalGeneration, WorkdaySnapshot taskTable )
+    {
+        int taskIdCount = m_TasksById.size();
+        TaskRuntimes taskRuntimes;
+
+        if( ( taskTable != null ) && ( m_ChangedRuntimeCount != RUNTIMES_NOT_TRACKED ) )
+        {
+            long[] changedRuntimesMs = new long[m_ChangedRuntimeCount];
+
+            for( int index = 0; index < m_ChangedRuntimeCount; index++ )
+            {
+                changedRuntimesMs[index] = m_TasksById.get( m_ChangedRuntimeIds[index] ).getRuntimeMs();
+            }
+
+            taskRuntimes = taskTable.getTaskRuntimes().update( m_ChangedRuntimeIds, changedRuntimesMs,
+                                                               m_ChangedRuntimeCount );
+        }
+        else
+        {
+            long[] taskRuntimesMs = new long[taskIdCount];
+
+            for( int taskId = 0; taskId < taskIdCount; taskId++ )
+            {
+                taskRuntimesMs[taskId] = m_TasksById.get( taskId ).getRuntimeMs();
+            }
+
+            taskRuntimes = new TaskRuntimes( taskRuntimesMs );
+        }
+
+        /* The iteration in progress is still being timed, so it is captured by its task and start time instead */
+        int concludedEntries = ( m_ActiveTask != null ) ? ( m_TaskLog.size() - 1 ) : m_TaskLog.size();
+        TaskLog concludedLog = m_TaskLog.sharePrefix( concludedEntries );
+
+        if( taskTable != null )
+        {
+            return( new WorkdaySnapshot( taskTable, journalGeneration, taskRuntimes, m_UserTaskRuntimeMs,
+                                         getActiveTaskId(), m_ActiveStartTimestampMs, m_ActiveTimeBase,
+                                         concludedLog ) );
+        }
+
+        String[] taskNames = new String[taskIdCount];
+        long[] taskTimeLimitsMs = new long[taskIdCount];
+        int[] taskColors = new int[taskIdCount];
+        int[] userTaskIds = new int[getNumberOfUserTasks()];
+
+        for( int taskId = 0; taskId < taskIdCount; taskId++ )
+        {
+            Task task = m_TasksById.get( taskId );
+
+            taskNames[taskId] = task.getTaskName();
+            taskTimeLimitsMs[taskId] = task.getTaskTimeLimit();
+            taskColors[taskId] = task.getTaskColor();
+        }
+
+        for( int index = 0; index < userTaskIds.length; index++ )
+        {
+            userTaskIds[index] = m_Tasks.get( index ).getTaskId();
+        }
+
+        return( new WorkdaySnapshot( journalGeneration, taskNames, taskTimeLimitsMs, taskColors, taskRuntimes,
+                                     userTaskIds, m_UserTaskRuntimeMs, getActiveTaskId(), m_ActiveStartTimestampMs,
+                                     m_ActiveTimeBase, concludedLog ) );
+    }
+
+    /**
+     * Restores the state held by a snapshot. The Workday must be newly constructed, so that only the special tasks
+     * have been registered.
+     *
+     * @param snapshot The snapshot to restore.
+     */
+    void restoreSnapshot( WorkdaySnapshot snapshot )
+    {
+        /* Re-create every task after the special ones, deleted or not, so that each keeps its ID */
+        for( int taskId = NUM_SPECIAL_TASKS; taskId < snapshot.getTaskIdCount(); taskId++ )
+        {
+            Task task = new Task( snapshot.getTaskName( taskId ) );
+
+            task.setTaskId( taskId );
+            task.setTaskTimeLimit( snapshot.getTaskTimeLimitMs( taskId ) );
+            task.setTaskColor( snapshot.getTaskColor( taskId ) );
+            task.addRuntimeMs( snapshot.getTaskRuntimeMs( taskId ) );
+            m_TasksById.add( task );
+        }
+
+        /* Only the tasks that were not deleted are listed */
+        for( int index = 0; index < snapshot.getNumberOfUserTasks(); index++ )
+        {
+            Task task = m_TasksById.get( snapshot.getUserTaskId( index ) );
+
+            m_Tasks.add( index, task );
+            m_TaskNameIndex.put( task, task );
+        }
+
+        m_TaskLog = snapshot.getTaskLog().copy();
+        m_UserTaskRuntimeMs = snapshot.getUserTaskRuntimeMs();
+
+        if( snapshot.getActiveTaskId() != Task.NO_TASK_ID )
+        {
+            beginTask( m_TasksById.get( snapshot.getActiveTaskId() ), snapshot.getActiveStartTimestampMs(),
+                       snapshot.getActiveTimeBase() );
+        }
+
+        m_TaskTableChanged = true;
+        publish();
+    }
+
+    /**
+     * Adds a new task type that may be performed throughout the Workday.
+     *
+     * @param newTask A new task to be performed.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode addTask( Task newTask )
+    {
+        return( addTask( newTask, m_Clock.getTimeMs() ) );
+    }
+
+    /**
+     * Adds a new task type that may be performed throughout the Workday, as of the given time.
+     *
+     * @param newTask A new task to be performed.
+     * @param timestampMs The clock timestamp at which the task was added.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode addTask( Task newTask, long timestampMs )
+    {
+        ErrorCode taskErr = ErrorCode.ERR_NONE;
+
+        if( m_TaskNameIndex.containsKey( newTask ) == false )
+        {
+            /*
+             * Add the new task to the list of user-defined tasks, but rather than inserting them at the very end of
+             * the list, insert them before the "special tasks" so that they are shown last on the UI.
+             */
+            registerTask( newTask, getNumberOfUserTasks() );
+            publish();
+
+            for( WorkdayListener listener : m_Listeners )
+            {
+                listener.onTaskAdded( newTask, timestampMs );
+            }
+        }
+        else
+        {
+            taskErr = ErrorCode.ERR_TASK_DUPLICATE;
+        }
+
+        return( taskErr );
+    }
+
+    /**
+     * Removes the task at the specified index from the Workday.
+     *
+     * @param taskIndex The index of the task.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode deleteTask( int taskIndex )
+    {
+        ErrorCode taskErr = ErrorCode.ERR_TASK_INVALID;
+
+        /* Boundary check; the special tasks cannot be deleted */
+        if( taskIndex < getNumberOfUserTasks() )
+        {
+            taskErr = deleteTaskById( m_Tasks.get( taskIndex ).getTaskId(), m_Clock.getTimeMs() );
+        }
+
+        return( taskErr );
+    }
+
+    /**
+     * Removes the given task from the Workday.
+     *
+     * @param task A task to remove from the Workday.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode deleteTask( Task task )
+    {
+        ErrorCode taskErr = ErrorCode.ERR_TASK_INVALID;
+
+        /* Look up the registered instance of the task, which may differ from the given one in case only */
+        Task registeredTask = m_TaskNameIndex.get( task );
+
+        if( registeredTask != null )
+        {
+            taskErr = deleteTaskById( registeredTask.getTaskId(), m_Clock.getTimeMs() );
+        }
+
+        return( taskErr );
+    }
+
+    /**
+     * Removes the task with the given ID from the Workday. Unlike its index, the ID of a task still identifies it
+     * after other tasks have been added or deleted.
+     *
+     * @param taskId The ID of the task.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode deleteTaskById( int taskId )
+    {
+        return( deleteTaskById( taskId, m_Clock.getTimeMs() ) );
+    }
+
+    /**
+     * Removes the task with the given ID from the Workday, as of the given time. If the task is being performed, its
+     * iteration is ended first.
+     *
+     * @param taskId The ID of the task.
+     * @param timestampMs The clock timestamp at which the task was deleted.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode deleteTaskById( int taskId, long timestampMs )
+    {
+        ErrorCode taskErr = ErrorCode.ERR_NONE;
+        Task task = getRegisteredTask( taskId );
+
+        if( ( task != null ) && ( isSpecialTask( taskId ) == false ) )
+        {
+            /* Remove the task from the model */
+            m_TaskNameIndex.remove( task );
+            m_Tasks.remove( indexOfTask( task ) );
+
+            /* A deleted task can no longer be performed */
+            if( m_ActiveTask == task )
+            {
+                endTask( timestampMs );
+            }
+
+            /* The task no longer counts towards the Workday total */
+            m_UserTaskRuntimeMs -= task.getRuntimeMs();
+            m_TaskTableChanged = true;
+            publish();
+
+            for( WorkdayListener listener : m_Listeners )
+            {
+                listener.onTaskDeleted( taskId, timestampMs );
+            }
+        }
+        else
+        {
+            taskErr = ErrorCode.ERR_TASK_INVALID;
+        }
+
+        return( taskErr );
+    }
+
+    /**
+     * Returns the number of user-defined tasks that currently make up a Workday.
+     *
+     * @return The number of user-defined tasks added to the Workday.
+     */
+    public int getNumberOfUserTasks()
+    {
+        return( m_Tasks.size() - NUM_SPECIAL_TASKS );
+    }
+
+    /**
+     * Returns the total number of tasks in the workday, including "special tasks," if applicable.
+     * 
+     * @return The number of all tasks in the Workday.
+     */
+    int getNumberOfTasks()
+    {
+        return( m_Tasks.size() );
+    }
+
+    /**
+     * Returns the stable ID of the task at the specified index. Unlike the index, the ID of a task does not change
+     * when other tasks are added or deleted.
+     *
+     * @param taskIndex The index of the task.
+     * @return The ID of the task, or Task.NO_TASK_ID if the index is out of range.
+     */
+    int getTaskId( int taskIndex )
+    {
+        int taskId = Task.NO_TASK_ID;
+
+        if( taskIndex < m_Tasks.size() )
+        {
+            taskId = m_Tasks.get( taskIndex ).getTaskId();
+        }
+
+        return( taskId );
+    }
+
+    /**
+     * Returns the task with the given ID. Tasks that have been deleted from the Workday can still be resolved, so
+     * that the task log can refer to them.
+     *
+     * @param taskId The ID of the task.
+     * @return The task with the given ID, or null if no such task was ever registered.
+     */
+    Task getTaskById( int taskId )
+    {
+        Task task = null;
+
+        if( ( taskId >= 0 ) && ( taskId < m_TasksById.size() ) )
+        {
+            task = m_TasksById.get( taskId );
+        }
+
+        return( task );
+    }
+
+    /**
+     * Checks whether or not the given task ID belongs to one of the "special tasks" (add new, end workday).
+     *
+     * @param taskId The ID of the task.
+     * @return True if the ID refers to a special task, false otherwise.
+     */
+    static boolean isSpecialTask( int taskId )
+    {
+        return( ( taskId == ADD_TASK_ID ) || ( taskId == END_WORKDAY_ID ) );
+    }
+
+    /**
+     * Returns the name of the task at the specified index.
+     *
+     * @param taskIndex The index of the task.
+     * @return The name of the task.
+     */
+    String getTaskName( int taskIndex )
+    {
+        String taskName = "n/a";
+
+        if( taskIndex < m_Tasks.size() )
+        {
+            taskName = m_Tasks.get( taskIndex ).getTaskName();
+        }
+
+        return( taskName );
+    }
+
+    /**
+     * Returns the number of entries in the task log, including the current iteration.
+     *
+     * @return The number of entries in the task log.
+     */
+    int getTaskLogSize()
+    {
+        return( m_TaskLog.size() );
+    }
+
+    /**
+     * Returns an iterator that can be used to access the task log. The iteration is done in reverse order (newest
+     * task performed first). The log is read in place; each TaskIteration is a view created as it is reached.
+     *
+     * @return An iterator used to access the task log.
+     */
+    Iterator<TaskIteration> getTaskLogIterator()
+    {
+        return( new TaskLogIterator() );
+    }
+
+    /**
+     * Returns a view of the task log entry at the given position, where position zero is the oldest entry.
+     *
+     * @param logIndex The position of the entry in the task log.
+     * @return A view of the task iteration.
+     */
+    TaskIteration getTaskLogEntry( int logIndex )
+    {
+        boolean active = ( m_ActiveTask != null ) && ( logIndex == m_TaskLog.size() - 1 );
+
+        return( new TaskIteration( getTaskById( m_TaskLog.getTaskId( logIndex ) ), m_Clock,
+                                   m_TaskLog.getStartTimestampMs( logIndex ), m_TaskLog.getRuntimeMs( logIndex ),
+                                   active ) );
+    }
+
+    /**
+     * Returns the task at the specified index.
+     *
+     * @param taskIndex The index of the task.
+     * @return The specified task.
+     */
+    Task getTask( int taskIndex )
+    {
+        Task task = null;
+
+        if( taskIndex < m_Tasks.size() )
+        {
+            task = m_Tasks.get( taskIndex );
+        }
+
+        return( task );
+    }
+
+    /**
+     * Starts performing a new task, specified by the given index. If a different task is currently being performed,
+     * it is saved on the internal task log for later analysis, and the new task is marked as active.
+     *
+     * @param newTaskIndex The index of the task to begin.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode contextSwitch( int newTaskIndex )
+    {
+        ErrorCode taskErr = ErrorCode.ERR_TASK_INVALID;
+
+        /* Bounds check; cannot perform context switch to a special task */
+        if( newTaskIndex < getNumberOfUserTasks() )
+        {
+            taskErr = switchToTask( m_Tasks.get( newTaskIndex ).getTaskId(), m_Clock.getTimeMs() );
+        }
+
+        return( taskErr );
+    }
+
+    /**
+     * Starts performing the task with the given ID, as of the given time. If a different task is currently being
+     * performed, its iteration is concluded at that time.
+     *
+     * @param taskId The ID of the task to begin.
+     * @param timestampMs The clock timestamp at which the switch occurred.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode switchToTask( int taskId, long timestampMs )
+    {
+        return( switchToTask( taskId, timestampMs, m_Clock.getTimeBase() ) );
+    }
+
+    /**
+     * Starts performing the task with the given ID, as of the given time in the given clock time base, such as when
+     * a switch made before the device restarted is replayed.
+     *
+     * @param taskId The ID of the task to begin.
+     * @param timestampMs The clock timestamp at which the switch occurred.
+     * @param timeBase The clock time base of the timestamp.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode switchToTask( int taskId, long timestampMs, long timeBase )
+    {
+        ErrorCode taskErr = ErrorCode.ERR_NONE;
+        Task newTask = getRegisteredTask( taskId );
+
+        if( ( newTask == null ) || isSpecialTask( taskId ) )
+        {
+            /* Cannot perform context switch to a special or deleted task */
+            taskErr = ErrorCode.ERR_TASK_INVALID;
+        }
+        else if( m_ActiveTask == newTask )
+        {
+            /* Cannot context switch to the already-active task */
+            taskErr = ErrorCode.ERR_TASK_ALREADY_STARTED;
+        }
+        else
+        {
+            /* Perform the switch; end the current task and start the new one */
+            endTask( timestampMs );
+            beginTask( newTask, timestampMs, timeBase );
+            publish();
+
+            for( WorkdayListener listener : m_Listeners )
+            {
+                listener.onContextSwitch( taskId, timestampMs, timeBase );
+            }
+        }
+
+        return( taskErr );
+    }
+
+    /**
+     * Ends the workday, which stops the active task and creates visual output for analysis of the time spent.
+     */
+    void endWorkday()
+    {
+        endWorkday( m_Clock.getTimeMs() );
+    }
+
+    /**
+     * Ends the workday as of the given time, which stops the active task.
+     *
+     * @param timestampMs The clock timestamp at which the workday ended.
+     */
+    void endWorkday( long timestampMs )
+    {
+        endTask( timestampMs );
+        publish();
+
+        for( WorkdayListener listener : m_Listeners )
+        {
+            listener.onWorkdayEnded( timestampMs );
+        }
+
+        // TODO: 4/1/2017 Save or export the data before clearing it.
+    }
+
+    /**
+     * Returns the ID of the task currently being performed.
+     *
+     * @return The ID of the active task, or Task.NO_TASK_ID if no task is active.
+     */
+    int getActiveTaskId()
+    {
+        return( ( m_ActiveTask != null ) ? m_ActiveTask.getTaskId() : Task.NO_TASK_ID );
+    }
+
+    /**
+     * Returns the clock timestamp at which the active iteration started.
+     *
+     * @return The start timestamp of the active iteration, in milliseconds. Only meaningful if a task is active.
+     */
+    long getActiveStartTimestampMs()
+    {
+        return( m_ActiveStartTimestampMs );
+    }
+
+    /**
+     * Returns the clock time base in which the active iteration's start timestamp was taken.
+     *
+     * @return The time base. Only meaningful if a task is active.
+     */
+    long getActiveTimeBase()
+    {
+        return( m_ActiveTimeBase );
+    }
+
+    /**
+     * Reports the active task's crossing of its time limit to the listeners, if it has crossed by now.
+     *
+     * @return True if the crossing was reported by this call, false otherwise.
+     */
+    boolean checkTaskLimit()
+    {
+        return( checkTaskLimit( m_Clock.getTimeMs() ) );
+    }
+
+    /**
+     * Reports the active task's crossing of its time limit to the listeners, if it has crossed by the given time and
+     * has not already been reported during its iteration. Nothing else changes as time passes, so the Workday is not
+     * published. The crossing of a task that is ended or switched away from first is reported as it ends.
+     *
+     * @param timestampMs The clock timestamp at which to check.
+     * @return True if the crossing was reported by this call, false otherwise.
+     */
+    boolean checkTaskLimit( long timestampMs )
+    {
+        boolean crossed = false;
+
+        if( ( m_ActiveTask != null ) && ( m_ActiveLimitReported == false ) )
+        {
+            /* The first millisecond at which the task's runtime is over its limit */
+            long crossingTimestampMs = m_ActiveStartTimestampMs + m_ActiveTask.getTaskTimeLimit() -
+                                       m_ActiveTask.getRuntimeMs() + 1;
+
+            if( timestampMs >= crossingTimestampMs )
+            {
+                int taskId = m_ActiveTask.getTaskId();
+
+                m_ActiveLimitReported = true;
+                crossed = true;
+
+                for( WorkdayListener listener : m_Listeners )
+                {
+                    listener.onTaskLimitCrossed( taskId, crossingTimestampMs );
+                }
+            }
+        }
+
+        return( crossed );
+    }
+
+    /**
+     * Ends the active iteration if it started in a different clock time base, which happens when a Workday is
+     * restored after the device restarted, since the clock counts from boot. The time spent in that iteration before
+     * the restart cannot be recovered, so it is concluded with no runtime.
+     */
+    void endIterationFromPreviousBoot()
+    {
+        if( ( m_ActiveTask != null ) && ( m_ActiveTimeBase != m_Clock.getTimeBase() ) )
+        {
+            endWorkday( m_ActiveStartTimestampMs );
+        }
+    }
+
+    /**
+     * Returns the total amount of time spent performing the task, in "hh:mm:ss" format.
+     *
+     * @param taskIndex The index of the task to query.
+     * @return The total amount of time spent performing the task, in UI-friendly hh:mm:ss format.
+     */
+    String getTaskRuntime( int taskIndex )
+    {
+        long taskRuntimeMs = 0;
+
+        /* Boundary check */
+        if( taskIndex < m_Tasks.size() )
+        {
+            /* Get the task associated with the index and query the runtime */
+            taskRuntimeMs = this.getTotalTaskRuntimeMs( taskIndex );
+        }
+
+        return( convertMsToFormattedTimeString( taskRuntimeMs ) );
+    }
+
+    /**
+     * Returns the percentage of the Workday that was allocated to the given task. The total runtime of all user
+     * tasks is maintained incrementally, so this is a constant-time query.
+     *
+     * @param taskIndex The index of the task to query.
+     * @return The percentage of the day spent on the specified task.
+     */
+    double getTaskPercentage( int taskIndex )
+    {
+        double percentage = 0.0;
+
+        /* Boundary check */
+        if( taskIndex < m_Tasks.size() )
+        {
+            /* Sample the active iteration once, so that the task and the total are measured at the same instant */
+            long activeRuntimeMs = getActiveRuntimeMs();
+            long specifiedTaskRuntimeMs = m_Tasks.get( taskIndex ).getRuntimeMs();
+
+            if( isActiveTask( taskIndex ) )
+            {
+                specifiedTaskRuntimeMs += activeRuntimeMs;
+            }
+
+            long totalTaskRuntimeMs = m_UserTaskRuntimeMs + activeRuntimeMs;
+
+            if( totalTaskRuntimeMs != 0 )
+            {
+                percentage = ( (double)specifiedTaskRuntimeMs / (double)totalTaskRuntimeMs ) * 100.0;
+            }
+        }
+
+        return( percentage );
+    }
+
+    /**
+     * Returns the total runtime of all user tasks in the Workday, including the active iteration.
+     *
+     * @return The total runtime of all user tasks, in milliseconds.
+     */
+    long getTotalUserTaskRuntimeMs()
+    {
+        return( m_UserTaskRuntimeMs + getActiveRuntimeMs() );
+    }
+
+    /**
+     * Returns the total runtime of the active task, including the active iteration. This is the only runtime that
+     * changes while no task is added, deleted or switched to.
+     *
+     * @return The total runtime of the active task in milliseconds, or zero if no task is active.
+     */
+    long getActiveTaskRuntimeMs()
+    {
+        long activeTaskRuntimeMs = 0;
+
+        if( m_ActiveTask != null )
+        {
+            activeTaskRuntimeMs = m_ActiveTask.getRuntimeMs() + getActiveRuntimeMs();
+        }
+
+        return( activeTaskRuntimeMs );
+    }
+
+    /**
+     * Checks to see if a particular task limit has been exceeded.
+     *
+     * @param taskIndex The index of the task.
+     * @return True if the task has exceeded it's configured limit time, false otherwise.
+     */
+    boolean isTaskLimitExceeded( int taskIndex )
+    {
+        boolean limitExceeded = false;
+
+        /* Boundary check */
+        if( taskIndex < m_Tasks.size() )
+        {
+            long taskTimeLimit = m_Tasks.get( taskIndex ).getTaskTimeLimit();
+
+            if( taskTimeLimit != 0 )
+            {
+                /* Non-zero limit; compare it to current runtime */
+                if( this.getTotalTaskRuntimeMs( taskIndex ) > taskTimeLimit )
+                {
+                    limitExceeded = true;
+                }
+            }
+        }
+
+        return( limitExceeded );
+    }
+
+    /**
+     * Assigns a new color code to the specified task.
+     *
+     * @param taskIndex The index of the task.
+     * @param newColor The new color code to associate with the task.
+     */
+    void setTaskColor( int taskIndex, int newColor )
+    {
+        /* Boundary check */
+        if( taskIndex < m_Tasks.size() )
+        {
+            setTaskColorById( m_Tasks.get( taskIndex ).getTaskId(), newColor, m_Clock.getTimeMs() );
+        }
+    }
+
+    /**
+     * Assigns a new color code to the task with the given ID, as of the given time.
+     *
+     * @param taskId The ID of the task.
+     * @param newColor The new color code to associate with the task.
+     * @param timestampMs The clock timestamp at which the color was changed.
+     * @return An error code indicative of success or failure.
+     */
+    ErrorCode setTaskColorById( int taskId, int newColor, long timestampMs )
+    {
+        ErrorCode taskErr = ErrorCode.ERR_NONE;
+        Task task = getRegisteredTask( taskId );
+
+        if( task != null )
+        {
+            task.setTaskColor( newColor );
+            m_TaskTableChanged = true;
+            publish();
+
+            for( WorkdayListener listener : m_Listeners )
+            {
+                listener.onTaskColorChanged( taskId, newColor, timestampMs );
+            }
+        }
+        else
+        {
+            taskErr = ErrorCode.ERR_TASK_INVALID;
+        }
+
+        return( taskErr );
+    }
+
+    /**
+     * Returns the color code associated with the specified task.
+     *
+     * @param taskIndex The index of the task.
+     * @return The task's color code.
+     */
+    int getTaskColor( int taskIndex )
+    {
+        /* Boundary check */
+        if( taskIndex < m_Tasks.size() )
+        {
+            return( m_Tasks.get( taskIndex ).getTaskColor() );
+        }
+        else
+        {
+            return( 0 );
+        }
+    }
+
+    /**
+     * Clears the task log from the workday and resets all timing data to zero. The list of user tasks is left
+     * intact.
+     */
+    void resetWorkday()
+    {
+        resetWorkday( m_Clock.getTimeMs() );
+    }
+
+    /**
+     * Clears the task log from the workday and resets all timing data to zero, as of the given time.
+     *
+     * @param timestampMs The clock timestamp at which the workday was reset.
+     */
+    void resetWorkday( long timestampMs )
+    {
+        /* Stop current task */
+        endTask( timestampMs );
+
+        /* Clear the task log */
+        m_TaskLog.clear();
+
+        /* Reset all timing data */
+        for( Task task : m_Tasks )
+        {
+            task.resetRuntime();
+        }
+
+        m_ChangedRuntimeCount = RUNTIMES_NOT_TRACKED;
+        m_UserTaskRuntimeMs = 0;
+        publish();
+
+        for( WorkdayListener listener : m_Listeners )
+        {
+            listener.onWorkdayReset( timestampMs );
+        }
+    }
+
+    /**
+     *  Returns a string using "hh:mm:ss" format that corresponds to the given millisecond value.
+     *
+     * @param milliseconds A time value in milliseconds.
+     * @return The converted time value in "hh:mm:ss" format.
+     */
+    static String convertMsToFormattedTimeString( long milliseconds )
+    {
+        char[] timeBuffer = new char[RuntimeFormatter.MAX_FORMATTED_LENGTH];
+        int length = RuntimeFormatter.formatMs( milliseconds, timeBuffer, 0 );
+
+        return( new String( timeBuffer, 0, length ) );
+    }
+
+    /**
+     * Starts a batch of changes, which are published together by endBatch() rather than one by one.
+     */
+    void beginBatch()
+    {
+        m_Batching = true;
+    }
+
+    /**
+     * Ends a batch of changes, and publishes them if any were made.
+     */
+    void endBatch()
+    {
+        m_Batching = false;
+
+        if( m_PublishPending )
+        {
+            publish();
+        }
+    }
+
+    /**
+     * Publishes the state of the Workday after a change, for getPublishedSnapshot(), unless a batch of changes is
+     * being applied. The task table of the previous snapshot is shared unless it changed, and so are the chunks of
+     * its runtime column in which no runtime changed, so a context switch copies little more than the chunk of the
+     * task that ended.
+     */
+    private void publish()
+    {
+        if( m_Batching )
+        {
+            m_PublishPending = true;
+            return;
+        }
+
+        WorkdaySnapshot taskTable = m_TaskTableChanged ? null : m_Published.get();
+
+        m_Published.set( captureSnapshot( 0, taskTable ) );
+        m_TaskTableChanged = false;
+        m_ChangedRuntimeCount = 0;
+        m_PublishPending = false;
+    }
+
+    /**
+     * Begins performing the given task.
+     *
+     * @param task The task to begin.
+     * @param timestampMs The clock timestamp at which the task began.
+     * @param timeBase The clock time base of the timestamp.
+     */
+    private void beginTask( Task task, long timestampMs, long timeBase )
+    {
+        /* Mark the task as active and begin tracking time spent on it */
+        m_ActiveTask = task;
+        m_ActiveTask.setAsActive();
+        m_ActiveStartTimestampMs = timestampMs;
+        m_ActiveTimeBase = timeBase;
+
+        /* There is nothing to report during this iteration if the task has no limit or is already over it */
+        m_ActiveLimitReported = ( task.getTaskTimeLimit() == 0 ) || ( task.getRuntimeMs() > task.getTaskTimeLimit() );
+
+        /* Add the new iteration to the task log */
+        m_TaskLog.append( m_ActiveTask.getTaskId(), m_ActiveStartTimestampMs );
+    }
+
+    /**
+     * Registers a new task with the Workday, assigning it the next task ID and inserting it at the given position.
+     *
+     * @param task The task to register.
+     * @param taskIndex The position at which to insert the task.
+     */
+    private void registerTask( Task task, int taskIndex )
+    {
+        /* Task IDs are dense and never reused, so the ID doubles as the task's index into m_TasksById */
+        task.setTaskId( m_TasksById.size() );
+        m_TasksById.add( task );
+
+        m_Tasks.add( taskIndex, task );
+        m_TaskNameIndex.put( task, task );
+        m_TaskTableChanged = true;
+    }
+
+    /**
+     * Returns the position of a registered task in the task list. Tasks are compared by identity rather than with
+     * the case-insensitive Task.equals(), which would compare names against every task ahead of it.
+     *
+     * @param task A task that is in the task list.
+     * @return The index of the task.
+     */
+    private int indexOfTask( Task task )
+    {
+        int taskIndex = m_Tasks.size() - 1;
+
+        while( m_Tasks.get( taskIndex ) != task )
+        {
+            taskIndex--;
+        }
+
+        return( taskIndex );
+    }
+
+    /**
+     * Notes that the runtime of a task changed since the last publish, so that the next one only copies the chunk of
+     * the runtime column that holds it. Past MAX_CHANGED_RUNTIMES changes, the whole column is copied instead.
+     *
+     * @param taskId The ID of the task.
+     */
+    private void onRuntimeChanged( int taskId )
+    {
+        if( m_ChangedRuntimeCount == MAX_CHANGED_RUNTIMES )
+        {
+            m_ChangedRuntimeCount = RUNTIMES_NOT_TRACKED;
+        }
+        else if( m_ChangedRuntimeCount != RUNTIMES_NOT_TRACKED )
+        {
+            m_ChangedRuntimeIds[m_ChangedRuntimeCount] = taskId;
+            m_ChangedRuntimeCount++;
+        }
+    }
+
+    /**
+     * Returns the task with the given ID, provided that it has not been deleted. Deleted tasks keep their ID slot so
+     * that past iterations in the task log can still be resolved, but they are no longer part of the task list.
+     *
+     * @param taskId The ID of the task.
+     * @return The task, or null if there is no such task or it has been deleted.
+     */
+    private Task getRegisteredTask( int taskId )
+    {
+        Task task = getTaskById( taskId );
+
+        if( ( task != null ) && ( m_TaskNameIndex.get( task ) != task ) )
+        {
+            task = null;
+        }
+
+        return( task );
+    }
+
+    /**
+     * Ends the task currently being performed.
+     *
+     * @param timestampMs The clock timestamp at which the task ended.
+     */
+    private void endTask( long timestampMs )
+    {
+        if( m_ActiveTask != null )
+        {
+            /* A crossing not yet checked for happened during the iteration, so it comes before the change */
+            checkTaskLimit( timestampMs );
+
+            /* Done; capture the total time spent and record it in the log */
+            long iterationRuntimeMs = Math.max( 0, timestampMs - m_ActiveStartTimestampMs );
+            m_TaskLog.setRuntimeMs( m_TaskLog.size() - 1, iterationRuntimeMs );
+
+            /* Update the task's runtime with this iteration, and mark it as inactive */
+            m_ActiveTask.addRuntimeMs( iterationRuntimeMs );
+            m_ActiveTask.setAsInactive();
+            onRuntimeChanged( m_ActiveTask.getTaskId() );
+
+            /* Only user tasks can be active, so the concluded iteration always counts towards the total */
+            m_UserTaskRuntimeMs += iterationRuntimeMs;
+            m_ActiveTask = null;
+            m_ActiveTimeBase = 0;
+        }
+    }
+
+    /**
+     * Returns the runtime of the active iteration, if there is one.
+     *
+     * @return The runtime of the active iteration in milliseconds, or zero if no task is active.
+     */
+    private long getActiveRuntimeMs()
+    {
+        long activeRuntimeMs = 0;
+
+        if( m_ActiveTask != null )
+        {
+            activeRuntimeMs = Math.max( 0, m_Clock.getTimeMs() - m_ActiveStartTimestampMs );
+        }
+
+        return( activeRuntimeMs );
+    }
+
+    /**
+     * Checks whether or not the task at the given index is the one currently being performed.
+     *
+     * @param taskIndex The index of the task.
+     * @return True if the task is active, false otherwise.
+     */
+    private boolean isActiveTask( int taskIndex )
+    {
+        return( m_ActiveTask == m_Tasks.get( taskIndex ) );
+    }
+
+    /**
+     * Returns the total task runtime, in milliseconds. If the task is currently active, the current iteration is
+     * included as part of the calculation.
+     *
+     * @param taskIndex The index of the task.
+     * @return The total runtime of the task, in milliseconds.
+     */
+    long getTotalTaskRuntimeMs( int taskIndex )
+    {
+        long taskRuntimeMs = m_Tasks.get( taskIndex ).getRuntimeMs();
+
+        if( isActiveTask( taskIndex ) )
+        {
+            /* The task being queried is currently active, so add the up-to-date time to the total */
+            taskRuntimeMs += getActiveRuntimeMs();
+        }
+
+        return( taskRuntimeMs );
+    }
+
+    /**
+     * Walks the columnar task log from the newest entry to the oldest, creating a TaskIteration view for each entry
+     * only as it is returned.
+     */
+    private class TaskLogIterator implements Iterator<TaskIteration>
+    {
+        /* Private member fields */
+        private int m_NextIndex = m_TaskLog.size() - 1;   /* Position of the next entry to return */
+
+        @Override
+        public boolean hasNext()
+        {
+            return( m_NextIndex >= 0 );
+        }
+
+        @Override
+        public TaskIteration next()
+        {
+            if( m_NextIndex < 0 )
+            {
+                throw new NoSuchElementException();
+            }
+
+            return( getTaskLogEntry( m_NextIndex-- ) );
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/**
+ * WorkdayAnalytics.java
+ *
+ * Computes per-task totals, shares of the time worked and switch counts over a range of archived Workdays. The
+ * archived Workdays in the range are split by partition file, and each partition is scanned by its own task on the
+ * given executor: the snapshots are read one at a time into a reused buffer and only the task totals and the task
+ * ID column of the log are parsed. The partial results of the partitions are then merged.
+ *
+ * Tasks are matched across Workdays by name, ignoring case, in the same way as within a Workday.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+
+class WorkdayAnalytics
+{
+    /* Private member fields */
+    private WorkdayArchive m_Archive;                      /* The archive of completed Workdays */
+    private ExecutorService m_Executor;                    /* Scans the partitions in parallel */
+
+    /**
+     * Constructs the analytics engine.
+     *
+     * @param archive The archive of completed Workdays.
+     * @param executor Scans the partitions of the archive; its threads determine how many are scanned at once.
+     */
+    WorkdayAnalytics( WorkdayArchive archive, ExecutorService executor )
+    {
+        m_Archive = archive;
+        m_Executor = executor;
+    }
+
+    /**
+     * Computes the report for the Workdays archived in the given range of days. Blocks until the report is ready.
+     *
+     * @param firstDayKey The day key of the first day in the range.
+     * @param lastDayKey The day key of the last day in the range.
+     * @return The report.
+     * @throws IOException If an archived Workday cannot be read.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    Report computeReport( int firstDayKey, int lastDayKey ) throws IOException, InterruptedException
+    {
+        ArrayList<WorkdayArchive.Entry> entries = m_Archive.getEntries( firstDayKey, lastDayKey );
+        ArrayList<Future<Report>> partialReports = new ArrayList<>();
+
+        /* The entries are ordered by day, so those of each partition are adjacent */
+        int groupStart = 0;
+
+        for( int index = 1; index <= entries.size(); index++ )
+        {
+            if( ( index == entries.size() ) ||
+                ( m_Archive.getPartitionKey( entries.get( index ) ) !=
+                  m_Archive.getPartitionKey( entries.get( groupStart ) ) ) )
+            {
+                partialReports.add( m_Executor.submit( new PartitionScan( entries.subList( groupStart, index ) ) ) );
+                groupStart = index;
+            }
+        }
+
+        Report report = new Report( firstDayKey, lastDayKey );
+
+        try
+        {
+            for( Future<Report> partialReport : partialReports )
+            {
+                report.merge( partialReport.get() );
+            }
+        }
+        catch( ExecutionException execution_exception )
+        {
+            for( Future<Report> partialReport : partialReports )
+            {
+                partialReport.cancel( true );
+            }
+
+            if( execution_exception.getCause() instanceof IOException )
+            {
+                throw (IOException)execution_exception.getCause();
+            }
+
+            throw new IOException( execution_exception.getCause() );
+        }
+
+        report.sortTasks();
+
+        return( report );
+    }
+
+    /**
+     * Scans the archived Workdays of one partition file into a partial report.
+     */
+    private class PartitionScan implements Callable<Report>, WorkdaySnapshot.TaskTotalsVisitor
+    {
+        /* Private member fields */
+        private List<WorkdayArchive.Entry> m_Entries;      /* The archived Workdays to scan, all in one partition */
+        private Report m_Report;                           /* Accumulates the totals of the partition */
+
+        /**
+         * Constructs the scan.
+         *
+         * @param entries The archived Workdays to scan, which must all be stored in the same partition.
+         */
+        PartitionScan( List<WorkdayArchive.Entry> entries )
+        {
+            m_Entries = entries;
+            m_Report = new Report( 0, 0 );
+        }
+
+        /**
+         * Reads each Workday's snapshot in turn and adds its task totals to the partial report.
+         *
+         * @return The partial report.
+         * @throws IOException If a Workday cannot be read or is corrupt.
+         */
+        @Override
+        public Report call() throws IOException
+        {
+            RandomAccessFile partitionFile = new RandomAccessFile( m_Archive.getPartitionFile( m_Entries.get( 0 ) ),
+                                                                   "r" );
+            CRC32 checksum = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate( 0 );
+
+            try
+            {
+                FileChannel channel = partitionFile.getChannel();
+
+                for( WorkdayArchive.Entry entry : m_Entries )
+                {
+                    if( buffer.capacity() < entry.getLength() )
+                    {
+                        buffer = ByteBuffer.allocate( entry.getLength() );
+                    }
+
+                    buffer.clear();
+                    buffer.limit( entry.getLength() );
+
+                    while( buffer.hasRemaining() )
+                    {
+                        if( channel.read( buffer, entry.getOffset() + buffer.position() ) < 0 )
+                        {
+                            throw new IOException( "Archived Workday is incomplete" );
+                        }
+                    }
+
+                    buffer.flip();
+
+                    WorkdaySnapshot.readTaskTotals( buffer, checksum, this );
+                    m_Report.m_WorkdayCount++;
+                }
+            }
+            finally
+            {
+                partitionFile.close();
+            }
+
+            return( m_Report );
+        }
+
+        @Override
+        public void onTaskTotals( String taskName, long runtimeMs, int iterations )
+        {
+            m_Report.addTaskTotals( taskName, runtimeMs, iterations );
+        }
+    }
+
+    /**
+     * Totals of the Workdays in a range of days, overall and for each task.
+     */
+    static final class Report
+    {
+        /* Private member fields */
+        private int m_FirstDayKey;                         /* The first day of the range */
+        private int m_LastDayKey;                          /* The last day of the range */
+        private int m_WorkdayCount;                        /* The number of Workdays in the range */
+        private long m_TotalRuntimeMs;                     /* The runtime of all tasks */
+        private long m_TotalSwitches;                      /* The number of context switches to any task */
+        private HashMap<Task, TaskTotals> m_TaskTotalsByName; /* The totals of each task, keyed case-insensitively */
+        private ArrayList<TaskTotals> m_TaskTotals;        /* The totals of each task */
+
+        /**
+         * Constructs an empty report.
+         *
+         * @param firstDayKey The first day of the range.
+         * @param lastDayKey The last day of the range.
+         */
+        Report( int firstDayKey, int lastDayKey )
+        {
+            m_FirstDayKey = firstDayKey;
+            m_LastDayKey = lastDayKey;
+            m_WorkdayCount = 0;
+            m_TotalRuntimeMs = 0;
+            m_TotalSwitches = 0;
+            m_TaskTotalsByName = new HashMap<>();
+            m_TaskTotals = new ArrayList<>();
+        }
+
+        /**
+         * Returns the first day of the range.
+         *
+         * @return The day key of the first day.
+         */
+        int getFirstDayKey()
+        {
+            return( m_FirstDayKey );
+        }
+
+        /**
+         * Returns the last day of the range.
+         *
+         * @return The day key of the last day.
+         */
+        int getLastDayKey()
+        {
+            return( m_LastDayKey );
+        }
+
+        /**
+         * Returns the number of archived Workdays in the range.
+         *
+         * @return The number of Workdays.
+         */
+        int getWorkdayCount()
+        {
+            return( m_WorkdayCount );
+        }
+
+        /**
+         * Returns the runtime of all tasks in the range.
+         *
+         * @return The total runtime, in milliseconds.
+         */
+        long getTotalRuntimeMs()
+        {
+            return( m_TotalRuntimeMs );
+        }
+
+        /**
+         * Returns the number of context switches to any task in the range.
+         *
+         * @return The total number of switches.
+         */
+        long getTotalSwitches()
+        {
+            return( m_TotalSwitches );
+        }
+
+        /**
+         * Returns the number of distinct tasks in the range.
+         *
+         * @return The number of tasks.
+         */
+        int getNumberOfTasks()
+        {
+            return( m_TaskTotals.size() );
+        }
+
+        /**
+         * Returns the totals of a task. Tasks are ordered by runtime, longest first.
+         *
+         * @param index The index of the task.
+         * @return The totals of the task.
+         */
+        TaskTotals getTaskTotals( int index )
+        {
+            return( m_TaskTotals.get( index ) );
+        }
+
+        /**
+         * Returns the share of the total runtime spent on a task.
+         *
+         * @param index The index of the task.
+         * @return The percentage of the total runtime (0-100%).
+         */
+        double getTaskPercentage( int index )
+        {
+            double percentage = 0.0;
+
+            if( m_TotalRuntimeMs != 0 )
+            {
+                percentage = ( (double)m_TaskTotals.get( index ).getRuntimeMs() / (double)m_TotalRuntimeMs ) * 100.0;
+            }
+
+            return( percentage );
+        }
+
+        /**
+         * Adds the totals of a task in one Workday.
+         *
+         * @param taskName The name of the task.
+         * @param runtimeMs The runtime of the task, in milliseconds.
+         * @param switches The number of times the task was switched to.
+         */
+        private void addTaskTotals( String taskName, long runtimeMs, long switches )
+        {
+            Task key = new Task( taskName );
+            TaskTotals taskTotals = m_TaskTotalsByName.get( key );
+
+            if( taskTotals == null )
+            {
+                taskTotals = new TaskTotals( taskName );
+                m_TaskTotalsByName.put( key, taskTotals );
+                m_TaskTotals.add( taskTotals );
+            }
+
+            taskTotals.m_RuntimeMs += runtimeMs;
+            taskTotals.m_Switches += switches;
+            m_TotalRuntimeMs += runtimeMs;
+            m_TotalSwitches += switches;
+        }
+
+        /**
+         * Adds the totals of a partial report to this one.
+         *
+         * @param partialReport The partial report.
+         */
+        private void merge( Report partialReport )
+        {
+            for( TaskTotals taskTotals : partialReport.m_TaskTotals )
+            {
+                addTaskTotals( taskTotals.getTaskName(), taskTotals.getRuntimeMs(), taskTotals.getSwitches() );
+            }
+
+            m_WorkdayCount += partialReport.m_WorkdayCount;
+        }
+
+        /**
+         * Orders the tasks by runtime, longest first.
+         */
+        private void sortTasks()
+        {
+            Collections.sort( m_TaskTotals, new Comparator<TaskTotals>()
+            {
+                @Override
+                public int compare( TaskTotals first, TaskTotals second )
+                {
+                    return( Long.compare( second.getRuntimeMs(), first.getRuntimeMs() ) );
+                }
+            } );
+        }
+    }
+
+    /**
+     * Totals of one task across a range of days.
+     */
+    static final class TaskTotals
+    {
+        /* Private member fields */
+        private String m_TaskName;                         /* The name of the task, as first seen in the range */
+        private long m_RuntimeMs;                          /* The runtime of the task */
+        private long m_Switches;                           /* The number of times the task was switched to */
+
+        /**
+         * Constructs empty totals for a task.
+         *
+         * @param taskName The name of the task.
+         */
+        private TaskTotals( String taskName )
+        {
+            m_TaskName = taskName;
+            m_RuntimeMs = 0;
+            m_Switches = 0;
+        }
+
+        /**
+         * Returns the name of the task.
+         *
+         * @return The name of the task.
+         */
+        String getTaskName()
+        {
+            return( m_TaskName );
+        }
+
+        /**
+         * Returns the runtime of the task.
+         *
+         * @return The runtime, in milliseconds.
+         */
+        long getRuntimeMs()
+        {
+            return( m_RuntimeMs );
+        }
+
+        /**
+         * Returns the number of times the task was switched to.
+         *
+         * @return The number of switches.
+         */
+        long getSwitches()
+        {
+            return( m_Switches );
+        }
+    }
+}
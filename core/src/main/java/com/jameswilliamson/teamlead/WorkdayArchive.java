@@ -0,0 +1,681 @@
+/**
+ * WorkdayArchive.java
+ *
+ * Indexed store of completed Workdays. Each Workday is encoded as a snapshot and appended to a partition file that
+ * holds one calendar month. A small index file records, for every archived Workday, its date, where its snapshot
+ * lies within the partition and the total runtime of each of its tasks. The index is read once when the archive is
+ * opened, so looking up a day takes constant time and summarizing a range of days never opens a partition; only
+ * loading a whole Workday reads from one.
+ *
+ * Dates are identified by a day key of the form yyyymmdd, so that keys sort chronologically. A Workday that is ended
+ * again after it has been archived, having gone on since, is archived again in place of its earlier copy on that day,
+ * so that its time is not counted twice. A Workday is recognized by the start timestamp of its first iteration, which
+ * only changes when the Workday is reset.
+ *
+ * The archive may be used from several threads at once, such as the Workday's writer, the analytics pool and the UI:
+ * archiving a Workday and reading the in-memory index are serialized, and the entries handed out never change.
+ * Loading a Workday reads only the part of a partition that was written before its entry was published.
+ *
+ * Index layout (big-endian): a header of magic and version (2 x int), then one record per archived Workday:
+ *     body length                                                  int
+ *     day key, partition offset, snapshot length                   int, long, int
+ *     task count, then per task: name length, name, runtime        int, (int, chars, long)
+ *     Workday key                                                  long
+ *     CRC-32 of the body                                           int
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+
+class WorkdayArchive
+{
+    /* Private constants */
+    private static final int INDEX_MAGIC = 0x544C4931;     /* "TLI1"; identifies an archive index */
+    private static final int INDEX_VERSION = 1;            /* Version of the index layout */
+    private static final int INDEX_HEADER_SIZE = 8;        /* Size of the index header, in bytes */
+    private static final String PARTITION_SUFFIX = ".dat"; /* Suffix of the partition files */
+    private static final long NO_WORKDAY_KEY = Long.MIN_VALUE; /* Key of a Workday that cannot be recognized */
+
+    /* Private member fields */
+    private File m_Directory;                              /* The directory holding the archive */
+    private String m_PartitionPrefix;                      /* Name that every partition file starts with */
+    private RandomAccessFile m_IndexFile;                  /* The index, held open for appending */
+    private ArrayList<Entry> m_Entries;                    /* Every archived Workday, ordered by day key */
+    private HashMap<Integer, ArrayList<Entry>> m_EntriesByDay; /* The archived Workdays of each day key */
+
+    /**
+     * Opens the archive in the given directory, creating it if it does not exist, and reads its index. A record left
+     * incomplete at the end of the index (for example, by process death) is discarded.
+     *
+     * @param directory The directory holding the archive.
+     * @param partitionPrefix The name that every partition file starts with.
+     * @param indexFileName The name of the index file.
+     * @throws IOException If the index cannot be opened or is not an archive index.
+     */
+    WorkdayArchive( File directory, String partitionPrefix, String indexFileName ) throws IOException
+    {
+        m_Directory = directory;
+        m_PartitionPrefix = partitionPrefix;
+        m_Entries = new ArrayList<>();
+        m_EntriesByDay = new HashMap<>();
+
+        if( ( directory.isDirectory() == false ) && ( directory.mkdirs() == false ) )
+        {
+            throw new IOException( "Could not create archive directory" );
+        }
+
+        m_IndexFile = new RandomAccessFile( new File( directory, indexFileName ), "rw" );
+
+        try
+        {
+            readIndex();
+        }
+        catch( IOException io_exception )
+        {
+            m_IndexFile.close();
+            throw io_exception;
+        }
+    }
+
+    /**
+     * Returns the day key of the given date.
+     *
+     * @param date The date.
+     * @return The day key, of the form yyyymmdd.
+     */
+    static int toDayKey( Calendar date )
+    {
+        return( ( date.get( Calendar.YEAR ) * 10000 ) + ( ( date.get( Calendar.MONTH ) + 1 ) * 100 ) +
+                date.get( Calendar.DAY_OF_MONTH ) );
+    }
+
+    /**
+     * Archives a completed Workday under the given day. A day may hold several Workdays; if it already holds an
+     * earlier copy of this one, the new copy replaces it.
+     *
+     * @param workday The completed Workday, which should not have an active task.
+     * @param dayKey The day key under which to archive the Workday.
+     * @return The index entry of the archived Workday.
+     * @throws IOException If the Workday could not be written.
+     */
+    synchronized Entry archive( Workday workday, int dayKey ) throws IOException
+    {
+        WorkdaySnapshot snapshot = workday.captureSnapshot( 0 );
+        ByteBuffer encodedSnapshot = snapshot.encode();
+        long offset;
+
+        /* Write the snapshot first; if the index record never follows, the partition merely holds unused bytes */
+        RandomAccessFile partitionFile = new RandomAccessFile( getPartitionFile( dayKey / 100 ), "rw" );
+
+        try
+        {
+            FileChannel channel = partitionFile.getChannel();
+            offset = channel.size();
+
+            writeFully( channel, encodedSnapshot, offset );
+            channel.force( false );
+        }
+        finally
+        {
+            partitionFile.close();
+        }
+
+        /* Summarize the current user tasks, so that ranges of days can be reported from the index alone */
+        String[] taskNames = new String[snapshot.getNumberOfUserTasks()];
+        long[] taskRuntimesMs = new long[taskNames.length];
+
+        for( int index = 0; index < taskNames.length; index++ )
+        {
+            int taskId = snapshot.getUserTaskId( index );
+
+            taskNames[index] = snapshot.getTaskName( taskId );
+            taskRuntimesMs[index] = snapshot.getTaskRuntimeMs( taskId );
+        }
+
+        Entry entry = new Entry( dayKey, offset, encodedSnapshot.limit(), taskNames, taskRuntimesMs,
+                                 getWorkdayKey( snapshot ) );
+        appendIndexRecord( entry );
+        addEntry( entry );
+
+        return( entry );
+    }
+
+    /**
+     * Returns the Workdays archived under the given day.
+     *
+     * @param dayKey The day key.
+     * @return The index entries of the day, in the order they were archived; empty if there are none.
+     */
+    synchronized ArrayList<Entry> getEntries( int dayKey )
+    {
+        ArrayList<Entry> entries = m_EntriesByDay.get( dayKey );
+
+        return( ( entries != null ) ? new ArrayList<>( entries ) : new ArrayList<Entry>() );
+    }
+
+    /**
+     * Returns the Workdays archived under the days in the given range.
+     *
+     * @param firstDayKey The day key of the first day in the range.
+     * @param lastDayKey The day key of the last day in the range.
+     * @return The index entries, ordered by day.
+     */
+    synchronized ArrayList<Entry> getEntries( int firstDayKey, int lastDayKey )
+    {
+        ArrayList<Entry> entries = new ArrayList<>();
+
+        for( int index = findFirstEntry( firstDayKey ); index < m_Entries.size(); index++ )
+        {
+            Entry entry = m_Entries.get( index );
+
+            if( entry.getDayKey() > lastDayKey )
+            {
+                break;
+            }
+
+            entries.add( entry );
+        }
+
+        return( entries );
+    }
+
+    /**
+     * Returns the Workdays archived in the given number of days up to and including the given date.
+     *
+     * @param lastDate The last date of the range.
+     * @param days The number of days in the range.
+     * @return The index entries, ordered by day.
+     */
+    ArrayList<Entry> getLastDays( Calendar lastDate, int days )
+    {
+        Calendar firstDate = (Calendar)lastDate.clone();
+        firstDate.add( Calendar.DAY_OF_MONTH, 1 - days );
+
+        return( getEntries( toDayKey( firstDate ), toDayKey( lastDate ) ) );
+    }
+
+    /**
+     * Returns the number of Workdays in the archive.
+     *
+     * @return The number of archived Workdays.
+     */
+    synchronized int size()
+    {
+        return( m_Entries.size() );
+    }
+
+    /**
+     * Reads an archived Workday from its partition.
+     *
+     * @param entry The index entry of the Workday.
+     * @return The snapshot of the Workday, which can be restored into a new Workday.
+     * @throws IOException If the Workday cannot be read or is corrupt.
+     */
+    WorkdaySnapshot load( Entry entry ) throws IOException
+    {
+        RandomAccessFile partitionFile = new RandomAccessFile( getPartitionFile( entry ), "r" );
+
+        try
+        {
+            FileChannel channel = partitionFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate( entry.getLength() );
+
+            while( buffer.hasRemaining() )
+            {
+                if( channel.read( buffer, entry.getOffset() + buffer.position() ) < 0 )
+                {
+                    throw new IOException( "Archived Workday is incomplete" );
+                }
+            }
+
+            buffer.flip();
+
+            return( WorkdaySnapshot.decode( buffer ) );
+        }
+        finally
+        {
+            partitionFile.close();
+        }
+    }
+
+    /**
+     * Returns the partition that an archived Workday is stored in. Each partition holds one calendar month.
+     *
+     * @param entry The index entry of the Workday.
+     * @return The partition key, of the form yyyymm.
+     */
+    int getPartitionKey( Entry entry )
+    {
+        return( entry.getDayKey() / 100 );
+    }
+
+    /**
+     * Returns the partition file that an archived Workday is stored in.
+     *
+     * @param entry The index entry of the Workday.
+     * @return The partition file.
+     */
+    File getPartitionFile( Entry entry )
+    {
+        return( getPartitionFile( getPartitionKey( entry ) ) );
+    }
+
+    /**
+     * Closes the archive.
+     *
+     * @throws IOException If the index cannot be closed.
+     */
+    synchronized void close() throws IOException
+    {
+        m_IndexFile.close();
+    }
+
+    /**
+     * Reads every intact index record, then truncates anything after them so that new records follow directly.
+     *
+     * @throws IOException If the index cannot be read or is not an archive index.
+     */
+    private void readIndex() throws IOException
+    {
+        FileChannel channel = m_IndexFile.getChannel();
+
+        if( channel.size() < INDEX_HEADER_SIZE )
+        {
+            /* New (or truncated) index; start it with a header */
+            ByteBuffer header = ByteBuffer.allocate( INDEX_HEADER_SIZE );
+            header.putInt( INDEX_MAGIC ).putInt( INDEX_VERSION ).flip();
+
+            channel.truncate( 0 );
+            writeFully( channel, header, 0 );
+            return;
+        }
+
+        /* The index holds a small record per day, so it is read in one go */
+        ByteBuffer buffer = ByteBuffer.allocate( (int)channel.size() );
+
+        while( buffer.hasRemaining() )
+        {
+            if( channel.read( buffer, buffer.position() ) < 0 )
+            {
+                throw new IOException( "Archive index ended unexpectedly" );
+            }
+        }
+
+        buffer.flip();
+
+        if( ( buffer.getInt() != INDEX_MAGIC ) || ( buffer.getInt() != INDEX_VERSION ) )
+        {
+            throw new IOException( "Not a supported archive index" );
+        }
+
+        CRC32 checksum = new CRC32();
+
+        while( buffer.remaining() >= 4 )
+        {
+            int start = buffer.position();
+            int bodyLength = buffer.getInt();
+
+            if( ( bodyLength < 0 ) || ( buffer.remaining() < bodyLength + 4 ) )
+            {
+                buffer.position( start );
+                break;
+            }
+
+            checksum.reset();
+            checksum.update( buffer.array(), buffer.position(), bodyLength );
+
+            if( buffer.getInt( buffer.position() + bodyLength ) != (int)checksum.getValue() )
+            {
+                buffer.position( start );
+                break;
+            }
+
+            addEntry( decodeEntry( buffer ) );
+            buffer.position( start + 4 + bodyLength + 4 );
+        }
+
+        channel.truncate( buffer.position() );
+    }
+
+    /**
+     * Appends the index record of an entry and forces it to the device.
+     *
+     * @param entry The entry to record.
+     * @throws IOException If the record could not be written.
+     */
+    private void appendIndexRecord( Entry entry ) throws IOException
+    {
+        int bodyLength = 4 + 8 + 4 + 4 + 8;
+
+        for( int index = 0; index < entry.getNumberOfTasks(); index++ )
+        {
+            bodyLength += 4 + ( entry.getTaskName( index ).length() * 2 ) + 8;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate( 4 + bodyLength + 4 );
+
+        buffer.putInt( bodyLength );
+        buffer.putInt( entry.getDayKey() ).putLong( entry.getOffset() ).putInt( entry.getLength() );
+        buffer.putInt( entry.getNumberOfTasks() );
+
+        for( int index = 0; index < entry.getNumberOfTasks(); index++ )
+        {
+            String taskName = entry.getTaskName( index );
+
+            buffer.putInt( taskName.length() );
+
+            for( int charIndex = 0; charIndex < taskName.length(); charIndex++ )
+            {
+                buffer.putChar( taskName.charAt( charIndex ) );
+            }
+
+            buffer.putLong( entry.getTaskRuntimeMs( index ) );
+        }
+
+        buffer.putLong( entry.getWorkdayKey() );
+
+        CRC32 checksum = new CRC32();
+        checksum.update( buffer.array(), 4, bodyLength );
+        buffer.putInt( (int)checksum.getValue() );
+        buffer.flip();
+
+        FileChannel channel = m_IndexFile.getChannel();
+        writeFully( channel, buffer, channel.size() );
+        channel.force( false );
+    }
+
+    /**
+     * Decodes the body of an index record at the buffer's position.
+     *
+     * @param buffer The buffer holding the record body.
+     * @return The decoded entry.
+     */
+    private static Entry decodeEntry( ByteBuffer buffer )
+    {
+        int dayKey = buffer.getInt();
+        long offset = buffer.getLong();
+        int length = buffer.getInt();
+        String[] taskNames = new String[buffer.getInt()];
+        long[] taskRuntimesMs = new long[taskNames.length];
+
+        for( int index = 0; index < taskNames.length; index++ )
+        {
+            char[] name = new char[buffer.getInt()];
+
+            for( int charIndex = 0; charIndex < name.length; charIndex++ )
+            {
+                name[charIndex] = buffer.getChar();
+            }
+
+            taskNames[index] = new String( name );
+            taskRuntimesMs[index] = buffer.getLong();
+        }
+
+        long workdayKey = buffer.getLong();
+
+        return( new Entry( dayKey, offset, length, taskNames, taskRuntimesMs, workdayKey ) );
+    }
+
+    /**
+     * Returns the key by which a Workday is recognized when it is archived again: the start timestamp of its first
+     * iteration.
+     *
+     * @param snapshot The snapshot of the Workday.
+     * @return The Workday key, or NO_WORKDAY_KEY if the Workday has no iterations.
+     */
+    private static long getWorkdayKey( WorkdaySnapshot snapshot )
+    {
+        long workdayKey = NO_WORKDAY_KEY;
+
+        if( snapshot.getTaskLog().size() > 0 )
+        {
+            workdayKey = snapshot.getTaskLog().getStartTimestampMs( 0 );
+        }
+        else if( snapshot.getActiveTaskId() != Task.NO_TASK_ID )
+        {
+            workdayKey = snapshot.getActiveStartTimestampMs();
+        }
+
+        return( workdayKey );
+    }
+
+    /**
+     * Adds an entry to the in-memory index, keeping the entries ordered by day. An earlier copy of the same Workday
+     * on the same day is replaced.
+     *
+     * @param entry The entry to add.
+     */
+    private void addEntry( Entry entry )
+    {
+        ArrayList<Entry> dayEntries = m_EntriesByDay.get( entry.getDayKey() );
+
+        if( dayEntries == null )
+        {
+            dayEntries = new ArrayList<>( 1 );
+            m_EntriesByDay.put( entry.getDayKey(), dayEntries );
+        }
+
+        Entry previous = null;
+
+        if( entry.getWorkdayKey() != NO_WORKDAY_KEY )
+        {
+            for( Entry dayEntry : dayEntries )
+            {
+                if( dayEntry.getWorkdayKey() == entry.getWorkdayKey() )
+                {
+                    previous = dayEntry;
+                    break;
+                }
+            }
+        }
+
+        if( previous != null )
+        {
+            dayEntries.set( dayEntries.indexOf( previous ), entry );
+            m_Entries.set( m_Entries.indexOf( previous ), entry );
+        }
+        else
+        {
+            /* Workdays are normally archived in date order, so this is almost always an append */
+            m_Entries.add( findFirstEntry( entry.getDayKey() + 1 ), entry );
+            dayEntries.add( entry );
+        }
+    }
+
+    /**
+     * Finds the position of the first entry on or after the given day.
+     *
+     * @param dayKey The day key.
+     * @return The position of the first entry whose day key is not less than the given one.
+     */
+    private int findFirstEntry( int dayKey )
+    {
+        int low = 0;
+        int high = m_Entries.size();
+
+        while( low < high )
+        {
+            int middle = ( low + high ) >>> 1;
+
+            if( m_Entries.get( middle ).getDayKey() < dayKey )
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+
+        return( low );
+    }
+
+    /**
+     * Returns the partition file of the given month.
+     *
+     * @param monthKey The month, of the form yyyymm.
+     * @return The partition file, named after the month as "prefix" + "YYYY_MM".
+     */
+    private File getPartitionFile( int monthKey )
+    {
+        return( new File( m_Directory, m_PartitionPrefix +
+                          String.format( Locale.US, "%04d_%02d", monthKey / 100, monthKey % 100 ) +
+                          PARTITION_SUFFIX ) );
+    }
+
+    /**
+     * Writes the whole buffer to the channel at the given position.
+     *
+     * @param channel The destination channel.
+     * @param buffer The bytes to write.
+     * @param position The position in the channel at which to write.
+     * @throws IOException If the write fails.
+     */
+    private static void writeFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException
+    {
+        while( buffer.hasRemaining() )
+        {
+            position += channel.write( buffer, position );
+        }
+    }
+
+    /**
+     * Index entry of one archived Workday: its day, where it is stored and the runtime of each of its tasks.
+     */
+    static final class Entry
+    {
+        /* Private member fields */
+        private final int m_DayKey;                        /* The day under which the Workday is archived */
+        private final long m_Offset;                       /* Position of the snapshot within the partition */
+        private final int m_Length;                        /* Length of the snapshot, in bytes */
+        private final String[] m_TaskNames;                /* The name of each user task */
+        private final long[] m_TaskRuntimesMs;             /* The total runtime of each user task */
+        private final long m_TotalRuntimeMs;               /* The total runtime of all user tasks */
+        private final long m_WorkdayKey;                   /* Recognizes the Workday when it is archived again */
+
+        /**
+         * Constructs an index entry.
+         *
+         * @param dayKey The day under which the Workday is archived.
+         * @param offset The position of the snapshot within the partition.
+         * @param length The length of the snapshot, in bytes.
+         * @param taskNames The name of each user task.
+         * @param taskRuntimesMs The total runtime of each user task.
+         * @param workdayKey The key that recognizes the Workday when it is archived again.
+         */
+        Entry( int dayKey, long offset, int length, String[] taskNames, long[] taskRuntimesMs, long workdayKey )
+        {
+            long totalRuntimeMs = 0;
+
+            for( long taskRuntimeMs : taskRuntimesMs )
+            {
+                totalRuntimeMs += taskRuntimeMs;
+            }
+
+            m_DayKey = dayKey;
+            m_Offset = offset;
+            m_Length = length;
+            m_TaskNames = taskNames;
+            m_TaskRuntimesMs = taskRuntimesMs;
+            m_TotalRuntimeMs = totalRuntimeMs;
+            m_WorkdayKey = workdayKey;
+        }
+
+        /**
+         * Returns the day under which the Workday is archived.
+         *
+         * @return The day key, of the form yyyymmdd.
+         */
+        int getDayKey()
+        {
+            return( m_DayKey );
+        }
+
+        /**
+         * Returns the position of the Workday's snapshot within its partition file.
+         *
+         * @return The offset, in bytes.
+         */
+        long getOffset()
+        {
+            return( m_Offset );
+        }
+
+        /**
+         * Returns the length of the Workday's snapshot.
+         *
+         * @return The length, in bytes.
+         */
+        int getLength()
+        {
+            return( m_Length );
+        }
+
+        /**
+         * Returns the number of user tasks in the Workday.
+         *
+         * @return The number of user tasks.
+         */
+        int getNumberOfTasks()
+        {
+            return( m_TaskNames.length );
+        }
+
+        /**
+         * Returns the name of a user task.
+         *
+         * @param index The index of the task.
+         * @return The name of the task.
+         */
+        String getTaskName( int index )
+        {
+            return( m_TaskNames[index] );
+        }
+
+        /**
+         * Returns the total runtime of a user task.
+         *
+         * @param index The index of the task.
+         * @return The runtime of the task, in milliseconds.
+         */
+        long getTaskRuntimeMs( int index )
+        {
+            return( m_TaskRuntimesMs[index] );
+        }
+
+        /**
+         * Returns the total runtime of all user tasks in the Workday.
+         *
+         * @return The total runtime, in milliseconds.
+         */
+        long getTotalRuntimeMs()
+        {
+            return( m_TotalRuntimeMs );
+        }
+
+        /**
+         * Returns the key that recognizes the Workday when it is archived again.
+         *
+         * @return The Workday key, or NO_WORKDAY_KEY if the Workday cannot be recognized.
+         */
+        long getWorkdayKey()
+        {
+            return( m_WorkdayKey );
+        }
+    }
+}
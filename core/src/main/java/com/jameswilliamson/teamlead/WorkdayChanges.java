@@ -0,0 +1,145 @@
+/**
+ * WorkdayChanges.java
+ *
+ * Coalesces the changes made to a Workday into a set of flags, one per kind of change, for a consumer on another
+ * thread that only needs to know what kinds of change happened since it last looked, not each one. However fast the
+ * Workday is changed, the consumer is handed one set of flags at a time: recording a change only sets a flag, and
+ * handing over kinds of change that the consumer has yet to take costs a single read.
+ *
+ * The changes are recorded on the thread that owns the Workday and only handed over by publish(), once the snapshot
+ * that reflects them has been published, so a consumer never sees a change before the state it refers to.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+final class WorkdayChanges implements WorkdayListener
+{
+    /* Public constants */
+    static final int TASK_ADDED = 0x01;                    /* A user task has been added */
+    static final int TASK_DELETED = 0x02;                  /* A user task has been deleted */
+    static final int CONTEXT_SWITCH = 0x04;                /* A different task has become active */
+    static final int WORKDAY_ENDED = 0x08;                 /* The workday has been ended */
+    static final int WORKDAY_RESET = 0x10;                 /* The task log and timing data have been reset */
+    static final int LIMIT_CROSSED = 0x20;                 /* The active task has gone over its time limit */
+    static final int TASK_EDITED = 0x40;                   /* The color of a task has been changed */
+
+    /* Private member fields */
+    private int m_Recorded;                                /* Changes not yet published; owner thread only */
+    private int m_RecordedLimitTaskId;                     /* The last task to cross its limit, not yet published */
+    private final AtomicInteger m_Published;               /* Changes published but not yet taken */
+    private volatile int m_LimitCrossedTaskId;             /* The last task to cross its limit, once published */
+
+    /**
+     * Constructs the set, with no changes pending.
+     */
+    WorkdayChanges()
+    {
+        m_Recorded = 0;
+        m_RecordedLimitTaskId = Task.NO_TASK_ID;
+        m_Published = new AtomicInteger( 0 );
+        m_LimitCrossedTaskId = Task.NO_TASK_ID;
+    }
+
+    @Override
+    public void onTaskAdded( Task task, long timestampMs )
+    {
+        m_Recorded |= TASK_ADDED;
+    }
+
+    @Override
+    public void onTaskDeleted( int taskId, long timestampMs )
+    {
+        m_Recorded |= TASK_DELETED;
+    }
+
+    @Override
+    public void onTaskColorChanged( int taskId, int color, long timestampMs )
+    {
+        m_Recorded |= TASK_EDITED;
+    }
+
+    @Override
+    public void onContextSwitch( int taskId, long timestampMs, long timeBase )
+    {
+        m_Recorded |= CONTEXT_SWITCH;
+    }
+
+    @Override
+    public void onWorkdayEnded( long timestampMs )
+    {
+        m_Recorded |= WORKDAY_ENDED;
+    }
+
+    @Override
+    public void onWorkdayReset( long timestampMs )
+    {
+        m_Recorded |= WORKDAY_RESET;
+    }
+
+    @Override
+    public void onTaskLimitCrossed( int taskId, long timestampMs )
+    {
+        m_Recorded |= LIMIT_CROSSED;
+        m_RecordedLimitTaskId = taskId;
+    }
+
+    /**
+     * Hands the changes recorded so far to the consumer, merging them with any it has not taken yet. Must be called
+     * on the thread that owns the Workday, once the changes have been published.
+     *
+     * @return True if any changes were handed over, false if none had been recorded.
+     */
+    boolean publish()
+    {
+        int recorded = m_Recorded;
+        int published;
+
+        if( recorded != 0 )
+        {
+            if( ( recorded & LIMIT_CROSSED ) != 0 )
+            {
+                m_LimitCrossedTaskId = m_RecordedLimitTaskId;
+            }
+
+            /* Only the first change of each kind since the consumer last looked needs to write the shared flags */
+            do
+            {
+                published = m_Published.get();
+            }
+            while( ( ( published | recorded ) != published ) &&
+                   ( m_Published.compareAndSet( published, published | recorded ) == false ) );
+
+            m_Recorded = 0;
+        }
+
+        return( recorded != 0 );
+    }
+
+    /**
+     * Takes every change handed over since the last call, leaving none pending. May be called on any thread.
+     *
+     * @return The changes, as a combination of the change flags, or zero if there were none.
+     */
+    int takeChanges()
+    {
+        return( m_Published.getAndSet( 0 ) );
+    }
+
+    /**
+     * Returns the task that most recently crossed its time limit, as of the changes handed over. May be called on any
+     * thread.
+     *
+     * @return The ID of the task, or Task.NO_TASK_ID if no task has crossed its limit.
+     */
+    int getLimitCrossedTaskId()
+    {
+        return( m_LimitCrossedTaskId );
+    }
+}
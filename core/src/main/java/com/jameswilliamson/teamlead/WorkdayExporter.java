@@ -0,0 +1,769 @@
+/**
+ * WorkdayExporter.java
+ *
+ * Exports the task log of a Workday, followed by the totals of each user task, to a CSV or JSON file. The Workday's
+ * latest published snapshot, which shares the concluded entries of the task log rather than copying them, is
+ * exported, and the file is written on a background executor. Each entry is formatted straight into a fixed-size
+ * character buffer that is encoded and written through the file channel whenever it fills, so an export uses the
+ * same amount of memory however long the log is. Progress is reported, and cancellation checked, every
+ * PROGRESS_INTERVAL entries.
+ *
+ * CSV layout: a header line and one line per log entry, oldest first; a blank line; then a header line and one line
+ * per user task. JSON layout: an object holding a "log" array of entries, oldest first, and a "tasks" array of task
+ * totals.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.concurrent.Executor;
+
+
+class WorkdayExporter
+{
+    /* Public constants */
+    static final int PROGRESS_INTERVAL = 4096;             /* Entries written between progress reports */
+
+    /* Private constants */
+    private static final String[] LOG_FIELDS = { "entry", "task_id", "task_name", "start_ms", "runtime_ms",
+                                                 "runtime" };
+    private static final String[] TOTALS_FIELDS = { "task_id", "task_name", "runtime_ms", "runtime", "iterations",
+                                                    "percentage" };
+
+    /* Private member fields */
+    private Executor m_Executor;                           /* Writes the export files in the background */
+
+    /**
+     * The file formats in which a Workday can be exported.
+     */
+    enum Format
+    {
+        CSV( ".csv" ),
+        JSON( ".json" );
+
+        /* Private member fields */
+        private final String m_FileExtension;              /* Conventional extension of a file in this format */
+
+        Format( String fileExtension )
+        {
+            m_FileExtension = fileExtension;
+        }
+
+        /**
+         * Returns the conventional extension of a file in this format.
+         *
+         * @return The file extension, including the leading period.
+         */
+        String getFileExtension()
+        {
+            return( m_FileExtension );
+        }
+    }
+
+    /**
+     * Receives the progress and outcome of an export. Every method is called on the thread of the executor.
+     */
+    interface ExportListener
+    {
+        /**
+         * Called periodically while the log is written, and once more when all of it has been written.
+         *
+         * @param entriesWritten The number of log entries written so far.
+         * @param totalEntries The number of log entries being exported.
+         */
+        void onExportProgress( int entriesWritten, int totalEntries );
+
+        /**
+         * Called when the export file is complete.
+         *
+         * @param file The export file.
+         */
+        void onExportFinished( File file );
+
+        /**
+         * Called when the export was cancelled. The incomplete file has been deleted.
+         */
+        void onExportCancelled();
+
+        /**
+         * Called when the export file could not be written. The incomplete file has been deleted.
+         *
+         * @param error The failure.
+         */
+        void onExportFailed( IOException error );
+    }
+
+    /**
+     * Constructs the exporter.
+     *
+     * @param executor Writes the export files in the background.
+     */
+    WorkdayExporter( Executor executor )
+    {
+        m_Executor = executor;
+    }
+
+    /**
+     * Starts to export a published snapshot of a Workday. May be called on any thread; the file is written on the
+     * executor.
+     *
+     * @param snapshot The snapshot to export.
+     * @param timeMs The time of the Workday's clock, against which the active iteration's runtime is measured.
+     * @param file The file to write; it is replaced if it exists.
+     * @param format The format of the file.
+     * @param listener Receives the progress and outcome of the export.
+     * @return The export, through which it can be cancelled.
+     */
+    Export export( WorkdaySnapshot snapshot, long timeMs, File file, Format format, ExportListener listener )
+    {
+        Export export = new Export( snapshot, timeMs, file, format, listener );
+        m_Executor.execute( export );
+
+        return( export );
+    }
+
+    /**
+     * One export of a Workday to a file.
+     */
+    static final class Export implements Runnable
+    {
+        /* Private member fields */
+        private final WorkdaySnapshot m_Snapshot;          /* The Workday, as of the start of the export */
+        private final long m_ActiveRuntimeMs;              /* Runtime of the iteration in progress, if any, then */
+        private final int m_TotalEntries;                  /* The concluded entries, plus the one in progress */
+        private final File m_File;                         /* The export file */
+        private final Format m_Format;                     /* The format of the export file */
+        private final ExportListener m_Listener;           /* Receives the progress and outcome */
+        private volatile boolean m_Cancelled;              /* Set on any thread to stop the export */
+
+        /**
+         * Captures the Workday for export.
+         *
+         * @param snapshot The snapshot to export.
+         * @param timeMs The time of the Workday's clock as the export starts.
+         * @param file The file to write.
+         * @param format The format of the file.
+         * @param listener Receives the progress and outcome of the export.
+         */
+        private Export( WorkdaySnapshot snapshot, long timeMs, File file, Format format, ExportListener listener )
+        {
+            m_Snapshot = snapshot;
+            m_File = file;
+            m_Format = format;
+            m_Listener = listener;
+            m_Cancelled = false;
+
+            if( m_Snapshot.getActiveTaskId() != Task.NO_TASK_ID )
+            {
+                /* The snapshot holds the concluded runtime of the active task; the rest is the iteration in progress */
+                m_ActiveRuntimeMs = Math.max( 0, timeMs - m_Snapshot.getActiveStartTimestampMs() );
+                m_TotalEntries = m_Snapshot.getTaskLog().size() + 1;
+            }
+            else
+            {
+                m_ActiveRuntimeMs = 0;
+                m_TotalEntries = m_Snapshot.getTaskLog().size();
+            }
+        }
+
+        /**
+         * Asks the export to stop. It stops at the next progress interval, deletes the incomplete file and reports
+         * that it was cancelled, unless it has already finished. May be called on any thread.
+         */
+        void cancel()
+        {
+            m_Cancelled = true;
+        }
+
+        /**
+         * Returns the number of log entries being exported.
+         *
+         * @return The number of log entries.
+         */
+        int getTotalEntries()
+        {
+            return( m_TotalEntries );
+        }
+
+        /**
+         * Writes the export file, then reports the outcome. Runs on the executor.
+         */
+        @Override
+        public void run()
+        {
+            boolean finished = false;
+
+            try
+            {
+                FileOutputStream outputStream = new FileOutputStream( m_File );
+
+                try
+                {
+                    ChannelWriter writer = new ChannelWriter( outputStream.getChannel() );
+
+                    finished = writeExport( writer );
+
+                    if( finished )
+                    {
+                        writer.flush();
+                    }
+                }
+                finally
+                {
+                    outputStream.close();
+                }
+            }
+            catch( IOException io_exception )
+            {
+                m_File.delete();
+                m_Listener.onExportFailed( io_exception );
+                return;
+            }
+
+            if( finished )
+            {
+                m_Listener.onExportFinished( m_File );
+            }
+            else
+            {
+                m_File.delete();
+                m_Listener.onExportCancelled();
+            }
+        }
+
+        /**
+         * Writes the log entries, oldest first, then the totals of each user task.
+         *
+         * @param writer Writes to the export file.
+         * @return True if everything was written, false if the export was cancelled.
+         * @throws IOException If the export file cannot be written.
+         */
+        private boolean writeExport( ChannelWriter writer ) throws IOException
+        {
+            TaskLog taskLog = m_Snapshot.getTaskLog();
+            int[] iterations = new int[m_Snapshot.getTaskIdCount()];
+            boolean json = ( m_Format == Format.JSON );
+
+            if( json )
+            {
+                writer.write( "{\n  \"log\": [" );
+            }
+            else
+            {
+                writeCsvHeader( writer, LOG_FIELDS );
+            }
+
+            for( int entry = 0; entry < m_TotalEntries; entry++ )
+            {
+                if( ( entry % PROGRESS_INTERVAL ) == 0 )
+                {
+                    if( m_Cancelled )
+                    {
+                        return( false );
+                    }
+
+                    m_Listener.onExportProgress( entry, m_TotalEntries );
+                }
+
+                int taskId;
+                long startTimestampMs;
+                long runtimeMs;
+
+                if( entry < taskLog.size() )
+                {
+                    taskId = taskLog.getTaskId( entry );
+                    startTimestampMs = taskLog.getStartTimestampMs( entry );
+                    runtimeMs = taskLog.getRuntimeMs( entry );
+                }
+                else
+                {
+                    /* The iteration in progress, which is not part of the shared log */
+                    taskId = m_Snapshot.getActiveTaskId();
+                    startTimestampMs = m_Snapshot.getActiveStartTimestampMs();
+                    runtimeMs = m_ActiveRuntimeMs;
+                }
+
+                iterations[taskId]++;
+
+                beginRecord( writer, json, entry == 0 );
+                writeField( writer, json, 0, LOG_FIELDS, entry + 1 );
+                writeField( writer, json, 1, LOG_FIELDS, taskId );
+                writeField( writer, json, 2, LOG_FIELDS, m_Snapshot.getTaskName( taskId ) );
+                writeField( writer, json, 3, LOG_FIELDS, startTimestampMs );
+                writeField( writer, json, 4, LOG_FIELDS, runtimeMs );
+                writeRuntimeField( writer, json, 5, LOG_FIELDS, runtimeMs );
+                endRecord( writer, json );
+            }
+
+            if( json )
+            {
+                writer.write( ( m_TotalEntries > 0 ) ? "\n  ],\n  \"tasks\": [" : "],\n  \"tasks\": [" );
+            }
+            else
+            {
+                writer.write( '\n' );
+                writeCsvHeader( writer, TOTALS_FIELDS );
+            }
+
+            boolean userTaskActive = false;
+
+            for( int index = 0; index < m_Snapshot.getNumberOfUserTasks(); index++ )
+            {
+                userTaskActive |= ( m_Snapshot.getUserTaskId( index ) == m_Snapshot.getActiveTaskId() );
+            }
+
+            long totalRuntimeMs = m_Snapshot.getUserTaskRuntimeMs() + ( userTaskActive ? m_ActiveRuntimeMs : 0 );
+
+            for( int index = 0; index < m_Snapshot.getNumberOfUserTasks(); index++ )
+            {
+                int taskId = m_Snapshot.getUserTaskId( index );
+                long runtimeMs = m_Snapshot.getTaskRuntimeMs( taskId );
+
+                if( taskId == m_Snapshot.getActiveTaskId() )
+                {
+                    runtimeMs += m_ActiveRuntimeMs;
+                }
+
+                beginRecord( writer, json, index == 0 );
+                writeField( writer, json, 0, TOTALS_FIELDS, taskId );
+                writeField( writer, json, 1, TOTALS_FIELDS, m_Snapshot.getTaskName( taskId ) );
+                writeField( writer, json, 2, TOTALS_FIELDS, runtimeMs );
+                writeRuntimeField( writer, json, 3, TOTALS_FIELDS, runtimeMs );
+                writeField( writer, json, 4, TOTALS_FIELDS, iterations[taskId] );
+                writeFieldName( writer, json, 5, TOTALS_FIELDS );
+                writer.writeHundredths( ( totalRuntimeMs != 0 ) ?
+                                        Math.round( ( runtimeMs * 10000.0 ) / totalRuntimeMs ) : 0 );
+                endRecord( writer, json );
+            }
+
+            if( json )
+            {
+                writer.write( ( m_Snapshot.getNumberOfUserTasks() > 0 ) ? "\n  ]\n}\n" : "]\n}\n" );
+            }
+
+            m_Listener.onExportProgress( m_TotalEntries, m_TotalEntries );
+
+            return( true );
+        }
+
+        /**
+         * Writes a CSV header line.
+         *
+         * @param writer Writes to the export file.
+         * @param fields The names of the fields.
+         * @throws IOException If the export file cannot be written.
+         */
+        private static void writeCsvHeader( ChannelWriter writer, String[] fields ) throws IOException
+        {
+            for( int field = 0; field < fields.length; field++ )
+            {
+                if( field > 0 )
+                {
+                    writer.write( ',' );
+                }
+
+                writer.write( fields[field] );
+            }
+
+            writer.write( '\n' );
+        }
+
+        /**
+         * Starts a record: a JSON object within an array, or nothing for a CSV line.
+         *
+         * @param writer Writes to the export file.
+         * @param json True for JSON, false for CSV.
+         * @param first True if this is the first record of its array.
+         * @throws IOException If the export file cannot be written.
+         */
+        private static void beginRecord( ChannelWriter writer, boolean json, boolean first ) throws IOException
+        {
+            if( json )
+            {
+                writer.write( first ? "\n    { " : ",\n    { " );
+            }
+        }
+
+        /**
+         * Ends a record: closes a JSON object, or ends a CSV line.
+         *
+         * @param writer Writes to the export file.
+         * @param json True for JSON, false for CSV.
+         * @throws IOException If the export file cannot be written.
+         */
+        private static void endRecord( ChannelWriter writer, boolean json ) throws IOException
+        {
+            writer.write( json ? " }" : "\n" );
+        }
+
+        /**
+         * Writes whatever precedes the value of a field: its name in JSON, or a separator in CSV.
+         *
+         * @param writer Writes to the export file.
+         * @param json True for JSON, false for CSV.
+         * @param field The position of the field in its record.
+         * @param fields The names of the fields of the record.
+         * @throws IOException If the export file cannot be written.
+         */
+        private static void writeFieldName( ChannelWriter writer, boolean json, int field, String[] fields )
+                throws IOException
+        {
+            if( json )
+            {
+                writer.write( ( field > 0 ) ? ", \"" : "\"" );
+                writer.write( fields[field] );
+                writer.write( "\": " );
+            }
+            else if( field > 0 )
+            {
+                writer.write( ',' );
+            }
+        }
+
+        /**
+         * Writes a numeric field.
+         *
+         * @param writer Writes to the export file.
+         * @param json True for JSON, false for CSV.
+         * @param field The position of the field in its record.
+         * @param fields The names of the fields of the record.
+         * @param value The value of the field.
+         * @throws IOException If the export file cannot be written.
+         */
+        private static void writeField( ChannelWriter writer, boolean json, int field, String[] fields, long value )
+                throws IOException
+        {
+            writeFieldName( writer, json, field, fields );
+            writer.write( value );
+        }
+
+        /**
+         * Writes a text field, quoted and escaped as the format requires.
+         *
+         * @param writer Writes to the export file.
+         * @param json True for JSON, false for CSV.
+         * @param field The position of the field in its record.
+         * @param fields The names of the fields of the record.
+         * @param value The value of the field.
+         * @throws IOException If the export file cannot be written.
+         */
+        private static void writeField( ChannelWriter writer, boolean json, int field, String[] fields,
+                                        String value ) throws IOException
+        {
+            writeFieldName( writer, json, field, fields );
+
+            if( json )
+            {
+                writer.writeJsonString( value );
+            }
+            else
+            {
+                writer.writeCsvString( value );
+            }
+        }
+
+        /**
+         * Writes a runtime as "hh:mm:ss", quoted in JSON.
+         *
+         * @param writer Writes to the export file.
+         * @param json True for JSON, false for CSV.
+         * @param field The position of the field in its record.
+         * @param fields The names of the fields of the record.
+         * @param runtimeMs The runtime, in milliseconds.
+         * @throws IOException If the export file cannot be written.
+         */
+        private static void writeRuntimeField( ChannelWriter writer, boolean json, int field, String[] fields,
+                                               long runtimeMs ) throws IOException
+        {
+            writeFieldName( writer, json, field, fields );
+
+            if( json )
+            {
+                writer.write( '"' );
+            }
+
+            writer.writeRuntime( runtimeMs );
+
+            if( json )
+            {
+                writer.write( '"' );
+            }
+        }
+    }
+
+    /**
+     * Buffered UTF-8 writer over a file channel. Characters are collected in a fixed-size buffer, which is encoded
+     * into a fixed-size byte buffer and written to the channel whenever it fills.
+     */
+    private static final class ChannelWriter
+    {
+        /* Private constants */
+        private static final int BUFFER_CHARS = 8192;      /* Characters collected before they are encoded */
+        private static final int BUFFER_BYTES = 16384;     /* Encoded bytes collected before they are written */
+
+        /* Private member fields */
+        private FileChannel m_Channel;                     /* The channel of the export file */
+        private CharsetEncoder m_Encoder;                  /* Encodes the characters as UTF-8 */
+        private CharBuffer m_Chars;                        /* Characters not yet encoded */
+        private ByteBuffer m_Bytes;                        /* Encoded bytes not yet written */
+        private char[] m_Digits;                           /* Reused to format numbers */
+
+        /**
+         * Constructs the writer.
+         *
+         * @param channel The channel of the export file, positioned where writing should start.
+         */
+        ChannelWriter( FileChannel channel )
+        {
+            m_Channel = channel;
+            m_Encoder = Charset.forName( "UTF-8" ).newEncoder();
+            m_Chars = CharBuffer.allocate( BUFFER_CHARS );
+            m_Bytes = ByteBuffer.allocate( BUFFER_BYTES );
+            m_Digits = new char[RuntimeFormatter.MAX_FORMATTED_LENGTH];
+        }
+
+        /**
+         * Writes one character.
+         *
+         * @param c The character.
+         * @throws IOException If the export file cannot be written.
+         */
+        void write( char c ) throws IOException
+        {
+            if( !m_Chars.hasRemaining() )
+            {
+                encode( false );
+            }
+
+            m_Chars.put( c );
+        }
+
+        /**
+         * Writes a string as it is.
+         *
+         * @param s The string.
+         * @throws IOException If the export file cannot be written.
+         */
+        void write( String s ) throws IOException
+        {
+            for( int index = 0; index < s.length(); index++ )
+            {
+                write( s.charAt( index ) );
+            }
+        }
+
+        /**
+         * Writes the decimal digits of a value.
+         *
+         * @param value The value.
+         * @throws IOException If the export file cannot be written.
+         */
+        void write( long value ) throws IOException
+        {
+            if( value < 0 )
+            {
+                write( '-' );
+            }
+
+            int length = 0;
+
+            do
+            {
+                /* Negative remainders are negated, so that Long.MIN_VALUE is written correctly too */
+                m_Digits[length++] = (char)( '0' + Math.abs( value % 10 ) );
+                value /= 10;
+            }
+            while( value != 0 );
+
+            while( length > 0 )
+            {
+                write( m_Digits[--length] );
+            }
+        }
+
+        /**
+         * Writes a non-negative number of hundredths with two decimal places, such as "12.50".
+         *
+         * @param hundredths The value, in hundredths.
+         * @throws IOException If the export file cannot be written.
+         */
+        void writeHundredths( long hundredths ) throws IOException
+        {
+            long remainder = hundredths % 100;
+
+            write( hundredths / 100 );
+            write( '.' );
+            write( (char)( '0' + ( remainder / 10 ) ) );
+            write( (char)( '0' + ( remainder % 10 ) ) );
+        }
+
+        /**
+         * Writes a runtime as "hh:mm:ss".
+         *
+         * @param runtimeMs The runtime, in milliseconds.
+         * @throws IOException If the export file cannot be written.
+         */
+        void writeRuntime( long runtimeMs ) throws IOException
+        {
+            int length = RuntimeFormatter.formatMs( runtimeMs, m_Digits, 0 );
+
+            for( int index = 0; index < length; index++ )
+            {
+                write( m_Digits[index] );
+            }
+        }
+
+        /**
+         * Writes a string as a CSV field, which is quoted only if it contains a separator, quote or line break.
+         *
+         * @param s The string.
+         * @throws IOException If the export file cannot be written.
+         */
+        void writeCsvString( String s ) throws IOException
+        {
+            boolean quoted = false;
+
+            for( int index = 0; ( index < s.length() ) && !quoted; index++ )
+            {
+                char c = s.charAt( index );
+                quoted = ( c == ',' ) || ( c == '"' ) || ( c == '\n' ) || ( c == '\r' );
+            }
+
+            if( !quoted )
+            {
+                write( s );
+                return;
+            }
+
+            write( '"' );
+
+            for( int index = 0; index < s.length(); index++ )
+            {
+                char c = s.charAt( index );
+
+                if( c == '"' )
+                {
+                    /* A quote within a quoted field is doubled */
+                    write( '"' );
+                }
+
+                write( c );
+            }
+
+            write( '"' );
+        }
+
+        /**
+         * Writes a string as a quoted JSON string.
+         *
+         * @param s The string.
+         * @throws IOException If the export file cannot be written.
+         */
+        void writeJsonString( String s ) throws IOException
+        {
+            write( '"' );
+
+            for( int index = 0; index < s.length(); index++ )
+            {
+                char c = s.charAt( index );
+
+                if( ( c == '"' ) || ( c == '\\' ) )
+                {
+                    write( '\\' );
+                    write( c );
+                }
+                else if( c < 0x20 )
+                {
+                    /* Control characters are written as Unicode escapes */
+                    write( "\\u00" );
+                    write( Character.forDigit( c >> 4, 16 ) );
+                    write( Character.forDigit( c & 0xF, 16 ) );
+                }
+                else
+                {
+                    write( c );
+                }
+            }
+
+            write( '"' );
+        }
+
+        /**
+         * Encodes and writes everything that has been written so far.
+         *
+         * @throws IOException If the export file cannot be written.
+         */
+        void flush() throws IOException
+        {
+            encode( true );
+
+            while( m_Encoder.flush( m_Bytes ) == CoderResult.OVERFLOW )
+            {
+                drain();
+            }
+
+            drain();
+        }
+
+        /**
+         * Encodes the collected characters, writing the encoded bytes to the channel whenever the byte buffer fills.
+         * A surrogate pair split across the end of the character buffer is kept until the rest of it is written.
+         *
+         * @param endOfInput True if no more characters will be written.
+         * @throws IOException If the export file cannot be written.
+         */
+        private void encode( boolean endOfInput ) throws IOException
+        {
+            m_Chars.flip();
+
+            while( true )
+            {
+                CoderResult result = m_Encoder.encode( m_Chars, m_Bytes, endOfInput );
+
+                if( result.isOverflow() )
+                {
+                    drain();
+                }
+                else if( result.isUnderflow() )
+                {
+                    break;
+                }
+                else
+                {
+                    result.throwException();
+                }
+            }
+
+            m_Chars.compact();
+        }
+
+        /**
+         * Writes the encoded bytes to the channel.
+         *
+         * @throws IOException If the export file cannot be written.
+         */
+        private void drain() throws IOException
+        {
+            m_Bytes.flip();
+
+            while( m_Bytes.hasRemaining() )
+            {
+                m_Channel.write( m_Bytes );
+            }
+
+            m_Bytes.clear();
+        }
+    }
+}
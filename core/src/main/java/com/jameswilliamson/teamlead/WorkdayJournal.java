@@ -0,0 +1,559 @@
+/**
+ * WorkdayJournal.java
+ *
+ * Append-only write-ahead journal of the changes made to a Workday. Each change is stored as one fixed-size binary
+ * record protected by a checksum, so preserving a change costs the same number of bytes no matter how long the
+ * Workday has run. The Workday is recovered by replaying the records, in order, against a new Workday.
+ *
+ * Record layout (RECORD_SIZE bytes, big-endian):
+ *     0  record type              1 byte
+ *     1  task name length         1 byte
+ *     2  reserved                 2 bytes
+ *     4  task ID                  4 bytes
+ *     8  clock timestamp (ms)     8 bytes
+ *    16  time limit / time base   8 bytes
+ *    24  task color               4 bytes
+ *    28  task name (UTF-16)       TASK_NAME_CHARS_MAX chars
+ *    44  CRC-32 of bytes 0-43     4 bytes
+ *
+ * The task fields are only meaningful for the record types that refer to a task; a task's time limit (ms) is stored
+ * at offset 16. A context switch stores the clock time base of its timestamp there instead, so that replay can tell
+ * whether the switch happened before the device restarted. A change of a task's color stores only the new color.
+ *
+ * Appending a record only encodes it into the pending group, in memory. commit() writes the whole group to the file
+ * with one write and, if asked, forces it to the device once, so the cost of a write and a flush is shared by every
+ * record in the group. Records can be appended on one thread while another commits.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+
+class WorkdayJournal implements WorkdayListener
+{
+    /* Public constants */
+    static final int HEADER_SIZE = 8;                          /* Size of the file header, in bytes */
+    static final int RECORD_SIZE = 48;                         /* Size of every journal record, in bytes */
+
+    /* Private constants */
+    private static final int JOURNAL_MAGIC = 0x544C4A31;       /* "TLJ1"; identifies a journal file */
+    private static final int JOURNAL_VERSION = 1;              /* Version of the record layout */
+    private static final int CHECKED_BYTES = RECORD_SIZE - 4;  /* Number of record bytes covered by the checksum */
+    private static final int RECORDS_PER_READ = 1024;          /* Number of records read at once when scanning */
+    private static final int GROUP_RECORDS_INITIAL = 64;       /* Records that the pending group can first hold */
+
+    private static final byte RECORD_TASK_ADDED = 1;
+    private static final byte RECORD_TASK_DELETED = 2;
+    private static final byte RECORD_CONTEXT_SWITCH = 3;
+    private static final byte RECORD_WORKDAY_ENDED = 4;
+    private static final byte RECORD_WORKDAY_RESET = 5;
+    private static final byte RECORD_TASK_COLOR = 6;
+
+    /* Private member fields */
+    private File m_File;                                       /* The journal file */
+    private RandomAccessFile m_RandomAccessFile;               /* Holds the journal file open for writing */
+    private FileChannel m_Channel;                             /* Channel through which records are appended */
+    private ByteBuffer m_RecordBuffer;                         /* Reused to encode each record */
+    private CRC32 m_Checksum;                                  /* Reused to compute each record's checksum */
+    private long m_RecordCount;                                /* The number of records appended to the journal */
+    private final Object m_GroupLock;                          /* Guards m_Group and m_PendingRecords */
+    private ByteBuffer m_Group;                                /* Records appended but not yet committed */
+    private int m_PendingRecords;                              /* The number of records in m_Group */
+    private final Object m_CommitLock;                         /* Serializes commits and closing the journal */
+    private ByteBuffer m_Committing;                           /* The group being written by commit() */
+    private boolean m_Unforced;                                /* Records were written but not forced to the device */
+    private volatile IOException m_WriteError;                 /* The first failure to write a group, if any */
+
+    /**
+     * Opens the journal for appending, creating it if it does not exist. Any incomplete or corrupt records at the
+     * end of an existing journal (for example, from a write interrupted by process death) are discarded.
+     *
+     * @param file The journal file.
+     * @throws IOException If the journal cannot be opened or is not a journal file.
+     */
+    WorkdayJournal( File file ) throws IOException
+    {
+        m_File = file;
+        m_RecordBuffer = ByteBuffer.allocate( RECORD_SIZE );
+        m_Checksum = new CRC32();
+        m_GroupLock = new Object();
+        m_Group = ByteBuffer.allocate( RECORD_SIZE * GROUP_RECORDS_INITIAL );
+        m_PendingRecords = 0;
+        m_CommitLock = new Object();
+        m_Committing = ByteBuffer.allocate( RECORD_SIZE * GROUP_RECORDS_INITIAL );
+        m_Unforced = false;
+        m_WriteError = null;
+
+        m_RandomAccessFile = new RandomAccessFile( file, "rw" );
+        m_Channel = m_RandomAccessFile.getChannel();
+
+        if( m_Channel.size() < HEADER_SIZE )
+        {
+            /* New (or truncated) journal; start it with a header */
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+            header.putInt( JOURNAL_MAGIC ).putInt( JOURNAL_VERSION ).flip();
+
+            m_Channel.truncate( 0 );
+            writeFully( m_Channel, header, 0 );
+            m_RecordCount = 0;
+        }
+        else
+        {
+            m_RecordCount = readRecords( m_Channel, m_Checksum, null );
+            m_Channel.truncate( HEADER_SIZE + ( m_RecordCount * RECORD_SIZE ) );
+        }
+
+        m_Channel.position( m_Channel.size() );
+    }
+
+    /**
+     * Replays the journal in the given file against a Workday, which should be newly constructed and must not have
+     * a listener journaling it. Replay stops at the first incomplete or corrupt record.
+     *
+     * @param file The journal file.
+     * @param workday The Workday to which the recorded changes are applied.
+     * @return The number of records replayed.
+     * @throws IOException If the journal cannot be read or is not a journal file.
+     */
+    static long replay( File file, Workday workday ) throws IOException
+    {
+        FileInputStream inputStream = new FileInputStream( file );
+
+        try
+        {
+            return( readRecords( inputStream.getChannel(), new CRC32(), workday ) );
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Returns the number of records in the journal, including those appended but not yet committed.
+     *
+     * @return The number of records in the journal.
+     */
+    long getRecordCount()
+    {
+        return( m_RecordCount );
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return The journal file.
+     */
+    File getFile()
+    {
+        return( m_File );
+    }
+
+    /**
+     * Returns the number of records appended since the last commit. May be called on any thread.
+     *
+     * @return The number of records waiting to be committed.
+     */
+    int getPendingRecordCount()
+    {
+        synchronized( m_GroupLock )
+        {
+            return( m_PendingRecords );
+        }
+    }
+
+    /**
+     * Writes every record appended since the last commit to the file as one group and, if asked, forces the file to
+     * the storage device. May be called on any thread; records appended meanwhile belong to the next group. Once a
+     * group has failed to be written, no further groups are written so that the journal never skips a change.
+     *
+     * @param force True to force the written records (and any written earlier without forcing) to the device.
+     * @return The number of records in the group.
+     * @throws IOException If a group could not be written since the journal was opened, or the flush fails.
+     */
+    int commit( boolean force ) throws IOException
+    {
+        synchronized( m_CommitLock )
+        {
+            int records;
+
+            synchronized( m_GroupLock )
+            {
+                /* Swap the buffers, so that records can keep being appended while the group is written */
+                ByteBuffer group = m_Group;
+                m_Group = m_Committing;
+                m_Committing = group;
+                records = m_PendingRecords;
+                m_PendingRecords = 0;
+            }
+
+            m_Committing.flip();
+
+            try
+            {
+                if( m_WriteError == null )
+                {
+                    while( m_Committing.hasRemaining() )
+                    {
+                        m_Channel.write( m_Committing );
+                    }
+
+                    m_Unforced |= ( records > 0 );
+
+                    if( force && m_Unforced )
+                    {
+                        m_Channel.force( false );
+                        m_Unforced = false;
+                    }
+                }
+            }
+            catch( IOException io_exception )
+            {
+                m_WriteError = io_exception;
+            }
+            finally
+            {
+                m_Committing.clear();
+            }
+
+            if( m_WriteError != null )
+            {
+                throw m_WriteError;
+            }
+
+            return( records );
+        }
+    }
+
+    /**
+     * Commits the records appended so far and forces them to the storage device.
+     *
+     * @throws IOException If a group could not be written since the journal was opened, or the flush fails.
+     */
+    void sync() throws IOException
+    {
+        commit( true );
+    }
+
+    /**
+     * Commits the records appended so far, without forcing them to the device, and closes the journal. No further
+     * records can be appended.
+     *
+     * @throws IOException If the pending records cannot be written, or the journal cannot be closed.
+     */
+    void close() throws IOException
+    {
+        synchronized( m_CommitLock )
+        {
+            try
+            {
+                commit( false );
+            }
+            finally
+            {
+                m_RandomAccessFile.close();
+            }
+        }
+    }
+
+    @Override
+    public void onTaskAdded( Task task, long timestampMs )
+    {
+        encodeRecord( RECORD_TASK_ADDED, task.getTaskId(), timestampMs );
+
+        String taskName = task.getTaskName();
+        int nameLength = Math.min( taskName.length(), Task.TASK_NAME_CHARS_MAX );
+
+        m_RecordBuffer.put( 1, (byte)nameLength );
+        m_RecordBuffer.putLong( 16, task.getTaskTimeLimit() );
+        m_RecordBuffer.putInt( 24, task.getTaskColor() );
+
+        for( int index = 0; index < nameLength; index++ )
+        {
+            m_RecordBuffer.putChar( 28 + ( index * 2 ), taskName.charAt( index ) );
+        }
+
+        appendRecord();
+    }
+
+    @Override
+    public void onTaskDeleted( int taskId, long timestampMs )
+    {
+        encodeRecord( RECORD_TASK_DELETED, taskId, timestampMs );
+        appendRecord();
+    }
+
+    @Override
+    public void onTaskColorChanged( int taskId, int color, long timestampMs )
+    {
+        encodeRecord( RECORD_TASK_COLOR, taskId, timestampMs );
+        m_RecordBuffer.putInt( 24, color );
+        appendRecord();
+    }
+
+    @Override
+    public void onContextSwitch( int taskId, long timestampMs, long timeBase )
+    {
+        encodeRecord( RECORD_CONTEXT_SWITCH, taskId, timestampMs );
+        m_RecordBuffer.putLong( 16, timeBase );
+        appendRecord();
+    }
+
+    @Override
+    public void onWorkdayEnded( long timestampMs )
+    {
+        encodeRecord( RECORD_WORKDAY_ENDED, Task.NO_TASK_ID, timestampMs );
+        appendRecord();
+    }
+
+    @Override
+    public void onWorkdayReset( long timestampMs )
+    {
+        encodeRecord( RECORD_WORKDAY_RESET, Task.NO_TASK_ID, timestampMs );
+        appendRecord();
+    }
+
+    @Override
+    public void onTaskLimitCrossed( int taskId, long timestampMs )
+    {
+        /* Follows from the changes already journaled, so it is recovered by replaying them */
+    }
+
+    /**
+     * Clears the record buffer and fills in the fields common to every record.
+     *
+     * @param recordType The type of the record.
+     * @param taskId The ID of the task the record refers to, if any.
+     * @param timestampMs The clock timestamp of the change.
+     */
+    private void encodeRecord( byte recordType, int taskId, long timestampMs )
+    {
+        m_RecordBuffer.clear();
+
+        for( int index = 0; index < RECORD_SIZE; index += 8 )
+        {
+            m_RecordBuffer.putLong( index, 0 );
+        }
+
+        m_RecordBuffer.put( 0, recordType );
+        m_RecordBuffer.putInt( 4, taskId );
+        m_RecordBuffer.putLong( 8, timestampMs );
+    }
+
+    /**
+     * Seals the encoded record with its checksum and adds it to the pending group, growing the group if it is full.
+     * The record reaches the file with the next commit.
+     */
+    private void appendRecord()
+    {
+        m_Checksum.reset();
+        m_Checksum.update( m_RecordBuffer.array(), 0, CHECKED_BYTES );
+        m_RecordBuffer.putInt( CHECKED_BYTES, (int)m_Checksum.getValue() );
+        m_RecordBuffer.position( 0 ).limit( RECORD_SIZE );
+
+        synchronized( m_GroupLock )
+        {
+            if( m_Group.remaining() < RECORD_SIZE )
+            {
+                ByteBuffer group = ByteBuffer.allocate( m_Group.capacity() * 2 );
+                m_Group.flip();
+                group.put( m_Group );
+                m_Group = group;
+            }
+
+            m_Group.put( m_RecordBuffer );
+            m_PendingRecords++;
+        }
+
+        m_RecordCount++;
+    }
+
+    /**
+     * Applies the record at the buffer's position to the Workday, and advances the buffer past it.
+     *
+     * @param buffer The buffer holding the record.
+     * @param workday The Workday to which the change is applied.
+     */
+    private static void applyRecord( ByteBuffer buffer, Workday workday )
+    {
+        int start = buffer.position();
+        byte recordType = buffer.get( start );
+        int taskId = buffer.getInt( start + 4 );
+        long timestampMs = buffer.getLong( start + 8 );
+
+        switch( recordType )
+        {
+            case RECORD_TASK_ADDED:
+                int nameLength = buffer.get( start + 1 );
+                char[] name = new char[nameLength];
+
+                for( int index = 0; index < nameLength; index++ )
+                {
+                    name[index] = buffer.getChar( start + 28 + ( index * 2 ) );
+                }
+
+                Task task = new Task( new String( name ) );
+                task.setTaskTimeLimit( buffer.getLong( start + 16 ) );
+                task.setTaskColor( buffer.getInt( start + 24 ) );
+                workday.addTask( task, timestampMs );
+                break;
+
+            case RECORD_TASK_DELETED:
+                workday.deleteTaskById( taskId, timestampMs );
+                break;
+
+            case RECORD_TASK_COLOR:
+                workday.setTaskColorById( taskId, buffer.getInt( start + 24 ), timestampMs );
+                break;
+
+            case RECORD_CONTEXT_SWITCH:
+                workday.switchToTask( taskId, timestampMs, buffer.getLong( start + 16 ) );
+                break;
+
+            case RECORD_WORKDAY_ENDED:
+                workday.endWorkday( timestampMs );
+                break;
+
+            case RECORD_WORKDAY_RESET:
+                workday.resetWorkday( timestampMs );
+                break;
+
+            default:
+                /* Unknown record type; it passed its checksum, so it was written by a newer version. Skip it. */
+                break;
+        }
+
+        buffer.position( start + RECORD_SIZE );
+    }
+
+    /**
+     * Verifies the checksum of the record at the buffer's position.
+     *
+     * @param buffer The buffer holding the record.
+     * @param checksum Checksum calculator to use.
+     * @return True if the record is intact, false otherwise.
+     */
+    private static boolean isRecordValid( ByteBuffer buffer, CRC32 checksum )
+    {
+        int start = buffer.position();
+
+        checksum.reset();
+        checksum.update( buffer.array(), buffer.arrayOffset() + start, CHECKED_BYTES );
+
+        return( buffer.getInt( start + CHECKED_BYTES ) == (int)checksum.getValue() );
+    }
+
+    /**
+     * Reads the intact records at the start of the journal, stopping at the first incomplete or corrupt record. Each
+     * record is applied to the given Workday, if there is one.
+     *
+     * @param channel The journal channel.
+     * @param checksum Checksum calculator to use.
+     * @param workday The Workday to which the records are applied, or null to only count them.
+     * @return The number of intact records.
+     * @throws IOException If the journal cannot be read or is not a journal file.
+     */
+    private static long readRecords( FileChannel channel, CRC32 checksum, Workday workday ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( RECORD_SIZE * RECORDS_PER_READ );
+        long completeRecords = ( channel.size() - HEADER_SIZE ) / RECORD_SIZE;
+        long position = HEADER_SIZE;
+        long validRecords = 0;
+
+        readHeader( channel, 0 );
+
+        while( validRecords < completeRecords )
+        {
+            /* Read a whole number of records at a time */
+            int chunkRecords = (int)Math.min( RECORDS_PER_READ, completeRecords - validRecords );
+
+            buffer.clear();
+            buffer.limit( chunkRecords * RECORD_SIZE );
+
+            while( buffer.hasRemaining() )
+            {
+                if( channel.read( buffer, position + buffer.position() ) < 0 )
+                {
+                    throw new IOException( "Journal ended unexpectedly" );
+                }
+            }
+
+            buffer.flip();
+
+            for( int record = 0; record < chunkRecords; record++ )
+            {
+                if( isRecordValid( buffer, checksum ) == false )
+                {
+                    return( validRecords );
+                }
+
+                if( workday != null )
+                {
+                    applyRecord( buffer, workday );
+                }
+                else
+                {
+                    buffer.position( buffer.position() + RECORD_SIZE );
+                }
+
+                validRecords++;
+            }
+
+            position += buffer.limit();
+        }
+
+        return( validRecords );
+    }
+
+    /**
+     * Reads and validates the journal header.
+     *
+     * @param channel The journal channel.
+     * @param position The position of the header in the channel.
+     * @throws IOException If the header cannot be read or does not identify a supported journal.
+     */
+    private static void readHeader( FileChannel channel, long position ) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+
+        while( header.hasRemaining() )
+        {
+            if( channel.read( header, position + header.position() ) < 0 )
+            {
+                throw new IOException( "Journal header is incomplete" );
+            }
+        }
+
+        if( ( header.getInt( 0 ) != JOURNAL_MAGIC ) || ( header.getInt( 4 ) != JOURNAL_VERSION ) )
+        {
+            throw new IOException( "Not a supported journal file" );
+        }
+    }
+
+    /**
+     * Writes the whole buffer to the channel at the given position.
+     *
+     * @param channel The destination channel.
+     * @param buffer The bytes to write.
+     * @param position The position in the channel at which to write.
+     * @throws IOException If the write fails.
+     */
+    private static void writeFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException
+    {
+        while( buffer.hasRemaining() )
+        {
+            position += channel.write( buffer, position );
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * WorkdayListener.java
+ *
+ * Receives every change applied to a Workday, along with the clock timestamp at which it took effect. Replaying the
+ * same changes, in order, against a new Workday reproduces the original. Listeners are called on the thread that owns
+ * the Workday as each change is applied, and must not change the Workday themselves. Outside of a batch, the change
+ * has already been published when listeners are called; within a batch, they are called before endBatch() publishes
+ * the batch's snapshot, so the published snapshot may not reflect the change yet.
+ *
+ * Crossing a time limit is not a change: it follows from the changes and the passing of time, so it is reported
+ * only as it is detected, and is not replayed.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+
+interface WorkdayListener
+{
+    /**
+     * Called when a user task has been added. The task has already been assigned its ID.
+     *
+     * @param task The new task.
+     * @param timestampMs The clock timestamp of the change.
+     */
+    void onTaskAdded( Task task, long timestampMs );
+
+    /**
+     * Called when a user task has been deleted.
+     *
+     * @param taskId The ID of the deleted task.
+     * @param timestampMs The clock timestamp of the change.
+     */
+    void onTaskDeleted( int taskId, long timestampMs );
+
+    /**
+     * Called when the color of a task has been changed.
+     *
+     * @param taskId The ID of the task.
+     * @param color The new color of the task.
+     * @param timestampMs The clock timestamp of the change.
+     */
+    void onTaskColorChanged( int taskId, int color, long timestampMs );
+
+    /**
+     * Called when the user has switched to a different task.
+     *
+     * @param taskId The ID of the task now being performed.
+     * @param timestampMs The clock timestamp of the change.
+     * @param timeBase The clock time base of the timestamp, which replaying the switch must restore with it.
+     */
+    void onContextSwitch( int taskId, long timestampMs, long timeBase );
+
+    /**
+     * Called when the workday has been ended, stopping the active task.
+     *
+     * @param timestampMs The clock timestamp of the change.
+     */
+    void onWorkdayEnded( long timestampMs );
+
+    /**
+     * Called when the task log and all timing data have been reset.
+     *
+     * @param timestampMs The clock timestamp of the change.
+     */
+    void onWorkdayReset( long timestampMs );
+
+    /**
+     * Called when the active task's runtime has gone over its time limit, once per iteration of the task. The
+     * timestamp is the first millisecond at which it was over, which may be earlier than the time it was detected.
+     *
+     * @param taskId The ID of the task that crossed its limit.
+     * @param timestampMs The clock timestamp at which it crossed.
+     */
+    void onTaskLimitCrossed( int taskId, long timestampMs );
+}
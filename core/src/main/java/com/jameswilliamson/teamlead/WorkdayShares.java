@@ -0,0 +1,247 @@
+/**
+ * WorkdayShares.java
+ *
+ * The share of the Workday spent on each user task, rounded to the precision at which it is displayed, for a summary
+ * that stays up to date as time passes. Each update reports which displayed shares changed, so that only those need
+ * to be redrawn; and since only the active task's runtime grows, the instant at which the next displayed share will
+ * change can be computed exactly, so that the summary is only updated when something it shows would differ.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+
+final class WorkdayShares
+{
+    /* Public constants */
+    static final long NEVER = Long.MAX_VALUE;              /* No displayed share will change while nothing is done */
+
+    /* Private constants */
+    private static final double PERCENT = 100.0;           /* A share of 1.0, in percent */
+
+    /* Private member fields */
+    private long m_UnitsPerPercent;                        /* Displayed units in one percent, e.g. 100 for "0.00" */
+    private int m_NumberOfTasks;                           /* The number of user tasks */
+    private int[] m_TaskIds;                               /* The ID of each user task, in Workday order */
+    private long[] m_DisplayedUnits;                       /* The displayed share of each task, in units */
+    private int[] m_ChangedIndices;                        /* The tasks whose displayed share changed on update */
+    private int m_NumberOfChanges;                         /* The number of entries of m_ChangedIndices in use */
+
+    /**
+     * Constructs the shares of an empty Workday.
+     *
+     * @param decimals The number of decimal places to which percentages are displayed.
+     */
+    WorkdayShares( int decimals )
+    {
+        m_UnitsPerPercent = 1;
+
+        for( int place = 0; place < decimals; place++ )
+        {
+            m_UnitsPerPercent *= 10;
+        }
+
+        m_NumberOfTasks = 0;
+        m_TaskIds = new int[0];
+        m_DisplayedUnits = new long[0];
+        m_ChangedIndices = new int[0];
+        m_NumberOfChanges = 0;
+    }
+
+    /**
+     * Recomputes the displayed share of every user task in a snapshot of the Workday, at a point in time.
+     *
+     * @param snapshot The latest published snapshot of the Workday.
+     * @param timeMs The clock time, which must not be earlier than the snapshot.
+     * @return True if the user tasks themselves changed (a task was added or deleted), in which case every share is
+     *         reported as changed; false if only the shares may have changed.
+     */
+    boolean update( WorkdaySnapshot snapshot, long timeMs )
+    {
+        int numberOfTasks = snapshot.getNumberOfUserTasks();
+        boolean tasksChanged = ( numberOfTasks != m_NumberOfTasks );
+
+        if( tasksChanged )
+        {
+            m_NumberOfTasks = numberOfTasks;
+            m_TaskIds = new int[numberOfTasks];
+            m_DisplayedUnits = new long[numberOfTasks];
+            m_ChangedIndices = new int[numberOfTasks];
+        }
+
+        m_NumberOfChanges = 0;
+
+        for( int index = 0; index < numberOfTasks; index++ )
+        {
+            int taskId = snapshot.getUserTaskId( index );
+            long displayedUnits = Math.round( snapshot.getTaskPercentage( taskId, timeMs ) * m_UnitsPerPercent );
+
+            if( taskId != m_TaskIds[index] )
+            {
+                m_TaskIds[index] = taskId;
+                tasksChanged = true;
+            }
+
+            if( tasksChanged || ( displayedUnits != m_DisplayedUnits[index] ) )
+            {
+                m_DisplayedUnits[index] = displayedUnits;
+                m_ChangedIndices[m_NumberOfChanges++] = index;
+            }
+        }
+
+        if( tasksChanged )
+        {
+            /* A task that differs from the one previously at its index may precede it; report every share */
+            m_NumberOfChanges = 0;
+
+            for( int index = 0; index < numberOfTasks; index++ )
+            {
+                m_ChangedIndices[m_NumberOfChanges++] = index;
+            }
+        }
+
+        return( tasksChanged );
+    }
+
+    /**
+     * Returns the number of user tasks, as of the last update.
+     *
+     * @return The number of tasks.
+     */
+    int getNumberOfTasks()
+    {
+        return( m_NumberOfTasks );
+    }
+
+    /**
+     * Returns the displayed share of a user task, as of the last update.
+     *
+     * @param index The index of the task.
+     * @return The share of the Workday spent on the task, in percent, rounded to the displayed precision.
+     */
+    double getPercentage( int index )
+    {
+        return( (double)m_DisplayedUnits[index] / m_UnitsPerPercent );
+    }
+
+    /**
+     * Returns the number of tasks whose displayed share changed on the last update.
+     *
+     * @return The number of changed shares.
+     */
+    int getNumberOfChanges()
+    {
+        return( m_NumberOfChanges );
+    }
+
+    /**
+     * Returns the index of a task whose displayed share changed on the last update.
+     *
+     * @param change Which of the changes to return, from zero to getNumberOfChanges() - 1.
+     * @return The index of the task.
+     */
+    int getChangedIndex( int change )
+    {
+        return( m_ChangedIndices[change] );
+    }
+
+    /**
+     * Computes how long it will be until a displayed share changes, provided that no task is added, deleted or
+     * switched to meanwhile. The active task's share grows towards the point at which it rounds up, and every other
+     * share shrinks towards the point at which it rounds down; the earliest of these is when the next update is due.
+     *
+     * @param snapshot The snapshot of the Workday given to the last update.
+     * @param timeMs The clock time given to the last update.
+     * @return The time until the next change, in milliseconds, or NEVER if no share can change.
+     */
+    long getMsUntilNextChange( WorkdaySnapshot snapshot, long timeMs )
+    {
+        long untilNextChangeMs = NEVER;
+        int activeTaskId = snapshot.getActiveTaskId();
+        long totalMs = snapshot.getTotalUserTaskRuntimeMs( timeMs );
+
+        if( activeTaskId == Task.NO_TASK_ID )
+        {
+            /* Nothing is accumulating runtime, so every share stays as it is */
+            return( NEVER );
+        }
+
+        for( int index = 0; index < m_NumberOfTasks; index++ )
+        {
+            long runtimeMs = snapshot.getTotalTaskRuntimeMs( m_TaskIds[index], timeMs );
+            boolean active = ( m_TaskIds[index] == activeTaskId );
+            double untilChangeMs;
+
+            if( active )
+            {
+                /* (runtime + t) / (total + t) reaches half a unit up at t = (B * total - runtime) / (1 - B) */
+                double boundary = ( m_DisplayedUnits[index] + 0.5 ) / ( m_UnitsPerPercent * PERCENT );
+                untilChangeMs = ( boundary < 1.0 ) ?
+                                ( ( boundary * totalMs ) - runtimeMs ) / ( 1.0 - boundary ) : NEVER;
+            }
+            else
+            {
+                /* runtime / (total + t) falls below half a unit down at t = runtime / B - total */
+                double boundary = ( m_DisplayedUnits[index] - 0.5 ) / ( m_UnitsPerPercent * PERCENT );
+                untilChangeMs = ( boundary > 0.0 ) ? ( runtimeMs / boundary ) - totalMs : NEVER;
+            }
+
+            if( untilChangeMs < untilNextChangeMs )
+            {
+                untilNextChangeMs = findFirstChangeMs( index, active, runtimeMs, totalMs,
+                                                       Math.max( 1, (long)Math.ceil( untilChangeMs ) ) );
+            }
+        }
+
+        return( untilNextChangeMs );
+    }
+
+    /**
+     * Corrects an estimate of when a task's displayed share changes, which floating-point rounding may leave a
+     * millisecond or so out, by stepping to the first millisecond at which the share is displayed differently.
+     *
+     * @param index The index of the task.
+     * @param active Whether the task is active, in which case its runtime grows along with the total.
+     * @param runtimeMs The runtime of the task now, in milliseconds.
+     * @param totalMs The total runtime of all user tasks now, in milliseconds.
+     * @param estimateMs The estimated time until the change, in milliseconds.
+     * @return The time until the change, in milliseconds.
+     */
+    private long findFirstChangeMs( int index, boolean active, long runtimeMs, long totalMs, long estimateMs )
+    {
+        long displayedUnits = m_DisplayedUnits[index];
+        long untilChangeMs = estimateMs;
+
+        while( getDisplayedUnits( runtimeMs + ( active ? untilChangeMs : 0 ), totalMs + untilChangeMs ) ==
+               displayedUnits )
+        {
+            untilChangeMs++;
+        }
+
+        while( ( untilChangeMs > 1 ) &&
+               ( getDisplayedUnits( runtimeMs + ( active ? untilChangeMs - 1 : 0 ), totalMs + untilChangeMs - 1 ) !=
+                 displayedUnits ) )
+        {
+            untilChangeMs--;
+        }
+
+        return( untilChangeMs );
+    }
+
+    /**
+     * Computes a displayed share exactly as update() does, by way of WorkdaySnapshot.getTaskPercentage().
+     *
+     * @param runtimeMs The runtime of the task, in milliseconds.
+     * @param totalMs The total runtime of all user tasks, in milliseconds.
+     * @return The displayed share, in units.
+     */
+    private long getDisplayedUnits( long runtimeMs, long totalMs )
+    {
+        double percentage = ( totalMs != 0 ) ? ( ( (double)runtimeMs / (double)totalMs ) * 100.0 ) : 0.0;
+
+        return( Math.round( percentage * m_UnitsPerPercent ) );
+    }
+}
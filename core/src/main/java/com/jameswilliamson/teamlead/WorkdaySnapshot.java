@@ -0,0 +1,625 @@
+/**
+ * WorkdaySnapshot.java
+ *
+ * Immutable copy of the complete state of a Workday at one instant: the task table (including deleted tasks, which
+ * the task log may still refer to), the aggregate runtimes, the active iteration and the concluded entries of the
+ * columnar task log. A snapshot is captured on the thread that owns the Workday and can then be read or encoded on
+ * any thread. Consecutive snapshots of a Workday share the parts that did not change between them: always the
+ * concluded entries of the task log, and the task table while no task is added, deleted or edited.
+ *
+ * Encoded layout (big-endian):
+ *     magic, version, journal generation                          3 x int
+ *     task count, then per task ID:
+ *         name length, name (UTF-16), time limit, color, runtime   int, chars, long, int, long
+ *     user task count, then the ID of each user task in order      int, ints
+ *     user task runtime, active task ID, active start timestamp    long, int, long
+ *     time base of the active start timestamp                     long
+ *     log size, then the task ID, start and runtime columns        int, ints, longs, longs
+ *     CRC-32 of all preceding bytes                                int
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+
+final class WorkdaySnapshot
+{
+    /* Private constants */
+    private static final int SNAPSHOT_MAGIC = 0x544C5331;  /* "TLS1"; identifies a snapshot */
+    private static final int SNAPSHOT_VERSION = 1;         /* Version of the encoded layout */
+
+    /* Private member fields */
+    private final int m_JournalGeneration;                 /* The first journal generation not covered */
+    private final String[] m_TaskNames;                    /* The name of each task, indexed by task ID */
+    private final long[] m_TaskTimeLimitsMs;               /* The time limit of each task, indexed by task ID */
+    private final int[] m_TaskColors;                      /* The color of each task, indexed by task ID */
+    private final TaskRuntimes m_TaskRuntimes;             /* The concluded runtime of each task, by task ID */
+    private final int[] m_UserTaskIds;                     /* The IDs of the current user tasks, in display order */
+    private final long m_UserTaskRuntimeMs;                /* Runtime of all concluded iterations of user tasks */
+    private final int m_ActiveTaskId;                      /* The ID of the active task, or Task.NO_TASK_ID */
+    private final long m_ActiveStartTimestampMs;           /* Clock timestamp at which the active iteration started */
+    private final long m_ActiveTimeBase;                   /* The clock time base of that timestamp */
+    private final TaskLog m_TaskLog;                       /* The concluded entries of the task log; never modified */
+
+    /**
+     * Constructs a snapshot from captured state, which it takes ownership of.
+     *
+     * @param journalGeneration The first journal generation holding changes made after the snapshot.
+     * @param taskNames The name of each task, indexed by task ID.
+     * @param taskTimeLimitsMs The time limit of each task, indexed by task ID.
+     * @param taskColors The color of each task, indexed by task ID.
+     * @param taskRuntimes The concluded runtime of each task, indexed by task ID.
+     * @param userTaskIds The IDs of the current user tasks, in display order.
+     * @param userTaskRuntimeMs The runtime of all concluded iterations of current user tasks.
+     * @param activeTaskId The ID of the active task, or Task.NO_TASK_ID if no task is active.
+     * @param activeStartTimestampMs The clock timestamp at which the active iteration started.
+     * @param activeTimeBase The clock time base of the active start timestamp.
+     * @param taskLog The concluded entries of the task log, which are not modified after the snapshot is constructed.
+     */
+    WorkdaySnapshot( int journalGeneration, String[] taskNames, long[] taskTimeLimitsMs, int[] taskColors,
+                     TaskRuntimes taskRuntimes, int[] userTaskIds, long userTaskRuntimeMs, int activeTaskId,
+                     long activeStartTimestampMs, long activeTimeBase, TaskLog taskLog )
+    {
+        m_JournalGeneration = journalGeneration;
+        m_TaskNames = taskNames;
+        m_TaskTimeLimitsMs = taskTimeLimitsMs;
+        m_TaskColors = taskColors;
+        m_TaskRuntimes = taskRuntimes;
+        m_UserTaskIds = userTaskIds;
+        m_UserTaskRuntimeMs = userTaskRuntimeMs;
+        m_ActiveTaskId = activeTaskId;
+        m_ActiveStartTimestampMs = activeStartTimestampMs;
+        m_ActiveTimeBase = activeTimeBase;
+        m_TaskLog = taskLog;
+    }
+
+    /**
+     * Constructs a snapshot that shares the task table (the names, time limits and colors of the tasks, and the list
+     * of user tasks) of an earlier snapshot of the same Workday, in which the task table was the same.
+     *
+     * @param taskTable The earlier snapshot, whose task table is shared.
+     * @param journalGeneration The first journal generation holding changes made after the snapshot.
+     * @param taskRuntimes The concluded runtime of each task, indexed by task ID.
+     * @param userTaskRuntimeMs The runtime of all concluded iterations of current user tasks.
+     * @param activeTaskId The ID of the active task, or Task.NO_TASK_ID if no task is active.
+     * @param activeStartTimestampMs The clock timestamp at which the active iteration started.
+     * @param activeTimeBase The clock time base of the active start timestamp.
+     * @param taskLog The concluded entries of the task log, which are not modified after the snapshot is constructed.
+     */
+    WorkdaySnapshot( WorkdaySnapshot taskTable, int journalGeneration, TaskRuntimes taskRuntimes,
+                     long userTaskRuntimeMs, int activeTaskId, long activeStartTimestampMs, long activeTimeBase,
+                     TaskLog taskLog )
+    {
+        this( journalGeneration, taskTable.m_TaskNames, taskTable.m_TaskTimeLimitsMs, taskTable.m_TaskColors,
+              taskRuntimes, taskTable.m_UserTaskIds, userTaskRuntimeMs, activeTaskId, activeStartTimestampMs,
+              activeTimeBase, taskLog );
+    }
+
+    /**
+     * Returns the first journal generation that holds changes made after the snapshot was captured.
+     *
+     * @return The journal generation.
+     */
+    int getJournalGeneration()
+    {
+        return( m_JournalGeneration );
+    }
+
+    /**
+     * Returns the number of task IDs ever assigned, including those of the special and deleted tasks.
+     *
+     * @return The number of task IDs.
+     */
+    int getTaskIdCount()
+    {
+        return( m_TaskNames.length );
+    }
+
+    /**
+     * Returns the name of the task with the given ID.
+     *
+     * @param taskId The ID of the task.
+     * @return The name of the task.
+     */
+    String getTaskName( int taskId )
+    {
+        return( m_TaskNames[taskId] );
+    }
+
+    /**
+     * Returns the time limit of the task with the given ID.
+     *
+     * @param taskId The ID of the task.
+     * @return The time limit of the task, in milliseconds.
+     */
+    long getTaskTimeLimitMs( int taskId )
+    {
+        return( m_TaskTimeLimitsMs[taskId] );
+    }
+
+    /**
+     * Returns the color of the task with the given ID.
+     *
+     * @param taskId The ID of the task.
+     * @return The color code of the task.
+     */
+    int getTaskColor( int taskId )
+    {
+        return( m_TaskColors[taskId] );
+    }
+
+    /**
+     * Returns the runtime of the concluded iterations of the task with the given ID.
+     *
+     * @param taskId The ID of the task.
+     * @return The runtime of the task, in milliseconds.
+     */
+    long getTaskRuntimeMs( int taskId )
+    {
+        return( m_TaskRuntimes.get( taskId ) );
+    }
+
+    /**
+     * Returns the concluded runtime of every task, which a later snapshot of the same Workday can share.
+     *
+     * @return The runtime column.
+     */
+    TaskRuntimes getTaskRuntimes()
+    {
+        return( m_TaskRuntimes );
+    }
+
+    /**
+     * Returns the number of current (not deleted) user tasks.
+     *
+     * @return The number of user tasks.
+     */
+    int getNumberOfUserTasks()
+    {
+        return( m_UserTaskIds.length );
+    }
+
+    /**
+     * Returns the ID of the user task at the given position in display order.
+     *
+     * @param taskIndex The index of the user task.
+     * @return The ID of the task.
+     */
+    int getUserTaskId( int taskIndex )
+    {
+        return( m_UserTaskIds[taskIndex] );
+    }
+
+    /**
+     * Returns the number of tasks shown to the user, including the special tasks, which follow the user tasks.
+     *
+     * @return The number of tasks.
+     */
+    int getNumberOfTasks()
+    {
+        return( m_UserTaskIds.length + Workday.NUM_SPECIAL_TASKS );
+    }
+
+    /**
+     * Returns the ID of the task at the given position in display order, as Workday.getTaskId() does.
+     *
+     * @param taskIndex The index of the task; the special tasks follow the user tasks.
+     * @return The ID of the task.
+     */
+    int getTaskIdAt( int taskIndex )
+    {
+        int taskId;
+
+        if( taskIndex < m_UserTaskIds.length )
+        {
+            taskId = m_UserTaskIds[taskIndex];
+        }
+        else
+        {
+            /* The special tasks were the first to be registered, in display order */
+            taskId = Workday.ADD_TASK_ID + ( taskIndex - m_UserTaskIds.length );
+        }
+
+        return( taskId );
+    }
+
+    /**
+     * Checks whether a new task could not be added under the given name, because a current task, user or special,
+     * already has it. Names are compared the way Task.equals() compares them.
+     *
+     * @param taskName The name of the new task.
+     * @return True if the name is taken.
+     */
+    boolean isTaskNameTaken( String taskName )
+    {
+        boolean taken = false;
+
+        for( int taskIndex = 0; ( taskIndex < getNumberOfTasks() ) && !taken; taskIndex++ )
+        {
+            taken = m_TaskNames[getTaskIdAt( taskIndex )].equalsIgnoreCase( taskName );
+        }
+
+        return( taken );
+    }
+
+    /**
+     * Returns the total runtime of the task with the given ID at a point in time, including the active iteration if
+     * the task is active, as Workday.getTotalTaskRuntimeMs() does.
+     *
+     * @param taskId The ID of the task.
+     * @param timeMs The clock time, which must not be earlier than the snapshot.
+     * @return The runtime of the task, in milliseconds.
+     */
+    long getTotalTaskRuntimeMs( int taskId, long timeMs )
+    {
+        long runtimeMs = m_TaskRuntimes.get( taskId );
+
+        if( taskId == m_ActiveTaskId )
+        {
+            runtimeMs += getActiveRuntimeMs( timeMs );
+        }
+
+        return( runtimeMs );
+    }
+
+    /**
+     * Returns the total runtime of all user tasks at a point in time, including the active iteration.
+     *
+     * @param timeMs The clock time, which must not be earlier than the snapshot.
+     * @return The total runtime of all user tasks, in milliseconds.
+     */
+    long getTotalUserTaskRuntimeMs( long timeMs )
+    {
+        return( m_UserTaskRuntimeMs + getActiveRuntimeMs( timeMs ) );
+    }
+
+    /**
+     * Returns the percentage of the Workday spent on the task with the given ID at a point in time, computed exactly
+     * as Workday.getTaskPercentage() computes it.
+     *
+     * @param taskId The ID of the task.
+     * @param timeMs The clock time, which must not be earlier than the snapshot.
+     * @return The percentage of the day spent on the task.
+     */
+    double getTaskPercentage( int taskId, long timeMs )
+    {
+        double percentage = 0.0;
+        long totalTaskRuntimeMs = getTotalUserTaskRuntimeMs( timeMs );
+
+        if( totalTaskRuntimeMs != 0 )
+        {
+            percentage = ( (double)getTotalTaskRuntimeMs( taskId, timeMs ) / (double)totalTaskRuntimeMs ) * 100.0;
+        }
+
+        return( percentage );
+    }
+
+    /**
+     * Returns the runtime of all concluded iterations of current user tasks.
+     *
+     * @return The runtime, in milliseconds.
+     */
+    long getUserTaskRuntimeMs()
+    {
+        return( m_UserTaskRuntimeMs );
+    }
+
+    /**
+     * Returns the ID of the task that was active.
+     *
+     * @return The ID of the active task, or Task.NO_TASK_ID if no task was active.
+     */
+    int getActiveTaskId()
+    {
+        return( m_ActiveTaskId );
+    }
+
+    /**
+     * Returns the clock timestamp at which the active iteration started.
+     *
+     * @return The start timestamp, in milliseconds. Only meaningful if a task was active.
+     */
+    long getActiveStartTimestampMs()
+    {
+        return( m_ActiveStartTimestampMs );
+    }
+
+    /**
+     * Returns the clock time base of the active iteration's start timestamp.
+     *
+     * @return The time base. Only meaningful if a task was active.
+     */
+    long getActiveTimeBase()
+    {
+        return( m_ActiveTimeBase );
+    }
+
+    /**
+     * Returns the concluded entries of the task log; the active iteration, if any, is not included. It must not be
+     * modified.
+     *
+     * @return The concluded entries of the task log.
+     */
+    TaskLog getTaskLog()
+    {
+        return( m_TaskLog );
+    }
+
+    /**
+     * Encodes the snapshot into a newly allocated buffer, which is flipped and ready to be written.
+     *
+     * @return The encoded snapshot.
+     */
+    ByteBuffer encode()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( getEncodedSize() );
+
+        buffer.putInt( SNAPSHOT_MAGIC ).putInt( SNAPSHOT_VERSION ).putInt( m_JournalGeneration );
+
+        buffer.putInt( m_TaskNames.length );
+
+        for( int taskId = 0; taskId < m_TaskNames.length; taskId++ )
+        {
+            buffer.putInt( m_TaskNames[taskId].length() );
+
+            for( int index = 0; index < m_TaskNames[taskId].length(); index++ )
+            {
+                buffer.putChar( m_TaskNames[taskId].charAt( index ) );
+            }
+
+            buffer.putLong( m_TaskTimeLimitsMs[taskId] ).putInt( m_TaskColors[taskId] )
+                  .putLong( m_TaskRuntimes.get( taskId ) );
+        }
+
+        buffer.putInt( m_UserTaskIds.length );
+        buffer.asIntBuffer().put( m_UserTaskIds );
+        buffer.position( buffer.position() + ( m_UserTaskIds.length * 4 ) );
+
+        buffer.putLong( m_UserTaskRuntimeMs ).putInt( m_ActiveTaskId ).putLong( m_ActiveStartTimestampMs );
+        buffer.putLong( m_ActiveTimeBase );
+
+        /* The columns are written in bulk, each one straight after the other */
+        int logSize = m_TaskLog.size();
+        buffer.putInt( logSize );
+
+        for( int index = 0; index < logSize; index++ )
+        {
+            buffer.putInt( m_TaskLog.getTaskId( index ) );
+        }
+
+        for( int index = 0; index < logSize; index++ )
+        {
+            buffer.putLong( m_TaskLog.getStartTimestampMs( index ) );
+        }
+
+        for( int index = 0; index < logSize; index++ )
+        {
+            buffer.putLong( m_TaskLog.getRuntimeMs( index ) );
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update( buffer.array(), 0, buffer.position() );
+        buffer.putInt( (int)checksum.getValue() );
+
+        buffer.flip();
+
+        return( buffer );
+    }
+
+    /**
+     * Decodes a snapshot from the remaining bytes of the buffer.
+     *
+     * @param buffer The encoded snapshot.
+     * @return The decoded snapshot.
+     * @throws IOException If the bytes are not an intact snapshot of a supported version.
+     */
+    static WorkdaySnapshot decode( ByteBuffer buffer ) throws IOException
+    {
+        verify( buffer, new CRC32() );
+
+        int journalGeneration = buffer.getInt();
+
+        int taskIdCount = buffer.getInt();
+        String[] taskNames = new String[taskIdCount];
+        long[] taskTimeLimitsMs = new long[taskIdCount];
+        int[] taskColors = new int[taskIdCount];
+        long[] taskRuntimesMs = new long[taskIdCount];
+
+        for( int taskId = 0; taskId < taskIdCount; taskId++ )
+        {
+            char[] name = new char[buffer.getInt()];
+
+            for( int index = 0; index < name.length; index++ )
+            {
+                name[index] = buffer.getChar();
+            }
+
+            taskNames[taskId] = new String( name );
+            taskTimeLimitsMs[taskId] = buffer.getLong();
+            taskColors[taskId] = buffer.getInt();
+            taskRuntimesMs[taskId] = buffer.getLong();
+        }
+
+        int[] userTaskIds = new int[buffer.getInt()];
+        buffer.asIntBuffer().get( userTaskIds );
+        buffer.position( buffer.position() + ( userTaskIds.length * 4 ) );
+
+        long userTaskRuntimeMs = buffer.getLong();
+        int activeTaskId = buffer.getInt();
+        long activeStartTimestampMs = buffer.getLong();
+        long activeTimeBase = buffer.getLong();
+
+        int logSize = buffer.getInt();
+        int[] logTaskIds = new int[logSize];
+        long[] logStartTimestampsMs = new long[logSize];
+        long[] logRuntimesMs = new long[logSize];
+
+        buffer.asIntBuffer().get( logTaskIds );
+        buffer.position( buffer.position() + ( logSize * 4 ) );
+        buffer.asLongBuffer().get( logStartTimestampsMs );
+        buffer.position( buffer.position() + ( logSize * 8 ) );
+        buffer.asLongBuffer().get( logRuntimesMs );
+        buffer.position( buffer.position() + ( logSize * 8 ) );
+
+        TaskLog taskLog = new TaskLog( logTaskIds, logStartTimestampsMs, logRuntimesMs, logSize );
+
+        return( new WorkdaySnapshot( journalGeneration, taskNames, taskTimeLimitsMs, taskColors,
+                                     new TaskRuntimes( taskRuntimesMs ), userTaskIds, userTaskRuntimeMs, activeTaskId,
+                                     activeStartTimestampMs, activeTimeBase, taskLog ) );
+    }
+
+    /**
+     * Reads the totals of each current user task from an encoded snapshot, without decoding the rest of it: task
+     * names are only created for the user tasks, and of the task log only the task ID column is read, to count the
+     * iterations of each task.
+     *
+     * @param buffer The encoded snapshot, as the remaining bytes of the buffer.
+     * @param checksum Checksum calculator to use.
+     * @param visitor Receives the totals of each user task, in display order.
+     * @throws IOException If the bytes are not an intact snapshot of a supported version.
+     */
+    static void readTaskTotals( ByteBuffer buffer, CRC32 checksum, TaskTotalsVisitor visitor ) throws IOException
+    {
+        verify( buffer, checksum );
+
+        /* Skip the journal generation */
+        buffer.getInt();
+
+        int taskIdCount = buffer.getInt();
+        int[] namePositions = new int[taskIdCount];
+        long[] taskRuntimesMs = new long[taskIdCount];
+        int[] taskIterations = new int[taskIdCount];
+
+        for( int taskId = 0; taskId < taskIdCount; taskId++ )
+        {
+            namePositions[taskId] = buffer.position();
+            buffer.position( buffer.position() + 4 + ( buffer.getInt() * 2 ) + 8 + 4 );
+            taskRuntimesMs[taskId] = buffer.getLong();
+        }
+
+        int userTasksPosition = buffer.position();
+        int userTaskCount = buffer.getInt();
+
+        /* Skip the user task IDs for now, along with the runtime total and the active iteration */
+        buffer.position( buffer.position() + ( userTaskCount * 4 ) + 8 + 4 + 8 + 8 );
+
+        int logSize = buffer.getInt();
+
+        for( int index = 0; index < logSize; index++ )
+        {
+            taskIterations[buffer.getInt()]++;
+        }
+
+        for( int index = 0; index < userTaskCount; index++ )
+        {
+            int taskId = buffer.getInt( userTasksPosition + 4 + ( index * 4 ) );
+            int namePosition = namePositions[taskId];
+            char[] name = new char[buffer.getInt( namePosition )];
+
+            for( int charIndex = 0; charIndex < name.length; charIndex++ )
+            {
+                name[charIndex] = buffer.getChar( namePosition + 4 + ( charIndex * 2 ) );
+            }
+
+            visitor.onTaskTotals( new String( name ), taskRuntimesMs[taskId], taskIterations[taskId] );
+        }
+    }
+
+    /**
+     * Verifies the checksum, magic and version of an encoded snapshot, and advances the buffer past the magic and
+     * version.
+     *
+     * @param buffer The encoded snapshot, as the remaining bytes of the buffer.
+     * @param checksum Checksum calculator to use.
+     * @throws IOException If the bytes are not an intact snapshot of a supported version.
+     */
+    private static void verify( ByteBuffer buffer, CRC32 checksum ) throws IOException
+    {
+        if( buffer.remaining() < 16 )
+        {
+            throw new IOException( "Snapshot is incomplete" );
+        }
+
+        /* Verify the whole snapshot before trusting any of its lengths */
+        int checkedLength = buffer.remaining() - 4;
+        checksum.reset();
+        checksum.update( buffer.array(), buffer.arrayOffset() + buffer.position(), checkedLength );
+
+        if( buffer.getInt( buffer.position() + checkedLength ) != (int)checksum.getValue() )
+        {
+            throw new IOException( "Snapshot is corrupt" );
+        }
+
+        if( buffer.getInt() != SNAPSHOT_MAGIC )
+        {
+            throw new IOException( "Not a supported snapshot" );
+        }
+
+        if( buffer.getInt() != SNAPSHOT_VERSION )
+        {
+            throw new IOException( "Not a supported snapshot" );
+        }
+    }
+
+    /**
+     * Returns the runtime of the active iteration at a point in time.
+     *
+     * @param timeMs The clock time.
+     * @return The runtime of the active iteration, in milliseconds, or zero if no task is active.
+     */
+    private long getActiveRuntimeMs( long timeMs )
+    {
+        long activeRuntimeMs = 0;
+
+        if( m_ActiveTaskId != Task.NO_TASK_ID )
+        {
+            activeRuntimeMs = Math.max( 0, timeMs - m_ActiveStartTimestampMs );
+        }
+
+        return( activeRuntimeMs );
+    }
+
+    /**
+     * Calculates the number of bytes needed to encode the snapshot.
+     *
+     * @return The encoded size, in bytes.
+     */
+    private int getEncodedSize()
+    {
+        int size = ( 3 * 4 ) + 4;
+
+        for( String taskName : m_TaskNames )
+        {
+            size += 4 + ( taskName.length() * 2 ) + 8 + 4 + 8;
+        }
+
+        size += 4 + ( m_UserTaskIds.length * 4 );
+        size += 8 + 4 + 8 + 8;
+        size += 4 + ( m_TaskLog.size() * ( 4 + 8 + 8 ) );
+        size += 4;
+
+        return( size );
+    }
+
+    /**
+     * Receives the totals of a task read from an encoded snapshot.
+     */
+    interface TaskTotalsVisitor
+    {
+        /**
+         * Called with the totals of one user task.
+         *
+         * @param taskName The name of the task.
+         * @param runtimeMs The total runtime of the task, in milliseconds.
+         * @param iterations The number of times the task was switched to.
+         */
+        void onTaskTotals( String taskName, long runtimeMs, int iterations );
+    }
+}
@@ -0,0 +1,541 @@
+/**
+ * WorkdayStore.java
+ *
+ * Preserves the active Workday in a directory as a snapshot plus a short journal of the changes made since. Every
+ * change is appended to the current journal generation; once it holds enough records, the journal is rotated to a
+ * new generation and a snapshot of the Workday is written in the background. The snapshot is written to a temporary
+ * file, forced to the device and then renamed over the previous one, so a crash at any point leaves either the old
+ * snapshot and every journal generation after it, or the new snapshot. The rename is only durable once the directory
+ * itself reaches the device, which cannot be forced from here, so the journal generations that the previous snapshot
+ * relied on are kept until the next snapshot is installed: a crash that undoes the rename still finds the previous
+ * snapshot and every journal generation after it.
+ *
+ * Changes are appended to the journal in memory, and reach the file when they are committed: commit() may be called
+ * on any thread, so that a background committer can write and flush them in groups while the Workday's thread goes
+ * on changing it.
+ *
+ * Recovery loads the snapshot and replays the (at most one threshold's worth of) journal records that follow it, so
+ * the time it takes does not grow with the number of changes made to the Workday.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+
+class WorkdayStore implements WorkdayListener
+{
+    /* Package-private constants */
+    static final int DEFAULT_COMPACTION_THRESHOLD = 4096;  /* Journal records that trigger a snapshot */
+
+    /* Private constants */
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";         /* Suffix of the snapshot file */
+    private static final String SNAPSHOT_TEMP_SUFFIX = ".snapshot.tmp"; /* Suffix of a snapshot being written */
+    private static final String JOURNAL_SUFFIX = ".journal.";          /* Suffix, before the generation, of journals */
+
+    /* Private member fields */
+    private File m_Directory;                              /* The directory holding the files of the store */
+    private String m_BaseName;                             /* Name that every file of the store starts with */
+    private Executor m_Executor;                           /* Writes snapshots in the background, one at a time */
+    private int m_CompactionThreshold;                     /* Journal records that trigger a snapshot */
+    private final Object m_FileLock;                       /* Serializes snapshot installation and deletion */
+    private final Object m_CommitLock;                     /* Serializes commits and replacing the journal */
+    private int m_Epoch;                                   /* Advanced when the store is restored or deleted */
+    private Workday m_Workday;                             /* The Workday being preserved, once restored */
+    private WorkdayJournal m_Journal;                      /* The current journal generation, once restored */
+    private int m_JournalGeneration;                       /* The generation of the current journal */
+    private int m_InstalledGeneration;                     /* Journal generation of the installed snapshot */
+    private volatile IOException m_Error;                  /* The first failure to rotate the journal, if any */
+
+    /**
+     * Constructs the store. Nothing is read or written until the Workday is restored.
+     *
+     * @param directory The directory holding the files of the store.
+     * @param baseName The name that every file of the store starts with.
+     * @param executor Writes snapshots in the background; it must run tasks one at a time, in submission order.
+     * @param compactionThreshold The number of journal records that triggers a snapshot.
+     */
+    WorkdayStore( File directory, String baseName, Executor executor, int compactionThreshold )
+    {
+        m_Directory = directory;
+        m_BaseName = baseName;
+        m_Executor = executor;
+        m_CompactionThreshold = compactionThreshold;
+        m_FileLock = new Object();
+        m_CommitLock = new Object();
+        m_Epoch = 0;
+        m_Workday = null;
+        m_Journal = null;
+        m_JournalGeneration = 0;
+        m_InstalledGeneration = 0;
+        m_Error = null;
+    }
+
+    /**
+     * Restores the preserved Workday, if there is one, into the given Workday: the snapshot is loaded and the
+     * journal generations after it are replayed. From then on, every change made to the Workday is preserved.
+     *
+     * @param workday A newly constructed Workday, not yet journaled, into which the preserved Workday is restored.
+     * @return The number of journal records replayed.
+     * @throws IOException If the preserved Workday cannot be read, or the journal cannot be opened for writing.
+     */
+    long restore( Workday workday ) throws IOException
+    {
+        long recordsReplayed = 0;
+        int generation = 0;
+
+        close();
+
+        synchronized( m_FileLock )
+        {
+            /* Any snapshot still being written belongs to a previous restore */
+            m_Epoch++;
+
+            File snapshotFile = getSnapshotFile();
+
+            if( snapshotFile.exists() == true )
+            {
+                WorkdaySnapshot snapshot = readSnapshot( snapshotFile );
+                workday.restoreSnapshot( snapshot );
+                generation = snapshot.getJournalGeneration();
+            }
+
+            m_InstalledGeneration = generation;
+
+            for( int journalGeneration : listJournalGenerations() )
+            {
+                /* Generations covered by the snapshot are kept until the next one is installed */
+                if( journalGeneration >= generation )
+                {
+                    recordsReplayed += WorkdayJournal.replay( getJournalFile( journalGeneration ), workday );
+                    generation = journalGeneration;
+                }
+            }
+        }
+
+        /* Continue journaling in the newest generation */
+        WorkdayJournal journal = new WorkdayJournal( getJournalFile( generation ) );
+
+        synchronized( m_CommitLock )
+        {
+            m_Journal = journal;
+            m_JournalGeneration = generation;
+            m_Workday = workday;
+            m_Error = null;
+        }
+
+        workday.addListener( this );
+
+        return( recordsReplayed );
+    }
+
+    /**
+     * Checks to see if the store holds a preserved Workday.
+     *
+     * @return True if there is a snapshot or a journal record to restore, false otherwise.
+     */
+    boolean exists()
+    {
+        boolean exists = getSnapshotFile().exists();
+
+        for( int journalGeneration : listJournalGenerations() )
+        {
+            exists |= ( getJournalFile( journalGeneration ).length() > WorkdayJournal.HEADER_SIZE );
+        }
+
+        return( exists );
+    }
+
+    /**
+     * Returns the number of journaled changes that have not been committed yet. Must be called on the thread that
+     * owns the Workday.
+     *
+     * @return The number of changes waiting to be committed.
+     */
+    int getPendingRecordCount()
+    {
+        return( ( m_Journal != null ) ? m_Journal.getPendingRecordCount() : 0 );
+    }
+
+    /**
+     * Writes the journaled changes that have not been committed yet to the journal file as one group and, if asked,
+     * forces them to the storage device. May be called on any thread.
+     *
+     * @param force True to force the changes to the device.
+     * @return The number of changes committed.
+     * @throws IOException If a change could not be preserved, or the write or flush fails.
+     */
+    int commit( boolean force ) throws IOException
+    {
+        synchronized( m_CommitLock )
+        {
+            if( m_Error != null )
+            {
+                throw m_Error;
+            }
+
+            return( ( m_Journal != null ) ? m_Journal.commit( force ) : 0 );
+        }
+    }
+
+    /**
+     * Commits the journaled changes and forces them to the storage device. May be called on any thread.
+     *
+     * @throws IOException If a change could not be preserved, or the write or flush fails.
+     */
+    void sync() throws IOException
+    {
+        commit( true );
+    }
+
+    /**
+     * Stops preserving the Workday and deletes every file of the store, including a snapshot still being written.
+     *
+     * @return True if all files were deleted, false otherwise.
+     */
+    boolean delete()
+    {
+        boolean deleted = true;
+
+        close();
+
+        synchronized( m_FileLock )
+        {
+            m_Epoch++;
+            m_InstalledGeneration = 0;
+
+            for( int journalGeneration : listJournalGenerations() )
+            {
+                deleted &= getJournalFile( journalGeneration ).delete();
+            }
+
+            getSnapshotTempFile().delete();
+
+            if( getSnapshotFile().exists() == true )
+            {
+                deleted &= getSnapshotFile().delete();
+            }
+        }
+
+        return( deleted );
+    }
+
+    /**
+     * Stops preserving the Workday. The files of the store are left in place so that it can be restored later.
+     */
+    void close()
+    {
+        synchronized( m_CommitLock )
+        {
+            if( m_Journal != null )
+            {
+                try
+                {
+                    m_Journal.close();
+                }
+                catch( IOException io_exception )
+                {
+                    /* Nothing more can be written to it either way */
+                }
+
+                m_Journal = null;
+            }
+        }
+
+        if( m_Workday != null )
+        {
+            m_Workday.removeListener( this );
+            m_Workday = null;
+        }
+    }
+
+    /**
+     * Rotates the journal to a new generation and writes a snapshot of the Workday in the background. Must be called
+     * on the thread that owns the Workday.
+     *
+     * @throws IOException If the new journal generation cannot be created.
+     */
+    void compact() throws IOException
+    {
+        int nextGeneration = m_JournalGeneration + 1;
+
+        final WorkdaySnapshot snapshot = m_Workday.captureSnapshot( nextGeneration );
+        final int epoch = getEpoch();
+
+        synchronized( m_CommitLock )
+        {
+            /* Make sure that the current generation is complete, in case the snapshot is never written */
+            m_Journal.sync();
+
+            WorkdayJournal nextJournal = new WorkdayJournal( getJournalFile( nextGeneration ) );
+
+            m_Journal.close();
+            m_Journal = nextJournal;
+            m_JournalGeneration = nextGeneration;
+        }
+
+        m_Executor.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                writeSnapshot( snapshot, epoch );
+            }
+        } );
+    }
+
+    @Override
+    public void onTaskAdded( Task task, long timestampMs )
+    {
+        m_Journal.onTaskAdded( task, timestampMs );
+        compactIfNeeded();
+    }
+
+    @Override
+    public void onTaskDeleted( int taskId, long timestampMs )
+    {
+        m_Journal.onTaskDeleted( taskId, timestampMs );
+        compactIfNeeded();
+    }
+
+    @Override
+    public void onTaskColorChanged( int taskId, int color, long timestampMs )
+    {
+        m_Journal.onTaskColorChanged( taskId, color, timestampMs );
+        compactIfNeeded();
+    }
+
+    @Override
+    public void onContextSwitch( int taskId, long timestampMs, long timeBase )
+    {
+        m_Journal.onContextSwitch( taskId, timestampMs, timeBase );
+        compactIfNeeded();
+    }
+
+    @Override
+    public void onWorkdayEnded( long timestampMs )
+    {
+        m_Journal.onWorkdayEnded( timestampMs );
+        compactIfNeeded();
+    }
+
+    @Override
+    public void onWorkdayReset( long timestampMs )
+    {
+        m_Journal.onWorkdayReset( timestampMs );
+        compactIfNeeded();
+    }
+
+    @Override
+    public void onTaskLimitCrossed( int taskId, long timestampMs )
+    {
+        /* Follows from the changes already journaled, so it is recovered by replaying them */
+    }
+
+    /**
+     * Compacts the store once the current journal generation reaches the threshold. A failure is kept and reported
+     * by the next commit; the journal then simply keeps growing, which costs recovery time but no data.
+     */
+    private void compactIfNeeded()
+    {
+        if( ( m_Error == null ) && ( m_Journal.getRecordCount() >= m_CompactionThreshold ) )
+        {
+            try
+            {
+                compact();
+            }
+            catch( IOException io_exception )
+            {
+                m_Error = io_exception;
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file, forces it to the device and renames it over the current snapshot,
+     * then deletes the journal generations covered by the snapshot it replaced, which has had the time between the
+     * two snapshots to reach the device. Runs in the background. If anything fails, the previous snapshot and the
+     * journals remain, so nothing is lost.
+     *
+     * @param snapshot The snapshot to write.
+     * @param epoch The epoch of the store when the snapshot was captured.
+     */
+    private void writeSnapshot( WorkdaySnapshot snapshot, int epoch )
+    {
+        ByteBuffer encodedSnapshot = snapshot.encode();
+        File tempFile = getSnapshotTempFile();
+
+        synchronized( m_FileLock )
+        {
+            /* The store was restored or deleted since the snapshot was captured */
+            if( epoch != m_Epoch )
+            {
+                return;
+            }
+
+            try
+            {
+                FileOutputStream outputStream = new FileOutputStream( tempFile );
+
+                try
+                {
+                    FileChannel channel = outputStream.getChannel();
+
+                    while( encodedSnapshot.hasRemaining() )
+                    {
+                        channel.write( encodedSnapshot );
+                    }
+
+                    outputStream.getFD().sync();
+                }
+                finally
+                {
+                    outputStream.close();
+                }
+
+                if( tempFile.renameTo( getSnapshotFile() ) == false )
+                {
+                    throw new IOException( "Could not install snapshot" );
+                }
+
+                /* Still needed by the replaced snapshot if the rename has not reached the device */
+                for( int journalGeneration : listJournalGenerations() )
+                {
+                    if( journalGeneration < m_InstalledGeneration )
+                    {
+                        getJournalFile( journalGeneration ).delete();
+                    }
+                }
+
+                m_InstalledGeneration = snapshot.getJournalGeneration();
+            }
+            catch( IOException io_exception )
+            {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads and decodes the snapshot file.
+     *
+     * @param snapshotFile The snapshot file.
+     * @return The decoded snapshot.
+     * @throws IOException If the file cannot be read or does not hold an intact snapshot.
+     */
+    private static WorkdaySnapshot readSnapshot( File snapshotFile ) throws IOException
+    {
+        FileInputStream inputStream = new FileInputStream( snapshotFile );
+
+        try
+        {
+            FileChannel channel = inputStream.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate( (int)channel.size() );
+
+            while( buffer.hasRemaining() )
+            {
+                if( channel.read( buffer ) < 0 )
+                {
+                    throw new IOException( "Snapshot ended unexpectedly" );
+                }
+            }
+
+            buffer.flip();
+
+            return( WorkdaySnapshot.decode( buffer ) );
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Returns the generations of the journal files in the store, in ascending order.
+     *
+     * @return The journal generations.
+     */
+    private int[] listJournalGenerations()
+    {
+        String prefix = m_BaseName + JOURNAL_SUFFIX;
+        String[] fileNames = m_Directory.list();
+        int[] generations = new int[( fileNames != null ) ? fileNames.length : 0];
+        int count = 0;
+
+        for( int index = 0; index < generations.length; index++ )
+        {
+            if( fileNames[index].startsWith( prefix ) == true )
+            {
+                try
+                {
+                    generations[count] = Integer.parseInt( fileNames[index].substring( prefix.length() ) );
+                    count++;
+                }
+                catch( NumberFormatException nf_exception )
+                {
+                    /* Not a journal of this store */
+                }
+            }
+        }
+
+        generations = Arrays.copyOf( generations, count );
+        Arrays.sort( generations );
+
+        return( generations );
+    }
+
+    /**
+     * Returns the current epoch of the store.
+     *
+     * @return The epoch.
+     */
+    private int getEpoch()
+    {
+        synchronized( m_FileLock )
+        {
+            return( m_Epoch );
+        }
+    }
+
+    /**
+     * Returns the snapshot file of the store.
+     *
+     * @return The snapshot file.
+     */
+    private File getSnapshotFile()
+    {
+        return( new File( m_Directory, m_BaseName + SNAPSHOT_SUFFIX ) );
+    }
+
+    /**
+     * Returns the file that a snapshot is written to before it is renamed over the snapshot file.
+     *
+     * @return The temporary snapshot file.
+     */
+    private File getSnapshotTempFile()
+    {
+        return( new File( m_Directory, m_BaseName + SNAPSHOT_TEMP_SUFFIX ) );
+    }
+
+    /**
+     * Returns the journal file of the given generation.
+     *
+     * @param generation The journal generation.
+     * @return The journal file.
+     */
+    private File getJournalFile( int generation )
+    {
+        return( new File( m_Directory, m_BaseName + JOURNAL_SUFFIX + generation ) );
+    }
+}
@@ -0,0 +1,381 @@
+/**
+ * WorkdayWriter.java
+ *
+ * The single writer of a Workday. Every change to the Workday is submitted as a command, stamped with the clock time
+ * at which it was submitted (such as the moment the user tapped a tile), and queued; the commands are applied in
+ * submission order on the writer's executor, which is the only thread that touches the Workday from then on.
+ *
+ * Submitting a command never waits for the Workday or for storage: it only appends to the queue. The writer takes
+ * every command queued so far as one batch, applies it, publishes a single new snapshot of the Workday for it, and
+ * hands the batch to its listener. Changes made by the batch reach the Workday's listeners as they are applied, on the
+ * writer's thread. Readers use getPublishedSnapshot(), which never blocks.
+ *
+ * A command that throws is abandoned and reported to the listener, and the rest of its batch is still applied. If
+ * anything else fails part way through a batch, the batch is discarded and the writer is scheduled again, so that the
+ * commands queued after it are still applied.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+
+final class WorkdayWriter
+{
+    /* Private constants */
+    private static final int ADD_TASK = 1;
+    private static final int DELETE_TASK = 2;
+    private static final int SWITCH_TO_TASK = 3;
+    private static final int END_WORKDAY = 4;
+    private static final int RESET_WORKDAY = 5;
+    private static final int CHECK_TASK_LIMIT = 6;
+    private static final int RUN_ACTION = 7;
+
+    /* Private member fields */
+    private final Workday m_Workday;                       /* The Workday; only touched on the executor */
+    private final Clock m_Clock;                           /* Stamps each command as it is submitted */
+    private final Executor m_Executor;                     /* Runs the writer */
+    private final BatchListener m_Listener;                /* Receives each applied batch, if set */
+    private final Object m_QueueLock;                      /* Guards m_Queued and m_DrainScheduled */
+    private ArrayList<Command> m_Queued;                   /* Commands submitted but not yet taken by the writer */
+    private ArrayList<Command> m_Batch;                    /* The batch being applied; only touched by the writer */
+    private boolean m_DrainScheduled;                      /* The writer has been, or is being, run on the executor */
+    private final Runnable m_Drainer;                      /* Applies the queued commands, batch by batch */
+
+    /**
+     * Receives each batch of commands once it has been applied to the Workday.
+     */
+    interface BatchListener
+    {
+        /**
+         * Called on the writer's executor after a batch of commands has been applied and published.
+         *
+         * @param snapshot The snapshot of the Workday published for the batch.
+         * @param commands The number of commands in the batch.
+         */
+        void onBatchApplied( WorkdaySnapshot snapshot, int commands );
+
+        /**
+         * Called on the writer's executor when a command throws. The command is abandoned, and the rest of its batch
+         * is applied as usual.
+         *
+         * @param exception The exception thrown by the command.
+         */
+        void onCommandFailed( RuntimeException exception );
+    }
+
+    /**
+     * An action run on the writer's executor by post().
+     */
+    interface WorkdayAction
+    {
+        /**
+         * Runs the action.
+         *
+         * @param workday The Workday, with every command submitted before the action applied.
+         */
+        void run( Workday workday );
+    }
+
+    /**
+     * Constructs the writer, which takes ownership of the Workday: from now on, it must only be changed through the
+     * writer, and only read through its published snapshots.
+     *
+     * @param workday The Workday.
+     * @param executor Runs the writer. The writer is never run on it more than once at a time, so any executor will
+     *                 do, but a dedicated thread keeps the Workday's state in one CPU's cache.
+     * @param listener Receives each applied batch, or null.
+     */
+    WorkdayWriter( Workday workday, Executor executor, BatchListener listener )
+    {
+        m_Workday = workday;
+        m_Clock = workday.getClock();
+        m_Executor = executor;
+        m_Listener = listener;
+        m_QueueLock = new Object();
+        m_Queued = new ArrayList<>();
+        m_Batch = new ArrayList<>();
+        m_DrainScheduled = false;
+        m_Drainer = new Drainer();
+    }
+
+    /**
+     * Returns the state of the Workday as of the last batch applied. May be called on any thread.
+     *
+     * @return The latest published snapshot.
+     */
+    WorkdaySnapshot getPublishedSnapshot()
+    {
+        return( m_Workday.getPublishedSnapshot() );
+    }
+
+    /**
+     * Returns the current time of the clock that times the Workday, against which the runtime of the active iteration
+     * of a published snapshot is measured. May be called on any thread.
+     *
+     * @return The clock time, in milliseconds.
+     */
+    long getTimeMs()
+    {
+        return( m_Clock.getTimeMs() );
+    }
+
+    /**
+     * Queues the addition of a user task. If, by the time it is applied, a task with the same name exists, the task
+     * is not added; callers should check the name against the published snapshot first.
+     *
+     * @param task The new task, which must not be changed once submitted.
+     */
+    void addTask( Task task )
+    {
+        submit( new Command( ADD_TASK, task, Task.NO_TASK_ID, null ) );
+    }
+
+    /**
+     * Queues the deletion of a user task.
+     *
+     * @param taskId The ID of the task.
+     */
+    void deleteTask( int taskId )
+    {
+        submit( new Command( DELETE_TASK, null, taskId, null ) );
+    }
+
+    /**
+     * Queues a context switch.
+     *
+     * @param taskId The ID of the task to switch to.
+     */
+    void switchToTask( int taskId )
+    {
+        submit( new Command( SWITCH_TO_TASK, null, taskId, null ) );
+    }
+
+    /**
+     * Queues the end of the workday, which stops the active task.
+     */
+    void endWorkday()
+    {
+        submit( new Command( END_WORKDAY, null, Task.NO_TASK_ID, null ) );
+    }
+
+    /**
+     * Queues a reset of the task log and all timing data.
+     */
+    void resetWorkday()
+    {
+        submit( new Command( RESET_WORKDAY, null, Task.NO_TASK_ID, null ) );
+    }
+
+    /**
+     * Queues a check of the active task's time limit, which reports the crossing to the Workday's listeners if the
+     * task has gone over its limit by the time the check is stamped.
+     */
+    void checkTaskLimit()
+    {
+        submit( new Command( CHECK_TASK_LIMIT, null, Task.NO_TASK_ID, null ) );
+    }
+
+    /**
+     * Queues an action to be run on the writer's executor once every command submitted before it has been applied,
+     * such as preserving or archiving the Workday, which must read it on the thread that owns it.
+     *
+     * @param action The action, which is given the Workday and must not change it.
+     */
+    void post( WorkdayAction action )
+    {
+        submit( new Command( RUN_ACTION, null, Task.NO_TASK_ID, action ) );
+    }
+
+    /**
+     * Stamps a command with the current time and queues it, scheduling the writer if it is not already due to run.
+     * The time is taken while the queue is locked, so that commands are never stamped out of order.
+     *
+     * @param command The command.
+     */
+    private void submit( Command command )
+    {
+        boolean scheduleDrain = false;
+
+        synchronized( m_QueueLock )
+        {
+            command.m_TimestampMs = m_Clock.getTimeMs();
+            m_Queued.add( command );
+
+            if( !m_DrainScheduled )
+            {
+                m_DrainScheduled = true;
+                scheduleDrain = true;
+            }
+        }
+
+        if( scheduleDrain )
+        {
+            m_Executor.execute( m_Drainer );
+        }
+    }
+
+    /**
+     * Applies one batch of commands to the Workday, publishing it once at the end, then hands it to the listener. A
+     * command that throws is reported to the listener, without stopping the rest of the batch.
+     */
+    private void applyBatch()
+    {
+        m_Workday.beginBatch();
+
+        try
+        {
+            for( int index = 0; index < m_Batch.size(); index++ )
+            {
+                try
+                {
+                    apply( m_Batch.get( index ) );
+                }
+                catch( RuntimeException runtime_exception )
+                {
+                    if( m_Listener != null )
+                    {
+                        m_Listener.onCommandFailed( runtime_exception );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            m_Workday.endBatch();
+        }
+
+        if( m_Listener != null )
+        {
+            m_Listener.onBatchApplied( m_Workday.getPublishedSnapshot(), m_Batch.size() );
+        }
+    }
+
+    /**
+     * Applies one command to the Workday, at the time it was submitted.
+     *
+     * @param command The command.
+     */
+    private void apply( Command command )
+    {
+        switch( command.m_Type )
+        {
+            case ADD_TASK:
+                m_Workday.addTask( command.m_Task, command.m_TimestampMs );
+                break;
+
+            case DELETE_TASK:
+                m_Workday.deleteTaskById( command.m_TaskId, command.m_TimestampMs );
+                break;
+
+            case SWITCH_TO_TASK:
+                m_Workday.switchToTask( command.m_TaskId, command.m_TimestampMs );
+                break;
+
+            case END_WORKDAY:
+                m_Workday.endWorkday( command.m_TimestampMs );
+                break;
+
+            case RESET_WORKDAY:
+                m_Workday.resetWorkday( command.m_TimestampMs );
+                break;
+
+            case CHECK_TASK_LIMIT:
+                m_Workday.checkTaskLimit( command.m_TimestampMs );
+                break;
+
+            default:
+                command.m_Action.run( m_Workday );
+                break;
+        }
+    }
+
+    /**
+     * One queued change to the Workday, or an action to run between changes.
+     */
+    private static final class Command
+    {
+        /* Private member fields */
+        private final int m_Type;                          /* What the command does */
+        private final Task m_Task;                         /* The task to add, if adding one */
+        private final int m_TaskId;                        /* The ID of the task to delete or switch to */
+        private final WorkdayAction m_Action;              /* The action to run, if running one */
+        private long m_TimestampMs;                        /* The clock time at which the command was submitted */
+
+        /**
+         * Constructs a command; it is stamped when it is submitted.
+         *
+         * @param type What the command does.
+         * @param task The task to add, or null.
+         * @param taskId The ID of the task to delete or switch to, or Task.NO_TASK_ID.
+         * @param action The action to run, or null.
+         */
+        Command( int type, Task task, int taskId, WorkdayAction action )
+        {
+            m_Type = type;
+            m_Task = task;
+            m_TaskId = taskId;
+            m_Action = action;
+        }
+    }
+
+    /**
+     * Takes every queued command as one batch and applies it, until the queue is empty. Commands submitted while a
+     * batch is being applied form the next batch. If a batch fails, it is discarded and the drainer is scheduled
+     * again, since it is still marked as scheduled and no submitter would schedule it.
+     */
+    private class Drainer implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            boolean drained = false;
+
+            try
+            {
+                while( !drained )
+                {
+                    synchronized( m_QueueLock )
+                    {
+                        if( m_Queued.isEmpty() )
+                        {
+                            m_DrainScheduled = false;
+                            drained = true;
+                        }
+                        else
+                        {
+                            /* Swap the lists, so that submitters can keep queueing while the batch is applied */
+                            ArrayList<Command> batch = m_Queued;
+                            m_Queued = m_Batch;
+                            m_Batch = batch;
+                        }
+                    }
+
+                    if( !drained )
+                    {
+                        try
+                        {
+                            applyBatch();
+                        }
+                        finally
+                        {
+                            m_Batch.clear();
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                if( !drained )
+                {
+                    m_Executor.execute( m_Drainer );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * GroupCommitterTest.java
+ *
+ * Local unit tests for the group commit of journaled changes: pending changes must stay in memory until the group is
+ * full, the oldest of them has waited the maximum delay, or the committer is flushed; and each group must reach the
+ * journal file whole, so that it replays to the same Workday.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GroupCommitterTest
+{
+    /* Private constants */
+    private static final String BASE_NAME = "workday";       /* Name that every file of the store starts with */
+    private static final long NEVER_MS = 3600000;            /* A delay that no test waits for */
+    private static final long TIMEOUT_MS = 10000;            /* Longest that a test waits for a commit */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private Workday m_Workday;
+    private WorkdayStore m_Store;
+    private ScheduledExecutorService m_CommitThread;
+
+    @Rule
+    public TemporaryFolder m_TempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        m_Clock = new VirtualClock( 1000 );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+        m_CommitThread = Executors.newSingleThreadScheduledExecutor();
+
+        /* Snapshots are never due in these tests */
+        m_Store = new WorkdayStore( m_TempFolder.getRoot(), BASE_NAME, new Executor()
+        {
+            @Override
+            public void execute( Runnable command )
+            {
+                command.run();
+            }
+        }, WorkdayStore.DEFAULT_COMPACTION_THRESHOLD );
+
+        m_Store.restore( m_Workday );
+    }
+
+    @After
+    public void tearDown()
+    {
+        m_CommitThread.shutdownNow();
+        m_Store.close();
+    }
+
+    @Test
+    public void fullGroup_isCommittedWithoutWaiting() throws InterruptedException
+    {
+        GroupCommitter committer = new GroupCommitter( m_Store, m_CommitThread, NEVER_MS, 8, true );
+
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+        committer.onRecordsJournaled();
+
+        /* Not enough records yet; they stay in memory */
+        assertEquals( 0, committer.getCommitCount() );
+        assertEquals( WorkdayJournal.HEADER_SIZE, getJournalFile().length() );
+
+        performSwitches( 6 );
+        committer.onRecordsJournaled();
+        awaitCommits( committer, 1 );
+
+        assertEquals( 8, committer.getCommittedRecordCount() );
+        assertEquals( 8, committer.getMaxGroupSize() );
+        assertEquals( WorkdayJournal.HEADER_SIZE + ( 8 * WorkdayJournal.RECORD_SIZE ), getJournalFile().length() );
+    }
+
+    @Test
+    public void pendingChanges_areCommittedAfterMaxDelay() throws InterruptedException
+    {
+        GroupCommitter committer = new GroupCommitter( m_Store, m_CommitThread, 50, 1000, false );
+
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+        committer.onRecordsJournaled();
+        performSwitches( 3 );
+        committer.onRecordsJournaled();
+        awaitCommits( committer, 1 );
+
+        /* Both batches went into one group, which waited for the delay measured from the first */
+        assertEquals( 5, committer.getCommittedRecordCount() );
+        assertTrue( committer.getMaxLatencyMs() >= 50 );
+        assertEquals( WorkdayJournal.HEADER_SIZE + ( 5 * WorkdayJournal.RECORD_SIZE ), getJournalFile().length() );
+    }
+
+    @Test
+    public void flush_commitsAtOnceAndReplaysToSameWorkday() throws IOException, InterruptedException
+    {
+        GroupCommitter committer = new GroupCommitter( m_Store, m_CommitThread, NEVER_MS, 1000, true );
+
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+
+        for( int batch = 0; batch < 10; batch++ )
+        {
+            performSwitches( 10 );
+            committer.onRecordsJournaled();
+        }
+
+        m_Workday.endWorkday();
+        committer.flush();
+        awaitCommits( committer, 1 );
+
+        assertEquals( 103, committer.getCommittedRecordCount() );
+        assertEquals( 103, committer.getAverageGroupSize(), 0 );
+
+        Workday replayed = new Workday( "Add", "End", new VirtualClock( m_Clock.getTimeMs() ) );
+        assertEquals( 103, WorkdayJournal.replay( getJournalFile(), replayed ) );
+        WorkdayAssertions.assertWorkdaysEqual( m_Workday, replayed );
+    }
+
+    /**
+     * Performs the given number of context switches, alternating between the first two user tasks.
+     *
+     * @param switches The number of switches.
+     */
+    private void performSwitches( int switches )
+    {
+        for( int switchCount = 0; switchCount < switches; switchCount++ )
+        {
+            m_Workday.contextSwitch( switchCount % 2 );
+            m_Clock.advance( 1000 );
+        }
+    }
+
+    /**
+     * Waits for the committer to have committed the given number of groups.
+     *
+     * @param committer The committer.
+     * @param commits The number of groups.
+     * @throws InterruptedException If the test is interrupted while waiting.
+     */
+    private static void awaitCommits( GroupCommitter committer, long commits ) throws InterruptedException
+    {
+        long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+
+        while( ( committer.getCommitCount() < commits ) && ( System.currentTimeMillis() < deadlineMs ) )
+        {
+            Thread.sleep( 1 );
+        }
+
+        assertEquals( commits, committer.getCommitCount() );
+    }
+
+    /**
+     * Returns the journal file of the store, which is never rotated in these tests.
+     *
+     * @return The journal file.
+     */
+    private File getJournalFile()
+    {
+        return( new File( m_TempFolder.getRoot(), BASE_NAME + ".journal.0" ) );
+    }
+}
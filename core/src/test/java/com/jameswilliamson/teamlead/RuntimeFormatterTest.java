@@ -0,0 +1,122 @@
+/**
+ * RuntimeFormatterTest.java
+ *
+ * Local unit tests for the allocation-free runtime formatter.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class RuntimeFormatterTest
+{
+    /* Private constants */
+    private static final int WARMUP_CALLS = 200000;        /* Calls made before measuring, to settle the JIT */
+    private static final int MEASURED_CALLS = 1000000;     /* Calls made while measuring allocations */
+    private static final long MAX_ALLOCATED_BYTES = 1024;  /* Allowed for the JIT and the VM, across every call */
+    private static final long MS_PER_HOUR = Workday.MINS_PER_HOUR * Workday.SECS_PER_MIN * Workday.MS_PER_SEC;
+
+    /* Private member fields */
+    private long m_Checksum;                               /* Sink for results computed while measuring */
+
+    @Test
+    public void formatMs_matchesHhMmSs()
+    {
+        assertEquals( "00:00:00", format( 0 ) );
+        assertEquals( "00:00:00", format( 999 ) );
+        assertEquals( "00:00:59", format( 59999 ) );
+        assertEquals( "00:01:00", format( 60000 ) );
+        assertEquals( "00:59:59", format( MS_PER_HOUR - 1 ) );
+        assertEquals( "01:00:00", format( MS_PER_HOUR ) );
+        assertEquals( "23:45:06", format( 23 * MS_PER_HOUR + 45 * 60000 + 6000 ) );
+        assertEquals( "99:59:59", format( 100 * MS_PER_HOUR - 1 ) );
+        assertEquals( "100:00:00", format( 100 * MS_PER_HOUR ) );
+        assertEquals( "1234:05:07", format( 1234 * MS_PER_HOUR + 5 * 60000 + 7000 ) );
+        assertEquals( "00:00:00", format( -5000 ) );
+        assertEquals( Long.toString( Long.MAX_VALUE / MS_PER_HOUR ),
+                      format( Long.MAX_VALUE ).substring( 0, format( Long.MAX_VALUE ).length() - 6 ) );
+    }
+
+    @Test
+    public void formatMs_writesAtOffset()
+    {
+        char[] buffer = "Email\n\n".toCharArray();
+        char[] tile = new char[buffer.length + RuntimeFormatter.MAX_FORMATTED_LENGTH];
+        System.arraycopy( buffer, 0, tile, 0, buffer.length );
+
+        int length = RuntimeFormatter.formatMs( 3723000, tile, buffer.length );
+
+        assertEquals( "Email\n\n01:02:03", new String( tile, 0, buffer.length + length ) );
+    }
+
+    @Test
+    public void convertMsToFormattedTimeString_usesFormatter()
+    {
+        assertEquals( "02:03:04", Workday.convertMsToFormattedTimeString( 2 * MS_PER_HOUR + 3 * 60000 + 4000 ) );
+    }
+
+    @Test
+    public void formatMs_allocatesNothing()
+    {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue( threadBean instanceof com.sun.management.ThreadMXBean );
+
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)threadBean;
+        assumeTrue( allocationBean.isThreadAllocatedMemorySupported() );
+        allocationBean.setThreadAllocatedMemoryEnabled( true );
+
+        long threadId = Thread.currentThread().getId();
+        char[] buffer = new char[RuntimeFormatter.MAX_FORMATTED_LENGTH];
+        long checksum = 0;
+
+        for( int call = 0; call < WARMUP_CALLS; call++ )
+        {
+            checksum += RuntimeFormatter.formatMs( call * 997L, buffer, 0 );
+        }
+
+        /* Measure the cost of reading the counter itself, so it can be excluded */
+        long calibrationStart = allocationBean.getThreadAllocatedBytes( threadId );
+        long calibrationEnd = allocationBean.getThreadAllocatedBytes( threadId );
+        long counterOverhead = calibrationEnd - calibrationStart;
+
+        long allocatedStart = allocationBean.getThreadAllocatedBytes( threadId );
+
+        for( int call = 0; call < MEASURED_CALLS; call++ )
+        {
+            checksum += RuntimeFormatter.formatMs( call * 997L, buffer, 0 );
+        }
+
+        long allocatedEnd = allocationBean.getThreadAllocatedBytes( threadId );
+        long allocatedBytes = allocatedEnd - allocatedStart - counterOverhead;
+
+        /* Even one byte per call would add up to far more than the noise allowed for the whole measurement */
+        assertTrue( "allocated " + allocatedBytes + " bytes", allocatedBytes < MAX_ALLOCATED_BYTES );
+
+        /* Publish the result so the formatting calls cannot be optimized away */
+        m_Checksum = checksum;
+    }
+
+    /**
+     * Formats the value through a fresh buffer.
+     *
+     * @param milliseconds A time value in milliseconds.
+     * @return The formatted value.
+     */
+    private static String format( long milliseconds )
+    {
+        char[] buffer = new char[RuntimeFormatter.MAX_FORMATTED_LENGTH];
+        int length = RuntimeFormatter.formatMs( milliseconds, buffer, 0 );
+
+        return( new String( buffer, 0, length ) );
+    }
+}
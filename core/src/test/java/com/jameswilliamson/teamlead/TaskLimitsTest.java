@@ -0,0 +1,105 @@
+/**
+ * TaskLimitsTest.java
+ *
+ * Local unit tests for the time limits of the tasks of a Workday: the deadline of the active task must be the first
+ * millisecond at which its runtime is over its limit, counting its concluded iterations, and the state of every other
+ * task must be fixed until the Workday changes.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TaskLimitsTest
+{
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private Workday m_Workday;
+    private TaskLimits m_Limits;
+
+    @Before
+    public void setUp()
+    {
+        Task email = new Task( "Email" );
+        Task coding = new Task( "Coding" );
+
+        email.setTaskTimeLimit( 10000 );
+
+        m_Clock = new VirtualClock( 1000 );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+        m_Workday.addTask( email );
+        m_Workday.addTask( coding );
+        m_Limits = new TaskLimits();
+    }
+
+    @Test
+    public void deadline_isFirstMillisecondOverLimit()
+    {
+        int emailId = m_Workday.getTaskId( 0 );
+
+        /* Four seconds concluded, then the task is active again */
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 4000 );
+        m_Workday.contextSwitch( 1 );
+        m_Clock.advance( 2000 );
+        m_Workday.contextSwitch( 0 );
+        update();
+
+        long deadlineMs = m_Clock.getTimeMs() + 6000 + 1;
+
+        assertEquals( emailId, m_Limits.getDeadlineTaskId() );
+        assertEquals( deadlineMs, m_Limits.getDeadlineMs() );
+        assertFalse( m_Limits.isLimitExceeded( emailId ) );
+
+        /* Exactly at the limit is not over it */
+        m_Clock.advance( 6000 );
+        update();
+        assertFalse( m_Limits.isLimitExceeded( emailId ) );
+        assertEquals( deadlineMs, m_Limits.getDeadlineMs() );
+
+        m_Clock.advance( 1 );
+        update();
+        assertTrue( m_Limits.isLimitExceeded( emailId ) );
+        assertEquals( Task.NO_TASK_ID, m_Limits.getDeadlineTaskId() );
+        assertEquals( TaskLimits.NEVER, m_Limits.getDeadlineMs() );
+    }
+
+    @Test
+    public void inactiveTasks_keepTheirStateAndSetNoDeadline()
+    {
+        int emailId = m_Workday.getTaskId( 0 );
+        int codingId = m_Workday.getTaskId( 1 );
+
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 20000 );
+        m_Workday.contextSwitch( 1 );
+        update();
+
+        /* The task without a limit is active, so nothing will change as time passes */
+        assertTrue( m_Limits.isLimitExceeded( emailId ) );
+        assertFalse( m_Limits.isLimitExceeded( codingId ) );
+        assertEquals( TaskLimits.NEVER, m_Limits.getDeadlineMs() );
+
+        m_Workday.resetWorkday();
+        update();
+        assertFalse( m_Limits.isLimitExceeded( emailId ) );
+        assertFalse( m_Limits.isLimitExceeded( Workday.ADD_TASK_ID ) );
+    }
+
+    /**
+     * Updates the limits from the Workday's published snapshot, at the current time.
+     */
+    private void update()
+    {
+        m_Limits.update( m_Workday.getPublishedSnapshot(), m_Clock.getTimeMs() );
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * TaskLogFootprintTest.java
+ *
+ * Memory benchmark comparing the heap retained per logged context switch by the columnar TaskLog against the
+ * previous representation, a deque holding one TaskIteration object per switch.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TaskLogFootprintTest
+{
+    /* Private constants */
+    private static final int LOGGED_SWITCHES = 500000;     /* Several months of switching for a heavy user */
+    private static final int TASK_COUNT = 40;              /* Number of distinct tasks switched between */
+    private static final int COLUMN_BYTES_PER_SWITCH = 20; /* A task ID, a start timestamp and a runtime */
+
+    /* Private member fields */
+    private Object m_Retained;                             /* Keeps the structure under test reachable */
+
+    @Test
+    public void taskLog_readsBackWhatWasAppended()
+    {
+        TaskLog log = new TaskLog();
+
+        for( int index = 0; index < 1000; index++ )
+        {
+            assertEquals( index, log.append( index % TASK_COUNT, index * 10L ) );
+            log.setRuntimeMs( index, index );
+        }
+
+        assertEquals( 1000, log.size() );
+        assertEquals( 999 % TASK_COUNT, log.getTaskId( 999 ) );
+        assertEquals( 9990L, log.getStartTimestampMs( 999 ) );
+        assertEquals( 999L, log.getRuntimeMs( 999 ) );
+
+        log.clear();
+        assertEquals( 0, log.size() );
+    }
+
+    @Test
+    public void taskLog_retainsLessThanObjectPerSwitch()
+    {
+        Task[] tasks = new Task[TASK_COUNT];
+
+        for( int index = 0; index < TASK_COUNT; index++ )
+        {
+            tasks[index] = new Task( "Task" + index );
+            tasks[index].setTaskId( index );
+        }
+
+        /* Before: one heap object per switch, held by a deque */
+        long baseline = getUsedHeapBytes();
+        ArrayDeque<LegacyTaskIteration> deque = new ArrayDeque<>();
+
+        for( int index = 0; index < LOGGED_SWITCHES; index++ )
+        {
+            deque.add( new LegacyTaskIteration( tasks[index % TASK_COUNT], index * 1000L, 1000L ) );
+        }
+
+        m_Retained = deque;
+        double dequeBytesPerSwitch = (double)( getUsedHeapBytes() - baseline ) / LOGGED_SWITCHES;
+        m_Retained = null;
+        deque = null;
+
+        /* After: parallel primitive columns */
+        baseline = getUsedHeapBytes();
+        TaskLog log = new TaskLog();
+
+        for( int index = 0; index < LOGGED_SWITCHES; index++ )
+        {
+            log.setRuntimeMs( log.append( index % TASK_COUNT, index * 1000L ), 1000L );
+        }
+
+        m_Retained = log;
+        double columnarBytesPerSwitch = (double)( getUsedHeapBytes() - baseline ) / LOGGED_SWITCHES;
+        m_Retained = null;
+
+        /* The columns double as they grow, so at worst they are twice as long as the log */
+        assertTrue( "columnar " + columnarBytesPerSwitch + " bytes per switch",
+                    columnarBytesPerSwitch < 2 * COLUMN_BYTES_PER_SWITCH );
+        assertTrue( columnarBytesPerSwitch < dequeBytesPerSwitch );
+    }
+
+    /**
+     * Returns the heap in use after encouraging the garbage collector to run.
+     *
+     * @return The number of bytes of heap in use.
+     */
+    private static long getUsedHeapBytes()
+    {
+        Runtime runtime = Runtime.getRuntime();
+
+        for( int pass = 0; pass < 4; pass++ )
+        {
+            System.gc();
+        }
+
+        return( runtime.totalMemory() - runtime.freeMemory() );
+    }
+
+    /**
+     * Mirror of the fields held by the previous, object-per-switch TaskIteration.
+     */
+    private static class LegacyTaskIteration
+    {
+        private Task m_Task;
+        private long m_StartTimestampMs;
+        private long m_IterationRuntimeMs;
+        private boolean m_Active;
+
+        LegacyTaskIteration( Task task, long startTimestampMs, long iterationRuntimeMs )
+        {
+            m_Task = task;
+            m_StartTimestampMs = startTimestampMs;
+            m_IterationRuntimeMs = iterationRuntimeMs;
+            m_Active = false;
+        }
+    }
+}
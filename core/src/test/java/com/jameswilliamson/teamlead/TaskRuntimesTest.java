@@ -0,0 +1,88 @@
+/**
+ * TaskRuntimesTest.java
+ *
+ * Local unit tests for the runtime column of a Workday snapshot: an updated column must hold the new runtimes while
+ * the column it was updated from, and every snapshot published before a change, keeps the old ones.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TaskRuntimesTest
+{
+    /* Private constants */
+    private static final int TASK_COUNT = 100;             /* Spans several chunks, the last of them partly */
+
+    @Test
+    public void update_leavesOriginalUnchanged()
+    {
+        long[] runtimesMs = new long[TASK_COUNT];
+
+        for( int taskId = 0; taskId < TASK_COUNT; taskId++ )
+        {
+            runtimesMs[taskId] = taskId * 10L;
+        }
+
+        TaskRuntimes original = new TaskRuntimes( runtimesMs );
+        TaskRuntimes updated = original.update( new int[] { 3, 70, 3, 99 }, new long[] { 1L, 2L, 3L, 4L }, 4 );
+
+        assertEquals( TASK_COUNT, updated.size() );
+
+        for( int taskId = 0; taskId < TASK_COUNT; taskId++ )
+        {
+            assertEquals( taskId * 10L, original.get( taskId ) );
+        }
+
+        /* The last listing of a task wins */
+        assertEquals( 3L, updated.get( 3 ) );
+        assertEquals( 2L, updated.get( 70 ) );
+        assertEquals( 4L, updated.get( 99 ) );
+        assertEquals( 40L, updated.get( 4 ) );
+        assertEquals( 710L, updated.get( 71 ) );
+    }
+
+    @Test
+    public void publishedSnapshots_keepTheirRuntimes()
+    {
+        VirtualClock clock = new VirtualClock( 1000 );
+        Workday workday = new Workday( "Add", "End", clock );
+        WorkdaySnapshot[] published = new WorkdaySnapshot[TASK_COUNT];
+
+        for( int index = 0; index < TASK_COUNT; index++ )
+        {
+            workday.addTask( new Task( "Task " + index ) );
+        }
+
+        /* Each switch concludes one second of the task before it */
+        for( int index = 0; index < TASK_COUNT; index++ )
+        {
+            workday.contextSwitch( index );
+            published[index] = workday.getPublishedSnapshot();
+            clock.advance( 1000 );
+        }
+
+        workday.endWorkday();
+
+        WorkdaySnapshot last = workday.getPublishedSnapshot();
+
+        for( int index = 0; index < TASK_COUNT; index++ )
+        {
+            int taskId = workday.getTaskId( index );
+
+            assertEquals( 1000, last.getTaskRuntimeMs( taskId ) );
+            assertEquals( 0, published[index].getTaskRuntimeMs( taskId ) );
+
+            if( index > 0 )
+            {
+                assertEquals( 1000, published[index].getTaskRuntimeMs( workday.getTaskId( index - 1 ) ) );
+            }
+        }
+    }
+}
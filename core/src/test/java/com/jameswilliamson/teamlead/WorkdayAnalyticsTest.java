@@ -0,0 +1,217 @@
+/**
+ * WorkdayAnalyticsTest.java
+ *
+ * Local unit tests for the multi-day analytics engine: its totals must agree with fully restoring every archived
+ * Workday, tasks must be matched across days regardless of case, and a range of more than a thousand days must be
+ * reported on quickly.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WorkdayAnalyticsTest
+{
+    /* Private constants */
+    private static final String[] TASK_NAMES = { "Email", "Meeting", "Review", "Coding", "Support", "Lunch" };
+    private static final int ARCHIVED_DAYS = 1200;           /* Number of days of history in the archive */
+    private static final int SWITCHES_PER_DAY = 80;          /* Number of context switches in each Workday */
+    private static final double PCT_TOLERANCE = 1e-9;        /* Allowed error when comparing percentages */
+    private static final long MAX_REPORT_MS = 5000;          /* Generous bound on reporting on the whole history */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private WorkdayArchive m_Archive;
+    private ExecutorService m_Executor;
+    private WorkdayAnalytics m_Analytics;
+
+    @Rule
+    public TemporaryFolder m_TempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        m_Clock = new VirtualClock( 1000 );
+        m_Archive = new WorkdayArchive( new File( m_TempFolder.getRoot(), "archive" ), "TL_Workday_", "index" );
+        m_Executor = Executors.newFixedThreadPool( 4 );
+        m_Analytics = new WorkdayAnalytics( m_Archive, m_Executor );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        m_Executor.shutdownNow();
+        m_Archive.close();
+    }
+
+    @Test
+    public void computeReport_matchesFullyRestoredWorkdays() throws Exception
+    {
+        archiveRandomHistory( 120 );
+
+        WorkdayAnalytics.Report report = m_Analytics.computeReport( 20160201, 20160331 );
+
+        /* Brute force: restore every Workday in the range and add up its tasks */
+        HashMap<Task, long[]> expected = new HashMap<>();
+        long expectedTotalMs = 0;
+        int expectedWorkdays = 0;
+
+        for( WorkdayArchive.Entry entry : m_Archive.getEntries( 20160201, 20160331 ) )
+        {
+            Workday workday = new Workday( "Add", "End", m_Clock );
+            workday.restoreSnapshot( m_Archive.load( entry ) );
+            expectedWorkdays++;
+
+            for( int index = 0; index < workday.getNumberOfUserTasks(); index++ )
+            {
+                Task key = new Task( workday.getTaskName( index ) );
+                long[] totals = expected.get( key );
+
+                if( totals == null )
+                {
+                    totals = new long[2];
+                    expected.put( key, totals );
+                }
+
+                totals[0] += workday.getTotalTaskRuntimeMs( index );
+                expectedTotalMs += workday.getTotalTaskRuntimeMs( index );
+
+                for( int logIndex = 0; logIndex < workday.getTaskLogSize(); logIndex++ )
+                {
+                    if( workday.getTaskLogEntry( logIndex ).getTaskId() == workday.getTaskId( index ) )
+                    {
+                        totals[1]++;
+                    }
+                }
+            }
+        }
+
+        assertEquals( expectedWorkdays, report.getWorkdayCount() );
+        assertEquals( expectedTotalMs, report.getTotalRuntimeMs() );
+        assertEquals( expected.size(), report.getNumberOfTasks() );
+
+        for( int index = 0; index < report.getNumberOfTasks(); index++ )
+        {
+            WorkdayAnalytics.TaskTotals taskTotals = report.getTaskTotals( index );
+            long[] totals = expected.get( new Task( taskTotals.getTaskName() ) );
+
+            assertEquals( totals[0], taskTotals.getRuntimeMs() );
+            assertEquals( totals[1], taskTotals.getSwitches() );
+            assertEquals( ( (double)totals[0] / expectedTotalMs ) * 100.0, report.getTaskPercentage( index ),
+                          PCT_TOLERANCE );
+        }
+    }
+
+    @Test
+    public void computeReport_matchesTasksIgnoringCase() throws Exception
+    {
+        m_Archive.archive( createWorkday( "Email", 3000 ), 20170101 );
+        m_Archive.archive( createWorkday( "EMAIL", 1000 ), 20170201 );
+        m_Archive.archive( createWorkday( "Coding", 12000 ), 20170202 );
+
+        WorkdayAnalytics.Report report = m_Analytics.computeReport( 20170101, 20171231 );
+
+        assertEquals( 3, report.getWorkdayCount() );
+        assertEquals( 2, report.getNumberOfTasks() );
+        assertEquals( "Email", report.getTaskTotals( 1 ).getTaskName() );
+        assertEquals( 4000, report.getTaskTotals( 1 ).getRuntimeMs() );
+        assertEquals( 2, report.getTaskTotals( 1 ).getSwitches() );
+        assertEquals( 75.0, report.getTaskPercentage( 0 ), PCT_TOLERANCE );
+    }
+
+    @Test
+    public void computeReport_overYearsOfHistory() throws Exception
+    {
+        archiveRandomHistory( ARCHIVED_DAYS );
+
+        long startNs = System.nanoTime();
+        WorkdayAnalytics.Report report = m_Analytics.computeReport( 0, 99999999 );
+        long elapsedMs = ( System.nanoTime() - startNs ) / 1000000;
+
+        assertEquals( ARCHIVED_DAYS, report.getWorkdayCount() );
+        assertEquals( (long)ARCHIVED_DAYS * SWITCHES_PER_DAY, report.getTotalSwitches() );
+        assertTrue( "reported in " + elapsedMs + " ms", elapsedMs < MAX_REPORT_MS );
+    }
+
+    /**
+     * Archives one randomly generated Workday per day, starting on the first of January 2016.
+     *
+     * @param days The number of days to archive.
+     * @throws IOException If a Workday cannot be archived.
+     */
+    private void archiveRandomHistory( int days ) throws IOException
+    {
+        Random random = new Random( days );
+        GregorianCalendar date = new GregorianCalendar( 2016, 0, 1 );
+
+        for( int day = 0; day < days; day++ )
+        {
+            Workday workday = new Workday( "Add", "End", m_Clock );
+
+            /* At least two distinct tasks, plus a few random ones (duplicates are rejected) */
+            workday.addTask( new Task( TASK_NAMES[day % TASK_NAMES.length] ) );
+            workday.addTask( new Task( TASK_NAMES[( day + 1 ) % TASK_NAMES.length] ) );
+
+            for( int task = random.nextInt( TASK_NAMES.length ); task > 0; task-- )
+            {
+                workday.addTask( new Task( TASK_NAMES[random.nextInt( TASK_NAMES.length )] ) );
+            }
+
+            for( int switches = 0; switches < SWITCHES_PER_DAY; switches++ )
+            {
+                /* Switching to the active task does not count, so always pick a different one */
+                int taskIndex = random.nextInt( workday.getNumberOfUserTasks() );
+
+                if( workday.getTaskId( taskIndex ) == workday.getActiveTaskId() )
+                {
+                    taskIndex = ( taskIndex + 1 ) % workday.getNumberOfUserTasks();
+                }
+
+                workday.contextSwitch( taskIndex );
+                m_Clock.advance( random.nextInt( 600000 ) );
+            }
+
+            workday.endWorkday();
+            m_Archive.archive( workday, WorkdayArchive.toDayKey( date ) );
+            date.add( GregorianCalendar.DAY_OF_MONTH, 1 );
+        }
+    }
+
+    /**
+     * Creates a completed Workday in which a single task was performed.
+     *
+     * @param taskName The name of the task.
+     * @param runtimeMs The time spent on the task.
+     * @return The completed Workday.
+     */
+    private Workday createWorkday( String taskName, long runtimeMs )
+    {
+        Workday workday = new Workday( "Add", "End", m_Clock );
+
+        workday.addTask( new Task( taskName ) );
+        workday.contextSwitch( 0 );
+        m_Clock.advance( runtimeMs );
+        workday.endWorkday();
+
+        return( workday );
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * WorkdayArchiveTest.java
+ *
+ * Local unit tests for the archive of completed Workdays: lookups by day and by range of days, replacement of a
+ * Workday archived again, persistence of the index across reopening, and recovery from an index record torn by
+ * process death.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WorkdayArchiveTest
+{
+    /* Private constants */
+    private static final String PREFIX = "TL_Workday_";      /* Name that every partition file starts with */
+    private static final String INDEX_NAME = "TL_Workday_Index"; /* Name of the index file */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private File m_Directory;
+    private WorkdayArchive m_Archive;
+
+    @Rule
+    public TemporaryFolder m_TempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        m_Clock = new VirtualClock( 1000 );
+        m_Directory = new File( m_TempFolder.getRoot(), "archive" );
+        m_Archive = new WorkdayArchive( m_Directory, PREFIX, INDEX_NAME );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        m_Archive.close();
+    }
+
+    @Test
+    public void toDayKey_usesCalendarDate()
+    {
+        assertEquals( 20170423, WorkdayArchive.toDayKey( new GregorianCalendar( 2017, 3, 23 ) ) );
+        assertEquals( 20171231, WorkdayArchive.toDayKey( new GregorianCalendar( 2017, 11, 31 ) ) );
+    }
+
+    @Test
+    public void archive_recordsTaskTotalsAndLoadsWorkday() throws IOException
+    {
+        Workday workday = createWorkday( 3000, 1000 );
+
+        WorkdayArchive.Entry entry = m_Archive.archive( workday, 20170423 );
+
+        assertEquals( 2, entry.getNumberOfTasks() );
+        assertEquals( "Email", entry.getTaskName( 0 ) );
+        assertEquals( 3000, entry.getTaskRuntimeMs( 0 ) );
+        assertEquals( 4000, entry.getTotalRuntimeMs() );
+
+        Workday restored = new Workday( "Add", "End", m_Clock );
+        restored.restoreSnapshot( m_Archive.load( m_Archive.getEntries( 20170423 ).get( 0 ) ) );
+
+        WorkdayAssertions.assertWorkdaysEqual( workday, restored );
+    }
+
+    @Test
+    public void archive_replacesEarlierCopyOfWorkday() throws IOException
+    {
+        Workday workday = createWorkday( 3000, 1000 );
+        m_Archive.archive( workday, 20170423 );
+
+        /* The Workday goes on after it was ended, and is ended and archived again */
+        workday.contextSwitch( 0 );
+        m_Clock.advance( 2000 );
+        workday.endWorkday();
+        m_Archive.archive( workday, 20170423 );
+
+        assertEquals( 1, m_Archive.size() );
+        assertEquals( 6000, m_Archive.getEntries( 20170423 ).get( 0 ).getTotalRuntimeMs() );
+
+        /* Once reset, it is a new Workday; and on another day, it is archived again */
+        m_Archive.archive( workday, 20170424 );
+        workday.resetWorkday();
+        workday.contextSwitch( 1 );
+        m_Clock.advance( 500 );
+        workday.endWorkday();
+        m_Archive.archive( workday, 20170423 );
+
+        assertEquals( 3, m_Archive.size() );
+        assertEquals( 2, m_Archive.getEntries( 20170423 ).size() );
+
+        /* The replacement survives reopening the archive */
+        m_Archive.close();
+        m_Archive = new WorkdayArchive( m_Directory, PREFIX, INDEX_NAME );
+
+        assertEquals( 3, m_Archive.size() );
+        assertEquals( 6000, m_Archive.getEntries( 20170423 ).get( 0 ).getTotalRuntimeMs() );
+        assertEquals( 500, m_Archive.getEntries( 20170423 ).get( 1 ).getTotalRuntimeMs() );
+    }
+
+    @Test
+    public void getEntries_findsDaysAndRangesAcrossPartitions() throws IOException
+    {
+        GregorianCalendar date = new GregorianCalendar( 2016, 0, 1 );
+
+        /* Two years of history, one Workday per day */
+        for( int day = 0; day < 730; day++ )
+        {
+            m_Archive.archive( createWorkday( day, 1 ), WorkdayArchive.toDayKey( date ) );
+            date.add( GregorianCalendar.DAY_OF_MONTH, 1 );
+        }
+
+        /* A second Workday on the same day */
+        m_Archive.archive( createWorkday( 5, 5 ), 20170301 );
+
+        assertEquals( 731, m_Archive.size() );
+        assertEquals( 2, m_Archive.getEntries( 20170301 ).size() );
+        assertEquals( 0, m_Archive.getEntries( 20180101 ).size() );
+
+        ArrayList<WorkdayArchive.Entry> lastWeek = m_Archive.getLastDays( new GregorianCalendar( 2017, 2, 3 ), 7 );
+
+        assertEquals( 8, lastWeek.size() );
+        assertEquals( 20170225, lastWeek.get( 0 ).getDayKey() );
+        assertEquals( 20170303, lastWeek.get( 7 ).getDayKey() );
+
+        /* Partitions are monthly, named after the year and month */
+        assertTrue( new File( m_Directory, PREFIX + "2017_02.dat" ).exists() );
+        assertEquals( 24 + 1, m_Directory.list().length );
+    }
+
+    @Test
+    public void reopen_keepsIndexAndDiscardsTornRecord() throws IOException
+    {
+        m_Archive.archive( createWorkday( 1000, 2000 ), 20170422 );
+        m_Archive.archive( createWorkday( 3000, 4000 ), 20170423 );
+        m_Archive.close();
+
+        /* Simulate process death part way through appending an index record */
+        File indexFile = new File( m_Directory, INDEX_NAME );
+        long intactLength = indexFile.length();
+        RandomAccessFile file = new RandomAccessFile( indexFile, "rw" );
+        file.seek( intactLength );
+        file.writeInt( 200 );
+        file.write( new byte[50] );
+        file.close();
+
+        m_Archive = new WorkdayArchive( m_Directory, PREFIX, INDEX_NAME );
+
+        assertEquals( 2, m_Archive.size() );
+        assertEquals( intactLength, indexFile.length() );
+        assertEquals( 7000, m_Archive.getEntries( 20170423 ).get( 0 ).getTotalRuntimeMs() );
+
+        /* New records follow the intact ones */
+        m_Archive.archive( createWorkday( 1, 1 ), 20170424 );
+        m_Archive.close();
+        m_Archive = new WorkdayArchive( m_Directory, PREFIX, INDEX_NAME );
+
+        assertEquals( 3, m_Archive.size() );
+    }
+
+    /**
+     * Creates a completed Workday with two tasks.
+     *
+     * @param emailMs The time spent on the first task.
+     * @param codingMs The time spent on the second task.
+     * @return The completed Workday.
+     */
+    private Workday createWorkday( long emailMs, long codingMs )
+    {
+        Workday workday = new Workday( "Add", "End", m_Clock );
+
+        workday.addTask( new Task( "Email" ) );
+        workday.addTask( new Task( "Coding" ) );
+
+        workday.contextSwitch( 0 );
+        m_Clock.advance( emailMs );
+        workday.contextSwitch( 1 );
+        m_Clock.advance( codingMs );
+        workday.endWorkday();
+
+        return( workday );
+    }
+}
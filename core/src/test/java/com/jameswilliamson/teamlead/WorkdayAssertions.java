@@ -0,0 +1,57 @@
+/**
+ * WorkdayAssertions.java
+ *
+ * Assertions shared by the local unit tests that preserve and restore a Workday.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import static org.junit.Assert.assertEquals;
+
+final class WorkdayAssertions
+{
+    private WorkdayAssertions()
+    {
+    }
+
+    /**
+     * Compares the tasks, totals and log of two Workdays.
+     *
+     * @param expected The original Workday.
+     * @param actual The restored Workday.
+     */
+    static void assertWorkdaysEqual( Workday expected, Workday actual )
+    {
+        assertEquals( expected.getNumberOfTasks(), actual.getNumberOfTasks() );
+        assertEquals( expected.getActiveTaskId(), actual.getActiveTaskId() );
+        assertEquals( expected.getActiveTimeBase(), actual.getActiveTimeBase() );
+        assertEquals( expected.getTotalUserTaskRuntimeMs(), actual.getTotalUserTaskRuntimeMs() );
+
+        for( int index = 0; index < expected.getNumberOfTasks(); index++ )
+        {
+            assertEquals( expected.getTaskId( index ), actual.getTaskId( index ) );
+            assertEquals( expected.getTaskName( index ), actual.getTaskName( index ) );
+        }
+
+        for( int index = 0; index < expected.getNumberOfUserTasks(); index++ )
+        {
+            assertEquals( expected.getTotalTaskRuntimeMs( index ), actual.getTotalTaskRuntimeMs( index ) );
+        }
+
+        assertEquals( expected.getTaskLogSize(), actual.getTaskLogSize() );
+
+        for( int logIndex = 0; logIndex < expected.getTaskLogSize(); logIndex++ )
+        {
+            TaskIteration expectedEntry = expected.getTaskLogEntry( logIndex );
+            TaskIteration actualEntry = actual.getTaskLogEntry( logIndex );
+
+            assertEquals( expectedEntry.getTaskId(), actualEntry.getTaskId() );
+            assertEquals( expectedEntry.getStartTimestampMs(), actualEntry.getStartTimestampMs() );
+            assertEquals( expectedEntry.getRuntimeMs(), actualEntry.getRuntimeMs() );
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * WorkdayChangesTest.java
+ *
+ * Local unit tests for the changes reported by a Workday: each change must reach every listener, and the crossing of
+ * a time limit must be reported once per iteration, at the moment it happened; and a set of coalesced changes must
+ * hand over each kind of change once, only after it has been published.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WorkdayChangesTest
+{
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private Workday m_Workday;
+    private WorkdayChanges m_Changes;
+    private CrossingListener m_Crossings;
+
+    @Before
+    public void setUp()
+    {
+        Task email = new Task( "Email" );
+
+        email.setTaskTimeLimit( 10000 );
+
+        m_Clock = new VirtualClock( 1000 );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+        m_Workday.addTask( email );
+        m_Workday.addTask( new Task( "Coding" ) );
+
+        m_Changes = new WorkdayChanges();
+        m_Crossings = new CrossingListener();
+        m_Workday.addListener( m_Changes );
+        m_Workday.addListener( m_Crossings );
+    }
+
+    @Test
+    public void changes_areCoalescedUntilTaken()
+    {
+        for( int iteration = 0; iteration < 100; iteration++ )
+        {
+            m_Workday.contextSwitch( iteration & 1 );
+            m_Clock.advance( 10 );
+        }
+
+        /* Nothing is handed over before it has been published */
+        assertEquals( 0, m_Changes.takeChanges() );
+        assertTrue( m_Changes.publish() );
+
+        m_Workday.addTask( new Task( "Lunch" ) );
+        m_Workday.endWorkday();
+        assertTrue( m_Changes.publish() );
+        assertFalse( m_Changes.publish() );
+
+        assertEquals( WorkdayChanges.CONTEXT_SWITCH | WorkdayChanges.TASK_ADDED | WorkdayChanges.WORKDAY_ENDED,
+                      m_Changes.takeChanges() );
+        assertEquals( 0, m_Changes.takeChanges() );
+
+        /* A removed listener hears of no further changes */
+        m_Workday.removeListener( m_Changes );
+        m_Workday.resetWorkday();
+        assertFalse( m_Changes.publish() );
+    }
+
+    @Test
+    public void limitCrossing_isReportedOncePerIteration()
+    {
+        int emailId = m_Workday.getTaskId( 0 );
+
+        /* Four seconds concluded, then six more are left when the task is active again */
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 4000 );
+        m_Workday.contextSwitch( 1 );
+        m_Workday.contextSwitch( 0 );
+
+        long crossingMs = m_Clock.getTimeMs() + 6000 + 1;
+
+        m_Clock.advance( 6000 );
+        assertFalse( m_Workday.checkTaskLimit() );
+
+        m_Clock.advance( 5 );
+        assertTrue( m_Workday.checkTaskLimit() );
+        assertFalse( m_Workday.checkTaskLimit() );
+        assertEquals( 1, m_Crossings.m_Count );
+        assertEquals( emailId, m_Crossings.m_TaskId );
+        assertEquals( crossingMs, m_Crossings.m_TimestampMs );
+
+        m_Changes.publish();
+        assertEquals( emailId, m_Changes.getLimitCrossedTaskId() );
+        assertEquals( WorkdayChanges.CONTEXT_SWITCH | WorkdayChanges.LIMIT_CROSSED, m_Changes.takeChanges() );
+
+        /* Already over its limit when it becomes active again, so there is nothing more to report */
+        m_Workday.contextSwitch( 1 );
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 1000 );
+        assertFalse( m_Workday.checkTaskLimit() );
+
+        /* After a reset, a crossing that was never checked for is reported as the task ends */
+        m_Workday.resetWorkday();
+        m_Workday.contextSwitch( 0 );
+        crossingMs = m_Clock.getTimeMs() + 10000 + 1;
+        m_Clock.advance( 20000 );
+        m_Workday.contextSwitch( 1 );
+        assertEquals( 2, m_Crossings.m_Count );
+        assertEquals( crossingMs, m_Crossings.m_TimestampMs );
+    }
+
+    /**
+     * Keeps the last limit crossing reported by the Workday, and ignores its other changes.
+     */
+    private static class CrossingListener implements WorkdayListener
+    {
+        /* Private member fields */
+        private int m_Count;
+        private int m_TaskId;
+        private long m_TimestampMs;
+
+        @Override
+        public void onTaskAdded( Task task, long timestampMs )
+        {
+        }
+
+        @Override
+        public void onTaskDeleted( int taskId, long timestampMs )
+        {
+        }
+
+        @Override
+        public void onTaskColorChanged( int taskId, int color, long timestampMs )
+        {
+        }
+
+        @Override
+        public void onContextSwitch( int taskId, long timestampMs, long timeBase )
+        {
+        }
+
+        @Override
+        public void onWorkdayEnded( long timestampMs )
+        {
+        }
+
+        @Override
+        public void onWorkdayReset( long timestampMs )
+        {
+        }
+
+        @Override
+        public void onTaskLimitCrossed( int taskId, long timestampMs )
+        {
+            m_Count++;
+            m_TaskId = taskId;
+            m_TimestampMs = timestampMs;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * WorkdayExporterTest.java
+ *
+ * Local unit tests for the CSV and JSON export of a Workday: the files must hold every log entry, including the
+ * iteration in progress, and the task totals; and an export must stop, and leave no file behind, when cancelled.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WorkdayExporterTest
+{
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private Workday m_Workday;
+    private WorkdayExporter m_Exporter;
+    private RecordingListener m_Listener;
+
+    @Rule
+    public TemporaryFolder m_TempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp()
+    {
+        m_Clock = new VirtualClock( 1000 );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+        m_Listener = new RecordingListener();
+
+        /* Run each export on the calling thread */
+        m_Exporter = new WorkdayExporter( new Executor()
+        {
+            @Override
+            public void execute( Runnable command )
+            {
+                command.run();
+            }
+        } );
+
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Design, \"review\"" ) );
+    }
+
+    @Test
+    public void exportCsv_writesLogAndTotals() throws IOException
+    {
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 30000 );
+        m_Workday.contextSwitch( 1 );
+        m_Clock.advance( 60000 );
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 30000 );
+
+        List<String> lines = export( WorkdayExporter.Format.CSV );
+
+        assertEquals( "entry,task_id,task_name,start_ms,runtime_ms,runtime", lines.get( 0 ) );
+        assertEquals( "1,2,Email,1000,30000,00:00:30", lines.get( 1 ) );
+        assertEquals( "2,3,\"Design, \"\"review\"\"\",31000,60000,00:01:00", lines.get( 2 ) );
+
+        /* The iteration in progress is exported with its runtime so far */
+        assertEquals( "3,2,Email,91000,30000,00:00:30", lines.get( 3 ) );
+        assertEquals( "", lines.get( 4 ) );
+        assertEquals( "task_id,task_name,runtime_ms,runtime,iterations,percentage", lines.get( 5 ) );
+        assertEquals( "2,Email,60000,00:01:00,2,50.00", lines.get( 6 ) );
+        assertEquals( "3,\"Design, \"\"review\"\"\",60000,00:01:00,1,50.00", lines.get( 7 ) );
+        assertEquals( 8, lines.size() );
+
+        assertEquals( 3, m_Listener.m_LastEntriesWritten );
+        assertEquals( 3, m_Listener.m_LastTotalEntries );
+    }
+
+    @Test
+    public void exportJson_writesLogAndTotals() throws IOException
+    {
+        m_Workday.contextSwitch( 1 );
+        m_Clock.advance( 45000 );
+        m_Workday.endWorkday();
+
+        List<String> lines = export( WorkdayExporter.Format.JSON );
+
+        assertEquals( "{", lines.get( 0 ) );
+        assertEquals( "  \"log\": [", lines.get( 1 ) );
+        assertEquals( "    { \"entry\": 1, \"task_id\": 3, \"task_name\": \"Design, \\\"review\\\"\", " +
+                      "\"start_ms\": 1000, \"runtime_ms\": 45000, \"runtime\": \"00:00:45\" }", lines.get( 2 ) );
+        assertEquals( "  ],", lines.get( 3 ) );
+        assertEquals( "  \"tasks\": [", lines.get( 4 ) );
+        assertEquals( "    { \"task_id\": 2, \"task_name\": \"Email\", \"runtime_ms\": 0, \"runtime\": \"00:00:00\", " +
+                      "\"iterations\": 0, \"percentage\": 0.00 },", lines.get( 5 ) );
+        assertEquals( "    { \"task_id\": 3, \"task_name\": \"Design, \\\"review\\\"\", \"runtime_ms\": 45000, " +
+                      "\"runtime\": \"00:00:45\", \"iterations\": 1, \"percentage\": 100.00 }", lines.get( 6 ) );
+        assertEquals( "  ]", lines.get( 7 ) );
+        assertEquals( "}", lines.get( 8 ) );
+    }
+
+    @Test
+    public void exportJson_emptyWorkday() throws IOException
+    {
+        m_Workday.deleteTask( 1 );
+        m_Workday.deleteTask( 0 );
+
+        List<String> lines = export( WorkdayExporter.Format.JSON );
+
+        assertEquals( "{", lines.get( 0 ) );
+        assertEquals( "  \"log\": [],", lines.get( 1 ) );
+        assertEquals( "  \"tasks\": []", lines.get( 2 ) );
+        assertEquals( "}", lines.get( 3 ) );
+    }
+
+    @Test
+    public void export_longLogReportsProgressAndEncodesEveryEntry() throws IOException
+    {
+        int switches = ( 5 * WorkdayExporter.PROGRESS_INTERVAL ) + 7;
+
+        for( int switchCount = 0; switchCount < switches; switchCount++ )
+        {
+            m_Workday.contextSwitch( switchCount % 2 );
+            m_Clock.advance( 1000 );
+        }
+
+        List<String> lines = export( WorkdayExporter.Format.CSV );
+
+        /* Header, entries, blank line, header, tasks */
+        assertEquals( 1 + switches + 1 + 1 + 2, lines.size() );
+        assertEquals( switches + ",2,Email," + ( 1000 + ( ( switches - 1 ) * 1000L ) ) + ",1000,00:00:01",
+                      lines.get( switches ) );
+        assertEquals( 6 + 1, m_Listener.m_ProgressReports );
+        assertEquals( switches, m_Listener.m_LastEntriesWritten );
+    }
+
+    @Test
+    public void export_cancelledDeletesFile()
+    {
+        for( int switchCount = 0; switchCount < 3 * WorkdayExporter.PROGRESS_INTERVAL; switchCount++ )
+        {
+            m_Workday.contextSwitch( switchCount % 2 );
+            m_Clock.advance( 1000 );
+        }
+
+        File file = new File( m_TempFolder.getRoot(), "workday.csv" );
+        final Runnable[] queued = new Runnable[1];
+
+        /* Hold the export back until the listener knows which export to cancel */
+        WorkdayExporter exporter = new WorkdayExporter( new Executor()
+        {
+            @Override
+            public void execute( Runnable command )
+            {
+                queued[0] = command;
+            }
+        } );
+
+        m_Listener.m_Export = exporter.export( m_Workday.getPublishedSnapshot(), m_Clock.getTimeMs(), file,
+                                                   WorkdayExporter.Format.CSV, m_Listener );
+        m_Listener.m_CancelAfterReports = 2;
+        queued[0].run();
+
+        assertTrue( m_Listener.m_Cancelled );
+        assertNull( m_Listener.m_FinishedFile );
+        assertEquals( WorkdayExporter.PROGRESS_INTERVAL, m_Listener.m_LastEntriesWritten );
+        assertFalse( file.exists() );
+    }
+
+    /**
+     * Exports the Workday to a new file and reads it back.
+     *
+     * @param format The format of the file.
+     * @return The lines of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private List<String> export( WorkdayExporter.Format format ) throws IOException
+    {
+        File file = new File( m_TempFolder.getRoot(), "workday" + format.getFileExtension() );
+        WorkdayExporter.Export export = m_Exporter.export( m_Workday.getPublishedSnapshot(), m_Clock.getTimeMs(),
+                                                               file, format, m_Listener );
+
+        assertNull( m_Listener.m_Error );
+        assertEquals( file, m_Listener.m_FinishedFile );
+        assertEquals( export.getTotalEntries(), m_Listener.m_LastTotalEntries );
+
+        return( Files.readAllLines( file.toPath(), Charset.forName( "UTF-8" ) ) );
+    }
+
+    /**
+     * Records what an export reports, and cancels it after a given number of progress reports if asked to.
+     */
+    private static class RecordingListener implements WorkdayExporter.ExportListener
+    {
+        /* Private member fields */
+        private WorkdayExporter.Export m_Export;
+        private int m_CancelAfterReports = Integer.MAX_VALUE;
+        private int m_ProgressReports;
+        private int m_LastEntriesWritten;
+        private int m_LastTotalEntries;
+        private File m_FinishedFile;
+        private boolean m_Cancelled;
+        private IOException m_Error;
+
+        @Override
+        public void onExportProgress( int entriesWritten, int totalEntries )
+        {
+            m_ProgressReports++;
+            m_LastEntriesWritten = entriesWritten;
+            m_LastTotalEntries = totalEntries;
+
+            if( m_ProgressReports == m_CancelAfterReports )
+            {
+                m_Export.cancel();
+            }
+        }
+
+        @Override
+        public void onExportFinished( File file )
+        {
+            m_FinishedFile = file;
+        }
+
+        @Override
+        public void onExportCancelled()
+        {
+            m_Cancelled = true;
+        }
+
+        @Override
+        public void onExportFailed( IOException error )
+        {
+            m_Error = error;
+        }
+    }
+}
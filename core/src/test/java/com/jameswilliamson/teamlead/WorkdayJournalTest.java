@@ -0,0 +1,188 @@
+/**
+ * WorkdayJournalTest.java
+ *
+ * Local unit tests for the Workday journal: replaying a journal must restore the Workday exactly, a torn record at
+ * the end of the journal must be discarded, an iteration begun before the device restarted must be concluded, and
+ * recovering a long Workday must stay fast.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WorkdayJournalTest
+{
+    /* Private constants */
+    private static final int RECOVERY_RECORDS = 100000;      /* Number of context switches in the recovery test */
+    private static final long MAX_RECOVERY_MS = 5000;        /* Generous bound on replaying the recovery test */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private File m_JournalFile;
+    private WorkdayJournal m_Journal;
+    private Workday m_Workday;
+
+    @Rule
+    public TemporaryFolder m_TempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        m_Clock = new VirtualClock( 1000 );
+        m_JournalFile = new File( m_TempFolder.getRoot(), "journal" );
+        m_Journal = new WorkdayJournal( m_JournalFile );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+        m_Workday.addListener( m_Journal );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        m_Journal.close();
+    }
+
+    @Test
+    public void replay_restoresWorkday() throws IOException
+    {
+        Task email = new Task( "Email" );
+        email.setTaskTimeLimit( 60000 );
+        email.setTaskColor( 0xFF112233 );
+
+        m_Workday.addTask( email );
+        m_Workday.addTask( new Task( "Coding" ) );
+        m_Workday.addTask( new Task( "Lunch" ) );
+
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 3000 );
+        m_Workday.contextSwitch( 1 );
+        m_Clock.advance( 2000 );
+        m_Workday.deleteTask( 2 );
+        m_Workday.contextSwitch( 0 );
+        m_Workday.setTaskColor( 1, 0xFF445566 );
+        m_Clock.advance( 500 );
+        m_Journal.sync();
+
+        Workday restored = replayJournal();
+
+        WorkdayAssertions.assertWorkdaysEqual( m_Workday, restored );
+        assertEquals( 60000, restored.getTask( 0 ).getTaskTimeLimit() );
+        assertEquals( 0xFF112233, restored.getTaskColor( 0 ) );
+        assertEquals( 0xFF445566, restored.getTaskColor( 1 ) );
+    }
+
+    @Test
+    public void open_discardsTornRecord() throws IOException
+    {
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 1000 );
+        m_Workday.endWorkday();
+        m_Journal.close();
+
+        /* Simulate a process death part way through appending a record */
+        long intactLength = m_JournalFile.length();
+        RandomAccessFile file = new RandomAccessFile( m_JournalFile, "rw" );
+        file.seek( intactLength );
+        file.write( new byte[WorkdayJournal.RECORD_SIZE / 2] );
+        file.close();
+
+        Workday restored = replayJournal();
+        assertEquals( 1, restored.getTaskLogSize() );
+        assertEquals( 1000, restored.getTotalUserTaskRuntimeMs() );
+
+        m_Journal = new WorkdayJournal( m_JournalFile );
+        assertEquals( 3, m_Journal.getRecordCount() );
+        assertEquals( intactLength, m_JournalFile.length() );
+    }
+
+    @Test
+    public void replay_concludesIterationFromPreviousBoot() throws IOException
+    {
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 4000 );
+        m_Workday.contextSwitch( 1 );
+        m_Clock.advance( 2000 );
+        m_Journal.sync();
+
+        /* The device restarts, and has been up for longer than the Workday had run when it is restored */
+        m_Clock.restart( 60000 );
+
+        Workday restored = replayJournal();
+        assertEquals( m_Workday.getTaskId( 1 ), restored.getActiveTaskId() );
+
+        restored.endIterationFromPreviousBoot();
+
+        /* The time spent before the restart is lost, rather than measured against the new clock */
+        assertEquals( Task.NO_TASK_ID, restored.getActiveTaskId() );
+        assertEquals( 2, restored.getTaskLogSize() );
+        assertEquals( 4000, restored.getTotalTaskRuntimeMs( 0 ) );
+        assertEquals( 0, restored.getTotalTaskRuntimeMs( 1 ) );
+
+        /* Without a restart, the iteration carries on */
+        Workday sameBoot = new Workday( "Add", "End", new VirtualClock( 60000 ) );
+        WorkdayJournal.replay( m_JournalFile, sameBoot );
+        sameBoot.endIterationFromPreviousBoot();
+        assertEquals( m_Workday.getTaskId( 1 ), sameBoot.getActiveTaskId() );
+    }
+
+    @Test
+    public void replay_recoversLongWorkdayQuickly() throws IOException
+    {
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+
+        for( int record = 0; record < RECOVERY_RECORDS; record++ )
+        {
+            m_Workday.contextSwitch( record & 1 );
+            m_Clock.advance( 1000 );
+        }
+
+        m_Journal.sync();
+
+        long startNs = System.nanoTime();
+        Workday restored = replayJournal();
+        long elapsedNs = System.nanoTime() - startNs;
+
+        long elapsedMs = elapsedNs / 1000000;
+
+        /* Every change costs one fixed-size record, however long the Workday has run */
+        assertEquals( RECOVERY_RECORDS + 2, m_Journal.getRecordCount() );
+        assertEquals( WorkdayJournal.HEADER_SIZE + ( ( RECOVERY_RECORDS + 2 ) * (long)WorkdayJournal.RECORD_SIZE ),
+                      m_JournalFile.length() );
+        assertTrue( "replayed in " + elapsedMs + " ms", elapsedMs < MAX_RECOVERY_MS );
+
+        WorkdayAssertions.assertWorkdaysEqual( m_Workday, restored );
+    }
+
+    /**
+     * Replays the journal into a new Workday that shares the test clock.
+     *
+     * @return The restored Workday.
+     * @throws IOException If the journal cannot be read.
+     */
+    private Workday replayJournal() throws IOException
+    {
+        Workday restored = new Workday( "Add", "End", m_Clock );
+        WorkdayJournal.replay( m_JournalFile, restored );
+
+        return( restored );
+    }
+}
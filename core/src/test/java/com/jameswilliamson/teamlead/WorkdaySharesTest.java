@@ -0,0 +1,144 @@
+/**
+ * WorkdaySharesTest.java
+ *
+ * Local unit tests for the displayed shares of a Workday: only changed shares are reported, and the computed time
+ * until the next change is exact, so that a live summary updates neither too early nor too late. Shares are computed
+ * from the Workday's published snapshot, as the summary computes them.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WorkdaySharesTest
+{
+    /* Private constants */
+    private static final int DECIMALS = 2;                   /* Shares are displayed as "##0.00" */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private Workday m_Workday;
+    private WorkdayShares m_Shares;
+
+    @Before
+    public void setUp()
+    {
+        m_Clock = new VirtualClock( 1000 );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+        m_Shares = new WorkdayShares( DECIMALS );
+
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Meeting" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+    }
+
+    @Test
+    public void update_reportsOnlyChangedShares()
+    {
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 30000 );
+        m_Workday.contextSwitch( 1 );
+        m_Clock.advance( 10000 );
+
+        assertTrue( update() );
+        assertEquals( 3, m_Shares.getNumberOfChanges() );
+        assertEquals( 75.0, m_Shares.getPercentage( 0 ), 0.0 );
+        assertEquals( 25.0, m_Shares.getPercentage( 1 ), 0.0 );
+
+        /* Nothing has moved */
+        assertFalse( update() );
+        assertEquals( 0, m_Shares.getNumberOfChanges() );
+
+        /* Time passes: the active task grows and the other task that has a share shrinks; the idle task is unchanged */
+        m_Clock.advance( 40000 );
+
+        assertFalse( update() );
+        assertEquals( 2, m_Shares.getNumberOfChanges() );
+        assertEquals( 0, m_Shares.getChangedIndex( 0 ) );
+        assertEquals( 1, m_Shares.getChangedIndex( 1 ) );
+        assertEquals( 37.5, m_Shares.getPercentage( 0 ), 0.0 );
+        assertEquals( 62.5, m_Shares.getPercentage( 1 ), 0.0 );
+
+        /* Deleting a task changes the tasks themselves */
+        m_Workday.deleteTask( 2 );
+
+        assertTrue( update() );
+        assertEquals( 2, m_Shares.getNumberOfTasks() );
+    }
+
+    @Test
+    public void msUntilNextChange_isExact()
+    {
+        Random random = new Random( 16 );
+
+        for( int step = 0; step < 500; step++ )
+        {
+            if( random.nextInt( 10 ) == 0 )
+            {
+                m_Workday.contextSwitch( random.nextInt( m_Workday.getNumberOfUserTasks() ) );
+            }
+
+            update();
+            long untilChangeMs = msUntilNextChange();
+
+            if( untilChangeMs == WorkdayShares.NEVER )
+            {
+                m_Clock.advance( 1 + random.nextInt( 100000 ) );
+                continue;
+            }
+
+            /* One millisecond early, nothing displayed has changed yet... */
+            m_Clock.advance( untilChangeMs - 1 );
+            update();
+            assertEquals( 0, m_Shares.getNumberOfChanges() );
+
+            /* ...and on time, something has */
+            m_Clock.advance( 1 );
+            update();
+            assertTrue( m_Shares.getNumberOfChanges() > 0 );
+        }
+    }
+
+    @Test
+    public void msUntilNextChange_neverWhileNoTaskIsActive()
+    {
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 5000 );
+        m_Workday.endWorkday();
+
+        update();
+
+        assertEquals( WorkdayShares.NEVER, msUntilNextChange() );
+    }
+
+    /**
+     * Updates the shares from the Workday's published snapshot, at the current time.
+     *
+     * @return True if the tasks themselves changed.
+     */
+    private boolean update()
+    {
+        return( m_Shares.update( m_Workday.getPublishedSnapshot(), m_Clock.getTimeMs() ) );
+    }
+
+    /**
+     * Computes the time until the next displayed share changes, as of the current time.
+     *
+     * @return The time until the next change, in milliseconds, or WorkdayShares.NEVER.
+     */
+    private long msUntilNextChange()
+    {
+        return( m_Shares.getMsUntilNextChange( m_Workday.getPublishedSnapshot(), m_Clock.getTimeMs() ) );
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * WorkdayStoreTest.java
+ *
+ * Local unit tests for the snapshot-plus-journal Workday store: compaction must keep the journal short, a restore
+ * must reproduce the Workday whether or not the latest snapshot was written or its rename survived, and restore time
+ * must not grow with the length of the Workday.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WorkdayStoreTest
+{
+    /* Private constants */
+    private static final String BASE_NAME = "workday";       /* Name that every file of the store starts with */
+    private static final int COMPACTION_THRESHOLD = 1000;    /* Journal records that trigger a snapshot */
+    private static final long MAX_RESTORE_MS = 1000;         /* Generous bound on restoring from a snapshot */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private QueuedExecutor m_Executor;
+    private WorkdayStore m_Store;
+    private Workday m_Workday;
+    private long m_LastRecordsReplayed;                      /* Records replayed by restoreWithNewStore() */
+
+    @Rule
+    public TemporaryFolder m_TempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        m_Clock = new VirtualClock( 1000 );
+        m_Executor = new QueuedExecutor();
+        m_Store = new WorkdayStore( m_TempFolder.getRoot(), BASE_NAME, m_Executor, COMPACTION_THRESHOLD );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+
+        assertEquals( 0, m_Store.restore( m_Workday ) );
+        assertFalse( m_Store.exists() );
+    }
+
+    @After
+    public void tearDown()
+    {
+        m_Store.close();
+    }
+
+    @Test
+    public void restore_afterCompaction() throws IOException
+    {
+        performSwitches( 2500, 0 );
+        m_Executor.runAll();
+        m_Store.sync();
+
+        Workday restored = restoreWithNewStore();
+
+        /* Only the records after the latest snapshot are replayed */
+        assertEquals( ( 2500 + 3 ) % COMPACTION_THRESHOLD, m_LastRecordsReplayed );
+        WorkdayAssertions.assertWorkdaysEqual( m_Workday, restored );
+
+        /* The generation that the replaced snapshot relied on is kept until the next snapshot is installed */
+        assertEquals( 2, countFiles( ".journal." ) );
+    }
+
+    @Test
+    public void restore_whenSnapshotRenameWasUndone() throws IOException
+    {
+        File snapshotFile = new File( m_TempFolder.getRoot(), BASE_NAME + ".snapshot" );
+
+        performSwitches( 1500, 0 );
+        m_Executor.runAll();
+        byte[] previousSnapshot = Files.readAllBytes( snapshotFile.toPath() );
+
+        performSwitches( 1000, 0 );
+        m_Executor.runAll();
+        m_Store.sync();
+
+        /* Simulate a crash that loses the rename of the latest snapshot, but not the files written before it */
+        Files.write( snapshotFile.toPath(), previousSnapshot );
+
+        Workday restored = restoreWithNewStore();
+
+        /* The previous snapshot is restored, followed by both journal generations written since */
+        assertTrue( m_LastRecordsReplayed > COMPACTION_THRESHOLD );
+        WorkdayAssertions.assertWorkdaysEqual( m_Workday, restored );
+    }
+
+    @Test
+    public void restore_whenSnapshotWasNeverWritten() throws IOException
+    {
+        performSwitches( 2500, 0 );
+        m_Store.sync();
+
+        /* Simulate process death before the background snapshots could be written */
+        m_Executor.discardAll();
+
+        Workday restored = restoreWithNewStore();
+
+        assertEquals( 2500 + 3, m_LastRecordsReplayed );
+        WorkdayAssertions.assertWorkdaysEqual( m_Workday, restored );
+    }
+
+    @Test
+    public void restore_preservesDeletedTasksAndActiveIteration() throws IOException
+    {
+        m_Workday.addTask( new Task( "Lunch" ) );
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 500 );
+        performSwitches( COMPACTION_THRESHOLD, 1 );
+        m_Workday.deleteTask( new Task( "Lunch" ) );
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 700 );
+
+        /* Compact again with a task deleted and an iteration in progress */
+        m_Store.compact();
+        m_Executor.runAll();
+        m_Store.sync();
+
+        Workday restored = restoreWithNewStore();
+
+        assertEquals( 0, m_LastRecordsReplayed );
+        WorkdayAssertions.assertWorkdaysEqual( m_Workday, restored );
+        assertEquals( "Lunch", restored.getTaskLogEntry( 0 ).getTask().getTaskName() );
+        assertTrue( restored.getTask( 0 ).isActive() );
+    }
+
+    @Test
+    public void delete_removesAllFiles() throws IOException
+    {
+        performSwitches( 1500, 0 );
+        m_Executor.runAll();
+        performSwitches( 1500, 0 );
+
+        assertTrue( m_Store.exists() );
+        assertTrue( m_Store.delete() );
+
+        /* A snapshot captured before the deletion must not be installed afterwards */
+        m_Executor.runAll();
+
+        assertFalse( m_Store.exists() );
+        assertEquals( 0, m_TempFolder.getRoot().list().length );
+    }
+
+    @Test
+    public void restoreTime_doesNotGrowWithWorkdayLength() throws IOException
+    {
+        for( int days = 1; days <= 16; days *= 4 )
+        {
+            m_Store.close();
+            setUp();
+            performSwitches( days * 25000, 0 );
+            m_Executor.runAll();
+            m_Store.sync();
+
+            long startNs = System.nanoTime();
+            restoreWithNewStore();
+            long elapsedMs = ( System.nanoTime() - startNs ) / 1000000;
+
+            assertTrue( m_LastRecordsReplayed < COMPACTION_THRESHOLD );
+            assertTrue( "restored in " + elapsedMs + " ms", elapsedMs < MAX_RESTORE_MS );
+
+            m_Store.delete();
+        }
+    }
+
+    /**
+     * Adds two tasks after any that already exist and switches between them the given number of times.
+     *
+     * @param switches The number of context switches to perform.
+     * @param firstIndex The index of the first of the two tasks once added.
+     */
+    private void performSwitches( int switches, int firstIndex )
+    {
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+
+        for( int count = 0; count < switches; count++ )
+        {
+            m_Workday.contextSwitch( firstIndex + ( count & 1 ) );
+            m_Clock.advance( 1000 );
+        }
+
+        m_Workday.endWorkday();
+    }
+
+    /**
+     * Restores the store's files into a new Workday through a second store, as would happen after process death.
+     *
+     * @return The restored Workday.
+     * @throws IOException If the Workday cannot be restored.
+     */
+    private Workday restoreWithNewStore() throws IOException
+    {
+        m_Store.close();
+
+        Workday restored = new Workday( "Add", "End", m_Clock );
+        m_Store = new WorkdayStore( m_TempFolder.getRoot(), BASE_NAME, m_Executor, COMPACTION_THRESHOLD );
+        m_LastRecordsReplayed = m_Store.restore( restored );
+
+        return( restored );
+    }
+
+    /**
+     * Counts the files of the store whose names contain the given text.
+     *
+     * @param text The text to look for.
+     * @return The number of matching files.
+     */
+    private int countFiles( String text )
+    {
+        int count = 0;
+
+        for( String fileName : m_TempFolder.getRoot().list() )
+        {
+            if( fileName.contains( text ) )
+            {
+                count++;
+            }
+        }
+
+        return( count );
+    }
+
+    /**
+     * Executor that holds tasks until the test runs them, so that background snapshots can be delayed or dropped.
+     */
+    private static class QueuedExecutor implements Executor
+    {
+        private ArrayList<Runnable> m_Tasks = new ArrayList<>();
+
+        @Override
+        public void execute( Runnable task )
+        {
+            m_Tasks.add( task );
+        }
+
+        void runAll()
+        {
+            for( Runnable task : m_Tasks )
+            {
+                task.run();
+            }
+
+            m_Tasks.clear();
+        }
+
+        void discardAll()
+        {
+            m_Tasks.clear();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/**
+ * WorkdayTest.java
+ *
+ * Local unit tests for the Workday model, which run on the development machine (host) using a simulated clock.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WorkdayTest
+{
+    /* Private constants */
+    private static final String[] TASK_NAMES = { "Email", "Meeting", "Review", "Coding", "Support", "Lunch",
+                                                 "Hiring", "Planning", "REVIEW", "email" };
+    private static final int RANDOM_SEQUENCES = 50;          /* Number of randomized sequences to run */
+    private static final int OPERATIONS_PER_SEQUENCE = 2000; /* Number of model operations in each sequence */
+    private static final double PCT_TOLERANCE = 1e-9;        /* Allowed error when comparing percentages */
+    private static final int SIMULATED_DAYS = 30;            /* Number of Workdays in the simulated month */
+    private static final int SWITCHES_PER_DAY = 500;         /* Number of context switches in each simulated day */
+    private static final long MAX_SIMULATION_MS = 5000;      /* Generous bound on simulating the whole month */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private Workday m_Workday;
+
+    @Before
+    public void setUp()
+    {
+        m_Clock = new VirtualClock( 1000 );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+    }
+
+    @Test
+    public void taskPercentage_singleTaskIsWholeDay()
+    {
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 5000 );
+
+        assertEquals( 100.0, m_Workday.getTaskPercentage( 0 ), PCT_TOLERANCE );
+        assertEquals( 0.0, m_Workday.getTaskPercentage( 1 ), PCT_TOLERANCE );
+    }
+
+    @Test
+    public void taskPercentage_includesActiveIteration()
+    {
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 3000 );
+        m_Workday.contextSwitch( 1 );
+        m_Clock.advance( 1000 );
+
+        assertEquals( 4000, m_Workday.getTotalUserTaskRuntimeMs() );
+        assertEquals( 75.0, m_Workday.getTaskPercentage( 0 ), PCT_TOLERANCE );
+        assertEquals( 25.0, m_Workday.getTaskPercentage( 1 ), PCT_TOLERANCE );
+    }
+
+    @Test
+    public void activeTaskRuntime_includesEarlierIterations()
+    {
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+
+        assertEquals( 0, m_Workday.getActiveTaskRuntimeMs() );
+
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 1500 );
+        m_Workday.contextSwitch( 1 );
+        m_Clock.advance( 700 );
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 250 );
+
+        assertEquals( 1750, m_Workday.getActiveTaskRuntimeMs() );
+
+        m_Workday.endWorkday();
+
+        assertEquals( 0, m_Workday.getActiveTaskRuntimeMs() );
+    }
+
+    @Test
+    public void deleteTask_removesRuntimeFromTotal()
+    {
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 3000 );
+        m_Workday.contextSwitch( 1 );
+        m_Clock.advance( 1000 );
+
+        /* Deleting the active task ends it before removing its time from the day */
+        m_Workday.deleteTask( new Task( "CODING" ) );
+        m_Clock.advance( 1000 );
+
+        assertEquals( 3000, m_Workday.getTotalUserTaskRuntimeMs() );
+        assertEquals( 100.0, m_Workday.getTaskPercentage( 0 ), PCT_TOLERANCE );
+    }
+
+    @Test
+    public void incrementalTotals_matchBruteForceOverRandomSequences()
+    {
+        for( int seed = 0; seed < RANDOM_SEQUENCES; seed++ )
+        {
+            Random random = new Random( seed );
+            setUp();
+
+            for( int operation = 0; operation < OPERATIONS_PER_SEQUENCE; operation++ )
+            {
+                applyRandomOperation( random );
+                m_Clock.advance( random.nextInt( 60000 ) );
+
+                assertTotalsMatchBruteForce();
+            }
+        }
+    }
+
+    @Test
+    public void virtualClock_simulatesMonthOfSwitching()
+    {
+        Random random = new Random( 30 );
+        long monthRuntimeMs = 0;
+        long expectedMonthRuntimeMs = 0;
+
+        for( int task = 0; task < 8; task++ )
+        {
+            m_Workday.addTask( new Task( TASK_NAMES[task] ) );
+        }
+
+        long startNs = System.nanoTime();
+
+        for( int day = 0; day < SIMULATED_DAYS; day++ )
+        {
+            m_Workday.resetWorkday();
+
+            for( int switches = 0; switches < SWITCHES_PER_DAY; switches++ )
+            {
+                long iterationMs = 1000 + random.nextInt( 120000 );
+
+                m_Workday.contextSwitch( switches % m_Workday.getNumberOfUserTasks() );
+                m_Clock.advance( iterationMs );
+                expectedMonthRuntimeMs += iterationMs;
+            }
+
+            m_Workday.endWorkday();
+            monthRuntimeMs += m_Workday.getTotalUserTaskRuntimeMs();
+
+            /* Overnight */
+            m_Clock.advance( 16L * Workday.MINS_PER_HOUR * Workday.SECS_PER_MIN * Workday.MS_PER_SEC );
+        }
+
+        long elapsedMs = ( System.nanoTime() - startNs ) / 1000000;
+
+        assertEquals( expectedMonthRuntimeMs, monthRuntimeMs );
+        assertEquals( SWITCHES_PER_DAY, m_Workday.getTaskLogSize() );
+        assertTrue( "simulated in " + elapsedMs + " ms", elapsedMs < MAX_SIMULATION_MS );
+    }
+
+    @Test
+    public void publishedSnapshot_followsEachChange()
+    {
+        m_Workday.addTask( new Task( "Email" ) );
+        m_Workday.addTask( new Task( "Coding" ) );
+        WorkdaySnapshot added = m_Workday.getPublishedSnapshot();
+
+        m_Workday.contextSwitch( 0 );
+        m_Clock.advance( 5000 );
+        m_Workday.contextSwitch( 1 );
+        WorkdaySnapshot switched = m_Workday.getPublishedSnapshot();
+
+        assertEquals( 2, added.getNumberOfUserTasks() );
+        assertEquals( Task.NO_TASK_ID, added.getActiveTaskId() );
+        assertEquals( 0, added.getTaskLog().size() );
+
+        /* The iteration in progress is left out; its start time is published instead */
+        assertEquals( m_Workday.getTaskId( 1 ), switched.getActiveTaskId() );
+        assertEquals( 6000, switched.getActiveStartTimestampMs() );
+        assertEquals( 1, switched.getTaskLog().size() );
+        assertEquals( 5000, switched.getUserTaskRuntimeMs() );
+
+        /* The task table is shared between snapshots until a task is added, deleted or edited */
+        assertSame( added.getTaskName( m_Workday.getTaskId( 0 ) ), switched.getTaskName( m_Workday.getTaskId( 0 ) ) );
+
+        m_Clock.advance( 2000 );
+        m_Workday.deleteTask( 0 );
+        WorkdaySnapshot deleted = m_Workday.getPublishedSnapshot();
+
+        assertEquals( 1, deleted.getNumberOfUserTasks() );
+        assertEquals( 0, deleted.getUserTaskRuntimeMs() );
+
+        m_Workday.resetWorkday();
+        WorkdaySnapshot reset = m_Workday.getPublishedSnapshot();
+
+        assertEquals( Task.NO_TASK_ID, reset.getActiveTaskId() );
+        assertEquals( 0, reset.getTaskLog().size() );
+
+        /* Earlier snapshots are unaffected by later changes */
+        assertEquals( 2, switched.getNumberOfUserTasks() );
+        assertEquals( 1, switched.getTaskLog().size() );
+        assertEquals( 5000, switched.getTaskLog().getRuntimeMs( 0 ) );
+        assertEquals( 5000, switched.getUserTaskRuntimeMs() );
+    }
+
+    @Test
+    public void publishedSnapshot_isConsistentOnAnotherThread() throws InterruptedException
+    {
+        final AtomicBoolean writing = new AtomicBoolean( true );
+        final AtomicReference<AssertionError> readerError = new AtomicReference<>();
+
+        for( int task = 0; task < 4; task++ )
+        {
+            m_Workday.addTask( new Task( TASK_NAMES[task] ) );
+        }
+
+        /* Without deletions, the concluded log entries always add up to the published total */
+        Thread reader = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    while( writing.get() )
+                    {
+                        WorkdaySnapshot snapshot = m_Workday.getPublishedSnapshot();
+                        TaskLog log = snapshot.getTaskLog();
+                        long logRuntimeMs = 0;
+
+                        for( int index = 0; index < log.size(); index++ )
+                        {
+                            logRuntimeMs += log.getRuntimeMs( index );
+                        }
+
+                        assertEquals( snapshot.getUserTaskRuntimeMs(), logRuntimeMs );
+                    }
+                }
+                catch( AssertionError error )
+                {
+                    readerError.set( error );
+                }
+            }
+        } );
+
+        reader.start();
+
+        for( int switches = 0; switches < SIMULATED_DAYS * SWITCHES_PER_DAY; switches++ )
+        {
+            m_Workday.contextSwitch( switches % m_Workday.getNumberOfUserTasks() );
+            m_Clock.advance( 1000 );
+        }
+
+        writing.set( false );
+        reader.join();
+
+        assertNull( readerError.get() );
+        assertEquals( ( SIMULATED_DAYS * SWITCHES_PER_DAY ) - 1,
+                      m_Workday.getPublishedSnapshot().getTaskLog().size() );
+    }
+
+    /**
+     * Applies a randomly chosen mutation to the Workday, weighted towards context switches.
+     *
+     * @param random The source of randomness.
+     */
+    private void applyRandomOperation( Random random )
+    {
+        int choice = random.nextInt( 100 );
+        int userTasks = m_Workday.getNumberOfUserTasks();
+
+        if( ( choice < 10 ) || ( userTasks == 0 ) )
+        {
+            m_Workday.addTask( new Task( TASK_NAMES[random.nextInt( TASK_NAMES.length )] ) );
+        }
+        else if( choice < 15 )
+        {
+            m_Workday.deleteTask( random.nextInt( userTasks ) );
+        }
+        else if( choice < 17 )
+        {
+            m_Workday.resetWorkday();
+        }
+        else if( choice < 19 )
+        {
+            m_Workday.endWorkday();
+        }
+        else
+        {
+            m_Workday.contextSwitch( random.nextInt( userTasks ) );
+        }
+    }
+
+    /**
+     * Recomputes the runtime of every task from scratch, by summing its iterations in the task log, the active one
+     * included, and compares the result with the incrementally maintained totals and percentages.
+     */
+    private void assertTotalsMatchBruteForce()
+    {
+        HashMap<Integer, Long> logRuntimesMs = new HashMap<>();
+        long bruteForceTotalMs = 0;
+
+        Iterator<TaskIteration> iterations = m_Workday.getTaskLogIterator();
+
+        while( iterations.hasNext() )
+        {
+            TaskIteration iteration = iterations.next();
+            Long taskRuntimeMs = logRuntimesMs.get( iteration.getTaskId() );
+
+            logRuntimesMs.put( iteration.getTaskId(),
+                               ( ( taskRuntimeMs != null ) ? taskRuntimeMs : 0 ) + iteration.getRuntimeMs() );
+        }
+
+        /* Iterations of deleted tasks stay in the log, but only the current tasks count towards the total */
+        for( int index = 0; index < m_Workday.getNumberOfUserTasks(); index++ )
+        {
+            Long taskRuntimeMs = logRuntimesMs.get( m_Workday.getTaskId( index ) );
+
+            bruteForceTotalMs += ( taskRuntimeMs != null ) ? taskRuntimeMs : 0;
+        }
+
+        assertEquals( bruteForceTotalMs, m_Workday.getTotalUserTaskRuntimeMs() );
+
+        for( int index = 0; index < m_Workday.getNumberOfUserTasks(); index++ )
+        {
+            Long taskRuntimeMs = logRuntimesMs.get( m_Workday.getTaskId( index ) );
+            long expectedRuntimeMs = ( taskRuntimeMs != null ) ? taskRuntimeMs : 0;
+            double expected = 0.0;
+
+            assertEquals( expectedRuntimeMs, m_Workday.getTotalTaskRuntimeMs( index ) );
+
+            if( bruteForceTotalMs != 0 )
+            {
+                expected = ( (double)expectedRuntimeMs / bruteForceTotalMs ) * 100.0;
+            }
+
+            assertEquals( expected, m_Workday.getTaskPercentage( index ), PCT_TOLERANCE );
+        }
+    }
+
+}
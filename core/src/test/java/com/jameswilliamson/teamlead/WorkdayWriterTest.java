@@ -0,0 +1,285 @@
+/**
+ * WorkdayWriterTest.java
+ *
+ * Local unit tests for the single writer of a Workday: commands must be applied in submission order, at the time
+ * they were submitted, with one published snapshot per batch; a failure must not stop later commands from being
+ * applied; and commands submitted concurrently from several threads must all be applied, in the order in which they
+ * were stamped.
+ *
+ * @author James Williamson
+ *
+ * @formatter:off
+ */
+
+package com.jameswilliamson.teamlead;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WorkdayWriterTest
+{
+    /* Private constants */
+    private static final int SUBMITTERS = 4;                 /* Threads submitting commands concurrently */
+    private static final int SWITCHES_PER_SUBMITTER = 5000;  /* Context switches submitted by each thread */
+
+    /* Private member fields */
+    private VirtualClock m_Clock;
+    private Workday m_Workday;
+    private ArrayList<Runnable> m_Scheduled;
+    private RecordingListener m_Listener;
+    private WorkdayWriter m_Writer;
+
+    @Before
+    public void setUp()
+    {
+        m_Clock = new VirtualClock( 1000 );
+        m_Workday = new Workday( "Add", "End", m_Clock );
+        m_Scheduled = new ArrayList<>();
+        m_Listener = new RecordingListener();
+
+        /* Hold the writer back until the test runs it, so that commands can be queued meanwhile */
+        m_Writer = new WorkdayWriter( m_Workday, new Executor()
+        {
+            @Override
+            public void execute( Runnable command )
+            {
+                m_Scheduled.add( command );
+            }
+        }, m_Listener );
+    }
+
+    @Test
+    public void commands_appliedInOrderAtSubmissionTime()
+    {
+        m_Writer.addTask( new Task( "Email" ) );
+        m_Writer.addTask( new Task( "Coding" ) );
+        m_Clock.advance( 2000 );
+        m_Writer.switchToTask( 2 );
+        m_Clock.advance( 5000 );
+        m_Writer.switchToTask( 3 );
+        m_Clock.advance( 3000 );
+
+        /* Nothing is applied until the writer runs, and it is only scheduled once */
+        assertEquals( 1, m_Scheduled.size() );
+        assertEquals( 0, m_Writer.getPublishedSnapshot().getNumberOfUserTasks() );
+
+        WorkdaySnapshot before = m_Writer.getPublishedSnapshot();
+        runWriter();
+        WorkdaySnapshot after = m_Writer.getPublishedSnapshot();
+
+        /* The whole queue was applied as one batch, and published once */
+        assertNotSame( before, after );
+        assertEquals( 1, m_Listener.m_Batches );
+        assertEquals( 4, m_Listener.m_Commands );
+        assertSame( after, m_Listener.m_LastSnapshot );
+
+        /* Each switch took effect when it was submitted, not when it was applied */
+        assertEquals( 2, after.getNumberOfUserTasks() );
+        assertEquals( 3, after.getActiveTaskId() );
+        assertEquals( 8000, after.getActiveStartTimestampMs() );
+        assertEquals( 3000, after.getTaskLog().getStartTimestampMs( 0 ) );
+        assertEquals( 5000, after.getTotalTaskRuntimeMs( 2, m_Writer.getTimeMs() ) );
+        assertEquals( 3000, after.getTotalTaskRuntimeMs( 3, m_Writer.getTimeMs() ) );
+    }
+
+    @Test
+    public void post_runsAfterEarlierCommandsAndBeforeLaterOnes()
+    {
+        final long[] runtimeSeenMs = new long[1];
+
+        m_Writer.addTask( new Task( "Email" ) );
+        m_Writer.switchToTask( 2 );
+        m_Clock.advance( 4000 );
+        m_Writer.endWorkday();
+        m_Writer.post( new WorkdayWriter.WorkdayAction()
+        {
+            @Override
+            public void run( Workday workday )
+            {
+                runtimeSeenMs[0] = workday.getTotalUserTaskRuntimeMs();
+            }
+        } );
+        m_Writer.resetWorkday();
+
+        runWriter();
+
+        assertEquals( 4000, runtimeSeenMs[0] );
+        assertEquals( 0, m_Writer.getPublishedSnapshot().getUserTaskRuntimeMs() );
+        assertEquals( 0, m_Writer.getPublishedSnapshot().getTaskLog().size() );
+    }
+
+    @Test
+    public void failure_doesNotStopLaterCommands()
+    {
+        m_Writer.addTask( new Task( "Email" ) );
+        m_Writer.addTask( new Task( "Coding" ) );
+        m_Writer.post( new WorkdayWriter.WorkdayAction()
+        {
+            @Override
+            public void run( Workday workday )
+            {
+                throw new IllegalStateException( "Action failed" );
+            }
+        } );
+        m_Writer.switchToTask( 2 );
+
+        runWriter();
+
+        /* The failed action is reported, and the rest of its batch is still applied */
+        assertEquals( 1, m_Listener.m_Failures );
+        assertEquals( 1, m_Listener.m_Batches );
+        assertEquals( 2, m_Writer.getPublishedSnapshot().getActiveTaskId() );
+
+        /* A batch that fails outside of its commands is discarded, and the writer is scheduled again */
+        m_Listener.m_FailNextBatch = true;
+        m_Writer.switchToTask( 3 );
+
+        try
+        {
+            m_Scheduled.remove( 0 ).run();
+        }
+        catch( IllegalStateException is_exception )
+        {
+            /* As the executor would, carry on with the next task */
+        }
+
+        m_Clock.advance( 1000 );
+        m_Writer.switchToTask( 2 );
+        runWriter();
+
+        assertEquals( 2, m_Writer.getPublishedSnapshot().getActiveTaskId() );
+        assertEquals( 1000, m_Writer.getPublishedSnapshot().getTotalTaskRuntimeMs( 3, m_Writer.getTimeMs() ) );
+    }
+
+    @Test
+    public void commands_fromSeveralThreadsAreAllAppliedInStampedOrder() throws InterruptedException
+    {
+        final AtomicLong time = new AtomicLong( 1000 );
+        Workday workday = new Workday( "Add", "End", new Clock()
+        {
+            @Override
+            public long getTimeMs()
+            {
+                /* Every reading is later than the last, so stamping order shows in the log */
+                return( time.incrementAndGet() );
+            }
+
+            @Override
+            public long getTimeBase()
+            {
+                return( 1 );
+            }
+        } );
+
+        ExecutorService writerThread = Executors.newSingleThreadExecutor();
+        final WorkdayWriter writer = new WorkdayWriter( workday, writerThread, m_Listener );
+        Thread[] submitters = new Thread[SUBMITTERS];
+
+        for( int task = 0; task < 2 * SUBMITTERS; task++ )
+        {
+            writer.addTask( new Task( "Task " + task ) );
+        }
+
+        for( int submitter = 0; submitter < SUBMITTERS; submitter++ )
+        {
+            /* Each thread alternates between tasks of its own, so every switch changes the active task */
+            final int firstTaskId = Workday.NUM_SPECIAL_TASKS + ( 2 * submitter );
+
+            submitters[submitter] = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for( int switchCount = 0; switchCount < SWITCHES_PER_SUBMITTER; switchCount++ )
+                    {
+                        writer.switchToTask( firstTaskId + ( switchCount % 2 ) );
+                    }
+                }
+            } );
+
+            submitters[submitter].start();
+        }
+
+        for( Thread submitter : submitters )
+        {
+            submitter.join();
+        }
+
+        writerThread.shutdown();
+        assertTrue( writerThread.awaitTermination( 10, TimeUnit.SECONDS ) );
+
+        WorkdaySnapshot snapshot = writer.getPublishedSnapshot();
+        TaskLog log = snapshot.getTaskLog();
+        int switches = SUBMITTERS * SWITCHES_PER_SUBMITTER;
+
+        /* The last iteration is still active, so it is not part of the published log */
+        assertEquals( switches - 1, log.size() );
+        assertEquals( ( 2 * SUBMITTERS ) + switches, m_Listener.m_Commands );
+
+        for( int index = 1; index < log.size(); index++ )
+        {
+            assertTrue( log.getStartTimestampMs( index ) > log.getStartTimestampMs( index - 1 ) );
+        }
+
+        /* Each batch holds at least one command, and no command is applied twice */
+        assertTrue( m_Listener.m_Batches >= 1 );
+        assertTrue( m_Listener.m_Batches <= m_Listener.m_Commands );
+        assertEquals( 0, m_Listener.m_Failures );
+    }
+
+    /**
+     * Runs the writer, as its executor would, until nothing more is scheduled.
+     */
+    private void runWriter()
+    {
+        while( !m_Scheduled.isEmpty() )
+        {
+            m_Scheduled.remove( 0 ).run();
+        }
+    }
+
+    /**
+     * Records the batches applied by the writer.
+     */
+    private static class RecordingListener implements WorkdayWriter.BatchListener
+    {
+        /* Private member fields */
+        private int m_Batches;
+        private int m_Commands;
+        private int m_Failures;
+        private WorkdaySnapshot m_LastSnapshot;
+        private boolean m_FailNextBatch;
+
+        @Override
+        public void onBatchApplied( WorkdaySnapshot snapshot, int commands )
+        {
+            if( m_FailNextBatch )
+            {
+                m_FailNextBatch = false;
+                throw new IllegalStateException( "Listener failed" );
+            }
+
+            m_Batches++;
+            m_Commands += commands;
+            m_LastSnapshot = snapshot;
+        }
+
+        @Override
+        public void onCommandFailed( RuntimeException exception )
+        {
+            m_Failures++;
+        }
+    }
+}